@@ -0,0 +1,36 @@
+package com.tpi.comun.web;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
+
+/**
+ * Registra {@link LimitePeticionesFilter} en los servicios que corren con hilos virtuales
+ * ({@code spring.threads.virtual.enabled=true}, perfil {@code virtual}). Va antes que Spring Security para
+ * que las peticiones en espera no ocupen nada más que el semáforo.
+ */
+@AutoConfiguration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class LimitePeticionesAutoConfiguration {
+
+    @Bean
+    public FilterRegistrationBean<LimitePeticionesFilter> limitePeticionesFilter(
+            MeterRegistry registry,
+            @Value("${server.hilos-virtuales.prefijo-metricas:${spring.application.name:servicio}}") String prefijo,
+            @Value("${server.hilos-virtuales.max-peticiones:20}") int max,
+            @Value("${server.hilos-virtuales.espera-max-ms:2000}") long esperaMaxMs,
+            @Value("${server.hilos-virtuales.retry-after-s:1}") long retryAfterS,
+            @Value("${management.endpoints.web.base-path:/actuator}") String rutaActuator) {
+        FilterRegistrationBean<LimitePeticionesFilter> registro = new FilterRegistrationBean<>(
+                new LimitePeticionesFilter(registry, prefijo, max, esperaMaxMs, retryAfterS, rutaActuator));
+        registro.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registro;
+    }
+}
@@ -0,0 +1,131 @@
+package com.tpi.comun.web;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Con hilos virtuales Tomcat atiende todas las conexiones a la vez: el tope de 200 hilos que antes dejaba
+ * esperando al resto en la cola de Tomcat desaparece y miles de peticiones terminan compitiendo por las
+ * conexiones de Hikari hasta vencer su connection-timeout. Este filtro restituye un tope: a lo sumo
+ * {@code max} peticiones en proceso y el resto espera su turno en orden de llegada (esperar un semáforo no
+ * ocupa el carrier), pero no más de {@code esperaMaxMs}: pasado ese plazo responde 503 con Retry-After en
+ * lugar de dejar que la cola crezca sin límite.
+ * <p>
+ * Las respuestas asíncronas (Mono, DeferredResult) retienen el lugar hasta que la respuesta se completa, no
+ * hasta que se devuelve el hilo. Las rutas bajo {@code rutaExcluida} (actuator) no pasan por el tope: el
+ * health check tiene que contestar justamente cuando el servicio está saturado.
+ */
+public class LimitePeticionesFilter extends OncePerRequestFilter {
+
+    private final Semaphore permisos;
+    private final long esperaMaxMs;
+    private final String retryAfter;
+    private final String rutaExcluida;
+    private final Counter rechazadas;
+
+    public LimitePeticionesFilter(MeterRegistry registry, String prefijoMetricas, int max, long esperaMaxMs,
+                                  long retryAfterS, String rutaExcluida) {
+        if (max < 1) {
+            throw new IllegalArgumentException("server.hilos-virtuales.max-peticiones debe ser positivo");
+        }
+        if (esperaMaxMs < 0 || retryAfterS < 0) {
+            throw new IllegalArgumentException("server.hilos-virtuales.espera-max-ms y retry-after-s no pueden ser negativos");
+        }
+        this.permisos = new Semaphore(max, true);
+        this.esperaMaxMs = esperaMaxMs;
+        this.retryAfter = String.valueOf(retryAfterS);
+        this.rutaExcluida = rutaExcluida.endsWith("/") ? rutaExcluida.substring(0, rutaExcluida.length() - 1) : rutaExcluida;
+        Gauge.builder(prefijoMetricas + ".peticiones.en-espera", permisos, Semaphore::getQueueLength)
+                .description("Peticiones esperando lugar por server.hilos-virtuales.max-peticiones")
+                .register(registry);
+        this.rechazadas = Counter.builder(prefijoMetricas + ".peticiones.rechazadas")
+                .description("Peticiones respondidas con 503 por vencer server.hilos-virtuales.espera-max-ms")
+                .register(registry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (rutaExcluida.isEmpty()) {
+            return false;
+        }
+        String ruta = request.getRequestURI().substring(request.getContextPath().length());
+        return ruta.equals(rutaExcluida) || ruta.startsWith(rutaExcluida + "/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean obtenido;
+        try {
+            obtenido = permisos.tryAcquire(esperaMaxMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            obtenido = false;
+        }
+        if (!obtenido) {
+            rechazadas.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        Liberacion liberacion = new Liberacion();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            // El despacho asíncrono no vuelve a pasar por acá (OncePerRequestFilter): se libera al completar
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(liberacion);
+            } else {
+                liberacion.liberar();
+            }
+        }
+    }
+
+    /** Devuelve el permiso una sola vez, sea al terminar la petición o por el evento asíncrono que llegue primero. */
+    private final class Liberacion implements AsyncListener {
+
+        private final AtomicBoolean liberado = new AtomicBoolean();
+
+        void liberar() {
+            if (liberado.compareAndSet(false, true)) {
+                permisos.release();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            liberar();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            liberar();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            liberar();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Un nuevo startAsync descarta los listeners registrados: hay que volver a anotarse
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
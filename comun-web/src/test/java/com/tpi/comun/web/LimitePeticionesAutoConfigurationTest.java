@@ -0,0 +1,42 @@
+package com.tpi.comun.web;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LimitePeticionesAutoConfigurationTest {
+
+    private final WebApplicationContextRunner runner = new WebApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(LimitePeticionesAutoConfiguration.class))
+            .withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+            .withPropertyValues("spring.application.name=ms-prueba");
+
+    @Test
+    void autoConfiguracion_HilosVirtuales_RegistraElFiltroConLasMetricasDelServicio() {
+        runner.withPropertyValues("spring.threads.virtual.enabled=true",
+                        "server.hilos-virtuales.prefijo-metricas=prueba")
+                .run(contexto -> {
+                    assertTrue(contexto.containsBean("limitePeticionesFilter"));
+                    assertInstanceOf(FilterRegistrationBean.class, contexto.getBean("limitePeticionesFilter"));
+                    assertNotNull(contexto.getBean(MeterRegistry.class).find("prueba.peticiones.en-espera").gauge());
+                });
+    }
+
+    @Test
+    void autoConfiguracion_SinPrefijo_UsaElNombreDeLaAplicacion() {
+        runner.withPropertyValues("spring.threads.virtual.enabled=true")
+                .run(contexto -> assertNotNull(contexto.getBean(MeterRegistry.class)
+                        .find("ms-prueba.peticiones.en-espera").gauge()));
+    }
+
+    @Test
+    void autoConfiguracion_HilosDePlataforma_NoRegistraElFiltro() {
+        runner.withPropertyValues("spring.threads.virtual.enabled=false")
+                .run(contexto -> assertFalse(contexto.containsBean("limitePeticionesFilter")));
+    }
+}
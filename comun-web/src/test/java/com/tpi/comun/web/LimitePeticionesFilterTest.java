@@ -0,0 +1,146 @@
+package com.tpi.comun.web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LimitePeticionesFilterTest {
+
+    private SimpleMeterRegistry registry;
+    private LimitePeticionesFilter filtro;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        filtro = new LimitePeticionesFilter(registry, "prueba", 1, 50, 2, "/actuator");
+    }
+
+    private static MockHttpServletRequest peticion(String ruta) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", ruta);
+        request.setAsyncSupported(true);
+        return request;
+    }
+
+    // Deja la petición en proceso con el lugar tomado hasta que se complete su AsyncContext
+    private AsyncContext ocuparElLugar() throws Exception {
+        MockHttpServletRequest request = peticion("/api/tramos/1");
+        filtro.doFilter(request, new MockHttpServletResponse(), (req, res) -> req.startAsync());
+        return request.getAsyncContext();
+    }
+
+    private int atender(String ruta) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filtro.doFilter(peticion(ruta), response, (req, res) -> ((MockHttpServletResponse) res).setStatus(200));
+        return response.getStatus();
+    }
+
+    @Test
+    void doFilter_HayLugar_AtiendeYLoDevuelve() throws Exception {
+        // Act & Assert: con max 1, la segunda solo entra si la primera devolvió el lugar
+        assertEquals(200, atender("/api/tramos/1"));
+        assertEquals(200, atender("/api/tramos/2"));
+    }
+
+    @Test
+    void doFilter_SinLugarTrasLaEspera_Responde503ConRetryAfter() throws Exception {
+        // Arrange
+        ocuparElLugar();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain cadena = (req, res) -> fail("La petición rechazada no debe llegar al controlador");
+
+        // Act
+        filtro.doFilter(peticion("/api/tramos/2"), response, cadena);
+
+        // Assert
+        assertEquals(503, response.getStatus());
+        assertEquals("2", response.getHeader("Retry-After"));
+        assertEquals(1.0, registry.get("prueba.peticiones.rechazadas").counter().count());
+    }
+
+    @Test
+    void doFilter_RespuestaAsincrona_RetieneElLugarHastaQueSeCompleta() throws Exception {
+        // Arrange: el controlador devolvió el hilo pero la respuesta sigue en curso
+        AsyncContext enCurso = ocuparElLugar();
+        assertEquals(503, atender("/api/tramos/2"));
+
+        // Act
+        enCurso.complete();
+
+        // Assert
+        assertEquals(200, atender("/api/tramos/3"));
+    }
+
+    @Test
+    void doFilter_RespuestaAsincronaVencida_LiberaElLugarUnaSolaVez() throws Exception {
+        // Arrange
+        MockAsyncContext enCurso = (MockAsyncContext) ocuparElLugar();
+        AsyncListener listener = enCurso.getListeners().get(0);
+        AsyncEvent evento = new AsyncEvent(enCurso);
+
+        // Act: el contenedor avisa el timeout y después el complete
+        listener.onTimeout(evento);
+        listener.onComplete(evento);
+
+        // Assert: un solo permiso devuelto, la segunda petición concurrente sigue esperando
+        ocuparElLugar();
+        assertEquals(503, atender("/api/tramos/2"));
+    }
+
+    @Test
+    void doFilter_LugarLiberadoDuranteLaEspera_AtiendeALaQueEspera() throws Exception {
+        // Arrange
+        filtro = new LimitePeticionesFilter(registry, "prueba", 1, 5000, 1, "/actuator");
+        AsyncContext enCurso = ocuparElLugar();
+        CountDownLatch llego = new CountDownLatch(1);
+        CompletableFuture<Integer> estado = CompletableFuture.supplyAsync(() -> {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            try {
+                filtro.doFilter(peticion("/api/tramos/2"), response, (req, res) -> llego.countDown());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return response.getStatus();
+        });
+        while (registry.get("prueba.peticiones.en-espera").gauge().value() < 1) {
+            Thread.yield();
+        }
+
+        // Act
+        enCurso.complete();
+
+        // Assert
+        assertTrue(llego.await(5, TimeUnit.SECONDS));
+        assertEquals(200, estado.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void doFilter_RutaDeActuatorConElCupoLleno_LaAtiendeIgual() throws Exception {
+        // Arrange
+        ocuparElLugar();
+
+        // Act & Assert
+        assertEquals(200, atender("/actuator/health"));
+        assertEquals(200, atender("/actuator"));
+        assertEquals(503, atender("/actuatorx"));
+    }
+
+    @Test
+    void constructor_MaxNoPositivo_LanzaExcepcion() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> new LimitePeticionesFilter(registry, "otra", 0, 50, 1, "/actuator"));
+    }
+}
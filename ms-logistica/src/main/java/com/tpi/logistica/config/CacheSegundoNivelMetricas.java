@@ -0,0 +1,72 @@
+package com.tpi.logistica.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Publica en Micrometer las estadísticas JCache (aciertos, fallos, altas, desalojos) de las regiones del cache
+ * de segundo nivel de Hibernate, con los nombres estándar {@code cache.*} y {@code cacheManager=hibernate}.
+ * Los conteos se leen del MBean de cada cache al momento de consultar la métrica, así no importa si
+ * Hibernate crea las regiones antes o después de registrar los medidores.
+ * Los aciertos por región según Hibernate están además en {@code hibernate.second.level.cache.*}.
+ */
+@Component
+public class CacheSegundoNivelMetricas implements MeterBinder {
+
+    // Deben coincidir con application.conf y con las regiones de @Cache en las entidades
+    static final List<String> REGIONES = List.of("camiones", "depositos",
+            "default-query-results-region", "default-update-timestamps-region");
+
+    private final MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (String region : REGIONES) {
+            Tags tags = Tags.of("cache", region, "cacheManager", "hibernate");
+            contador(registry, "cache.gets", tags.and("result", "hit"), region, "CacheHits",
+                    "Lecturas resueltas desde el cache");
+            contador(registry, "cache.gets", tags.and("result", "miss"), region, "CacheMisses",
+                    "Lecturas que no encontraron la entrada en el cache");
+            contador(registry, "cache.puts", tags, region, "CachePuts", "Entradas agregadas al cache");
+            contador(registry, "cache.evictions", tags, region, "CacheEvictions",
+                    "Entradas desalojadas por tamaño o expiración");
+            contador(registry, "cache.removals", tags, region, "CacheRemovals",
+                    "Entradas invalidadas explícitamente (escrituras)");
+        }
+    }
+
+    private void contador(MeterRegistry registry, String nombre, Tags tags, String region,
+                          String atributo, String descripcion) {
+        FunctionCounter.builder(nombre, region, r -> leer(r, atributo))
+                .tags(tags)
+                .description(descripcion)
+                .register(registry);
+    }
+
+    private double leer(String region, String atributo) {
+        try {
+            Set<ObjectName> nombres = mbeanServer.queryNames(
+                    new ObjectName("javax.cache:type=CacheStatistics,CacheManager=*,Cache=" + region), null);
+            double total = 0;
+            for (ObjectName nombre : nombres) {
+                total += ((Number) mbeanServer.getAttribute(nombre, atributo)).doubleValue();
+            }
+            return total;
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException(e);
+        } catch (Exception e) {
+            // Región todavía no creada o MBean desregistrado
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.tpi.logistica.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Registro append-only de altas, modificaciones y bajas de camiones y depósitos.
+ * La PK sale de una secuencia sin pool (allocationSize = 1) y funciona como versión global del catálogo.
+ * {@code orden} es la posición en el feed: se asigna después de confirmar (ver CatalogoCambiosService), así
+ * sigue el orden de commit y no el de la secuencia, que las transacciones concurrentes no respetan.
+ * Los cambios reemplazados por uno posterior de la misma entidad se purgan pasada la retención.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "catalogo_cambios", indexes = {
+        @Index(name = "idx_catalogo_cambios_orden", columnList = "orden"),
+        @Index(name = "idx_catalogo_cambios_entidad", columnList = "tipo, clave, orden")
+})
+public class CambioCatalogo {
+
+    public enum Tipo { CAMION, DEPOSITO }
+
+    public enum Operacion { ALTA_MODIFICACION, BAJA }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "catalogo_version_seq")
+    @SequenceGenerator(name = "catalogo_version_seq", sequenceName = "catalogo_version_seq", allocationSize = 1)
+    @Column(name = "version")
+    private Long version;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo", length = 20, nullable = false)
+    private Tipo tipo;
+
+    @Column(name = "clave", length = 40, nullable = false)
+    private String clave;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "operacion", length = 20, nullable = false)
+    private Operacion operacion;
+
+    // Null hasta que el secuenciador lo toma; sale de la misma secuencia que version
+    @Column(name = "orden")
+    private Long orden;
+
+    @Column(name = "registrado", nullable = false)
+    private LocalDateTime registrado;
+
+    @PrePersist
+    public void prePersist() {
+        if (this.registrado == null) {
+            this.registrado = LocalDateTime.now();
+        }
+    }
+}
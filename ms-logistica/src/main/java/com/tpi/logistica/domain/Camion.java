@@ -1,9 +1,12 @@
 package com.tpi.logistica.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.PositiveOrZero;
@@ -11,6 +14,9 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 @Data
 @NoArgsConstructor
@@ -18,6 +24,8 @@ import lombok.NoArgsConstructor;
 @Builder
 @Entity
 @Table(name = "camiones")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "camiones")
 public class Camion {
 
     @Id
@@ -50,4 +58,20 @@ public class Camion {
 
     @Column(name = "telefono", length = 20)
     private String telefono;
+
+    // Versión del catálogo en la última alta/modificación (ver CambioCatalogo); la asigna el servicio
+    @Column(name = "version_catalogo")
+    private Long versionCatalogo;
+
+    // Se incrementa en cada reserva/liberación y en cada modificación: una escritura con versión vieja
+    // falla en lugar de pisar la disponibilidad (ver CamionRepository#reservar)
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version_reserva", nullable = false)
+    private Long versionReserva;
+
+    // versionReserva que dejó la reserva en curso; la identifica al liberar aunque después se modifique el camión
+    @JsonIgnore
+    @Column(name = "reserva_vigente")
+    private Long reservaVigente;
 }
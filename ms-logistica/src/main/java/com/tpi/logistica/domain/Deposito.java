@@ -7,6 +7,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Data
 @NoArgsConstructor
@@ -14,6 +16,8 @@ import lombok.NoArgsConstructor;
 @Builder
 @Entity
 @Table(name = "depositos")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "depositos")
 public class Deposito {
 
     @Id
@@ -37,4 +41,8 @@ public class Deposito {
 
     @Column(name = "direccion", length = 200)
     private String direccion;
+
+    // Versión del catálogo en la última alta/modificación (ver CambioCatalogo); la asigna el servicio
+    @Column(name = "version_catalogo")
+    private Long versionCatalogo;
 }
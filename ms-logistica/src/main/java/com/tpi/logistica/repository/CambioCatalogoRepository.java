@@ -0,0 +1,58 @@
+package com.tpi.logistica.repository;
+
+import com.tpi.logistica.domain.CambioCatalogo;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface CambioCatalogoRepository extends JpaRepository<CambioCatalogo, Long> {
+    List<CambioCatalogo> findByOrdenGreaterThanOrderByOrdenAsc(Long orden, Limit limit);
+
+    boolean existsByOrdenIsNull();
+
+    /**
+     * Lock transaccional que serializa a quienes asignan el orden del feed; se libera al confirmar.
+     */
+    @Query(value = "SELECT 1 FROM (SELECT pg_advisory_xact_lock(:clave)) l", nativeQuery = true)
+    Integer bloquearSecuenciador(long clave);
+
+    /**
+     * Asigna orden a los cambios ya confirmados que todavía no lo tienen, en orden de versión. Los de
+     * transacciones en curso no son visibles acá y reciben un orden mayor cuando confirman.
+     * Sin el hint Hibernate invalidaría todas las regiones del cache de segundo nivel.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "catalogo_cambios"))
+    @Query(value = """
+            UPDATE catalogo_cambios c SET orden = p.orden
+            FROM (SELECT version, nextval('catalogo_version_seq') AS orden
+                  FROM (SELECT version FROM catalogo_cambios WHERE orden IS NULL ORDER BY version) s) p
+            WHERE c.version = p.version""", nativeQuery = true)
+    int ordenarConfirmados();
+
+    /**
+     * Borra hasta {@code lote} cambios ya ordenados, anteriores a {@code antesDe}, que tienen un cambio posterior
+     * de la misma entidad. El feed colapsa por entidad, así que un consumidor atrasado recibe lo mismo: el último.
+     */
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "catalogo_cambios"))
+    @Query(value = """
+            DELETE FROM catalogo_cambios WHERE version IN (
+                SELECT c.version FROM catalogo_cambios c
+                WHERE c.orden IS NOT NULL AND c.registrado < :antesDe
+                  AND EXISTS (SELECT 1 FROM catalogo_cambios n
+                              WHERE n.tipo = c.tipo AND n.clave = c.clave AND n.orden > c.orden)
+                LIMIT :lote)""", nativeQuery = true)
+    int borrarReemplazados(LocalDateTime antesDe, int lote);
+}
@@ -1,14 +1,72 @@
 package com.tpi.logistica.repository;
 
 import com.tpi.logistica.domain.Camion;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface CamionRepository extends JpaRepository<Camion, String> {
     Page<Camion> findByCapacidadPesoBetween(Double min, Double max, Pageable pageable);
     Page<Camion> findByCapacidadVolumenBetween(Double min, Double max, Pageable pageable);
     Page<Camion> findByCapacidadPesoBetweenAndCapacidadVolumenBetween(Double minPeso, Double maxPeso, Double minVol, Double maxVol, Pageable pageable);
+
+    // Recargas completas (snapshot de flota): no pasan por el cache de segundo nivel para no desalojar lo útil
+    @Override
+    @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_CACHE_STORE_MODE, value = "BYPASS"))
+    List<Camion> findAll();
+
+    // Keyset sobre la PK (dominio): sin OFFSET ni COUNT. Cacheable: se invalida con cualquier escritura en la tabla
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Camion> findByDominioGreaterThanOrderByDominioAsc(String dominio, Limit limit);
+    List<Camion> findByDominioGreaterThanAndCapacidadPesoBetweenOrderByDominioAsc(String dominio, Double min, Double max, Limit limit);
+    List<Camion> findByDominioGreaterThanAndCapacidadVolumenBetweenOrderByDominioAsc(String dominio, Double min, Double max, Limit limit);
+    List<Camion> findByDominioGreaterThanAndCapacidadPesoBetweenAndCapacidadVolumenBetweenOrderByDominioAsc(String dominio, Double minPeso, Double maxPeso, Double minVol, Double maxVol, Limit limit);
+
+    // Relectura después de un UPDATE masivo: el cache de segundo nivel puede tener todavía la fila anterior
+    @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_CACHE_RETRIEVE_MODE, value = "BYPASS"))
+    @Query("select c from Camion c where c.dominio = :dominio")
+    Optional<Camion> releer(String dominio);
+
+    // Filas (disponibilidad, cantidad) para el resumen de estado sin materializar entidades. Sin cache de
+    // consultas: la reconciliación de FlotaSnapshot la usa para detectar desvíos y tiene que ver la base
+    @Query("select c.disponibilidad, count(c) from Camion c group by c.disponibilidad")
+    List<Object[]> contarPorDisponibilidad();
+
+    /**
+     * Reserva condicional: pasa el camión a no disponible solo si está libre y tiene capacidad para el contenedor.
+     * Devuelve 1 si lo reservó; 0 si otro lo tomó antes, no alcanza la capacidad o no existe.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Camion c set c.disponibilidad = false, c.versionReserva = c.versionReserva + 1, " +
+            "c.reservaVigente = c.versionReserva + 1 " +
+            "where c.dominio = :dominio and c.disponibilidad = true " +
+            "and c.capacidadPeso >= :peso and c.capacidadVolumen >= :volumen")
+    int reservar(String dominio, double peso, double volumen);
+
+    /**
+     * Libera la reserva identificada por {@code version} (la versionReserva que devolvió {@link #reservar}); 0 si
+     * esa reserva ya no está en curso. Una modificación del camión entre medio no la invalida. Las reservas
+     * anteriores a reserva_vigente se reconocen, como antes, por la versionReserva actual.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Camion c set c.disponibilidad = true, c.versionReserva = c.versionReserva + 1, c.reservaVigente = null " +
+            "where c.dominio = :dominio and c.disponibilidad = false " +
+            "and (c.reservaVigente = :version or (c.reservaVigente is null and c.versionReserva = :version))")
+    int liberar(String dominio, long version);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Camion c set c.versionCatalogo = :versionCatalogo where c.dominio = :dominio")
+    int marcarVersionCatalogo(String dominio, long versionCatalogo);
 }
@@ -1,9 +1,25 @@
 package com.tpi.logistica.repository;
 
 import com.tpi.logistica.domain.Deposito;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface DepositoRepository extends JpaRepository<Deposito, Long> {
+
+    // Recarga del índice espacial: no pasa por el cache de segundo nivel
+    @Override
+    @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_CACHE_STORE_MODE, value = "BYPASS"))
+    List<Deposito> findAll();
+
+    // Keyset sobre la PK (idDeposito): sin OFFSET ni COUNT
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Deposito> findByIdDepositoGreaterThanOrderByIdDepositoAsc(Long idDeposito, Limit limit);
 }
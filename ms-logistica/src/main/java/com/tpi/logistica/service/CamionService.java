@@ -1,24 +1,42 @@
 package com.tpi.logistica.service;
 
+import com.tpi.logistica.domain.CambioCatalogo;
 import com.tpi.logistica.domain.Camion;
 import com.tpi.logistica.repository.CamionRepository;
+import com.tpi.logistica.web.dto.CapacidadRequest;
+import com.tpi.logistica.web.dto.LiberacionRequest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 @Service
 public class CamionService {
 
+    static final int LIMITE_MAXIMO_APTOS = 100;
+    static final int LIMITE_MAXIMO_DOMINIOS = 200;
+
     private final CamionRepository camionRepository;
+    private final FlotaSnapshot flotaSnapshot;
+    private final CatalogoCambiosService catalogoCambios;
 
-    public CamionService(CamionRepository camionRepository) {
+    public CamionService(CamionRepository camionRepository, FlotaSnapshot flotaSnapshot,
+                         CatalogoCambiosService catalogoCambios) {
         this.camionRepository = camionRepository;
+        this.flotaSnapshot = flotaSnapshot;
+        this.catalogoCambios = catalogoCambios;
     }
 
     // CRUD
@@ -49,27 +67,102 @@ public class CamionService {
         }
     }
 
+    /**
+     * Listado por cursor (keyset) ordenado por dominio: devuelve hasta {@code size} camiones posteriores a
+     * {@code despuesDe} (null para la primera página). Admite los mismos filtros de capacidad que {@link #listar}.
+     */
+    @Transactional(readOnly = true)
+    public Slice<Camion> listarDesde(String despuesDe, int size, Double minCapacidadPeso, Double maxCapacidadPeso,
+                                     Double minCapacidadVolumen, Double maxCapacidadVolumen) {
+        boolean hasPeso = minCapacidadPeso != null || maxCapacidadPeso != null;
+        boolean hasVol = minCapacidadVolumen != null || maxCapacidadVolumen != null;
+
+        Double minP = (minCapacidadPeso != null) ? minCapacidadPeso : 0.0;
+        Double maxP = (maxCapacidadPeso != null) ? maxCapacidadPeso : Double.MAX_VALUE;
+        Double minV = (minCapacidadVolumen != null) ? minCapacidadVolumen : 0.0;
+        Double maxV = (maxCapacidadVolumen != null) ? maxCapacidadVolumen : Double.MAX_VALUE;
+
+        String desde = (despuesDe != null) ? despuesDe : "";
+        // Se pide uno de más para saber si hay página siguiente sin hacer COUNT
+        Limit limit = Limit.of(size + 1);
+
+        List<Camion> filas;
+        if (hasPeso && hasVol) {
+            filas = camionRepository.findByDominioGreaterThanAndCapacidadPesoBetweenAndCapacidadVolumenBetweenOrderByDominioAsc(desde, minP, maxP, minV, maxV, limit);
+        } else if (hasPeso) {
+            filas = camionRepository.findByDominioGreaterThanAndCapacidadPesoBetweenOrderByDominioAsc(desde, minP, maxP, limit);
+        } else if (hasVol) {
+            filas = camionRepository.findByDominioGreaterThanAndCapacidadVolumenBetweenOrderByDominioAsc(desde, minV, maxV, limit);
+        } else {
+            filas = camionRepository.findByDominioGreaterThanOrderByDominioAsc(desde, limit);
+        }
+        return Paginas.recortar(filas, size);
+    }
+
     @Transactional(readOnly = true)
     public Camion obtener(String dominio) {
         return camionRepository.findById(dominio)
                 .orElseThrow(() -> new NoSuchElementException("Camión no encontrado: " + dominio));
     }
 
+    /**
+     * Varios camiones en una consulta, en el orden pedido y sin repetidos; los dominios inexistentes se omiten.
+     */
+    @Transactional(readOnly = true)
+    public List<Camion> obtenerVarios(List<String> dominios) {
+        Set<String> unicos = new LinkedHashSet<>();
+        for (String dominio : dominios) {
+            if (dominio != null && !dominio.isBlank()) unicos.add(dominio.trim());
+        }
+        if (unicos.isEmpty()) {
+            throw new IllegalArgumentException("Debe indicar al menos un dominio");
+        }
+        if (unicos.size() > LIMITE_MAXIMO_DOMINIOS) {
+            throw new IllegalArgumentException("Se admiten hasta " + LIMITE_MAXIMO_DOMINIOS + " dominios por consulta");
+        }
+        Map<String, Camion> encontrados = new HashMap<>();
+        for (Camion c : camionRepository.findAllById(unicos)) {
+            encontrados.put(c.getDominio(), c);
+        }
+        List<Camion> resultado = new ArrayList<>(encontrados.size());
+        for (String dominio : unicos) {
+            Camion c = encontrados.get(dominio);
+            if (c != null) resultado.add(c);
+        }
+        return resultado;
+    }
+
     @Transactional
     public Camion crear(Camion c) {
-        // dominio es PK y viene en el body; si existe, se sobreescribiría: preferimos fallo por constraint
-        return camionRepository.save(c);
+        // dominio es PK y viene en el body; sin versión, save hace persist y un dominio repetido falla por constraint
+        c.setVersionReserva(null);
+        c.setReservaVigente(null);
+        c.setVersionCatalogo(catalogoCambios.registrar(CambioCatalogo.Tipo.CAMION, c.getDominio(),
+                CambioCatalogo.Operacion.ALTA_MODIFICACION));
+        Camion guardado = camionRepository.save(c);
+        Transacciones.trasCommit(() -> flotaSnapshot.actualizar(guardado));
+        return guardado;
     }
 
     @Transactional
     public Camion actualizar(String dominio, Camion c) {
         Camion actual = obtener(dominio);
+        if (c.getVersionReserva() != null && !c.getVersionReserva().equals(actual.getVersionReserva())) {
+            throw new OptimisticLockingFailureException("El camión " + dominio + " fue modificado o reservado por otra operación");
+        }
         actual.setCapacidadPeso(c.getCapacidadPeso());
         actual.setCapacidadVolumen(c.getCapacidadVolumen());
         actual.setConsumoPromedio(c.getConsumoPromedio());
         actual.setCostoBaseKm(c.getCostoBaseKm());
         actual.setDisponibilidad(c.getDisponibilidad());
-        return camionRepository.save(actual);
+        if (Boolean.TRUE.equals(c.getDisponibilidad())) {
+            actual.setReservaVigente(null); // liberado a mano: la reserva en curso deja de valer
+        }
+        actual.setVersionCatalogo(catalogoCambios.registrar(CambioCatalogo.Tipo.CAMION, dominio,
+                CambioCatalogo.Operacion.ALTA_MODIFICACION));
+        Camion guardado = camionRepository.save(actual);
+        Transacciones.trasCommit(() -> flotaSnapshot.actualizar(guardado));
+        return guardado;
     }
 
     @Transactional
@@ -78,22 +171,191 @@ public class CamionService {
             throw new NoSuchElementException("Camión no encontrado: " + dominio);
         }
         camionRepository.deleteById(dominio);
+        catalogoCambios.registrar(CambioCatalogo.Tipo.CAMION, dominio, CambioCatalogo.Operacion.BAJA);
+        Transacciones.trasCommit(() -> flotaSnapshot.eliminar(dominio));
+    }
+
+    /**
+     * Valida capacidad y reserva el camión en un único UPDATE condicional: de dos reservas concurrentes
+     * gana la primera en escribir y la otra recibe el motivo del rechazo, sin locks explícitos.
+     * La {@code versionReserva} devuelta es el token para {@link #liberar}.
+     */
+    @Transactional
+    public Reserva reservar(String dominio, double pesoContenedor, double volumenContenedor) {
+        validarMedidas(pesoContenedor, volumenContenedor);
+        if (camionRepository.reservar(dominio, pesoContenedor, volumenContenedor) == 0) {
+            Camion camion = releer(dominio);
+            MotivoRechazo motivo = Boolean.TRUE.equals(camion.getDisponibilidad())
+                    ? MotivoRechazo.CAPACIDAD_INSUFICIENTE
+                    : MotivoRechazo.NO_DISPONIBLE;
+            return new Reserva(dominio, false, camion.getVersionReserva(), motivo);
+        }
+        return new Reserva(dominio, true, registrarCambioDisponibilidad(dominio).getVersionReserva(), null);
+    }
+
+    /**
+     * Libera una reserva hecha con {@link #reservar}, identificada por su {@code versionReserva}: sigue valiendo
+     * aunque el camión se haya modificado después. Si esa reserva ya no está en curso (se liberó, o el camión
+     * se liberó a mano y quizá se volvió a reservar) no hace nada y devuelve el estado actual con el motivo.
+     */
+    @Transactional
+    public Reserva liberar(String dominio, long versionReserva) {
+        if (camionRepository.liberar(dominio, versionReserva) == 0) {
+            Camion camion = releer(dominio);
+            return new Reserva(dominio, !Boolean.TRUE.equals(camion.getDisponibilidad()), camion.getVersionReserva(),
+                    MotivoRechazo.VERSION_DESACTUALIZADA);
+        }
+        return new Reserva(dominio, false, registrarCambioDisponibilidad(dominio).getVersionReserva(), null);
+    }
+
+    /**
+     * {@link #reservar} para varios camiones en una transacción, un resultado por ítem y en el mismo orden.
+     * Un rechazo no afecta al resto; un dominio inexistente se informa con {@code NO_ENCONTRADO}.
+     */
+    @Transactional
+    public List<Reserva> reservarLote(List<CapacidadRequest> items) {
+        if (items.size() > LIMITE_MAXIMO_DOMINIOS) {
+            throw new IllegalArgumentException("Se admiten hasta " + LIMITE_MAXIMO_DOMINIOS + " reservas por lote");
+        }
+        List<Reserva> resultados = new ArrayList<>(items.size());
+        for (CapacidadRequest item : items) {
+            try {
+                resultados.add(reservar(item.dominio(), item.pesoContenedor(), item.volumenContenedor()));
+            } catch (NoSuchElementException e) {
+                // Llamada interna: no pasa por el proxy transaccional, la transacción del lote sigue en pie
+                resultados.add(new Reserva(item.dominio(), false, null, MotivoRechazo.NO_ENCONTRADO));
+            }
+        }
+        return resultados;
+    }
+
+    /**
+     * {@link #liberar} para varias reservas en una transacción, un resultado por ítem y en el mismo orden.
+     */
+    @Transactional
+    public List<Reserva> liberarLote(List<LiberacionRequest> items) {
+        if (items.size() > LIMITE_MAXIMO_DOMINIOS) {
+            throw new IllegalArgumentException("Se admiten hasta " + LIMITE_MAXIMO_DOMINIOS + " liberaciones por lote");
+        }
+        List<Reserva> resultados = new ArrayList<>(items.size());
+        for (LiberacionRequest item : items) {
+            try {
+                resultados.add(liberar(item.dominio(), item.versionReserva()));
+            } catch (NoSuchElementException e) {
+                resultados.add(new Reserva(item.dominio(), false, null, MotivoRechazo.NO_ENCONTRADO));
+            }
+        }
+        return resultados;
+    }
+
+    private Camion registrarCambioDisponibilidad(String dominio) {
+        // Con UPDATE masivo y no con dirty checking: este último volvería a incrementar versionReserva
+        camionRepository.marcarVersionCatalogo(dominio, catalogoCambios.registrar(CambioCatalogo.Tipo.CAMION, dominio,
+                CambioCatalogo.Operacion.ALTA_MODIFICACION));
+        Camion camion = releer(dominio);
+        Transacciones.trasCommit(() -> flotaSnapshot.actualizar(camion));
+        return camion;
+    }
+
+    // Como obtener, pero de la base: findById devolvería la versión cacheada de antes del UPDATE masivo
+    private Camion releer(String dominio) {
+        return camionRepository.releer(dominio)
+                .orElseThrow(() -> new NoSuchElementException("Camión no encontrado: " + dominio));
     }
 
     /**
      * RF11 - Validar capacidad del camión para transportar un contenedor.
      * Regla: retorna true si el camión existe y tanto el peso como el volumen del contenedor
      * no exceden la capacidad del camión (<=). En cualquier otro caso, retorna false.
+     * Se resuelve contra el {@link FlotaSnapshot}; solo si el dominio no está en memoria se consulta la BD.
      */
-    @Transactional(readOnly = true)
     public boolean validarCapacidad(String dominio, Double pesoContenedor, Double volumenContenedor) {
         if (dominio == null || dominio.isBlank()) return false;
         if (pesoContenedor == null || volumenContenedor == null) return false;
-        if (pesoContenedor < 0 || volumenContenedor < 0) return false;
+        if (!medidasValidas(pesoContenedor, volumenContenedor)) return false;
+
+        // La versión se toma antes de leer: si una baja o reserva se confirma en el medio, no se incorpora
+        long version = flotaSnapshot.version();
+        Boolean enMemoria = flotaSnapshot.validarCapacidad(dominio, pesoContenedor, volumenContenedor);
+        if (enMemoria != null) return enMemoria;
 
         Camion camion = camionRepository.findById(dominio).orElse(null);
         if (camion == null) return false;
+        flotaSnapshot.incorporar(List.of(camion), version);
+
+        return cumpleCapacidad(camion, pesoContenedor, volumenContenedor);
+    }
+
+    /**
+     * RF11 en lote: mismo criterio que {@link #validarCapacidad}, un resultado por ítem y en el mismo orden.
+     * Lo que no resuelve el snapshot se busca con un único findAllById (IN).
+     */
+    @Transactional(readOnly = true)
+    public boolean[] validarCapacidadLote(List<CapacidadRequest> items) {
+        boolean[] resultados = new boolean[items.size()];
+        boolean[] pendientes = new boolean[items.size()];
+        Set<String> dominiosPendientes = new HashSet<>();
+        long version = flotaSnapshot.version();
+
+        for (int i = 0; i < items.size(); i++) {
+            CapacidadRequest item = items.get(i);
+            if (!esConsultaValida(item)) continue;
+            Boolean enMemoria = flotaSnapshot.validarCapacidad(item.dominio(), item.pesoContenedor(), item.volumenContenedor());
+            if (enMemoria != null) {
+                resultados[i] = enMemoria;
+            } else {
+                pendientes[i] = true;
+                dominiosPendientes.add(item.dominio());
+            }
+        }
+        if (dominiosPendientes.isEmpty()) return resultados;
 
+        Map<String, Camion> encontrados = new HashMap<>();
+        for (Camion c : camionRepository.findAllById(dominiosPendientes)) {
+            encontrados.put(c.getDominio(), c);
+        }
+        flotaSnapshot.incorporar(encontrados.values(), version);
+        for (int i = 0; i < items.size(); i++) {
+            if (!pendientes[i]) continue;
+            CapacidadRequest item = items.get(i);
+            Camion camion = encontrados.get(item.dominio());
+            resultados[i] = camion != null && cumpleCapacidad(camion, item.pesoContenedor(), item.volumenContenedor());
+        }
+        return resultados;
+    }
+
+    /**
+     * Camiones disponibles capaces de llevar el contenedor, resueltos sobre el índice en memoria.
+     * El orden es por costoBaseKm o por menor capacidad ociosa; {@code limite} acota el top-k.
+     */
+    public List<FlotaSnapshot.CamionApto> buscarAptos(double pesoContenedor, double volumenContenedor,
+                                                      FlotaSnapshot.CriterioOrden criterio, int limite) {
+        validarMedidas(pesoContenedor, volumenContenedor);
+        if (limite < 1 || limite > LIMITE_MAXIMO_APTOS) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + LIMITE_MAXIMO_APTOS);
+        }
+        return flotaSnapshot.buscarAptos(pesoContenedor, volumenContenedor, criterio, limite);
+    }
+
+    private static boolean esConsultaValida(CapacidadRequest item) {
+        if (item == null || item.dominio() == null || item.dominio().isBlank()) return false;
+        if (item.pesoContenedor() == null || item.volumenContenedor() == null) return false;
+        return medidasValidas(item.pesoContenedor(), item.volumenContenedor());
+    }
+
+    // NaN pasaría un "< 0" y en el índice de aptos compara false contra todo: acá se corta junto con infinito
+    private static boolean medidasValidas(double pesoContenedor, double volumenContenedor) {
+        return Double.isFinite(pesoContenedor) && Double.isFinite(volumenContenedor)
+                && pesoContenedor >= 0 && volumenContenedor >= 0;
+    }
+
+    private static void validarMedidas(double pesoContenedor, double volumenContenedor) {
+        if (!medidasValidas(pesoContenedor, volumenContenedor)) {
+            throw new IllegalArgumentException("Peso y volumen deben ser números finitos mayores o iguales a cero");
+        }
+    }
+
+    private static boolean cumpleCapacidad(Camion camion, double pesoContenedor, double volumenContenedor) {
         Double capPeso = camion.getCapacidadPeso();
         Double capVol = camion.getCapacidadVolumen();
         if (capPeso == null || capVol == null) return false;
@@ -103,30 +365,33 @@ public class CamionService {
 
     /**
      * Obtener resumen de estado de camiones (libres y ocupados).
-     * Basado en el campo disponibilidad.
+     * Basado en el campo disponibilidad. Se lee de los contadores del {@link FlotaSnapshot};
+     * antes de que el snapshot esté cargado se usa un GROUP BY en la BD.
      */
     @Transactional(readOnly = true)
     public Map<String, Object> obtenerEstadoCamiones() {
-        List<Camion> todos = camionRepository.findAll();
-        
-        long libres = todos.stream()
-                .filter(c -> c.getDisponibilidad() != null && c.getDisponibilidad())
-                .count();
-        
-        long ocupados = todos.stream()
-                .filter(c -> c.getDisponibilidad() != null && !c.getDisponibilidad())
-                .count();
-        
-        long sinEstado = todos.stream()
-                .filter(c -> c.getDisponibilidad() == null)
-                .count();
-        
+        FlotaSnapshot.EstadoFlota resumen = flotaSnapshot.isCargado()
+                ? flotaSnapshot.estado()
+                : FlotaSnapshot.EstadoFlota.desdeAgregado(camionRepository.contarPorDisponibilidad());
+
         Map<String, Object> estado = new HashMap<>();
-        estado.put("total", todos.size());
-        estado.put("libres", libres);
-        estado.put("ocupados", ocupados);
-        estado.put("sinEstado", sinEstado);
-        
+        estado.put("total", Math.toIntExact(resumen.total()));
+        estado.put("libres", resumen.libres());
+        estado.put("ocupados", resumen.ocupados());
+        estado.put("sinEstado", resumen.sinEstado());
+
         return estado;
     }
+
+    public enum MotivoRechazo { NO_DISPONIBLE, CAPACIDAD_INSUFICIENTE, VERSION_DESACTUALIZADA, NO_ENCONTRADO }
+
+    /**
+     * Resultado de reservar/liberar: {@code reservado} es el estado final del camión y
+     * {@code motivo} es null cuando la operación se aplicó.
+     */
+    public record Reserva(String dominio, boolean reservado, Long versionReserva, MotivoRechazo motivo) {
+        public boolean aplicada() {
+            return motivo == null;
+        }
+    }
 }
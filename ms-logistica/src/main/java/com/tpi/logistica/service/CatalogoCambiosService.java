@@ -0,0 +1,154 @@
+package com.tpi.logistica.service;
+
+import com.tpi.logistica.domain.CambioCatalogo;
+import com.tpi.logistica.domain.Camion;
+import com.tpi.logistica.domain.Deposito;
+import com.tpi.logistica.repository.CambioCatalogoRepository;
+import com.tpi.logistica.repository.CamionRepository;
+import com.tpi.logistica.repository.DepositoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Feed incremental del catálogo (camiones y depósitos) para consumidores que mantienen una réplica local.
+ * Cada escritura agrega una fila a {@link CambioCatalogo} dentro de la misma transacción.
+ * <p>
+ * El cursor no es la versión: una transacción puede tomar una versión menor y confirmar después que otra con
+ * versión mayor, y un consumidor que ya avanzó su cursor la perdería. Cada consulta primero asigna
+ * {@code orden} a los cambios confirmados que no lo tienen, bajo un lock que serializa esa asignación; un
+ * cambio que confirma más tarde recibe un orden mayor que todo lo ya entregado.
+ * <p>
+ * La tabla no crece sin límite: pasados {@code logistica.catalogo.retencion-dias}, un cambio que tiene otro
+ * posterior de la misma entidad se borra. Quedan el último cambio de cada entidad (bajas incluidas) y todo lo
+ * reciente, que es lo que el feed entrega igual al colapsar.
+ */
+@Service
+public class CatalogoCambiosService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogoCambiosService.class);
+
+    static final int LIMITE_MAXIMO = 1000;
+    // Clave del advisory lock del secuenciador del feed
+    static final long LOCK_SECUENCIADOR = 0x4341544C4F47L;
+    // Filas por transacción de la purga
+    static final int LOTE_PURGA = 5000;
+
+    private final CambioCatalogoRepository cambioRepository;
+    private final CamionRepository camionRepository;
+    private final DepositoRepository depositoRepository;
+    private final int retencionDias;
+
+    public CatalogoCambiosService(CambioCatalogoRepository cambioRepository,
+                                  CamionRepository camionRepository,
+                                  DepositoRepository depositoRepository,
+                                  @Value("${logistica.catalogo.retencion-dias:7}") int retencionDias) {
+        if (retencionDias < 1) {
+            throw new IllegalArgumentException("logistica.catalogo.retencion-dias debe ser positivo");
+        }
+        this.cambioRepository = cambioRepository;
+        this.camionRepository = camionRepository;
+        this.depositoRepository = depositoRepository;
+        this.retencionDias = retencionDias;
+    }
+
+    /**
+     * Registra el cambio y devuelve la versión asignada. Debe llamarse dentro de la transacción de la escritura.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long registrar(CambioCatalogo.Tipo tipo, String clave, CambioCatalogo.Operacion operacion) {
+        CambioCatalogo cambio = cambioRepository.save(CambioCatalogo.builder()
+                .tipo(tipo)
+                .clave(clave)
+                .operacion(operacion)
+                .build());
+        return cambio.getVersion();
+    }
+
+    /**
+     * Cambios con orden mayor a {@code desde}, colapsados por entidad (queda el último).
+     * No es de solo lectura: antes de leer asigna orden a lo confirmado desde la consulta anterior.
+     */
+    @Transactional
+    public Cambios cambiosDesde(long desde, int limite) {
+        if (limite < 1 || limite > LIMITE_MAXIMO) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + LIMITE_MAXIMO);
+        }
+        // Sin pendientes no hace falta el lock ni el UPDATE; lo que confirme después de esta lectura se ordena
+        // en la consulta siguiente, igual que si hubiera confirmado después del UPDATE
+        if (cambioRepository.existsByOrdenIsNull()) {
+            // El lock se toma en su propia sentencia: el UPDATE siguiente ve lo que confirmó el secuenciador anterior
+            cambioRepository.bloquearSecuenciador(LOCK_SECUENCIADOR);
+            cambioRepository.ordenarConfirmados();
+        }
+        List<CambioCatalogo> filas = cambioRepository.findByOrdenGreaterThanOrderByOrdenAsc(desde, Limit.of(limite + 1));
+        boolean hayMas = filas.size() > limite;
+        if (hayMas) filas = filas.subList(0, limite);
+        long hasta = filas.isEmpty() ? desde : filas.get(filas.size() - 1).getOrden();
+
+        Map<String, CambioCatalogo> ultimoPorCamion = new LinkedHashMap<>();
+        Map<String, CambioCatalogo> ultimoPorDeposito = new LinkedHashMap<>();
+        for (CambioCatalogo c : filas) {
+            (c.getTipo() == CambioCatalogo.Tipo.CAMION ? ultimoPorCamion : ultimoPorDeposito).put(c.getClave(), c);
+        }
+
+        List<String> dominios = new ArrayList<>();
+        List<Long> idsDepositos = new ArrayList<>();
+        List<Baja> bajas = new ArrayList<>();
+        for (CambioCatalogo c : ultimoPorCamion.values()) {
+            if (c.getOperacion() == CambioCatalogo.Operacion.BAJA) bajas.add(Baja.de(c));
+            else dominios.add(c.getClave());
+        }
+        for (CambioCatalogo c : ultimoPorDeposito.values()) {
+            if (c.getOperacion() == CambioCatalogo.Operacion.BAJA) bajas.add(Baja.de(c));
+            else idsDepositos.add(Long.valueOf(c.getClave()));
+        }
+
+        // Si una entidad ya no existe, su baja llega en una página posterior
+        List<Camion> camiones = dominios.isEmpty() ? List.of() : camionRepository.findAllById(dominios);
+        List<Deposito> depositos = idsDepositos.isEmpty() ? List.of() : depositoRepository.findAllById(idsDepositos);
+        return new Cambios(hasta, hayMas, camiones, depositos, bajas);
+    }
+
+    /**
+     * Borra los cambios reemplazados más viejos que la retención, de a {@link #LOTE_PURGA} por transacción.
+     * Devuelve la cantidad borrada.
+     */
+    @Scheduled(fixedDelayString = "${logistica.catalogo.purga-ms:3600000}",
+            initialDelayString = "${logistica.catalogo.purga-ms:3600000}")
+    public int purgarReemplazados() {
+        LocalDateTime antesDe = LocalDateTime.now().minusDays(retencionDias);
+        int total = 0;
+        int borradas;
+        do {
+            borradas = cambioRepository.borrarReemplazados(antesDe, LOTE_PURGA);
+            total += borradas;
+        } while (borradas == LOTE_PURGA);
+        if (total > 0) {
+            log.info("Feed del catálogo: {} cambios reemplazados purgados", total);
+        }
+        return total;
+    }
+
+    public record Baja(CambioCatalogo.Tipo tipo, String clave, long version) {
+        static Baja de(CambioCatalogo c) {
+            return new Baja(c.getTipo(), c.getClave(), c.getVersion());
+        }
+    }
+
+    /**
+     * @param hasta orden a enviar como {@code desde} en la próxima consulta
+     */
+    public record Cambios(long hasta, boolean hayMas, List<Camion> camiones, List<Deposito> depositos, List<Baja> bajas) {}
+}
@@ -0,0 +1,342 @@
+package com.tpi.logistica.service;
+
+import com.tpi.logistica.domain.Deposito;
+import com.tpi.logistica.repository.DepositoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice espacial en memoria de depósitos: grilla uniforme lat/lng con celdas de {@code tamanoCelda} grados.
+ * Vecinos más cercanos se buscan por anillos alrededor de la celda del punto; se corta cuando el k-ésimo
+ * encontrado está más cerca que cualquier celda todavía no visitada. Las columnas dan la vuelta en ±180°:
+ * la celda al este de la última es la primera, así que búsquedas cerca del antimeridiano ven ambos lados.
+ * Se mantiene incrementalmente desde {@link DepositoService}; depósitos sin coordenadas no se indexan.
+ */
+@Component
+public class DepositoIndiceEspacial {
+
+    private static final Logger log = LoggerFactory.getLogger(DepositoIndiceEspacial.class);
+
+    static final double RADIO_TIERRA_KM = 6371.0088;
+
+    private final DepositoRepository depositoRepository;
+    private final double tamanoCelda;
+    private final int columnas;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<Long, List<Deposito>> celdas = new HashMap<>();
+    private Map<Long, Deposito> porId = new HashMap<>();
+    // Se incrementa en cada escritura incremental; como en FlotaSnapshot, descarta recargas que se pisan con ellas
+    private long modificaciones;
+    private volatile boolean cargado;
+
+    public DepositoIndiceEspacial(DepositoRepository depositoRepository,
+                                  @Value("${logistica.depositos.indice.tamano-celda-grados:0.5}") double tamanoCelda) {
+        this.depositoRepository = depositoRepository;
+        this.tamanoCelda = tamanoCelda;
+        this.columnas = (int) Math.ceil(360.0 / tamanoCelda);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarInicial() {
+        recargar();
+    }
+
+    /**
+     * Reconstruye el índice desde la BD. Si mientras se leía llegó una escritura incremental (un alta o
+     * cambio confirmado después del SELECT), se descarta el resultado: el índice actual ya la contiene.
+     */
+    public void recargar() {
+        long version;
+        lock.readLock().lock();
+        try {
+            version = modificaciones;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Deposito> todos = depositoRepository.findAll();
+        Map<Long, List<Deposito>> nuevasCeldas = new HashMap<>();
+        Map<Long, Deposito> nuevosPorId = new HashMap<>();
+        for (Deposito d : todos) {
+            insertar(copia(d), nuevasCeldas, nuevosPorId);
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (cargado && version != modificaciones) {
+                log.debug("Recarga del índice de depósitos descartada: hubo escrituras concurrentes");
+                return;
+            }
+            celdas = nuevasCeldas;
+            porId = nuevosPorId;
+            modificaciones++;
+            cargado = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Índice espacial de depósitos cargado: {} depósitos", nuevosPorId.size());
+    }
+
+    /**
+     * Inserta o reubica el depósito en el índice.
+     */
+    public void actualizar(Deposito deposito) {
+        if (deposito == null || deposito.getIdDeposito() == null) return;
+        lock.writeLock().lock();
+        try {
+            quitar(deposito.getIdDeposito());
+            insertar(copia(deposito), celdas, porId);
+            modificaciones++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void eliminar(Long idDeposito) {
+        if (idDeposito == null) return;
+        lock.writeLock().lock();
+        try {
+            quitar(idDeposito);
+            modificaciones++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Los {@code cantidad} depósitos más cercanos al punto, de menor a mayor distancia.
+     */
+    public List<DepositoCercano> cercanos(double lat, double lng, int cantidad) {
+        asegurarCargado();
+        lock.readLock().lock();
+        try {
+            int total = porId.size();
+            // Heap de máximos: la raíz es el más lejano de los k mejores
+            PriorityQueue<DepositoCercano> mejores = new PriorityQueue<>(cantidad + 1,
+                    Comparator.comparingDouble(DepositoCercano::distanciaKm).reversed());
+            int fila = indiceFila(lat);
+            int col = indiceColumna(lng);
+            int visitados = 0;
+            int maxAnillo = columnas;
+            for (int r = 0; r <= maxAnillo && visitados < total; r++) {
+                for (int f = fila - r; f <= fila + r; f++) {
+                    boolean bordeFila = f == fila - r || f == fila + r;
+                    for (int c : columnasDelAnillo(col, r, bordeFila)) {
+                        List<Deposito> celda = celdas.get(clave(f, c));
+                        if (celda == null) continue;
+                        for (Deposito d : celda) {
+                            visitados++;
+                            double dist = haversineKm(lat, lng, d.getLatitud(), d.getLongitud());
+                            if (mejores.size() < cantidad) {
+                                mejores.add(new DepositoCercano(d, dist));
+                            } else if (dist < mejores.peek().distanciaKm()) {
+                                mejores.poll();
+                                mejores.add(new DepositoCercano(d, dist));
+                            }
+                        }
+                    }
+                }
+                if (mejores.size() == cantidad && mejores.peek().distanciaKm() <= distanciaMinimaFueraDelAnillo(lat, r)) {
+                    break;
+                }
+            }
+            List<DepositoCercano> resultado = new ArrayList<>(mejores);
+            resultado.sort(Comparator.comparingDouble(DepositoCercano::distanciaKm));
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Depósitos a no más de {@code radioKm} del punto, de menor a mayor distancia.
+     */
+    public List<DepositoCercano> enRadio(double lat, double lng, double radioKm) {
+        double dLat = Math.toDegrees(radioKm / RADIO_TIERRA_KM);
+        double cosLat = Math.cos(Math.toRadians(Math.min(89.0, Math.abs(lat) + dLat)));
+        double dLng = Math.min(180.0, dLat / Math.max(cosLat, 1e-6));
+        List<DepositoCercano> resultado = new ArrayList<>();
+        for (Deposito d : enArea(lat - dLat, lat + dLat, lng - dLng, lng + dLng)) {
+            double dist = haversineKm(lat, lng, d.getLatitud(), d.getLongitud());
+            if (dist <= radioKm) {
+                resultado.add(new DepositoCercano(d, dist));
+            }
+        }
+        resultado.sort(Comparator.comparingDouble(DepositoCercano::distanciaKm));
+        return resultado;
+    }
+
+    /**
+     * Depósitos dentro del rectángulo [latMin, latMax] x [lngMin, lngMax]. Longitudes fuera de [-180, 180]
+     * dan la vuelta: [170, 190] son los depósitos entre 170 y 180 más los entre -180 y -170.
+     */
+    public List<Deposito> enArea(double latMin, double latMax, double lngMin, double lngMax) {
+        asegurarCargado();
+        lock.readLock().lock();
+        try {
+            List<Deposito> resultado = new ArrayList<>();
+            for (double[] rango : rangosLongitud(lngMin, lngMax)) {
+                agregarEnArea(latMin, latMax, rango[0], rango[1], resultado);
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Con el lock de lectura tomado; lngMin y lngMax dentro de [-180, 180]
+    private void agregarEnArea(double latMin, double latMax, double lngMin, double lngMax, List<Deposito> resultado) {
+        int filaDesde = indiceFila(Math.max(-90.0, latMin));
+        int filaHasta = indiceFila(Math.min(90.0, latMax));
+        // Sin módulo: 180 queda en la columna siguiente a la última, que al buscarla da la vuelta a la primera
+        int colDesde = (int) Math.floor((lngMin + 180.0) / tamanoCelda);
+        int colHasta = (int) Math.floor((lngMax + 180.0) / tamanoCelda);
+        long celdasRango = (long) (filaHasta - filaDesde + 1) * (colHasta - colDesde + 1);
+        // Si el rectángulo abarca más celdas que depósitos, conviene recorrerlos directamente
+        if (celdasRango > celdas.size()) {
+            for (List<Deposito> celda : celdas.values()) {
+                agregarDentro(celda, latMin, latMax, lngMin, lngMax, resultado);
+            }
+            return;
+        }
+        for (int f = filaDesde; f <= filaHasta; f++) {
+            for (int c = colDesde; c <= colHasta; c++) {
+                List<Deposito> celda = celdas.get(clave(f, c));
+                if (celda != null) agregarDentro(celda, latMin, latMax, lngMin, lngMax, resultado);
+            }
+        }
+    }
+
+    /**
+     * Parte [lngMin, lngMax] en tramos dentro de [-180, 180]: uno solo, o dos si cruza el antimeridiano.
+     */
+    static List<double[]> rangosLongitud(double lngMin, double lngMax) {
+        if (lngMax - lngMin >= 360.0) {
+            return List.of(new double[]{-180.0, 180.0});
+        }
+        double desde = lngMin - 360.0 * Math.floor((lngMin + 180.0) / 360.0);
+        double hasta = desde + (lngMax - lngMin);
+        if (hasta <= 180.0) {
+            return List.of(new double[]{desde, hasta});
+        }
+        return List.of(new double[]{desde, 180.0}, new double[]{-180.0, hasta - 360.0});
+    }
+
+    /**
+     * Columnas del anillo r alrededor de {@code col}, sin repetir ninguna ya visitada cuando el anillo
+     * da la vuelta completa: las filas de borde lo recorren entero (hasta {@code columnas} celdas) y las
+     * intermedias solo sus dos extremos, que coinciden cuando 2r es la cantidad de columnas.
+     */
+    private int[] columnasDelAnillo(int col, int r, boolean bordeFila) {
+        if (bordeFila) {
+            int ancho = Math.min(2 * r + 1, columnas);
+            int[] resultado = new int[ancho];
+            for (int k = 0; k < ancho; k++) resultado[k] = col - r + k;
+            return resultado;
+        }
+        if (2 * r < columnas) return new int[]{col - r, col + r};
+        if (2 * r == columnas) return new int[]{col - r};
+        return new int[0];
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return porId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static double haversineKm(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * RADIO_TIERRA_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /**
+     * Cota inferior de la distancia a cualquier punto fuera del bloque de (2r+1)x(2r+1) celdas:
+     * ese punto difiere en al menos r celdas de latitud o de longitud respecto del punto consultado.
+     */
+    private double distanciaMinimaFueraDelAnillo(double lat, int r) {
+        double delta = Math.toRadians(r * tamanoCelda);
+        double porLatitud = RADIO_TIERRA_KM * delta;
+        double latMax = Math.toRadians(Math.min(90.0, Math.abs(lat) + (r + 1) * tamanoCelda));
+        double porLongitud = 2 * RADIO_TIERRA_KM * Math.asin(Math.min(1.0, Math.cos(latMax) * Math.sin(Math.min(delta, Math.PI) / 2)));
+        return Math.min(porLatitud, porLongitud);
+    }
+
+    private void asegurarCargado() {
+        if (!cargado) recargar();
+    }
+
+    private static void agregarDentro(List<Deposito> celda, double latMin, double latMax,
+                                      double lngMin, double lngMax, List<Deposito> resultado) {
+        for (Deposito d : celda) {
+            if (d.getLatitud() >= latMin && d.getLatitud() <= latMax
+                    && d.getLongitud() >= lngMin && d.getLongitud() <= lngMax) {
+                resultado.add(d);
+            }
+        }
+    }
+
+    private void insertar(Deposito d, Map<Long, List<Deposito>> celdas, Map<Long, Deposito> porId) {
+        if (d.getLatitud() == null || d.getLongitud() == null) return;
+        porId.put(d.getIdDeposito(), d);
+        celdas.computeIfAbsent(clave(indiceFila(d.getLatitud()), indiceColumna(d.getLongitud())),
+                k -> new ArrayList<>(4)).add(d);
+    }
+
+    private void quitar(Long idDeposito) {
+        Deposito previo = porId.remove(idDeposito);
+        if (previo == null) return;
+        long k = clave(indiceFila(previo.getLatitud()), indiceColumna(previo.getLongitud()));
+        List<Deposito> celda = celdas.get(k);
+        if (celda != null) {
+            celda.removeIf(d -> d.getIdDeposito().equals(idDeposito));
+            if (celda.isEmpty()) celdas.remove(k);
+        }
+    }
+
+    private int indiceFila(double lat) {
+        return (int) Math.floor(lat / tamanoCelda);
+    }
+
+    private int indiceColumna(double lng) {
+        return (int) Math.floor((lng + 180.0) / tamanoCelda);
+    }
+
+    // La columna se toma módulo la cantidad de columnas: -180 y 180 son la misma celda
+    private long clave(int fila, int col) {
+        return ((long) fila << 32) | (Math.floorMod(col, columnas) & 0xffffffffL);
+    }
+
+    // Copia desacoplada de la entidad gestionada por JPA
+    private static Deposito copia(Deposito d) {
+        return Deposito.builder()
+                .idDeposito(d.getIdDeposito())
+                .nombre(d.getNombre())
+                .latitud(d.getLatitud())
+                .longitud(d.getLongitud())
+                .costoEstadiaDiario(d.getCostoEstadiaDiario())
+                .direccion(d.getDireccion())
+                .build();
+    }
+
+    public record DepositoCercano(Deposito deposito, double distanciaKm) {}
+}
@@ -1,21 +1,32 @@
 package com.tpi.logistica.service;
 
+import com.tpi.logistica.domain.CambioCatalogo;
 import com.tpi.logistica.domain.Deposito;
 import com.tpi.logistica.repository.DepositoRepository;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.NoSuchElementException;
 
 @Service
 public class DepositoService {
 
+    static final int CANTIDAD_MAXIMA_CERCANOS = 100;
+
     private final DepositoRepository depositoRepository;
+    private final DepositoIndiceEspacial indiceEspacial;
+    private final CatalogoCambiosService catalogoCambios;
 
-    public DepositoService(DepositoRepository depositoRepository) {
+    public DepositoService(DepositoRepository depositoRepository, DepositoIndiceEspacial indiceEspacial,
+                           CatalogoCambiosService catalogoCambios) {
         this.depositoRepository = depositoRepository;
+        this.indiceEspacial = indiceEspacial;
+        this.catalogoCambios = catalogoCambios;
     }
 
     @Transactional(readOnly = true)
@@ -23,6 +34,16 @@ public class DepositoService {
         return depositoRepository.findAll(pageable);
     }
 
+    /**
+     * Listado por cursor (keyset) ordenado por idDeposito; {@code despuesDe} null para la primera página.
+     */
+    @Transactional(readOnly = true)
+    public Slice<Deposito> listarDesde(Long despuesDe, int size) {
+        Long desde = (despuesDe != null) ? despuesDe : Long.MIN_VALUE;
+        List<Deposito> filas = depositoRepository.findByIdDepositoGreaterThanOrderByIdDepositoAsc(desde, Limit.of(size + 1));
+        return Paginas.recortar(filas, size);
+    }
+
     @Transactional(readOnly = true)
     public Deposito obtener(Long id) {
         return depositoRepository.findById(id)
@@ -32,7 +53,11 @@ public class DepositoService {
     @Transactional
     public Deposito crear(Deposito deposito) {
         deposito.setIdDeposito(null); // Generado por BD
-        return depositoRepository.save(deposito);
+        Deposito guardado = depositoRepository.save(deposito);
+        guardado.setVersionCatalogo(catalogoCambios.registrar(CambioCatalogo.Tipo.DEPOSITO,
+                String.valueOf(guardado.getIdDeposito()), CambioCatalogo.Operacion.ALTA_MODIFICACION));
+        Transacciones.trasCommit(() -> indiceEspacial.actualizar(guardado));
+        return guardado;
     }
 
     @Transactional
@@ -43,7 +68,11 @@ public class DepositoService {
         actual.setLongitud(deposito.getLongitud());
         actual.setCostoEstadiaDiario(deposito.getCostoEstadiaDiario());
         actual.setDireccion(deposito.getDireccion());
-        return depositoRepository.save(actual);
+        actual.setVersionCatalogo(catalogoCambios.registrar(CambioCatalogo.Tipo.DEPOSITO, String.valueOf(id),
+                CambioCatalogo.Operacion.ALTA_MODIFICACION));
+        Deposito guardado = depositoRepository.save(actual);
+        Transacciones.trasCommit(() -> indiceEspacial.actualizar(guardado));
+        return guardado;
     }
 
     @Transactional
@@ -52,5 +81,41 @@ public class DepositoService {
             throw new NoSuchElementException("Depósito no encontrado: " + id);
         }
         depositoRepository.deleteById(id);
+        catalogoCambios.registrar(CambioCatalogo.Tipo.DEPOSITO, String.valueOf(id), CambioCatalogo.Operacion.BAJA);
+        Transacciones.trasCommit(() -> indiceEspacial.eliminar(id));
+    }
+
+    /**
+     * Los depósitos más cercanos a un punto, resueltos sobre el índice espacial en memoria.
+     */
+    public List<DepositoIndiceEspacial.DepositoCercano> cercanos(double lat, double lng, int cantidad) {
+        validarCoordenadas(lat, lng);
+        if (cantidad < 1 || cantidad > CANTIDAD_MAXIMA_CERCANOS) {
+            throw new IllegalArgumentException("La cantidad debe estar entre 1 y " + CANTIDAD_MAXIMA_CERCANOS);
+        }
+        return indiceEspacial.cercanos(lat, lng, cantidad);
+    }
+
+    public List<DepositoIndiceEspacial.DepositoCercano> enRadio(double lat, double lng, double radioKm) {
+        validarCoordenadas(lat, lng);
+        if (radioKm <= 0) {
+            throw new IllegalArgumentException("El radio debe ser mayor a cero");
+        }
+        return indiceEspacial.enRadio(lat, lng, radioKm);
+    }
+
+    public List<Deposito> enArea(double latMin, double latMax, double lngMin, double lngMax) {
+        validarCoordenadas(latMin, lngMin);
+        validarCoordenadas(latMax, lngMax);
+        if (latMin > latMax || lngMin > lngMax) {
+            throw new IllegalArgumentException("El área debe cumplir latMin <= latMax y lngMin <= lngMax");
+        }
+        return indiceEspacial.enArea(latMin, latMax, lngMin, lngMax);
+    }
+
+    private static void validarCoordenadas(double lat, double lng) {
+        if (lat < -90 || lat > 90 || lng < -180 || lng > 180) {
+            throw new IllegalArgumentException("Coordenadas fuera de rango: " + lat + ", " + lng);
+        }
     }
 }
@@ -0,0 +1,440 @@
+package com.tpi.logistica.service;
+
+import com.tpi.logistica.domain.Camion;
+import com.tpi.logistica.repository.CamionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Snapshot en memoria de la flota para validar capacidad (RF11) sin ir a la BD.
+ * Cada camión ocupa un slot en columnas primitivas (peso, volumen, disponibilidad);
+ * el mapa dominio -> slot se mantiene compacto (al eliminar se mueve el último slot al hueco).
+ * Capacidades nulas se guardan como NaN, con lo que cualquier comparación da false.
+ * También mantiene contadores por disponibilidad para servir /api/camiones/estado en O(1);
+ * un job periódico los reconcilia contra un GROUP BY en la BD. El índice de buscarAptos se mantiene en
+ * cada escritura, así que las consultas no ordenan nada ni toman el lock.
+ */
+@Component
+public class FlotaSnapshot implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(FlotaSnapshot.class);
+
+    static final byte DISPONIBLE = 1;
+    static final byte OCUPADO = 0;
+    static final byte SIN_ESTADO = -1;
+
+    private static final int CAPACIDAD_INICIAL = 256;
+
+    private final CamionRepository camionRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<String, Integer> slots = new HashMap<>();
+    private String[] dominios = new String[CAPACIDAD_INICIAL];
+    private double[] capacidadPeso = new double[CAPACIDAD_INICIAL];
+    private double[] capacidadVolumen = new double[CAPACIDAD_INICIAL];
+    private double[] costoBaseKm = new double[CAPACIDAD_INICIAL];
+    private byte[] disponibilidad = new byte[CAPACIDAD_INICIAL];
+    private int size;
+    // Cantidad de camiones por estado, indexado por disponibilidad + 1 (sin estado, ocupado, disponible)
+    private long[] porEstado = new long[3];
+
+    // Se incrementa en cada mutación incremental; permite descartar recargas que se pisan con escrituras
+    private long modificaciones;
+    private volatile boolean cargado;
+    private volatile long ultimaSincronizacionMs;
+    // Vista ordenada por peso para búsquedas de camiones aptos. Se reemplaza entera bajo el lock de escritura
+    // (inmutable): las lecturas toman la referencia vigente sin lock
+    private volatile IndiceCapacidad indice = IndiceCapacidad.VACIO;
+
+    private Counter hits;
+    private Counter misses;
+    private Counter desvios;
+
+    public FlotaSnapshot(CamionRepository camionRepository) {
+        this.camionRepository = camionRepository;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("logistica.flota.snapshot.size", this, FlotaSnapshot::size)
+                .description("Camiones cargados en el snapshot de capacidad")
+                .register(registry);
+        Gauge.builder("logistica.flota.snapshot.staleness", this, FlotaSnapshot::antiguedadSegundos)
+                .description("Segundos desde la última recarga completa del snapshot")
+                .baseUnit("seconds")
+                .register(registry);
+        hits = Counter.builder("logistica.flota.snapshot.lookups").tag("resultado", "hit").register(registry);
+        misses = Counter.builder("logistica.flota.snapshot.lookups").tag("resultado", "miss").register(registry);
+        desvios = Counter.builder("logistica.flota.estado.desvios")
+                .description("Reconciliaciones en las que los contadores no coincidían con la BD")
+                .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarInicial() {
+        recargar();
+    }
+
+    @Scheduled(fixedDelayString = "${logistica.flota.snapshot.refresh-ms:300000}",
+            initialDelayString = "${logistica.flota.snapshot.refresh-ms:300000}")
+    public void recargarPeriodicamente() {
+        recargar();
+    }
+
+    /**
+     * Reconstruye el snapshot completo desde la BD. Si durante la lectura hubo mutaciones
+     * incrementales, se descarta el resultado (el snapshot actual ya las contiene).
+     */
+    public void recargar() {
+        long version;
+        lock.readLock().lock();
+        try {
+            version = modificaciones;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Camion> todos = camionRepository.findAll();
+        int n = todos.size();
+        int cap = Math.max(CAPACIDAD_INICIAL, Integer.highestOneBit(Math.max(n, 1)) << 1);
+        Map<String, Integer> nuevosSlots = new HashMap<>(cap * 2);
+        String[] nuevosDominios = new String[cap];
+        double[] nuevoPeso = new double[cap];
+        double[] nuevoVolumen = new double[cap];
+        double[] nuevoCosto = new double[cap];
+        byte[] nuevaDisp = new byte[cap];
+        long[] nuevosPorEstado = new long[3];
+        int i = 0;
+        for (Camion c : todos) {
+            if (c.getDominio() == null) continue;
+            nuevosSlots.put(c.getDominio(), i);
+            nuevosDominios[i] = c.getDominio();
+            nuevoPeso[i] = aPrimitivo(c.getCapacidadPeso());
+            nuevoVolumen[i] = aPrimitivo(c.getCapacidadVolumen());
+            nuevoCosto[i] = aPrimitivo(c.getCostoBaseKm());
+            nuevaDisp[i] = aEstado(c.getDisponibilidad());
+            nuevosPorEstado[nuevaDisp[i] + 1]++;
+            i++;
+        }
+        // Sobre los arreglos nuevos, que nadie más ve todavía: el ordenamiento no ocurre bajo el lock
+        IndiceCapacidad nuevoIndice = IndiceCapacidad.construir(i, nuevosDominios, nuevoPeso, nuevoVolumen,
+                nuevoCosto, nuevaDisp);
+
+        lock.writeLock().lock();
+        try {
+            if (cargado && version != modificaciones) {
+                log.debug("Recarga del snapshot de flota descartada: hubo escrituras concurrentes");
+                return;
+            }
+            slots = nuevosSlots;
+            dominios = nuevosDominios;
+            capacidadPeso = nuevoPeso;
+            capacidadVolumen = nuevoVolumen;
+            costoBaseKm = nuevoCosto;
+            disponibilidad = nuevaDisp;
+            porEstado = nuevosPorEstado;
+            indice = nuevoIndice;
+            size = i;
+            modificaciones++;
+            cargado = true;
+            ultimaSincronizacionMs = System.currentTimeMillis();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Snapshot de flota recargado: {} camiones", i);
+    }
+
+    /**
+     * Inserta o reemplaza la fila del camión en el snapshot. El índice se corrige quitando y reinsertando
+     * solo este camión.
+     */
+    public void actualizar(Camion c) {
+        if (c == null || c.getDominio() == null) return;
+        lock.writeLock().lock();
+        try {
+            aplicar(c);
+            modificaciones++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Versión de las escrituras del snapshot, para {@link #incorporar}: se lee antes de ir a la BD.
+     */
+    public long version() {
+        lock.readLock().lock();
+        try {
+            return modificaciones;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Agrega camiones leídos de la BD por un miss, solo si el snapshot no cambió desde {@code version}: con el
+     * mismo criterio que {@link #recargar}, una lectura que se cruzó con una baja o una reserva confirmada
+     * no vuelve a poner el camión viejo. Si se descarta, el próximo miss o la recarga periódica lo traen.
+     *
+     * @return false si hubo escrituras en el medio y no se incorporó nada
+     */
+    public boolean incorporar(Collection<Camion> camiones, long version) {
+        lock.writeLock().lock();
+        try {
+            if (version != modificaciones) {
+                log.debug("Camiones leídos por miss descartados: hubo escrituras concurrentes en el snapshot");
+                return false;
+            }
+            boolean hubo = false;
+            for (Camion c : camiones) {
+                if (c == null || c.getDominio() == null) continue;
+                aplicar(c);
+                hubo = true;
+            }
+            if (hubo) modificaciones++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Escribe la fila y corrige el índice quitando y reinsertando solo este camión; con el lock de escritura tomado
+    private void aplicar(Camion c) {
+        IndiceCapacidad nuevo = indice;
+        Integer slot = slots.get(c.getDominio());
+        if (slot != null && enIndice(slot)) {
+            nuevo = nuevo.sin(c.getDominio(), capacidadPeso[slot]);
+        }
+        int s = escribirFila(c);
+        if (enIndice(s)) {
+            nuevo = nuevo.con(c.getDominio(), capacidadPeso[s], capacidadVolumen[s], costoBaseKm[s]);
+        }
+        indice = nuevo;
+    }
+
+    /**
+     * Como {@link #actualizar} para un lote (importación): en vez de corregir el índice camión por camión,
+     * que copia los arreglos en cada uno, se reconstruye una vez al final.
+     */
+    public void actualizarTodos(Collection<Camion> camiones) {
+        lock.writeLock().lock();
+        try {
+            boolean hubo = false;
+            for (Camion c : camiones) {
+                if (c == null || c.getDominio() == null) continue;
+                escribirFila(c);
+                hubo = true;
+            }
+            if (!hubo) return;
+            indice = IndiceCapacidad.construir(size, dominios, capacidadPeso, capacidadVolumen, costoBaseKm,
+                    disponibilidad);
+            modificaciones++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Debe invocarse con el lock de escritura tomado; no toca el índice
+    private int escribirFila(Camion c) {
+        Integer slot = slots.get(c.getDominio());
+        int s;
+        if (slot != null) {
+            s = slot;
+            porEstado[disponibilidad[s] + 1]--;
+        } else {
+            asegurarCapacidad(size + 1);
+            s = size++;
+            slots.put(c.getDominio(), s);
+            dominios[s] = c.getDominio();
+        }
+        capacidadPeso[s] = aPrimitivo(c.getCapacidadPeso());
+        capacidadVolumen[s] = aPrimitivo(c.getCapacidadVolumen());
+        costoBaseKm[s] = aPrimitivo(c.getCostoBaseKm());
+        disponibilidad[s] = aEstado(c.getDisponibilidad());
+        porEstado[disponibilidad[s] + 1]++;
+        return s;
+    }
+
+    private boolean enIndice(int s) {
+        return IndiceCapacidad.admite(disponibilidad[s], capacidadPeso[s], capacidadVolumen[s]);
+    }
+
+    public void eliminar(String dominio) {
+        if (dominio == null) return;
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(dominio);
+            if (slot == null) return;
+            int s = slot;
+            if (enIndice(s)) {
+                indice = indice.sin(dominio, capacidadPeso[s]);
+            }
+            porEstado[disponibilidad[s] + 1]--;
+            int ultimo = --size;
+            if (s != ultimo) {
+                dominios[s] = dominios[ultimo];
+                capacidadPeso[s] = capacidadPeso[ultimo];
+                capacidadVolumen[s] = capacidadVolumen[ultimo];
+                costoBaseKm[s] = costoBaseKm[ultimo];
+                disponibilidad[s] = disponibilidad[ultimo];
+                slots.put(dominios[s], s);
+            }
+            dominios[ultimo] = null;
+            modificaciones++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Evalúa RF11 contra el snapshot.
+     * @return TRUE/FALSE si el camión está en el snapshot, o null si no se conoce (hay que ir a la BD).
+     */
+    public Boolean validarCapacidad(String dominio, double pesoContenedor, double volumenContenedor) {
+        if (!cargado) return null;
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(dominio);
+            if (slot == null) {
+                if (misses != null) misses.increment();
+                return null;
+            }
+            if (hits != null) hits.increment();
+            int s = slot;
+            return pesoContenedor <= capacidadPeso[s] && volumenContenedor <= capacidadVolumen[s];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Camiones disponibles que pueden llevar el contenedor, ordenados según el criterio y limitados a {@code limite}.
+     */
+    public List<CamionApto> buscarAptos(double pesoContenedor, double volumenContenedor,
+                                        CriterioOrden criterio, int limite) {
+        if (!cargado) recargar();
+        return indice.buscar(pesoContenedor, volumenContenedor, criterio, limite);
+    }
+
+    /**
+     * Resumen de disponibilidad a partir de los contadores mantenidos; no recorre la flota.
+     */
+    public EstadoFlota estado() {
+        lock.readLock().lock();
+        try {
+            return new EstadoFlota(size, porEstado[DISPONIBLE + 1], porEstado[OCUPADO + 1], porEstado[SIN_ESTADO + 1]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compara los contadores con un GROUP BY sobre la tabla. Si hubo escrituras mientras corría la
+     * consulta se omite la comparación; si hay diferencias se registra el desvío y se recarga el snapshot.
+     */
+    @Scheduled(fixedDelayString = "${logistica.flota.estado.reconciliacion-ms:60000}",
+            initialDelayString = "${logistica.flota.estado.reconciliacion-ms:60000}")
+    public void reconciliarContadores() {
+        if (!cargado) return;
+        long version;
+        lock.readLock().lock();
+        try {
+            version = modificaciones;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        EstadoFlota enBd = EstadoFlota.desdeAgregado(camionRepository.contarPorDisponibilidad());
+
+        EstadoFlota enMemoria;
+        lock.readLock().lock();
+        try {
+            if (version != modificaciones) return;
+            enMemoria = new EstadoFlota(size, porEstado[DISPONIBLE + 1], porEstado[OCUPADO + 1], porEstado[SIN_ESTADO + 1]);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!enMemoria.equals(enBd)) {
+            log.warn("Contadores de flota desviados (memoria={}, bd={}); recargando snapshot", enMemoria, enBd);
+            if (desvios != null) desvios.increment();
+            recargar();
+        }
+    }
+
+    public boolean isCargado() {
+        return cargado;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public double antiguedadSegundos() {
+        long ultima = ultimaSincronizacionMs;
+        return ultima == 0 ? Double.NaN : (System.currentTimeMillis() - ultima) / 1000.0;
+    }
+
+    private void asegurarCapacidad(int requerida) {
+        if (requerida <= dominios.length) return;
+        int nueva = Math.max(requerida, dominios.length * 2);
+        dominios = Arrays.copyOf(dominios, nueva);
+        capacidadPeso = Arrays.copyOf(capacidadPeso, nueva);
+        capacidadVolumen = Arrays.copyOf(capacidadVolumen, nueva);
+        costoBaseKm = Arrays.copyOf(costoBaseKm, nueva);
+        disponibilidad = Arrays.copyOf(disponibilidad, nueva);
+    }
+
+    private static double aPrimitivo(Double valor) {
+        return valor != null ? valor : Double.NaN;
+    }
+
+    private static byte aEstado(Boolean disponible) {
+        if (disponible == null) return SIN_ESTADO;
+        return disponible ? DISPONIBLE : OCUPADO;
+    }
+
+    public enum CriterioOrden { COSTO, DESPERDICIO }
+
+    /**
+     * @param desperdicio fracción de capacidad ociosa (peso + volumen) si se le asigna el contenedor
+     */
+    public record CamionApto(String dominio, double capacidadPeso, double capacidadVolumen,
+                             Double costoBaseKm, double desperdicio) {}
+
+    public record EstadoFlota(long total, long libres, long ocupados, long sinEstado) {
+
+        /**
+         * Construye el resumen a partir de filas (disponibilidad, cantidad) de un GROUP BY.
+         */
+        public static EstadoFlota desdeAgregado(List<Object[]> filas) {
+            long libres = 0, ocupados = 0, sinEstado = 0;
+            for (Object[] fila : filas) {
+                long cantidad = ((Number) fila[1]).longValue();
+                if (fila[0] == null) sinEstado += cantidad;
+                else if ((Boolean) fila[0]) libres += cantidad;
+                else ocupados += cantidad;
+            }
+            return new EstadoFlota(libres + ocupados + sinEstado, libres, ocupados, sinEstado);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.tpi.logistica.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tpi.logistica.domain.Camion;
+import com.tpi.logistica.domain.Deposito;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Importación masiva de camiones y depósitos desde JSON (arreglo) o CSV, leídos en streaming.
+ * Las filas se validan y se escriben en lotes con JDBC batch; cada lote es su propia transacción,
+ * de modo que una fila con error no invalida al resto. Si un lote falla completo, se reintenta fila por
+ * fila para identificar las filas culpables.
+ */
+@Service
+public class ImportacionService {
+
+    static final int MAX_FALLAS_REPORTADAS = 1000;
+
+    // Una sentencia por fila: inserta la entidad y su entrada en el feed del catálogo.
+    // ON CONFLICT DO NOTHING hace que el conteo del batch sea 0 para dominios ya existentes.
+    private static final String INSERT_CAMION = """
+            WITH ins AS (
+                INSERT INTO camiones (dominio, capacidad_peso, capacidad_volumen, consumo_promedio, costo_base_km,
+                                      disponibilidad, nombre_transportista, telefono, version_catalogo, version_reserva)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, nextval('catalogo_version_seq'), 0)
+                ON CONFLICT (dominio) DO NOTHING
+                RETURNING dominio, version_catalogo)
+            INSERT INTO catalogo_cambios (version, tipo, clave, operacion, registrado)
+            SELECT version_catalogo, 'CAMION', dominio, 'ALTA_MODIFICACION', ? FROM ins
+            """;
+    private static final int[] TIPOS_CAMION = {Types.VARCHAR, Types.DOUBLE, Types.DOUBLE, Types.DOUBLE, Types.DOUBLE,
+            Types.BOOLEAN, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP};
+
+    private static final String INSERT_DEPOSITO = """
+            WITH ins AS (
+                INSERT INTO depositos (nombre, latitud, longitud, costo_estadia_diario, direccion, version_catalogo)
+                VALUES (?, ?, ?, ?, ?, nextval('catalogo_version_seq'))
+                RETURNING id_deposito, version_catalogo)
+            INSERT INTO catalogo_cambios (version, tipo, clave, operacion, registrado)
+            SELECT version_catalogo, 'DEPOSITO', CAST(id_deposito AS varchar), 'ALTA_MODIFICACION', ? FROM ins
+            """;
+    private static final int[] TIPOS_DEPOSITO = {Types.VARCHAR, Types.DOUBLE, Types.DOUBLE, Types.DOUBLE,
+            Types.VARCHAR, Types.TIMESTAMP};
+
+    public enum Formato {
+        JSON, CSV;
+
+        public static Formato desdeContentType(String contentType) {
+            return contentType != null && contentType.toLowerCase().startsWith("text/csv") ? CSV : JSON;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final FlotaSnapshot flotaSnapshot;
+    private final DepositoIndiceEspacial indiceEspacial;
+    private final EntityManagerFactory entityManagerFactory;
+    private final int tamanoLote;
+
+    public ImportacionService(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              ObjectMapper objectMapper,
+                              Validator validator,
+                              FlotaSnapshot flotaSnapshot,
+                              DepositoIndiceEspacial indiceEspacial,
+                              EntityManagerFactory entityManagerFactory,
+                              @Value("${logistica.importacion.tamano-lote:1000}") int tamanoLote) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.flotaSnapshot = flotaSnapshot;
+        this.indiceEspacial = indiceEspacial;
+        this.entityManagerFactory = entityManagerFactory;
+        this.tamanoLote = tamanoLote;
+    }
+
+    public Resultado importarCamiones(InputStream in, Formato formato) {
+        Lotes<Camion> lotes = new Lotes<>(Camion::getDominio, this::insertarCamiones,
+                flotaSnapshot::actualizarTodos);
+        recorrer(in, formato, Camion.class, ImportacionService::camionDesdeCsv, lotes);
+        return lotes.resultado();
+    }
+
+    public Resultado importarDepositos(InputStream in, Formato formato) {
+        Lotes<Deposito> lotes = new Lotes<>(Deposito::getNombre, this::insertarDepositos, importados -> {});
+        recorrer(in, formato, Deposito.class, ImportacionService::depositoDesdeCsv, lotes);
+        Resultado resultado = lotes.resultado();
+        // Los ids los genera la BD dentro del batch: se reconstruye el índice una vez al final
+        if (resultado.importadas() > 0) indiceEspacial.recargar();
+        return resultado;
+    }
+
+    private int[] insertarCamiones(List<Camion> lote) {
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> args = new ArrayList<>(lote.size());
+        for (Camion c : lote) {
+            args.add(new Object[]{c.getDominio(), c.getCapacidadPeso(), c.getCapacidadVolumen(), c.getConsumoPromedio(),
+                    c.getCostoBaseKm(), c.getDisponibilidad(), c.getNombreTransportista(), c.getTelefono(), ahora});
+        }
+        return jdbcTemplate.batchUpdate(INSERT_CAMION, args, TIPOS_CAMION);
+    }
+
+    private int[] insertarDepositos(List<Deposito> lote) {
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> args = new ArrayList<>(lote.size());
+        for (Deposito d : lote) {
+            args.add(new Object[]{d.getNombre(), d.getLatitud(), d.getLongitud(), d.getCostoEstadiaDiario(),
+                    d.getDireccion(), ahora});
+        }
+        return jdbcTemplate.batchUpdate(INSERT_DEPOSITO, args, TIPOS_DEPOSITO);
+    }
+
+    private <T> void recorrer(InputStream in, Formato formato, Class<T> tipo,
+                              Function<Map<String, String>, T> desdeCsv, Lotes<T> lotes) {
+        try {
+            if (formato == Formato.CSV) {
+                LectorCsv lector = new LectorCsv(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+                Map<String, String> fila;
+                while ((fila = lector.siguiente()) != null) {
+                    int numero = lotes.siguienteFila();
+                    try {
+                        lotes.agregar(numero, desdeCsv.apply(fila));
+                    } catch (RuntimeException e) {
+                        lotes.fallar(numero, null, "Fila inválida: " + e.getMessage());
+                    }
+                }
+            } else {
+                try (JsonParser parser = objectMapper.createParser(in)) {
+                    if (parser.nextToken() != JsonToken.START_ARRAY) {
+                        throw new IllegalArgumentException("Se esperaba un arreglo JSON");
+                    }
+                    JsonToken token;
+                    while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                        int numero = lotes.siguienteFila();
+                        if (token != JsonToken.START_OBJECT) {
+                            parser.skipChildren();
+                            lotes.fallar(numero, null, "Fila inválida: se esperaba un objeto");
+                            continue;
+                        }
+                        // Se lee cada elemento como árbol para que un error de tipos no desincronice el parser
+                        JsonNode nodo = parser.readValueAsTree();
+                        try {
+                            lotes.agregar(numero, objectMapper.treeToValue(nodo, tipo));
+                        } catch (JsonProcessingException e) {
+                            lotes.fallar(numero, null, "Fila inválida: " + e.getOriginalMessage());
+                        }
+                    }
+                }
+            }
+            lotes.vaciar();
+        } catch (JsonProcessingException e) {
+            // JSON roto: no se puede seguir leyendo, pero lo ya leído se conserva
+            lotes.vaciar();
+            lotes.fallar(lotes.siguienteFila(), null, "JSON mal formado: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Camion camionDesdeCsv(Map<String, String> f) {
+        return Camion.builder()
+                .dominio(f.get("dominio"))
+                .capacidadPeso(aDouble(f.get("capacidadPeso")))
+                .capacidadVolumen(aDouble(f.get("capacidadVolumen")))
+                .consumoPromedio(aDouble(f.get("consumoPromedio")))
+                .costoBaseKm(aDouble(f.get("costoBaseKm")))
+                .disponibilidad(f.get("disponibilidad") != null ? Boolean.valueOf(f.get("disponibilidad")) : null)
+                .nombreTransportista(f.get("nombreTransportista"))
+                .telefono(f.get("telefono"))
+                .build();
+    }
+
+    private static Deposito depositoDesdeCsv(Map<String, String> f) {
+        return Deposito.builder()
+                .nombre(f.get("nombre"))
+                .latitud(aDouble(f.get("latitud")))
+                .longitud(aDouble(f.get("longitud")))
+                .costoEstadiaDiario(aDouble(f.get("costoEstadiaDiario")))
+                .direccion(f.get("direccion"))
+                .build();
+    }
+
+    private static Double aDouble(String valor) {
+        return valor != null ? Double.valueOf(valor) : null;
+    }
+
+    /**
+     * Acumula filas válidas y las escribe cada {@code tamanoLote}, llevando el registro de resultados.
+     */
+    private final class Lotes<T> {
+
+        private final Function<T, String> clave;
+        private final Function<List<T>, int[]> escribir;
+        private final Consumer<List<T>> trasCommit;
+
+        private final List<T> pendientes = new ArrayList<>(tamanoLote);
+        private final List<Integer> filasPendientes = new ArrayList<>(tamanoLote);
+        private final List<Falla> fallas = new ArrayList<>();
+        private int procesadas;
+        private int importadas;
+        private int rechazadas;
+
+        Lotes(Function<T, String> clave, Function<List<T>, int[]> escribir, Consumer<List<T>> trasCommit) {
+            this.clave = clave;
+            this.escribir = escribir;
+            this.trasCommit = trasCommit;
+        }
+
+        int siguienteFila() {
+            return ++procesadas;
+        }
+
+        void agregar(int fila, T entidad) {
+            Set<ConstraintViolation<T>> violaciones = validator.validate(entidad);
+            if (!violaciones.isEmpty()) {
+                fallar(fila, clave.apply(entidad), violaciones.stream()
+                        .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+                return;
+            }
+            pendientes.add(entidad);
+            filasPendientes.add(fila);
+            if (pendientes.size() >= tamanoLote) vaciar();
+        }
+
+        void fallar(int fila, String claveFila, String error) {
+            rechazadas++;
+            if (fallas.size() < MAX_FALLAS_REPORTADAS) fallas.add(new Falla(fila, claveFila, error));
+        }
+
+        void vaciar() {
+            if (pendientes.isEmpty()) return;
+            try {
+                escribirEnTransaccion(pendientes, filasPendientes);
+            } catch (DataAccessException e) {
+                for (int i = 0; i < pendientes.size(); i++) {
+                    try {
+                        escribirEnTransaccion(List.of(pendientes.get(i)), List.of(filasPendientes.get(i)));
+                    } catch (DataAccessException filaEx) {
+                        fallar(filasPendientes.get(i), clave.apply(pendientes.get(i)),
+                                "Error al guardar: " + filaEx.getMostSpecificCause().getMessage());
+                    }
+                }
+            }
+            pendientes.clear();
+            filasPendientes.clear();
+        }
+
+        private void escribirEnTransaccion(List<T> lote, List<Integer> filas) {
+            transactionTemplate.executeWithoutResult(status -> {
+                int[] conteos = escribir.apply(lote);
+                List<T> insertados = new ArrayList<>(lote.size());
+                List<Falla> duplicadas = new ArrayList<>();
+                for (int i = 0; i < lote.size(); i++) {
+                    if (conteos[i] == 0) {
+                        duplicadas.add(new Falla(filas.get(i), clave.apply(lote.get(i)), "Ya existe"));
+                    } else {
+                        insertados.add(lote.get(i));
+                    }
+                }
+                Transacciones.trasCommit(() -> {
+                    // Los inserts por JDBC no pasan por Hibernate: el query cache no se entera solo
+                    if (!insertados.isEmpty()) {
+                        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegions();
+                    }
+                    importadas += insertados.size();
+                    duplicadas.forEach(d -> fallar(d.fila(), d.clave(), d.error()));
+                    trasCommit.accept(insertados);
+                });
+            });
+        }
+
+        Resultado resultado() {
+            return new Resultado(procesadas, importadas, rechazadas, fallas);
+        }
+    }
+
+    /**
+     * @param fallas detalle de las primeras {@value #MAX_FALLAS_REPORTADAS} filas rechazadas
+     */
+    public record Resultado(int procesadas, int importadas, int rechazadas, List<Falla> fallas) {}
+
+    public record Falla(int fila, String clave, String error) {}
+}
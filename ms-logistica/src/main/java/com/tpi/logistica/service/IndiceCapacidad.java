@@ -0,0 +1,204 @@
+package com.tpi.logistica.service;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Vista inmutable de los camiones disponibles ordenada por capacidad de peso.
+ * Una búsqueda (peso >= p, volumen >= v) arranca con búsqueda binaria sobre el peso y recorre el sufijo;
+ * el máximo de volumen por sufijo permite cortar en cuanto ningún camión restante alcanza el volumen.
+ * Las escrituras sueltas no reordenan: {@link #sin} y {@link #con} copian los arreglos quitando o
+ * insertando un camión en su posición (O(n), sin el O(n log n) de {@link #construir}).
+ */
+final class IndiceCapacidad {
+
+    static final IndiceCapacidad VACIO = new IndiceCapacidad(new String[0], new double[0], new double[0], new double[0]);
+
+    private final String[] dominios;
+    private final double[] peso;
+    private final double[] volumen;
+    private final double[] costo;
+    private final double[] maxVolumenSufijo;
+
+    private IndiceCapacidad(String[] dominios, double[] peso, double[] volumen, double[] costo) {
+        this.dominios = dominios;
+        this.peso = peso;
+        this.volumen = volumen;
+        this.costo = costo;
+        this.maxVolumenSufijo = new double[peso.length + 1];
+        maxVolumenSufijo[peso.length] = Double.NEGATIVE_INFINITY;
+        for (int i = peso.length - 1; i >= 0; i--) {
+            maxVolumenSufijo[i] = Math.max(volumen[i], maxVolumenSufijo[i + 1]);
+        }
+    }
+
+    /**
+     * Si un camión con esos datos forma parte del índice: disponible y con capacidades conocidas.
+     */
+    static boolean admite(byte disponibilidad, double capacidadPeso, double capacidadVolumen) {
+        return disponibilidad == FlotaSnapshot.DISPONIBLE && !Double.isNaN(capacidadPeso) && !Double.isNaN(capacidadVolumen);
+    }
+
+    /**
+     * Copia las columnas del snapshot (solo los camiones que {@link #admite}).
+     * Quien invoca tiene que tener las columnas fijas mientras dura la copia (lock del snapshot o arreglos propios).
+     */
+    static IndiceCapacidad construir(int size, String[] dominios, double[] capacidadPeso,
+                                     double[] capacidadVolumen, double[] costoBaseKm, byte[] disponibilidad) {
+        int[] orden = IntStream.range(0, size)
+                .filter(i -> admite(disponibilidad[i], capacidadPeso[i], capacidadVolumen[i]))
+                .boxed()
+                .sorted(Comparator.comparingDouble(i -> capacidadPeso[i]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        int n = orden.length;
+        String[] d = new String[n];
+        double[] p = new double[n];
+        double[] v = new double[n];
+        double[] c = new double[n];
+        for (int k = 0; k < n; k++) {
+            int i = orden[k];
+            d[k] = dominios[i];
+            p[k] = capacidadPeso[i];
+            v[k] = capacidadVolumen[i];
+            c[k] = costoBaseKm[i];
+        }
+        return new IndiceCapacidad(d, p, v, c);
+    }
+
+    /**
+     * Índice sin el camión; {@code capacidadPeso} es la que tenía al entrar y ubica su posición por búsqueda binaria.
+     */
+    IndiceCapacidad sin(String dominio, double capacidadPeso) {
+        for (int k = primerConPesoMayorOIgual(capacidadPeso); k < peso.length && peso[k] == capacidadPeso; k++) {
+            if (dominios[k].equals(dominio)) {
+                return new IndiceCapacidad(quitar(dominios, k), quitar(peso, k), quitar(volumen, k), quitar(costo, k));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Índice con el camión insertado en su posición por peso.
+     */
+    IndiceCapacidad con(String dominio, double capacidadPeso, double capacidadVolumen, double costoBaseKm) {
+        int k = primerConPesoMayorOIgual(capacidadPeso);
+        return new IndiceCapacidad(insertar(dominios, k, dominio), insertar(peso, k, capacidadPeso),
+                insertar(volumen, k, capacidadVolumen), insertar(costo, k, costoBaseKm));
+    }
+
+    int size() {
+        return peso.length;
+    }
+
+    List<FlotaSnapshot.CamionApto> buscar(double pesoContenedor, double volumenContenedor,
+                                          FlotaSnapshot.CriterioOrden criterio, int limite) {
+        int desde = primerConPesoMayorOIgual(pesoContenedor);
+        // Heap de máximos de tamaño k sobre el puntaje: la raíz es el peor de los k mejores
+        int[] heap = new int[limite];
+        double[] heapPuntaje = new double[limite];
+        int n = 0;
+        for (int i = desde; i < peso.length; i++) {
+            if (maxVolumenSufijo[i] < volumenContenedor) break;
+            if (volumen[i] < volumenContenedor) continue;
+            double puntaje = criterio == FlotaSnapshot.CriterioOrden.COSTO
+                    ? (Double.isNaN(costo[i]) ? Double.MAX_VALUE : costo[i])
+                    : desperdicio(i, pesoContenedor, volumenContenedor);
+            if (n < limite) {
+                heap[n] = i;
+                heapPuntaje[n] = puntaje;
+                subir(heap, heapPuntaje, n++);
+            } else if (puntaje < heapPuntaje[0]) {
+                heap[0] = i;
+                heapPuntaje[0] = puntaje;
+                bajar(heap, heapPuntaje, n);
+            }
+        }
+
+        // Extraer la raíz repetidamente deja el arreglo ordenado de mejor a peor
+        FlotaSnapshot.CamionApto[] ordenados = new FlotaSnapshot.CamionApto[n];
+        for (int k = n - 1; k >= 0; k--) {
+            int i = heap[0];
+            ordenados[k] = new FlotaSnapshot.CamionApto(dominios[i], peso[i], volumen[i],
+                    Double.isNaN(costo[i]) ? null : costo[i], desperdicio(i, pesoContenedor, volumenContenedor));
+            heap[0] = heap[k];
+            heapPuntaje[0] = heapPuntaje[k];
+            bajar(heap, heapPuntaje, k);
+        }
+        return Arrays.asList(ordenados);
+    }
+
+    private static void subir(int[] heap, double[] puntaje, int pos) {
+        while (pos > 0) {
+            int padre = (pos - 1) >>> 1;
+            if (puntaje[padre] >= puntaje[pos]) return;
+            intercambiar(heap, puntaje, padre, pos);
+            pos = padre;
+        }
+    }
+
+    private static void bajar(int[] heap, double[] puntaje, int n) {
+        int pos = 0;
+        while (true) {
+            int izq = 2 * pos + 1, der = izq + 1, mayor = pos;
+            if (izq < n && puntaje[izq] > puntaje[mayor]) mayor = izq;
+            if (der < n && puntaje[der] > puntaje[mayor]) mayor = der;
+            if (mayor == pos) return;
+            intercambiar(heap, puntaje, pos, mayor);
+            pos = mayor;
+        }
+    }
+
+    private static void intercambiar(int[] heap, double[] puntaje, int a, int b) {
+        int t = heap[a]; heap[a] = heap[b]; heap[b] = t;
+        double p = puntaje[a]; puntaje[a] = puntaje[b]; puntaje[b] = p;
+    }
+
+    private double desperdicio(int i, double pesoContenedor, double volumenContenedor) {
+        double ociosoPeso = peso[i] > 0 ? (peso[i] - pesoContenedor) / peso[i] : 0.0;
+        double ociosoVolumen = volumen[i] > 0 ? (volumen[i] - volumenContenedor) / volumen[i] : 0.0;
+        return (ociosoPeso + ociosoVolumen) / 2.0;
+    }
+
+    private int primerConPesoMayorOIgual(double pesoContenedor) {
+        int lo = 0, hi = peso.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (peso[mid] < pesoContenedor) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static double[] quitar(double[] columna, int k) {
+        double[] nueva = new double[columna.length - 1];
+        System.arraycopy(columna, 0, nueva, 0, k);
+        System.arraycopy(columna, k + 1, nueva, k, nueva.length - k);
+        return nueva;
+    }
+
+    private static String[] quitar(String[] columna, int k) {
+        String[] nueva = new String[columna.length - 1];
+        System.arraycopy(columna, 0, nueva, 0, k);
+        System.arraycopy(columna, k + 1, nueva, k, nueva.length - k);
+        return nueva;
+    }
+
+    private static double[] insertar(double[] columna, int k, double valor) {
+        double[] nueva = new double[columna.length + 1];
+        System.arraycopy(columna, 0, nueva, 0, k);
+        nueva[k] = valor;
+        System.arraycopy(columna, k, nueva, k + 1, columna.length - k);
+        return nueva;
+    }
+
+    private static String[] insertar(String[] columna, int k, String valor) {
+        String[] nueva = new String[columna.length + 1];
+        System.arraycopy(columna, 0, nueva, 0, k);
+        nueva[k] = valor;
+        System.arraycopy(columna, k, nueva, k + 1, columna.length - k);
+        return nueva;
+    }
+}
@@ -0,0 +1,87 @@
+package com.tpi.logistica.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lector CSV de streaming: primera línea con encabezados, separador coma, comillas dobles opcionales
+ * (con "" como escape). Lee una fila por vez, así la memoria no depende del tamaño del archivo.
+ */
+final class LectorCsv {
+
+    private final BufferedReader reader;
+    private final Map<String, Integer> columnas = new HashMap<>();
+
+    LectorCsv(BufferedReader reader) {
+        this.reader = reader;
+        List<String> encabezados = leerCampos();
+        if (encabezados == null) return;
+        for (int i = 0; i < encabezados.size(); i++) {
+            columnas.put(encabezados.get(i).trim(), i);
+        }
+    }
+
+    /**
+     * @return la siguiente fila como encabezado -> valor (vacíos como null), o null al final del archivo
+     */
+    Map<String, String> siguiente() {
+        List<String> campos;
+        do {
+            campos = leerCampos();
+            if (campos == null) return null;
+        } while (campos.size() == 1 && campos.get(0).isBlank());
+
+        Map<String, String> fila = new HashMap<>();
+        for (Map.Entry<String, Integer> col : columnas.entrySet()) {
+            String valor = col.getValue() < campos.size() ? campos.get(col.getValue()).trim() : null;
+            fila.put(col.getKey(), valor == null || valor.isEmpty() ? null : valor);
+        }
+        return fila;
+    }
+
+    private List<String> leerCampos() {
+        try {
+            String linea = reader.readLine();
+            if (linea == null) return null;
+            List<String> campos = new ArrayList<>();
+            StringBuilder actual = new StringBuilder();
+            boolean entreComillas = false;
+            while (true) {
+                for (int i = 0; i < linea.length(); i++) {
+                    char ch = linea.charAt(i);
+                    if (entreComillas) {
+                        if (ch == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                            actual.append('"');
+                            i++;
+                        } else if (ch == '"') {
+                            entreComillas = false;
+                        } else {
+                            actual.append(ch);
+                        }
+                    } else if (ch == '"') {
+                        entreComillas = true;
+                    } else if (ch == ',') {
+                        campos.add(actual.toString());
+                        actual.setLength(0);
+                    } else {
+                        actual.append(ch);
+                    }
+                }
+                if (!entreComillas) break;
+                // Campo entre comillas con salto de línea: continúa en la línea siguiente
+                linea = reader.readLine();
+                if (linea == null) break;
+                actual.append('\n');
+            }
+            campos.add(actual.toString());
+            return campos;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
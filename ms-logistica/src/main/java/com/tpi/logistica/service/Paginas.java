@@ -0,0 +1,22 @@
+package com.tpi.logistica.service;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.List;
+
+final class Paginas {
+
+    private Paginas() {}
+
+    /**
+     * Convierte una consulta keyset que pidió {@code size + 1} filas en un Slice: la fila extra
+     * solo indica que hay página siguiente y se descarta.
+     */
+    static <T> Slice<T> recortar(List<T> filas, int size) {
+        boolean hayMas = filas.size() > size;
+        List<T> contenido = hayMas ? filas.subList(0, size) : filas;
+        return new SliceImpl<>(contenido, PageRequest.of(0, size), hayMas);
+    }
+}
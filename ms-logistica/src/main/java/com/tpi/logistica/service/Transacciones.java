@@ -0,0 +1,29 @@
+package com.tpi.logistica.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Utilidades para sincronizar estructuras en memoria con el resultado de la transacción.
+ */
+final class Transacciones {
+
+    private Transacciones() {}
+
+    /**
+     * Ejecuta la acción cuando la transacción actual confirma; sin transacción activa, la ejecuta ya.
+     * Evita que los índices en memoria reflejen escrituras que terminan en rollback.
+     */
+    static void trasCommit(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+}
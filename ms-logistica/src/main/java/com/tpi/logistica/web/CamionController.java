@@ -2,15 +2,31 @@ package com.tpi.logistica.web;
 
 import com.tpi.logistica.domain.Camion;
 import com.tpi.logistica.service.CamionService;
+import com.tpi.logistica.service.FlotaSnapshot;
+import com.tpi.logistica.service.ImportacionService;
+import com.tpi.logistica.web.dto.CapacidadItemResponse;
+import com.tpi.logistica.web.dto.CapacidadLoteRequest;
+import com.tpi.logistica.web.dto.CapacidadLoteResponse;
+import com.tpi.logistica.web.dto.LiberacionLoteRequest;
+import com.tpi.logistica.web.dto.ReservaLoteRequest;
+import com.tpi.logistica.web.dto.ReservaLoteResponse;
 import com.tpi.logistica.web.dto.CapacidadRequest;
 import com.tpi.logistica.web.dto.CapacidadResponse;
+import com.tpi.logistica.web.dto.CursorResponse;
+import com.tpi.logistica.web.dto.ReservaRequest;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -18,9 +34,11 @@ import java.util.Map;
 public class CamionController {
 
     private final CamionService camionService;
+    private final ImportacionService importacionService;
 
-    public CamionController(CamionService camionService) {
+    public CamionController(CamionService camionService, ImportacionService importacionService) {
         this.camionService = camionService;
+        this.importacionService = importacionService;
     }
 
     @GetMapping
@@ -32,12 +50,51 @@ public class CamionController {
         return camionService.listar(pageable, minCapacidadPeso, maxCapacidadPeso, minCapacidadVolumen, maxCapacidadVolumen);
     }
 
+    /**
+     * Modo cursor (opt-in con el parámetro {@code cursor}, vacío para la primera página): keyset por dominio,
+     * sin total. Devuelve {@code siguienteCursor} para pedir la página siguiente.
+     */
+    @GetMapping(params = "cursor")
+    public CursorResponse<Camion> listarPorCursor(@RequestParam String cursor,
+                                                  @RequestParam(defaultValue = "20") int size,
+                                                  @RequestParam(required = false) Double minCapacidadPeso,
+                                                  @RequestParam(required = false) Double maxCapacidadPeso,
+                                                  @RequestParam(required = false) Double minCapacidadVolumen,
+                                                  @RequestParam(required = false) Double maxCapacidadVolumen) {
+        Cursores.validarSize(size);
+        Slice<Camion> slice = camionService.listarDesde(Cursores.decodificar(cursor), size,
+                minCapacidadPeso, maxCapacidadPeso, minCapacidadVolumen, maxCapacidadVolumen);
+        String siguiente = slice.hasNext()
+                ? Cursores.codificar(slice.getContent().get(slice.getNumberOfElements() - 1).getDominio())
+                : null;
+        return new CursorResponse<>(slice.getContent(), siguiente);
+    }
+
+    /**
+     * Consulta múltiple por dominio ({@code ?dominios=AAA111,BBB222}); los inexistentes no vienen en la respuesta.
+     */
+    @GetMapping(params = "dominios")
+    public List<Camion> obtenerVarios(@RequestParam List<String> dominios) {
+        return camionService.obtenerVarios(dominios);
+    }
+
     @GetMapping("/estado")
     public ResponseEntity<Map<String, Object>> obtenerEstado() {
         Map<String, Object> estado = camionService.obtenerEstadoCamiones();
         return ResponseEntity.ok(estado);
     }
 
+    /**
+     * Camiones disponibles que pueden transportar un contenedor, del más conveniente al menos conveniente.
+     */
+    @GetMapping("/aptos")
+    public List<FlotaSnapshot.CamionApto> buscarAptos(@RequestParam double peso,
+                                                      @RequestParam double volumen,
+                                                      @RequestParam(defaultValue = "COSTO") FlotaSnapshot.CriterioOrden orden,
+                                                      @RequestParam(defaultValue = "10") int limite) {
+        return camionService.buscarAptos(peso, volumen, orden, limite);
+    }
+
     @GetMapping("/{dominio}")
     public Camion obtener(@PathVariable String dominio) {
         return camionService.obtener(dominio);
@@ -60,6 +117,39 @@ public class CamionController {
         camionService.eliminar(dominio);
     }
 
+    /**
+     * Valida capacidad y reserva el camión en una sola operación. 409 si no se pudo reservar
+     * (ocupado o sin capacidad); el cuerpo indica el motivo.
+     */
+    @PostMapping("/{dominio}/reservar")
+    public ResponseEntity<CamionService.Reserva> reservar(@PathVariable String dominio,
+                                                          @RequestBody @Valid ReservaRequest request) {
+        CamionService.Reserva reserva = camionService.reservar(dominio, request.pesoContenedor(), request.volumenContenedor());
+        return ResponseEntity.status(reserva.aplicada() ? HttpStatus.OK : HttpStatus.CONFLICT).body(reserva);
+    }
+
+    /**
+     * Libera la reserva con el {@code versionReserva} devuelto al reservar; 409 si el camión cambió desde entonces.
+     */
+    @PostMapping("/{dominio}/liberar")
+    public ResponseEntity<CamionService.Reserva> liberar(@PathVariable String dominio, @RequestParam long version) {
+        CamionService.Reserva reserva = camionService.liberar(dominio, version);
+        return ResponseEntity.status(reserva.aplicada() ? HttpStatus.OK : HttpStatus.CONFLICT).body(reserva);
+    }
+
+    /**
+     * Reserva varios camiones en una llamada. Siempre 200: el resultado de cada ítem indica si se reservó.
+     */
+    @PostMapping("/reservar/lote")
+    public ReservaLoteResponse reservarLote(@RequestBody @Valid ReservaLoteRequest request) {
+        return new ReservaLoteResponse(camionService.reservarLote(request.items()));
+    }
+
+    @PostMapping("/liberar/lote")
+    public ReservaLoteResponse liberarLote(@RequestBody @Valid LiberacionLoteRequest request) {
+        return new ReservaLoteResponse(camionService.liberarLote(request.items()));
+    }
+
     @PostMapping("/validar-capacidad")
     public ResponseEntity<CapacidadResponse> validarCapacidad(@RequestBody @Valid CapacidadRequest request) {
         boolean valido = camionService.validarCapacidad(
@@ -67,4 +157,25 @@ public class CamionController {
         );
         return ResponseEntity.ok(new CapacidadResponse(valido));
     }
+
+    @PostMapping("/validar-capacidad/lote")
+    public ResponseEntity<CapacidadLoteResponse> validarCapacidadLote(@RequestBody @Valid CapacidadLoteRequest request) {
+        boolean[] validos = camionService.validarCapacidadLote(request.items());
+        List<CapacidadItemResponse> resultados = new ArrayList<>(validos.length);
+        for (int i = 0; i < validos.length; i++) {
+            CapacidadRequest item = request.items().get(i);
+            resultados.add(new CapacidadItemResponse(item != null ? item.dominio() : null, validos[i]));
+        }
+        return ResponseEntity.ok(new CapacidadLoteResponse(resultados));
+    }
+
+    /**
+     * Alta masiva de camiones desde un arreglo JSON o un CSV con encabezados; se procesa en streaming.
+     * Las filas inválidas o ya existentes se informan en {@code fallas} sin abortar la importación.
+     */
+    @PostMapping(value = "/importar", consumes = {MediaType.APPLICATION_JSON_VALUE, "text/csv"})
+    public ImportacionService.Resultado importar(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                 InputStream cuerpo) {
+        return importacionService.importarCamiones(cuerpo, ImportacionService.Formato.desdeContentType(contentType));
+    }
 }
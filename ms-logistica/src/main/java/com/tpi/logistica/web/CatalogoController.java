@@ -0,0 +1,29 @@
+package com.tpi.logistica.web;
+
+import com.tpi.logistica.service.CatalogoCambiosService;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/catalogo")
+public class CatalogoController {
+
+    private final CatalogoCambiosService catalogoCambios;
+
+    public CatalogoController(CatalogoCambiosService catalogoCambios) {
+        this.catalogoCambios = catalogoCambios;
+    }
+
+    /**
+     * Camiones y depósitos modificados o eliminados después de la posición {@code desde} del feed.
+     * El consumidor guarda {@code hasta} y lo envía como {@code desde} en la siguiente consulta;
+     * si {@code hayMas} es true conviene consultar de nuevo sin esperar.
+     */
+    @GetMapping("/cambios")
+    public CatalogoCambiosService.Cambios cambios(@RequestParam(defaultValue = "0") long desde,
+                                                  @RequestParam(defaultValue = "500") int limite) {
+        return catalogoCambios.cambiosDesde(desde, limite);
+    }
+}
@@ -0,0 +1,46 @@
+package com.tpi.logistica.web;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Codificación de los cursores opacos de los listados keyset (Base64 URL-safe de la última clave).
+ */
+final class Cursores {
+
+    static final int SIZE_MAXIMO = 500;
+
+    private Cursores() {}
+
+    static String codificar(String clave) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(clave.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return la clave contenida en el cursor, o null si el cursor viene vacío (primera página)
+     */
+    static String decodificar(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+
+    static Long decodificarLong(String cursor) {
+        String clave = decodificar(cursor);
+        if (clave == null) return null;
+        try {
+            return Long.valueOf(clave);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+
+    static void validarSize(int size) {
+        if (size < 1 || size > SIZE_MAXIMO) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + SIZE_MAXIMO);
+        }
+    }
+}
@@ -1,22 +1,33 @@
 package com.tpi.logistica.web;
 
 import com.tpi.logistica.domain.Deposito;
+import com.tpi.logistica.service.DepositoIndiceEspacial;
 import com.tpi.logistica.service.DepositoService;
+import com.tpi.logistica.service.ImportacionService;
+import com.tpi.logistica.web.dto.CursorResponse;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/depositos")
 public class DepositoController {
 
     private final DepositoService depositoService;
+    private final ImportacionService importacionService;
 
-    public DepositoController(DepositoService depositoService) {
+    public DepositoController(DepositoService depositoService, ImportacionService importacionService) {
         this.depositoService = depositoService;
+        this.importacionService = importacionService;
     }
 
     @GetMapping
@@ -24,6 +35,40 @@ public class DepositoController {
         return depositoService.listar(pageable);
     }
 
+    /**
+     * Modo cursor (opt-in con el parámetro {@code cursor}, vacío para la primera página): keyset por idDeposito, sin total.
+     */
+    @GetMapping(params = "cursor")
+    public CursorResponse<Deposito> listarPorCursor(@RequestParam String cursor,
+                                                    @RequestParam(defaultValue = "20") int size) {
+        Cursores.validarSize(size);
+        Slice<Deposito> slice = depositoService.listarDesde(Cursores.decodificarLong(cursor), size);
+        String siguiente = slice.hasNext()
+                ? Cursores.codificar(String.valueOf(slice.getContent().get(slice.getNumberOfElements() - 1).getIdDeposito()))
+                : null;
+        return new CursorResponse<>(slice.getContent(), siguiente);
+    }
+
+    @GetMapping("/cercanos")
+    public List<DepositoIndiceEspacial.DepositoCercano> cercanos(@RequestParam double lat,
+                                                                 @RequestParam double lng,
+                                                                 @RequestParam(defaultValue = "5") int cantidad) {
+        return depositoService.cercanos(lat, lng, cantidad);
+    }
+
+    @GetMapping("/en-radio")
+    public List<DepositoIndiceEspacial.DepositoCercano> enRadio(@RequestParam double lat,
+                                                                @RequestParam double lng,
+                                                                @RequestParam double radioKm) {
+        return depositoService.enRadio(lat, lng, radioKm);
+    }
+
+    @GetMapping("/en-area")
+    public List<Deposito> enArea(@RequestParam double latMin, @RequestParam double latMax,
+                                 @RequestParam double lngMin, @RequestParam double lngMax) {
+        return depositoService.enArea(latMin, latMax, lngMin, lngMax);
+    }
+
     @GetMapping("/{id}")
     public Deposito obtener(@PathVariable Long id) {
         return depositoService.obtener(id);
@@ -45,4 +90,14 @@ public class DepositoController {
     public void eliminar(@PathVariable Long id) {
         depositoService.eliminar(id);
     }
+
+    /**
+     * Alta masiva de depósitos desde un arreglo JSON o un CSV con encabezados; se procesa en streaming.
+     * Las filas inválidas o ya existentes se informan en {@code fallas} sin abortar la importación.
+     */
+    @PostMapping(value = "/importar", consumes = {MediaType.APPLICATION_JSON_VALUE, "text/csv"})
+    public ImportacionService.Resultado importar(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                 InputStream cuerpo) {
+        return importacionService.importarDepositos(cuerpo, ImportacionService.Formato.desdeContentType(contentType));
+    }
 }
@@ -0,0 +1,3 @@
+package com.tpi.logistica.web.dto;
+
+public record CapacidadItemResponse(String dominio, boolean valido) {}
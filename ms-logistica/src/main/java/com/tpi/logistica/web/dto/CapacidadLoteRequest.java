@@ -0,0 +1,13 @@
+package com.tpi.logistica.web.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Ítems inválidos no rechazan el lote: se responden con valido=false en su posición.
+ */
+public record CapacidadLoteRequest(
+        @NotEmpty @Size(max = 1000) List<CapacidadRequest> items
+) {}
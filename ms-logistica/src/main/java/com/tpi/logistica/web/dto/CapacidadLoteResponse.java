@@ -0,0 +1,5 @@
+package com.tpi.logistica.web.dto;
+
+import java.util.List;
+
+public record CapacidadLoteResponse(List<CapacidadItemResponse> resultados) {}
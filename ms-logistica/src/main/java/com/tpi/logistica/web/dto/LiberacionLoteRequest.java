@@ -0,0 +1,12 @@
+package com.tpi.logistica.web.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record LiberacionLoteRequest(
+        @NotEmpty @Size(max = 200) List<@Valid @NotNull LiberacionRequest> items
+) {}
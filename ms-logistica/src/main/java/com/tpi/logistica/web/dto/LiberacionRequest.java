@@ -0,0 +1,9 @@
+package com.tpi.logistica.web.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+public record LiberacionRequest(
+        @NotBlank String dominio,
+        @NotNull Long versionReserva
+) {}
@@ -0,0 +1,15 @@
+package com.tpi.logistica.web.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Un ítem por camión a reservar; un mismo dominio repetido solo se reserva la primera vez.
+ */
+public record ReservaLoteRequest(
+        @NotEmpty @Size(max = 200) List<@Valid @NotNull CapacidadRequest> items
+) {}
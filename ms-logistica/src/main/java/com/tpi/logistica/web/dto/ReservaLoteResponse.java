@@ -0,0 +1,10 @@
+package com.tpi.logistica.web.dto;
+
+import com.tpi.logistica.service.CamionService;
+
+import java.util.List;
+
+/**
+ * Un resultado por ítem, en el orden del pedido.
+ */
+public record ReservaLoteResponse(List<CamionService.Reserva> resultados) {}
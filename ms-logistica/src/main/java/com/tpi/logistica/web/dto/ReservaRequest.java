@@ -0,0 +1,9 @@
+package com.tpi.logistica.web.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+
+public record ReservaRequest(
+        @NotNull @PositiveOrZero Double pesoContenedor,
+        @NotNull @PositiveOrZero Double volumenContenedor
+) {}
@@ -0,0 +1,97 @@
+package com.tpi.logistica.benchmark;
+
+import com.tpi.logistica.domain.Deposito;
+import com.tpi.logistica.repository.DepositoRepository;
+import com.tpi.logistica.service.DepositoIndiceEspacial;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara "N depósitos más cercanos" sobre el índice espacial contra un recorrido completo con haversine,
+ * que es lo que hace un SELECT ... ORDER BY haversine(...) LIMIT N sin índice espacial (sin la latencia de red).
+ *
+ * Ejecutar (desde ms-logistica):
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ *   java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main DepositoCercanos
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DepositoCercanosBenchmark {
+
+    @Param({"10000", "1000000"})
+    int depositos;
+
+    @Param({"10"})
+    int cantidad;
+
+    private double[] lat;
+    private double[] lng;
+    private DepositoIndiceEspacial indice;
+    private double[][] consultas;
+    private int siguiente;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        lat = new double[depositos];
+        lng = new double[depositos];
+        List<Deposito> todos = new ArrayList<>(depositos);
+        for (int i = 0; i < depositos; i++) {
+            lat[i] = -55 + random.nextDouble() * 33;
+            lng[i] = -73 + random.nextDouble() * 20;
+            todos.add(Deposito.builder().idDeposito((long) i).nombre("D" + i).latitud(lat[i]).longitud(lng[i]).build());
+        }
+        DepositoRepository repo = Mockito.mock(DepositoRepository.class);
+        Mockito.when(repo.findAll()).thenReturn(todos);
+        indice = new DepositoIndiceEspacial(repo, 0.5);
+        indice.recargar();
+
+        consultas = new double[1024][];
+        for (int i = 0; i < consultas.length; i++) {
+            consultas[i] = new double[]{-55 + random.nextDouble() * 33, -73 + random.nextDouble() * 20};
+        }
+    }
+
+    @Benchmark
+    public Object indiceEspacial() {
+        double[] q = consultas[siguiente++ & 1023];
+        return indice.cercanos(q[0], q[1], cantidad);
+    }
+
+    @Benchmark
+    public Object recorridoHaversine() {
+        double[] q = consultas[siguiente++ & 1023];
+        PriorityQueue<double[]> mejores = new PriorityQueue<>(cantidad + 1,
+                Comparator.comparingDouble((double[] e) -> e[1]).reversed());
+        for (int i = 0; i < lat.length; i++) {
+            double d = DepositoIndiceEspacial.haversineKm(q[0], q[1], lat[i], lng[i]);
+            if (mejores.size() < cantidad) {
+                mejores.add(new double[]{i, d});
+            } else if (d < mejores.peek()[1]) {
+                mejores.poll();
+                mejores.add(new double[]{i, d});
+            }
+        }
+        return mejores;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DepositoCercanosBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,117 @@
+package com.tpi.logistica.service;
+
+import com.tpi.logistica.domain.Camion;
+import com.tpi.logistica.repository.CamionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reserva y liberación contra un PostgreSQL embebido: lo que se prueba son los UPDATE condicionales de
+ * CamionRepository (y su interacción con el cache de segundo nivel), que con el repositorio simulado de
+ * CamionServiceTest no se ejercitan.
+ */
+class CamionReservaPostgresTest extends PostgresEmbebido {
+
+    @Autowired
+    private CamionService camionService;
+
+    @Autowired
+    private CamionRepository camionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Camion crearCamion(String dominio) {
+        return camionService.crear(Camion.builder()
+                .dominio(dominio)
+                .capacidadPeso(15000.0)
+                .capacidadVolumen(30.0)
+                .consumoPromedio(12.5)
+                .costoBaseKm(50.0)
+                .disponibilidad(true)
+                .build());
+    }
+
+    // Lo que manda un PUT armado desde el GET: mismos datos, sin versionReserva
+    private static Camion modificacion(Camion actual, double costoBaseKm, boolean disponibilidad) {
+        return Camion.builder()
+                .capacidadPeso(actual.getCapacidadPeso())
+                .capacidadVolumen(actual.getCapacidadVolumen())
+                .consumoPromedio(actual.getConsumoPromedio())
+                .costoBaseKm(costoBaseKm)
+                .disponibilidad(disponibilidad)
+                .build();
+    }
+
+    @Test
+    void liberar_CamionModificadoDespuesDeReservar_LiberaLaReserva() {
+        crearCamion("AA100AA");
+        CamionService.Reserva reserva = camionService.reservar("AA100AA", 1000.0, 5.0);
+        assertTrue(reserva.aplicada());
+
+        // El PUT incrementa versionReserva: el token de la reserva ya no coincide con ella
+        Camion modificado = camionService.actualizar("AA100AA",
+                modificacion(camionService.obtener("AA100AA"), 60.0, false));
+        assertNotEquals(reserva.versionReserva(), modificado.getVersionReserva());
+
+        CamionService.Reserva liberacion = camionService.liberar("AA100AA", reserva.versionReserva());
+
+        assertTrue(liberacion.aplicada());
+        assertFalse(liberacion.reservado());
+        Camion camion = camionService.obtener("AA100AA");
+        assertTrue(camion.getDisponibilidad());
+        assertEquals(60.0, camion.getCostoBaseKm());
+        assertNull(camion.getReservaVigente());
+    }
+
+    @Test
+    void liberar_DosVecesLaMismaReserva_LaSegundaNoAplica() {
+        crearCamion("AA200AA");
+        CamionService.Reserva reserva = camionService.reservar("AA200AA", 1000.0, 5.0);
+
+        assertTrue(camionService.liberar("AA200AA", reserva.versionReserva()).aplicada());
+        CamionService.Reserva repetida = camionService.liberar("AA200AA", reserva.versionReserva());
+
+        assertFalse(repetida.aplicada());
+        assertEquals(CamionService.MotivoRechazo.VERSION_DESACTUALIZADA, repetida.motivo());
+        assertTrue(camionService.obtener("AA200AA").getDisponibilidad());
+    }
+
+    @Test
+    void liberar_ReservaViejaTrasLiberarAManoYReservarOtraVez_NoLiberaLaNueva() {
+        crearCamion("AA300AA");
+        CamionService.Reserva vieja = camionService.reservar("AA300AA", 1000.0, 5.0);
+        camionService.actualizar("AA300AA", modificacion(camionService.obtener("AA300AA"), 50.0, true));
+        CamionService.Reserva nueva = camionService.reservar("AA300AA", 1000.0, 5.0);
+        assertTrue(nueva.aplicada());
+
+        CamionService.Reserva liberacion = camionService.liberar("AA300AA", vieja.versionReserva());
+
+        assertFalse(liberacion.aplicada());
+        assertTrue(liberacion.reservado());
+        assertTrue(camionService.liberar("AA300AA", nueva.versionReserva()).aplicada());
+    }
+
+    @Test
+    void contarPorDisponibilidad_EscrituraPorFueraDeHibernate_SeVeEnLaSiguienteConsulta() {
+        long antes = libres(camionRepository.contarPorDisponibilidad());
+
+        // Como la importación masiva: JDBC directo, Hibernate no se entera para invalidar nada
+        jdbcTemplate.update("INSERT INTO camiones (dominio, capacidad_peso, capacidad_volumen, disponibilidad, " +
+                "version_reserva) VALUES ('AA400AA', 1000, 5, true, 0)");
+
+        assertEquals(antes + 1, libres(camionRepository.contarPorDisponibilidad()));
+    }
+
+    private static long libres(List<Object[]> filas) {
+        return filas.stream()
+                .filter(fila -> Boolean.TRUE.equals(fila[0]))
+                .mapToLong(fila -> ((Number) fila[1]).longValue())
+                .sum();
+    }
+}
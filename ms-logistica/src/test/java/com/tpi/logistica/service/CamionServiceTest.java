@@ -2,21 +2,29 @@ package com.tpi.logistica.service;
 
 import com.tpi.logistica.domain.Camion;
 import com.tpi.logistica.repository.CamionRepository;
+import com.tpi.logistica.web.dto.CapacidadRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -28,6 +36,12 @@ class CamionServiceTest {
     @Mock
     private CamionRepository camionRepository;
 
+    @Mock
+    private FlotaSnapshot flotaSnapshot;
+
+    @Mock
+    private CatalogoCambiosService catalogoCambios;
+
     @InjectMocks
     private CamionService camionService;
 
@@ -43,6 +57,8 @@ class CamionServiceTest {
                 .costoBaseKm(50.0)
                 .disponibilidad(true)
                 .build();
+        // Por defecto el snapshot no conoce el camión y se resuelve contra el repositorio
+        lenient().when(flotaSnapshot.validarCapacidad(anyString(), anyDouble(), anyDouble())).thenReturn(null);
     }
 
     // ========== TESTS PARA validarCapacidad (RF11) ==========
@@ -194,6 +210,214 @@ class CamionServiceTest {
         assertFalse(resultado, "Debe retornar false si la capacidad de volumen del camión es nula");
     }
 
+    @Test
+    void validarCapacidad_CamionEnSnapshot_NoConsultaBD() {
+        // Arrange
+        when(flotaSnapshot.validarCapacidad("ABC123", 10000.0, 25.0)).thenReturn(true);
+
+        // Act
+        boolean resultado = camionService.validarCapacidad("ABC123", 10000.0, 25.0);
+
+        // Assert
+        assertTrue(resultado);
+        verify(camionRepository, never()).findById(any());
+    }
+
+    @Test
+    void validarCapacidad_CamionFueraDelSnapshot_ConsultaBDYLoIncorporaConLaVersionPrevia() {
+        // Arrange
+        when(flotaSnapshot.version()).thenReturn(3L);
+        when(camionRepository.findById("ABC123")).thenReturn(Optional.of(camionValido));
+
+        // Act
+        boolean resultado = camionService.validarCapacidad("ABC123", 10000.0, 25.0);
+
+        // Assert: la versión se lee antes que la BD y el camión entra condicionado a ella
+        assertTrue(resultado);
+        InOrder orden = inOrder(flotaSnapshot, camionRepository);
+        orden.verify(flotaSnapshot).version();
+        orden.verify(camionRepository).findById("ABC123");
+        orden.verify(flotaSnapshot).incorporar(List.of(camionValido), 3L);
+        verify(flotaSnapshot, never()).actualizar(any());
+    }
+
+    // ========== TESTS PARA validarCapacidadLote ==========
+
+    @Test
+    void validarCapacidadLote_ResuelvePendientesConUnaSolaConsulta() {
+        // Arrange
+        Camion otro = Camion.builder().dominio("DEF456").capacidadPeso(1000.0).capacidadVolumen(5.0).build();
+        when(flotaSnapshot.validarCapacidad("GHI789", 100.0, 1.0)).thenReturn(true);
+        when(camionRepository.findAllById(anySet())).thenReturn(Arrays.asList(camionValido, otro));
+        List<CapacidadRequest> items = Arrays.asList(
+                new CapacidadRequest("ABC123", 10000.0, 25.0),
+                new CapacidadRequest("DEF456", 2000.0, 1.0),
+                new CapacidadRequest("GHI789", 100.0, 1.0),
+                new CapacidadRequest("NOEXISTE", 1.0, 1.0),
+                new CapacidadRequest("ABC123", -1.0, 1.0)
+        );
+
+        // Act
+        boolean[] resultado = camionService.validarCapacidadLote(items);
+
+        // Assert
+        assertArrayEquals(new boolean[]{true, false, true, false, false}, resultado);
+        verify(camionRepository, times(1)).findAllById(anySet());
+        verify(camionRepository, never()).findById(any());
+        ArgumentCaptor<Collection<Camion>> incorporados = ArgumentCaptor.forClass(Collection.class);
+        verify(flotaSnapshot).incorporar(incorporados.capture(), eq(0L));
+        assertEquals(Set.of("ABC123", "DEF456"),
+                incorporados.getValue().stream().map(Camion::getDominio).collect(Collectors.toSet()));
+        verify(flotaSnapshot, never()).actualizar(any());
+    }
+
+    @Test
+    void validarCapacidadLote_TodoEnSnapshot_NoConsultaBD() {
+        // Arrange
+        when(flotaSnapshot.validarCapacidad("ABC123", 10000.0, 25.0)).thenReturn(true);
+
+        // Act
+        boolean[] resultado = camionService.validarCapacidadLote(List.of(new CapacidadRequest("ABC123", 10000.0, 25.0)));
+
+        // Assert
+        assertArrayEquals(new boolean[]{true}, resultado);
+        verify(camionRepository, never()).findAllById(any());
+    }
+
+    // ========== TESTS PARA buscarAptos ==========
+
+    @Test
+    void buscarAptos_LimiteFueraDeRango_LanzaExcepcion() {
+        assertThrows(IllegalArgumentException.class,
+                () -> camionService.buscarAptos(1000.0, 10.0, FlotaSnapshot.CriterioOrden.COSTO, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> camionService.buscarAptos(1000.0, 10.0, FlotaSnapshot.CriterioOrden.COSTO, 101));
+        verifyNoInteractions(flotaSnapshot);
+    }
+
+    @Test
+    void buscarAptos_PesoOVolumenNoFinito_LanzaExcepcion() {
+        // NaN pasa el "< 0" y, sin este corte, el índice devolvería a todos los camiones como aptos
+        assertThrows(IllegalArgumentException.class,
+                () -> camionService.buscarAptos(Double.NaN, 10.0, FlotaSnapshot.CriterioOrden.COSTO, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> camionService.buscarAptos(1000.0, Double.POSITIVE_INFINITY, FlotaSnapshot.CriterioOrden.COSTO, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> camionService.reservar("ABC123", Double.NaN, 10.0));
+        assertFalse(camionService.validarCapacidad("ABC123", 1000.0, Double.NaN));
+        verifyNoInteractions(flotaSnapshot);
+        verify(camionRepository, never()).reservar(anyString(), anyDouble(), anyDouble());
+    }
+
+    // ========== TESTS PARA reservar / liberar ==========
+
+    @Test
+    void reservar_CamionLibreConCapacidad_ReservaYDevuelveToken() {
+        camionValido.setDisponibilidad(false);
+        camionValido.setVersionReserva(4L);
+        when(camionRepository.reservar("ABC123", 10000.0, 25.0)).thenReturn(1);
+        when(catalogoCambios.registrar(any(), eq("ABC123"), any())).thenReturn(77L);
+        when(camionRepository.releer("ABC123")).thenReturn(Optional.of(camionValido));
+
+        CamionService.Reserva reserva = camionService.reservar("ABC123", 10000.0, 25.0);
+
+        assertTrue(reserva.aplicada());
+        assertTrue(reserva.reservado());
+        assertEquals(4L, reserva.versionReserva());
+        verify(camionRepository).marcarVersionCatalogo("ABC123", 77L);
+        // Sin transacción activa el snapshot se actualiza en el acto
+        verify(flotaSnapshot).actualizar(camionValido);
+    }
+
+    @Test
+    void reservar_CamionYaReservado_RechazaSinRegistrarCambio() {
+        camionValido.setDisponibilidad(false);
+        when(camionRepository.reservar("ABC123", 100.0, 1.0)).thenReturn(0);
+        when(camionRepository.releer("ABC123")).thenReturn(Optional.of(camionValido));
+
+        CamionService.Reserva reserva = camionService.reservar("ABC123", 100.0, 1.0);
+
+        assertFalse(reserva.aplicada());
+        assertEquals(CamionService.MotivoRechazo.NO_DISPONIBLE, reserva.motivo());
+        verifyNoInteractions(catalogoCambios);
+        verify(flotaSnapshot, never()).actualizar(any());
+    }
+
+    @Test
+    void reservar_CamionLibreSinCapacidad_RechazaPorCapacidad() {
+        when(camionRepository.reservar("ABC123", 20000.0, 1.0)).thenReturn(0);
+        when(camionRepository.releer("ABC123")).thenReturn(Optional.of(camionValido));
+
+        CamionService.Reserva reserva = camionService.reservar("ABC123", 20000.0, 1.0);
+
+        assertEquals(CamionService.MotivoRechazo.CAPACIDAD_INSUFICIENTE, reserva.motivo());
+    }
+
+    @Test
+    void reservar_CamionInexistente_LanzaNoSuchElement() {
+        when(camionRepository.reservar("ZZZ999", 1.0, 1.0)).thenReturn(0);
+        when(camionRepository.releer("ZZZ999")).thenReturn(Optional.empty());
+
+        assertThrows(java.util.NoSuchElementException.class, () -> camionService.reservar("ZZZ999", 1.0, 1.0));
+    }
+
+    @Test
+    void liberar_VersionDesactualizada_NoLibera() {
+        camionValido.setDisponibilidad(false);
+        camionValido.setVersionReserva(9L);
+        when(camionRepository.liberar("ABC123", 4L)).thenReturn(0);
+        when(camionRepository.releer("ABC123")).thenReturn(Optional.of(camionValido));
+
+        CamionService.Reserva reserva = camionService.liberar("ABC123", 4L);
+
+        assertFalse(reserva.aplicada());
+        assertTrue(reserva.reservado());
+        assertEquals(CamionService.MotivoRechazo.VERSION_DESACTUALIZADA, reserva.motivo());
+        verifyNoInteractions(catalogoCambios);
+    }
+
+    @Test
+    void reservarLote_ResultadoPorItemSinAbortarPorRechazosNiInexistentes() {
+        camionValido.setDisponibilidad(false);
+        camionValido.setVersionReserva(2L);
+        when(camionRepository.reservar("ABC123", 1.0, 1.0)).thenReturn(1, 0);
+        when(camionRepository.reservar("ZZZ999", 1.0, 1.0)).thenReturn(0);
+        when(camionRepository.releer("ABC123")).thenReturn(Optional.of(camionValido));
+        when(camionRepository.releer("ZZZ999")).thenReturn(Optional.empty());
+
+        List<CamionService.Reserva> reservas = camionService.reservarLote(List.of(
+                new CapacidadRequest("ABC123", 1.0, 1.0),
+                new CapacidadRequest("ZZZ999", 1.0, 1.0),
+                new CapacidadRequest("ABC123", 1.0, 1.0)));
+
+        assertEquals(3, reservas.size());
+        assertTrue(reservas.get(0).aplicada());
+        assertEquals(2L, reservas.get(0).versionReserva());
+        assertEquals(CamionService.MotivoRechazo.NO_ENCONTRADO, reservas.get(1).motivo());
+        // El repetido encuentra el camión ya reservado por el primer ítem
+        assertEquals(CamionService.MotivoRechazo.NO_DISPONIBLE, reservas.get(2).motivo());
+    }
+
+    @Test
+    void reservarLote_ExcedeLimite_LanzaExcepcion() {
+        List<CapacidadRequest> items = java.util.Collections.nCopies(CamionService.LIMITE_MAXIMO_DOMINIOS + 1,
+                new CapacidadRequest("ABC123", 1.0, 1.0));
+
+        assertThrows(IllegalArgumentException.class, () -> camionService.reservarLote(items));
+        verifyNoInteractions(camionRepository);
+    }
+
+    @Test
+    void actualizar_ConVersionReservaVieja_LanzaConflicto() {
+        camionValido.setVersionReserva(5L);
+        when(camionRepository.findById("ABC123")).thenReturn(Optional.of(camionValido));
+        Camion cambios = Camion.builder().dominio("ABC123").disponibilidad(true).versionReserva(4L).build();
+
+        assertThrows(org.springframework.dao.OptimisticLockingFailureException.class,
+                () -> camionService.actualizar("ABC123", cambios));
+        verify(camionRepository, never()).save(any());
+    }
+
     // ========== TESTS PARA FILTROS ==========
 
     @Test
@@ -279,18 +503,68 @@ class CamionServiceTest {
         verify(camionRepository).findByCapacidadPesoBetween(10000.0, Double.MAX_VALUE, pageable);
     }
 
+    // ========== TESTS PARA listarDesde (cursor) ==========
+
+    @Test
+    void listarDesde_PrimeraPaginaConMas_PideUnoExtraYLoDescarta() {
+        // Arrange
+        Camion otro = Camion.builder().dominio("DEF456").build();
+        Camion tercero = Camion.builder().dominio("GHI789").build();
+        when(camionRepository.findByDominioGreaterThanOrderByDominioAsc("", Limit.of(3)))
+                .thenReturn(Arrays.asList(camionValido, otro, tercero));
+
+        // Act
+        Slice<Camion> resultado = camionService.listarDesde(null, 2, null, null, null, null);
+
+        // Assert
+        assertEquals(2, resultado.getNumberOfElements());
+        assertTrue(resultado.hasNext());
+        verify(camionRepository, never()).count();
+    }
+
+    @Test
+    void listarDesde_ConFiltroPeso_MantieneElFiltroYElCursor() {
+        // Arrange
+        when(camionRepository.findByDominioGreaterThanAndCapacidadPesoBetweenOrderByDominioAsc(
+                "ABC123", 10000.0, Double.MAX_VALUE, Limit.of(11))).thenReturn(List.of());
+
+        // Act
+        Slice<Camion> resultado = camionService.listarDesde("ABC123", 10, 10000.0, null, null, null);
+
+        // Assert
+        assertFalse(resultado.hasNext());
+        assertTrue(resultado.getContent().isEmpty());
+    }
+
     // ========== TESTS PARA obtenerEstadoCamiones ==========
 
     @Test
-    void obtenerEstadoCamiones_ConCamionesLibresYOcupados_RetornaResumenCorrecto() {
+    void obtenerEstadoCamiones_ConSnapshotCargado_UsaContadoresSinLeerTabla() {
+        // Arrange
+        when(flotaSnapshot.isCargado()).thenReturn(true);
+        when(flotaSnapshot.estado()).thenReturn(new FlotaSnapshot.EstadoFlota(4, 2, 1, 1));
+
+        // Act
+        Map<String, Object> estado = camionService.obtenerEstadoCamiones();
+
+        // Assert
+        assertEquals(4, estado.get("total"));
+        assertEquals(2L, estado.get("libres"));
+        assertEquals(1L, estado.get("ocupados"));
+        assertEquals(1L, estado.get("sinEstado"));
+        verify(camionRepository, never()).findAll();
+        verify(camionRepository, never()).contarPorDisponibilidad();
+    }
+
+    @Test
+    void obtenerEstadoCamiones_SinSnapshot_UsaAgregadoEnBD() {
         // Arrange
-        Camion camionLibre1 = Camion.builder().dominio("ABC123").disponibilidad(true).build();
-        Camion camionLibre2 = Camion.builder().dominio("DEF456").disponibilidad(true).build();
-        Camion camionOcupado = Camion.builder().dominio("GHI789").disponibilidad(false).build();
-        Camion camionSinEstado = Camion.builder().dominio("JKL012").disponibilidad(null).build();
-        
-        List<Camion> camiones = Arrays.asList(camionLibre1, camionLibre2, camionOcupado, camionSinEstado);
-        when(camionRepository.findAll()).thenReturn(camiones);
+        when(flotaSnapshot.isCargado()).thenReturn(false);
+        when(camionRepository.contarPorDisponibilidad()).thenReturn(Arrays.asList(
+                new Object[]{true, 2L},
+                new Object[]{false, 1L},
+                new Object[]{null, 1L}
+        ));
 
         // Act
         Map<String, Object> estado = camionService.obtenerEstadoCamiones();
@@ -300,12 +574,14 @@ class CamionServiceTest {
         assertEquals(2L, estado.get("libres"));
         assertEquals(1L, estado.get("ocupados"));
         assertEquals(1L, estado.get("sinEstado"));
+        verify(camionRepository, never()).findAll();
     }
 
     @Test
     void obtenerEstadoCamiones_SinCamiones_RetornaCeros() {
         // Arrange
-        when(camionRepository.findAll()).thenReturn(Arrays.asList());
+        when(flotaSnapshot.isCargado()).thenReturn(false);
+        when(camionRepository.contarPorDisponibilidad()).thenReturn(Arrays.asList());
 
         // Act
         Map<String, Object> estado = camionService.obtenerEstadoCamiones();
@@ -316,4 +592,39 @@ class CamionServiceTest {
         assertEquals(0L, estado.get("ocupados"));
         assertEquals(0L, estado.get("sinEstado"));
     }
+
+    // ========== TESTS PARA obtenerVarios ==========
+
+    @Test
+    void obtenerVarios_DeduplicaYRespetaOrdenOmitiendoInexistentes() {
+        // Arrange
+        Camion otro = Camion.builder().dominio("XYZ789").costoBaseKm(40.0).build();
+        when(camionRepository.findAllById(any())).thenReturn(List.of(otro, camionValido));
+
+        // Act
+        List<Camion> camiones = camionService.obtenerVarios(List.of("XYZ789", "NOP000", "ABC123", "XYZ789"));
+
+        // Assert
+        assertEquals(List.of("XYZ789", "ABC123"), camiones.stream().map(Camion::getDominio).toList());
+        verify(camionRepository).findAllById(argThat(ids -> {
+            List<String> lista = new java.util.ArrayList<>();
+            ids.forEach(lista::add);
+            return lista.equals(List.of("XYZ789", "NOP000", "ABC123"));
+        }));
+    }
+
+    @Test
+    void obtenerVarios_SinDominios_LanzaExcepcion() {
+        assertThrows(IllegalArgumentException.class, () -> camionService.obtenerVarios(List.of(" ")));
+        verify(camionRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void obtenerVarios_ExcedeLimite_LanzaExcepcion() {
+        List<String> dominios = java.util.stream.IntStream.rangeClosed(0, CamionService.LIMITE_MAXIMO_DOMINIOS)
+                .mapToObj(i -> "AA" + i)
+                .toList();
+
+        assertThrows(IllegalArgumentException.class, () -> camionService.obtenerVarios(dominios));
+    }
 }
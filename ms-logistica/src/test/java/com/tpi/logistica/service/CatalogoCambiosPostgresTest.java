@@ -0,0 +1,126 @@
+package com.tpi.logistica.service;
+
+import com.tpi.logistica.domain.Camion;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Orden del feed contra un PostgreSQL embebido: una transacción que toma versión y confirma después que otra
+ * posterior no puede quedar detrás del cursor del consumidor.
+ */
+class CatalogoCambiosPostgresTest extends PostgresEmbebido {
+
+    @Autowired
+    private CatalogoCambiosService catalogoCambios;
+
+    @Autowired
+    private CamionService camionService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private static Camion camion(String dominio) {
+        return Camion.builder()
+                .dominio(dominio)
+                .capacidadPeso(15000.0)
+                .capacidadVolumen(30.0)
+                .consumoPromedio(12.5)
+                .costoBaseKm(50.0)
+                .disponibilidad(true)
+                .build();
+    }
+
+    private long cursorAlDia() {
+        CatalogoCambiosService.Cambios cambios = catalogoCambios.cambiosDesde(0, CatalogoCambiosService.LIMITE_MAXIMO);
+        while (cambios.hayMas()) {
+            cambios = catalogoCambios.cambiosDesde(cambios.hasta(), CatalogoCambiosService.LIMITE_MAXIMO);
+        }
+        return cambios.hasta();
+    }
+
+    private static List<String> dominios(CatalogoCambiosService.Cambios cambios) {
+        return cambios.camiones().stream().map(Camion::getDominio).toList();
+    }
+
+    @Test
+    void cambiosDesde_VersionMenorConfirmadaDespues_LlegaEnLaConsultaSiguiente() throws Exception {
+        long cursor = cursorAlDia();
+        CountDownLatch versionTomada = new CountDownLatch(1);
+        CountDownLatch confirmar = new CountDownLatch(1);
+
+        // La transacción lenta toma su versión primero y confirma al final
+        CompletableFuture<Camion> lenta = CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status -> {
+            Camion creado = camionService.crear(camion("BB100AA"));
+            versionTomada.countDown();
+            try {
+                assertTrue(confirmar.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            return creado;
+        }));
+        assertTrue(versionTomada.await(10, TimeUnit.SECONDS));
+        Camion rapido = camionService.crear(camion("BB200AA"));
+
+        CatalogoCambiosService.Cambios primera = catalogoCambios.cambiosDesde(cursor, 100);
+        confirmar.countDown();
+        Camion lento = lenta.get(10, TimeUnit.SECONDS);
+        CatalogoCambiosService.Cambios segunda = catalogoCambios.cambiosDesde(primera.hasta(), 100);
+
+        assertTrue(lento.getVersionCatalogo() < rapido.getVersionCatalogo());
+        assertEquals(List.of("BB200AA"), dominios(primera));
+        assertEquals(List.of("BB100AA"), dominios(segunda));
+        assertTrue(segunda.hasta() > primera.hasta());
+    }
+
+    @Test
+    void cambiosDesde_CursorAlDia_NoDevuelveNadaYMantieneElCursor() {
+        long cursor = cursorAlDia();
+
+        CatalogoCambiosService.Cambios cambios = catalogoCambios.cambiosDesde(cursor, 100);
+
+        assertEquals(cursor, cambios.hasta());
+        assertFalse(cambios.hayMas());
+        assertTrue(cambios.camiones().isEmpty());
+        assertTrue(cambios.bajas().isEmpty());
+    }
+
+    @Test
+    void purgarReemplazados_CambiosViejos_DejaElUltimoDeCadaCamionYElFeedEntregaLoMismo() {
+        long cursor = cursorAlDia();
+        Camion modificado = camionService.crear(camion("BB300AA"));
+        modificado.setCostoBaseKm(60.0);
+        camionService.actualizar("BB300AA", modificado);
+        camionService.crear(camion("BB400AA"));
+        camionService.eliminar("BB400AA");
+        camionService.crear(camion("BB500AA"));
+        cursorAlDia();
+        // Todo vencido salvo BB500AA, que es reciente
+        jdbcTemplate.update("""
+                UPDATE catalogo_cambios SET registrado = registrado - interval '30 days'
+                WHERE clave IN ('BB300AA', 'BB400AA')""");
+
+        int borradas = catalogoCambios.purgarReemplazados();
+        CatalogoCambiosService.Cambios cambios = catalogoCambios.cambiosDesde(cursor, 100);
+
+        assertEquals(2, borradas);
+        assertEquals(List.of(1, 1), jdbcTemplate.queryForList("""
+                SELECT count(*)::int FROM catalogo_cambios WHERE clave IN ('BB300AA', 'BB400AA')
+                GROUP BY clave ORDER BY clave""", Integer.class));
+        assertEquals(List.of("BB300AA", "BB500AA"), dominios(cambios).stream().sorted().toList());
+        assertEquals(List.of("BB400AA"), cambios.bajas().stream().map(CatalogoCambiosService.Baja::clave).toList());
+    }
+}
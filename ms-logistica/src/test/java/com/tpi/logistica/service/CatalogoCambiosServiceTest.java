@@ -0,0 +1,154 @@
+package com.tpi.logistica.service;
+
+import com.tpi.logistica.domain.CambioCatalogo;
+import com.tpi.logistica.domain.Camion;
+import com.tpi.logistica.repository.CambioCatalogoRepository;
+import com.tpi.logistica.repository.CamionRepository;
+import com.tpi.logistica.repository.DepositoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogoCambiosServiceTest {
+
+    @Mock
+    private CambioCatalogoRepository cambioRepository;
+
+    @Mock
+    private CamionRepository camionRepository;
+
+    @Mock
+    private DepositoRepository depositoRepository;
+
+    private CatalogoCambiosService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new CatalogoCambiosService(cambioRepository, camionRepository, depositoRepository, 7);
+    }
+
+    // orden = versión + 100: el cursor del feed es el orden, la versión solo identifica el cambio
+    private static CambioCatalogo cambio(long version, CambioCatalogo.Tipo tipo, String clave, CambioCatalogo.Operacion op) {
+        return CambioCatalogo.builder().version(version).orden(version + 100).tipo(tipo).clave(clave).operacion(op).build();
+    }
+
+    @Test
+    void cambiosDesde_ColapsaPorEntidadYSeparaBajas() {
+        // Arrange
+        when(cambioRepository.findByOrdenGreaterThanOrderByOrdenAsc(110L, Limit.of(3)))
+                .thenReturn(Arrays.asList(
+                        cambio(11, CambioCatalogo.Tipo.CAMION, "ABC123", CambioCatalogo.Operacion.ALTA_MODIFICACION),
+                        cambio(12, CambioCatalogo.Tipo.CAMION, "DEF456", CambioCatalogo.Operacion.ALTA_MODIFICACION),
+                        cambio(13, CambioCatalogo.Tipo.CAMION, "DEF456", CambioCatalogo.Operacion.BAJA)
+                ));
+        Camion abc = Camion.builder().dominio("ABC123").versionCatalogo(11L).build();
+        // DEF456 ya fue eliminado: no vuelve de la BD aunque su alta está en esta página
+        when(camionRepository.findAllById(List.of("ABC123", "DEF456"))).thenReturn(List.of(abc));
+
+        // Act
+        CatalogoCambiosService.Cambios cambios = service.cambiosDesde(110, 2);
+
+        // Assert
+        assertEquals(112L, cambios.hasta());
+        assertTrue(cambios.hayMas());
+        assertEquals(List.of(abc), cambios.camiones());
+        assertTrue(cambios.bajas().isEmpty(), "La baja de la versión 13 queda para la página siguiente");
+        verifyNoInteractions(depositoRepository);
+    }
+
+    @Test
+    void cambiosDesde_SoloUnaBaja_DevuelveLaBajaYAvanzaElCursor() {
+        // Arrange
+        when(cambioRepository.findByOrdenGreaterThanOrderByOrdenAsc(eq(105L), any()))
+                .thenReturn(List.of(cambio(6, CambioCatalogo.Tipo.DEPOSITO, "7", CambioCatalogo.Operacion.BAJA)));
+
+        // Act
+        CatalogoCambiosService.Cambios cambios = service.cambiosDesde(105, 100);
+
+        // Assert
+        assertEquals(106L, cambios.hasta());
+        assertFalse(cambios.hayMas());
+        assertEquals(List.of(new CatalogoCambiosService.Baja(CambioCatalogo.Tipo.DEPOSITO, "7", 6)), cambios.bajas());
+        verifyNoInteractions(camionRepository, depositoRepository);
+    }
+
+    @Test
+    void cambiosDesde_SinCambios_MantieneElCursor() {
+        // Arrange
+        when(cambioRepository.findByOrdenGreaterThanOrderByOrdenAsc(eq(105L), any())).thenReturn(List.of());
+
+        // Act
+        CatalogoCambiosService.Cambios cambios = service.cambiosDesde(105, 100);
+
+        // Assert
+        assertEquals(105L, cambios.hasta());
+        assertFalse(cambios.hayMas());
+        assertTrue(cambios.camiones().isEmpty());
+        assertTrue(cambios.depositos().isEmpty());
+        assertTrue(cambios.bajas().isEmpty());
+        verifyNoInteractions(camionRepository, depositoRepository);
+    }
+
+    @Test
+    void cambiosDesde_OrdenaLosConfirmadosBajoElLockAntesDeLeer() {
+        // Arrange
+        when(cambioRepository.existsByOrdenIsNull()).thenReturn(true);
+        when(cambioRepository.findByOrdenGreaterThanOrderByOrdenAsc(anyLong(), any())).thenReturn(List.of());
+
+        // Act
+        service.cambiosDesde(0, 100);
+
+        // Assert
+        InOrder orden = inOrder(cambioRepository);
+        orden.verify(cambioRepository).bloquearSecuenciador(CatalogoCambiosService.LOCK_SECUENCIADOR);
+        orden.verify(cambioRepository).ordenarConfirmados();
+        orden.verify(cambioRepository).findByOrdenGreaterThanOrderByOrdenAsc(0L, Limit.of(101));
+    }
+
+    @Test
+    void cambiosDesde_SinPendientesDeOrden_NoTomaElLockNiActualiza() {
+        // Arrange
+        when(cambioRepository.existsByOrdenIsNull()).thenReturn(false);
+        when(cambioRepository.findByOrdenGreaterThanOrderByOrdenAsc(anyLong(), any())).thenReturn(List.of());
+
+        // Act
+        service.cambiosDesde(0, 100);
+
+        // Assert
+        verify(cambioRepository, never()).bloquearSecuenciador(anyLong());
+        verify(cambioRepository, never()).ordenarConfirmados();
+    }
+
+    @Test
+    void purgarReemplazados_VariosLotes_BorraHastaQueUnLoteVieneIncompleto() {
+        // Arrange
+        when(cambioRepository.borrarReemplazados(any(), eq(CatalogoCambiosService.LOTE_PURGA)))
+                .thenReturn(CatalogoCambiosService.LOTE_PURGA, 12);
+
+        // Act
+        int borradas = service.purgarReemplazados();
+
+        // Assert
+        assertEquals(CatalogoCambiosService.LOTE_PURGA + 12, borradas);
+        verify(cambioRepository, times(2)).borrarReemplazados(any(), anyInt());
+    }
+
+    @Test
+    void constructor_RetencionNoPositiva_LanzaExcepcion() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> new CatalogoCambiosService(cambioRepository, camionRepository, depositoRepository, 0));
+    }
+}
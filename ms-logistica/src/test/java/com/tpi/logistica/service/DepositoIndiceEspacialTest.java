@@ -0,0 +1,179 @@
+package com.tpi.logistica.service;
+
+import com.tpi.logistica.domain.Deposito;
+import com.tpi.logistica.repository.DepositoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DepositoIndiceEspacialTest {
+
+    @Mock
+    private DepositoRepository depositoRepository;
+
+    private DepositoIndiceEspacial indice;
+    private List<Deposito> depositos;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(7);
+        depositos = new ArrayList<>();
+        for (long id = 1; id <= 2000; id++) {
+            // Aproximadamente el territorio argentino
+            depositos.add(Deposito.builder().idDeposito(id).nombre("D" + id)
+                    .latitud(-55 + random.nextDouble() * 33)
+                    .longitud(-73 + random.nextDouble() * 20)
+                    .costoEstadiaDiario(100.0)
+                    .build());
+        }
+        when(depositoRepository.findAll()).thenReturn(depositos);
+        indice = new DepositoIndiceEspacial(depositoRepository, 0.5);
+        indice.recargar();
+    }
+
+    @Test
+    void cercanos_CoincideConRecorridoCompleto() {
+        double lat = -31.4, lng = -64.18;
+
+        List<Long> esperados = depositos.stream()
+                .sorted(Comparator.comparingDouble(d -> DepositoIndiceEspacial.haversineKm(lat, lng, d.getLatitud(), d.getLongitud())))
+                .limit(10)
+                .map(Deposito::getIdDeposito)
+                .toList();
+        List<Long> obtenidos = indice.cercanos(lat, lng, 10).stream()
+                .map(c -> c.deposito().getIdDeposito())
+                .toList();
+
+        assertEquals(esperados, obtenidos);
+    }
+
+    @Test
+    void cercanos_PuntoLejano_IgualEncuentraLosMasProximos() {
+        List<DepositoIndiceEspacial.DepositoCercano> resultado = indice.cercanos(40.0, 10.0, 3);
+
+        assertEquals(3, resultado.size());
+        assertTrue(resultado.get(0).distanciaKm() <= resultado.get(2).distanciaKm());
+    }
+
+    @Test
+    void enRadio_DevuelveSoloLosDentroDelRadio() {
+        double lat = -34.6, lng = -58.4, radio = 300;
+
+        long esperados = depositos.stream()
+                .filter(d -> DepositoIndiceEspacial.haversineKm(lat, lng, d.getLatitud(), d.getLongitud()) <= radio)
+                .count();
+        List<DepositoIndiceEspacial.DepositoCercano> obtenidos = indice.enRadio(lat, lng, radio);
+
+        assertEquals(esperados, obtenidos.size());
+        assertTrue(obtenidos.stream().allMatch(c -> c.distanciaKm() <= radio));
+    }
+
+    @Test
+    void actualizarYEliminar_MantienenElIndice() {
+        Deposito nuevo = Deposito.builder().idDeposito(9999L).nombre("Nuevo").latitud(10.0).longitud(10.0).build();
+        indice.actualizar(nuevo);
+        assertEquals(9999L, indice.cercanos(10.0, 10.0, 1).get(0).deposito().getIdDeposito());
+
+        nuevo.setLatitud(-80.0);
+        indice.actualizar(nuevo);
+        assertTrue(indice.enArea(9, 11, 9, 11).isEmpty());
+
+        indice.eliminar(9999L);
+        assertEquals(2000, indice.size());
+    }
+
+    @Test
+    void cercanos_CercaDelAntimeridiano_EncuentraLosDelOtroLado() {
+        Deposito oeste = Deposito.builder().idDeposito(9001L).nombre("Oeste").latitud(-17.0).longitud(-179.9).build();
+        Deposito este = Deposito.builder().idDeposito(9002L).nombre("Este").latitud(-17.0).longitud(179.7).build();
+        indice.actualizar(oeste);
+        indice.actualizar(este);
+
+        List<Long> desdeElEste = indice.cercanos(-17.0, 179.95, 2).stream()
+                .map(c -> c.deposito().getIdDeposito()).toList();
+        List<Long> desdeElOeste = indice.cercanos(-17.0, -179.6, 2).stream()
+                .map(c -> c.deposito().getIdDeposito()).toList();
+
+        assertEquals(List.of(9001L, 9002L), desdeElEste);
+        assertEquals(List.of(9001L, 9002L), desdeElOeste);
+    }
+
+    @Test
+    void enRadio_CruzaElAntimeridiano_IncluyeAmbosLados() {
+        indice.actualizar(Deposito.builder().idDeposito(9001L).nombre("Oeste").latitud(-17.0).longitud(-179.9).build());
+        indice.actualizar(Deposito.builder().idDeposito(9002L).nombre("Este").latitud(-17.0).longitud(179.9).build());
+
+        List<Long> obtenidos = indice.enRadio(-17.0, 179.95, 50).stream()
+                .map(c -> c.deposito().getIdDeposito()).sorted().toList();
+
+        assertEquals(List.of(9001L, 9002L), obtenidos);
+        assertEquals(List.of(9002L), indice.enArea(-18, -16, 179.5, 180).stream()
+                .map(Deposito::getIdDeposito).toList());
+        assertEquals(2, indice.enArea(-18, -16, 179.5, 180.5).size());
+    }
+
+    @Test
+    void cercanos_CeldasGrandesEnTodoElMundo_CoincideConRecorridoCompletoSinRepetidos() {
+        // Celdas de 40°: los anillos dan la vuelta completa a pocas celdas del origen
+        Random random = new Random(11);
+        List<Deposito> mundo = new ArrayList<>();
+        for (long id = 1; id <= 300; id++) {
+            mundo.add(Deposito.builder().idDeposito(id).nombre("M" + id)
+                    .latitud(-90 + random.nextDouble() * 180)
+                    .longitud(-180 + random.nextDouble() * 360)
+                    .build());
+        }
+        when(depositoRepository.findAll()).thenReturn(mundo);
+        DepositoIndiceEspacial grueso = new DepositoIndiceEspacial(depositoRepository, 40);
+        grueso.recargar();
+
+        for (double[] punto : new double[][]{{0, 179}, {60, -178}, {-85, 10}, {10, 0}}) {
+            List<Long> esperados = mundo.stream()
+                    .sorted(Comparator.comparingDouble(d -> DepositoIndiceEspacial.haversineKm(
+                            punto[0], punto[1], d.getLatitud(), d.getLongitud())))
+                    .limit(300)
+                    .map(Deposito::getIdDeposito)
+                    .toList();
+            List<Long> obtenidos = grueso.cercanos(punto[0], punto[1], 300).stream()
+                    .map(c -> c.deposito().getIdDeposito())
+                    .toList();
+
+            assertEquals(esperados, obtenidos);
+        }
+    }
+
+    @Test
+    void recargar_ActualizacionDuranteLaLectura_NoLaPierde() {
+        // La BD devuelve la foto previa al alta; el alta confirmada llega al índice mientras se lee
+        Deposito nuevo = Deposito.builder().idDeposito(9999L).nombre("Nuevo").latitud(10.0).longitud(10.0).build();
+        when(depositoRepository.findAll()).thenAnswer(inv -> {
+            indice.actualizar(nuevo);
+            return depositos;
+        });
+
+        indice.recargar();
+
+        assertEquals(2001, indice.size());
+        assertEquals(9999L, indice.cercanos(10.0, 10.0, 1).get(0).deposito().getIdDeposito());
+    }
+
+    @Test
+    void recargar_SinEscriturasConcurrentes_ReemplazaElIndice() {
+        indice.actualizar(Deposito.builder().idDeposito(9999L).nombre("Borrado").latitud(10.0).longitud(10.0).build());
+
+        indice.recargar();
+
+        assertEquals(2000, indice.size());
+    }
+}
@@ -0,0 +1,286 @@
+package com.tpi.logistica.service;
+
+import com.tpi.logistica.domain.Camion;
+import com.tpi.logistica.repository.CamionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FlotaSnapshotTest {
+
+    @Mock
+    private CamionRepository camionRepository;
+
+    private FlotaSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = new FlotaSnapshot(camionRepository);
+        when(camionRepository.findAll()).thenReturn(Arrays.asList(
+                Camion.builder().dominio("ABC123").capacidadPeso(15000.0).capacidadVolumen(30.0).disponibilidad(true).build(),
+                Camion.builder().dominio("DEF456").capacidadPeso(8000.0).capacidadVolumen(null).disponibilidad(false).build()
+        ));
+        snapshot.recargar();
+    }
+
+    @Test
+    void validarCapacidad_SinCargar_RetornaNull() {
+        FlotaSnapshot vacio = new FlotaSnapshot(camionRepository);
+
+        assertNull(vacio.validarCapacidad("ABC123", 1.0, 1.0));
+    }
+
+    @Test
+    void validarCapacidad_ResuelveDesdeMemoria() {
+        assertEquals(2, snapshot.size());
+        assertEquals(Boolean.TRUE, snapshot.validarCapacidad("ABC123", 15000.0, 30.0));
+        assertEquals(Boolean.FALSE, snapshot.validarCapacidad("ABC123", 15000.1, 30.0));
+        assertEquals(Boolean.FALSE, snapshot.validarCapacidad("DEF456", 1.0, 1.0), "Capacidad nula nunca valida");
+        assertNull(snapshot.validarCapacidad("XYZ999", 1.0, 1.0));
+    }
+
+    @Test
+    void actualizarYEliminar_MantienenElSnapshotCompacto() {
+        snapshot.actualizar(Camion.builder().dominio("GHI789").capacidadPeso(20000.0).capacidadVolumen(40.0).build());
+        snapshot.actualizar(Camion.builder().dominio("ABC123").capacidadPeso(5000.0).capacidadVolumen(30.0).build());
+        snapshot.eliminar("ABC123");
+
+        assertEquals(2, snapshot.size());
+        assertNull(snapshot.validarCapacidad("ABC123", 1.0, 1.0));
+        assertEquals(Boolean.TRUE, snapshot.validarCapacidad("GHI789", 20000.0, 40.0));
+        assertEquals(Boolean.FALSE, snapshot.validarCapacidad("DEF456", 1.0, 1.0));
+    }
+
+    @Test
+    void recargar_ConEscriturasConcurrentes_NoPisaElSnapshot() {
+        when(camionRepository.findAll()).thenAnswer(inv -> {
+            snapshot.actualizar(Camion.builder().dominio("GHI789").capacidadPeso(1.0).capacidadVolumen(1.0).build());
+            return Arrays.asList();
+        });
+
+        snapshot.recargar();
+
+        assertEquals(3, snapshot.size());
+    }
+
+    @Test
+    void estado_ContadoresSeMantienenConCadaEscritura() {
+        assertEquals(new FlotaSnapshot.EstadoFlota(2, 1, 1, 0), snapshot.estado());
+
+        snapshot.actualizar(Camion.builder().dominio("GHI789").disponibilidad(null).build());
+        snapshot.actualizar(Camion.builder().dominio("DEF456").disponibilidad(true).build());
+        snapshot.eliminar("ABC123");
+
+        assertEquals(new FlotaSnapshot.EstadoFlota(2, 1, 0, 1), snapshot.estado());
+    }
+
+    @Test
+    void reconciliarContadores_ConDesvio_RecargaDesdeBD() {
+        // La BD tiene un camión más que el snapshot (alta hecha por otra instancia)
+        when(camionRepository.contarPorDisponibilidad()).thenReturn(Arrays.asList(
+                new Object[]{true, 2L},
+                new Object[]{false, 1L}
+        ));
+
+        snapshot.reconciliarContadores();
+
+        verify(camionRepository, times(2)).findAll();
+    }
+
+    @Test
+    void reconciliarContadores_SinDesvio_NoRecarga() {
+        when(camionRepository.contarPorDisponibilidad()).thenReturn(Arrays.asList(
+                new Object[]{true, 1L},
+                new Object[]{false, 1L}
+        ));
+
+        snapshot.reconciliarContadores();
+
+        verify(camionRepository, times(1)).findAll();
+    }
+
+    @Test
+    void buscarAptos_FiltraDisponiblesYOrdenaPorCriterio() {
+        snapshot.actualizar(Camion.builder().dominio("GHI789").capacidadPeso(20000.0).capacidadVolumen(40.0)
+                .costoBaseKm(30.0).disponibilidad(true).build());
+        snapshot.actualizar(Camion.builder().dominio("JKL012").capacidadPeso(12000.0).capacidadVolumen(26.0)
+                .costoBaseKm(80.0).disponibilidad(true).build());
+        snapshot.actualizar(Camion.builder().dominio("MNO345").capacidadPeso(50000.0).capacidadVolumen(90.0)
+                .costoBaseKm(10.0).disponibilidad(false).build());
+
+        List<FlotaSnapshot.CamionApto> porCosto = snapshot.buscarAptos(10000.0, 25.0, FlotaSnapshot.CriterioOrden.COSTO, 10);
+        List<FlotaSnapshot.CamionApto> porDesperdicio = snapshot.buscarAptos(10000.0, 25.0, FlotaSnapshot.CriterioOrden.DESPERDICIO, 1);
+
+        // ABC123 no tiene costo: queda al final al ordenar por costo
+        assertEquals(List.of("GHI789", "JKL012", "ABC123"), porCosto.stream().map(FlotaSnapshot.CamionApto::dominio).toList());
+        assertEquals(1, porDesperdicio.size());
+        assertEquals("JKL012", porDesperdicio.get(0).dominio());
+    }
+
+    @Test
+    void buscarAptos_CoincideConRecorridoCompleto() {
+        Random random = new Random(42);
+        List<Camion> flota = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            flota.add(Camion.builder().dominio(String.format("AA%03dBB", i % 1000) + i)
+                    .capacidadPeso(1000 + random.nextInt(30000) * 1.0)
+                    .capacidadVolumen(5 + random.nextInt(80) * 1.0)
+                    .costoBaseKm(10 + random.nextInt(1000) / 10.0)
+                    .disponibilidad(random.nextInt(4) != 0)
+                    .build());
+        }
+        when(camionRepository.findAll()).thenReturn(flota);
+        snapshot.recargar();
+
+        List<String> esperados = flota.stream()
+                .filter(c -> c.getDisponibilidad() && c.getCapacidadPeso() >= 15000 && c.getCapacidadVolumen() >= 40)
+                .sorted(Comparator.comparingDouble(Camion::getCostoBaseKm))
+                .limit(20)
+                .map(Camion::getCostoBaseKm)
+                .map(String::valueOf)
+                .toList();
+        List<String> obtenidos = snapshot.buscarAptos(15000, 40, FlotaSnapshot.CriterioOrden.COSTO, 20).stream()
+                .map(FlotaSnapshot.CamionApto::costoBaseKm)
+                .map(String::valueOf)
+                .toList();
+
+        assertEquals(esperados, obtenidos);
+    }
+
+    @Test
+    void buscarAptos_TrasEscriturasSueltas_CoincideConRecorridoCompleto() {
+        // Arrange: altas, cambios de capacidad, reservas (disponibilidad) y bajas sobre el índice ya construido
+        Random random = new Random(7);
+        Map<String, Camion> flota = new HashMap<>();
+        for (int op = 0; op < 3000; op++) {
+            String dominio = "AA" + random.nextInt(300);
+            if (random.nextInt(5) == 0) {
+                snapshot.eliminar(dominio);
+                flota.remove(dominio);
+            } else {
+                Camion camion = Camion.builder().dominio(dominio)
+                        // Pocos pesos distintos: muchos empates que sin() tiene que desambiguar por dominio
+                        .capacidadPeso(random.nextInt(10) == 0 ? null : 1000.0 * random.nextInt(20))
+                        .capacidadVolumen(5.0 + random.nextInt(60))
+                        .costoBaseKm(10.0 + random.nextInt(500))
+                        .disponibilidad(random.nextInt(3) != 0)
+                        .build();
+                snapshot.actualizar(camion);
+                flota.put(dominio, camion);
+            }
+        }
+        flota.put("ABC123", Camion.builder().dominio("ABC123").capacidadPeso(15000.0).capacidadVolumen(30.0)
+                .disponibilidad(true).build());
+
+        // Act
+        List<FlotaSnapshot.CamionApto> obtenidos = snapshot.buscarAptos(8000, 20, FlotaSnapshot.CriterioOrden.COSTO, 100);
+
+        // Assert
+        List<String> esperados = flota.values().stream()
+                .filter(c -> Boolean.TRUE.equals(c.getDisponibilidad()) && c.getCapacidadPeso() != null
+                        && c.getCapacidadPeso() >= 8000 && c.getCapacidadVolumen() >= 20)
+                .map(Camion::getDominio)
+                .sorted()
+                .toList();
+        assertEquals(esperados, obtenidos.stream().map(FlotaSnapshot.CamionApto::dominio).sorted().toList());
+    }
+
+    @Test
+    void buscarAptos_TrasReservarUnCamion_YaNoLoDevuelve() {
+        // Arrange
+        assertEquals(List.of("ABC123"), dominiosAptos());
+
+        // Act
+        snapshot.actualizar(Camion.builder().dominio("ABC123").capacidadPeso(15000.0).capacidadVolumen(30.0)
+                .disponibilidad(false).build());
+
+        // Assert
+        assertEquals(List.of(), dominiosAptos());
+        snapshot.eliminar("ABC123");
+        assertEquals(List.of(), dominiosAptos());
+    }
+
+    @Test
+    void actualizarTodos_Lote_ActualizaColumnasContadoresEIndice() {
+        // Act
+        snapshot.actualizarTodos(List.of(
+                Camion.builder().dominio("GHI789").capacidadPeso(20000.0).capacidadVolumen(40.0).disponibilidad(true).build(),
+                Camion.builder().dominio("DEF456").capacidadPeso(9000.0).capacidadVolumen(25.0).disponibilidad(true).build(),
+                Camion.builder().dominio(null).build()));
+
+        // Assert
+        assertEquals(3, snapshot.size());
+        assertEquals(new FlotaSnapshot.EstadoFlota(3, 3, 0, 0), snapshot.estado());
+        assertEquals(Boolean.TRUE, snapshot.validarCapacidad("DEF456", 9000.0, 25.0));
+        assertEquals(List.of("ABC123", "DEF456", "GHI789"), dominiosAptos().stream().sorted().toList());
+    }
+
+    @Test
+    void recargar_ConEscriturasConcurrentes_ElIndiceSigueLasEscrituras() {
+        // Arrange: la recarga se descarta, así que su índice (vacío) tampoco tiene que publicarse
+        when(camionRepository.findAll()).thenAnswer(inv -> {
+            snapshot.actualizar(Camion.builder().dominio("GHI789").capacidadPeso(1.0).capacidadVolumen(1.0)
+                    .disponibilidad(true).build());
+            return Arrays.asList();
+        });
+
+        // Act
+        snapshot.recargar();
+
+        // Assert
+        assertEquals(List.of("ABC123", "GHI789"), dominiosAptos().stream().sorted().toList());
+    }
+
+    private List<String> dominiosAptos() {
+        return snapshot.buscarAptos(0, 0, FlotaSnapshot.CriterioOrden.COSTO, 100).stream()
+                .map(FlotaSnapshot.CamionApto::dominio)
+                .toList();
+    }
+
+    @Test
+    void incorporar_SinEscriturasDesdeLaLectura_AgregaElCamion() {
+        // Arrange
+        long version = snapshot.version();
+
+        // Act
+        boolean incorporado = snapshot.incorporar(List.of(Camion.builder().dominio("GHI789").capacidadPeso(20000.0)
+                .capacidadVolumen(40.0).disponibilidad(true).build()), version);
+
+        // Assert
+        assertTrue(incorporado);
+        assertEquals(Boolean.TRUE, snapshot.validarCapacidad("GHI789", 20000.0, 40.0));
+        assertEquals(new FlotaSnapshot.EstadoFlota(3, 2, 1, 0), snapshot.estado());
+    }
+
+    @Test
+    void incorporar_BajaConfirmadaDuranteLaLectura_NoVuelveAPonerElCamion() {
+        // Arrange: el miss leyó ABC123 de la BD y mientras tanto se confirmó su baja
+        long version = snapshot.version();
+        Camion leido = Camion.builder().dominio("ABC123").capacidadPeso(15000.0).capacidadVolumen(30.0)
+                .disponibilidad(true).build();
+        snapshot.eliminar("ABC123");
+
+        // Act
+        boolean incorporado = snapshot.incorporar(List.of(leido), version);
+
+        // Assert
+        assertFalse(incorporado);
+        assertNull(snapshot.validarCapacidad("ABC123", 1.0, 1.0));
+        assertEquals(new FlotaSnapshot.EstadoFlota(1, 0, 1, 0), snapshot.estado());
+        assertEquals(List.of(), dominiosAptos());
+    }
+}
@@ -0,0 +1,150 @@
+package com.tpi.logistica.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tpi.logistica.domain.Camion;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.validation.Validation;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImportacionServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private FlotaSnapshot flotaSnapshot;
+
+    @Mock
+    private DepositoIndiceEspacial indiceEspacial;
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private SessionFactory sessionFactory;
+
+    private ImportacionService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        service = new ImportacionService(jdbcTemplate, transactionTemplate, new ObjectMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator(), flotaSnapshot, indiceEspacial, entityManagerFactory, 2);
+        lenient().when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        lenient().doAnswer(inv -> {
+            inv.<Consumer<TransactionStatus>>getArgument(0).accept(mock(TransactionStatus.class));
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any(Consumer.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importarCamiones_csv_loteaYReportaInvalidasYDuplicadas() {
+        String csv = """
+                dominio,capacidadPeso,capacidadVolumen,costoBaseKm,disponibilidad
+                AAA111,1000,20,10,true
+                BBB222,-5,20,10,true
+                "CCC333",2000,30,,false
+                DDD444,abc,30,10,true
+                EEE555,500,5,8,true
+                """;
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), any(int[].class)))
+                .thenReturn(new int[]{1, 0})   // CCC333 ya existía
+                .thenReturn(new int[]{1});
+
+        ImportacionService.Resultado resultado = service.importarCamiones(stream(csv), ImportacionService.Formato.CSV);
+
+        assertEquals(5, resultado.procesadas());
+        assertEquals(2, resultado.importadas());
+        assertEquals(3, resultado.rechazadas());
+        assertEquals(List.of(2, 3, 4), resultado.fallas().stream().map(ImportacionService.Falla::fila).toList());
+        assertEquals("Ya existe", resultado.fallas().get(1).error());
+
+        ArgumentCaptor<List<Object[]>> lotes = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), lotes.capture(), any(int[].class));
+        assertEquals(2, lotes.getAllValues().get(0).size());
+        assertEquals("CCC333", lotes.getAllValues().get(0).get(1)[0]);
+        assertNull(lotes.getAllValues().get(0).get(1)[4]);
+
+        // Un evict del query cache por lote con altas
+        verify(sessionFactory.getCache(), times(2)).evictQueryRegions();
+
+        // Un lote por commit, de una sola vez: el índice del snapshot se reconstruye por lote y no por camión
+        ArgumentCaptor<List<Camion>> enSnapshot = ArgumentCaptor.forClass(List.class);
+        verify(flotaSnapshot, times(2)).actualizarTodos(enSnapshot.capture());
+        verify(flotaSnapshot, never()).actualizar(any());
+        assertEquals(List.of("AAA111", "EEE555"), enSnapshot.getAllValues().stream()
+                .flatMap(List::stream).map(Camion::getDominio).toList());
+    }
+
+    @Test
+    void importarCamiones_json_elementoConTipoInvalidoNoCortaElStream() {
+        String json = """
+                [{"dominio":"AAA111","capacidadPeso":1000,"capacidadVolumen":20},
+                 {"dominio":"BBB222","capacidadPeso":"mucho"},
+                 42,
+                 {"dominio":"CCC333","capacidadPeso":10,"capacidadVolumen":1}]
+                """;
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), any(int[].class))).thenReturn(new int[]{1, 1});
+
+        ImportacionService.Resultado resultado = service.importarCamiones(stream(json), ImportacionService.Formato.JSON);
+
+        assertEquals(4, resultado.procesadas());
+        assertEquals(2, resultado.importadas());
+        assertEquals(List.of(2, 3), resultado.fallas().stream().map(ImportacionService.Falla::fila).toList());
+    }
+
+    @Test
+    void importarCamiones_jsonQueNoEsArreglo_lanzaIllegalArgument() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.importarCamiones(stream("{\"dominio\":\"AAA111\"}"), ImportacionService.Formato.JSON));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void importarDepositos_recargaIndiceSoloSiHuboAltas() {
+        String csv = """
+                nombre,latitud,longitud,costoEstadiaDiario,direccion
+                Central,-31.4,-64.2,100,"Av. Colón 123, Córdoba"
+                """;
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), any(int[].class))).thenReturn(new int[]{1});
+
+        ImportacionService.Resultado resultado = service.importarDepositos(stream(csv), ImportacionService.Formato.CSV);
+
+        assertEquals(1, resultado.importadas());
+        verify(indiceEspacial).recargar();
+
+        ImportacionService.Resultado vacio = service.importarDepositos(stream("nombre,costoEstadiaDiario\n"),
+                ImportacionService.Formato.CSV);
+        assertEquals(0, vacio.procesadas());
+        verifyNoMoreInteractions(indiceEspacial);
+    }
+
+    private static InputStream stream(String contenido) {
+        return new ByteArrayInputStream(contenido.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -2,8 +2,10 @@ package com.tpi.solicitudes;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class MsSolicitudesApplication {
     public static void main(String[] args) {
         SpringApplication.run(MsSolicitudesApplication.class, args);
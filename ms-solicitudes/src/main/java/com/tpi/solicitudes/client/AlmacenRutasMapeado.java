@@ -0,0 +1,168 @@
+package com.tpi.solicitudes.client;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Segundo nivel del cache de rutas: tabla hash de tamaño fijo en un archivo mapeado en memoria, para que
+ * las rutas ya consultadas sobrevivan a un reinicio. Direccionamiento abierto con sondeo lineal acotado;
+ * si la ventana de sondeo está llena se pisa la entrada más vieja de la ventana.
+ * <p>
+ * Formato: encabezado de {@value #TAMANO_ENCABEZADO} bytes (magic, versión, precisión, capacidad) y
+ * {@code capacidad} slots de {@value #TAMANO_SLOT} bytes. Si el encabezado no coincide con la
+ * configuración actual el archivo se reinicia.
+ */
+final class AlmacenRutasMapeado implements AutoCloseable {
+
+    private static final int MAGIC = 0x52555441; // "RUTA"
+    private static final int VERSION = 1;
+    static final int TAMANO_ENCABEZADO = 64;
+    static final int TAMANO_SLOT = 48;
+    static final int MAX_SONDEO = 16;
+
+    // Desplazamientos dentro del slot
+    private static final int OCUPADO = 0;
+    private static final int ORIGEN_LAT = 4;
+    private static final int ORIGEN_LNG = 8;
+    private static final int DESTINO_LAT = 12;
+    private static final int DESTINO_LNG = 16;
+    private static final int DISTANCIA_KM = 24;
+    private static final int DURACION_MIN = 32;
+    private static final int GUARDADO_MS = 40;
+
+    private final FileChannel canal;
+    private final MappedByteBuffer buffer;
+    private final int capacidad;
+    private final long ttlMs;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    AlmacenRutasMapeado(Path archivo, int capacidad, int precision, long ttlMs) throws IOException {
+        if (capacidad < MAX_SONDEO || capacidad > (Integer.MAX_VALUE - TAMANO_ENCABEZADO) / TAMANO_SLOT) {
+            throw new IllegalArgumentException("Capacidad del cache en disco fuera de rango: " + capacidad);
+        }
+        this.capacidad = capacidad;
+        this.ttlMs = ttlMs;
+        if (archivo.getParent() != null) {
+            Files.createDirectories(archivo.getParent());
+        }
+        long tamano = TAMANO_ENCABEZADO + (long) capacidad * TAMANO_SLOT;
+        this.canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean compatible = canal.size() == tamano;
+        this.buffer = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamano);
+        if (!compatible || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || buffer.getInt(8) != precision || buffer.getInt(12) != capacidad) {
+            reiniciar(precision);
+        }
+    }
+
+    /**
+     * @return la ruta guardada, o null si no está o ya venció
+     */
+    DistanciaYDuracion buscar(ClaveRuta clave, long ahoraMs) {
+        lock.readLock().lock();
+        try {
+            int inicio = slotInicial(clave);
+            for (int i = 0; i < MAX_SONDEO; i++) {
+                int base = offset((inicio + i) % capacidad);
+                if (buffer.getInt(base + OCUPADO) == 0) return null;
+                if (coincide(base, clave)) {
+                    if (ahoraMs - buffer.getLong(base + GUARDADO_MS) > ttlMs) return null;
+                    return new DistanciaYDuracion(buffer.getDouble(base + DISTANCIA_KM), buffer.getLong(base + DURACION_MIN));
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void guardar(ClaveRuta clave, DistanciaYDuracion valor, long ahoraMs) {
+        lock.writeLock().lock();
+        try {
+            int inicio = slotInicial(clave);
+            int destino = -1;
+            long masViejo = Long.MAX_VALUE;
+            for (int i = 0; i < MAX_SONDEO; i++) {
+                int slot = (inicio + i) % capacidad;
+                int base = offset(slot);
+                if (buffer.getInt(base + OCUPADO) == 0 || coincide(base, clave)) {
+                    destino = slot;
+                    break;
+                }
+                long guardado = buffer.getLong(base + GUARDADO_MS);
+                if (guardado < masViejo) {
+                    masViejo = guardado;
+                    destino = slot;
+                }
+            }
+            int base = offset(destino);
+            // Se marca libre mientras se escribe: un corte a mitad de camino deja el slot vacío, no corrupto
+            buffer.putInt(base + OCUPADO, 0);
+            buffer.putInt(base + ORIGEN_LAT, clave.origenLat());
+            buffer.putInt(base + ORIGEN_LNG, clave.origenLng());
+            buffer.putInt(base + DESTINO_LAT, clave.destinoLat());
+            buffer.putInt(base + DESTINO_LNG, clave.destinoLng());
+            buffer.putDouble(base + DISTANCIA_KM, valor.distanciaKm());
+            buffer.putLong(base + DURACION_MIN, valor.duracionMinutos());
+            buffer.putLong(base + GUARDADO_MS, ahoraMs);
+            buffer.putInt(base + OCUPADO, 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int ocupados() {
+        lock.readLock().lock();
+        try {
+            int n = 0;
+            for (int slot = 0; slot < capacidad; slot++) {
+                if (buffer.getInt(offset(slot) + OCUPADO) != 0) n++;
+            }
+            return n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            buffer.force();
+            canal.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void reiniciar(int precision) {
+        for (int slot = 0; slot < capacidad; slot++) {
+            buffer.putInt(offset(slot) + OCUPADO, 0);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, precision);
+        buffer.putInt(12, capacidad);
+        buffer.force();
+    }
+
+    private boolean coincide(int base, ClaveRuta clave) {
+        return buffer.getInt(base + ORIGEN_LAT) == clave.origenLat()
+                && buffer.getInt(base + ORIGEN_LNG) == clave.origenLng()
+                && buffer.getInt(base + DESTINO_LAT) == clave.destinoLat()
+                && buffer.getInt(base + DESTINO_LNG) == clave.destinoLng();
+    }
+
+    private int slotInicial(ClaveRuta clave) {
+        return (int) Long.remainderUnsigned(clave.hash(), capacidad);
+    }
+
+    private static int offset(int slot) {
+        return TAMANO_ENCABEZADO + slot * TAMANO_SLOT;
+    }
+}
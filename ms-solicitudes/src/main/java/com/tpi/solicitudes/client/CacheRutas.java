@@ -0,0 +1,141 @@
+package com.tpi.solicitudes.client;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Cache de dos niveles para consultas de Google Directions, por {@link ClaveRuta}:
+ * <ol>
+ *     <li>memoria: acotado por cantidad de entradas y con TTL;</li>
+ *     <li>disco: {@link AlmacenRutasMapeado}, persiste entre reinicios (se desactiva si el archivo no abre).</li>
+ * </ol>
+ * Las consultas concurrentes de una misma clave comparten un único future: solo la primera llega a disco o a Google.
+ */
+@Component
+public class CacheRutas {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheRutas.class);
+
+    private final AsyncCache<ClaveRuta, DistanciaYDuracion> memoria;
+    private final AlmacenRutasMapeado disco;
+    private final int precision;
+
+    private final Counter aciertosMemoria;
+    private final Counter aciertosDisco;
+    private final Counter coalescidas;
+    private final Counter remotas;
+
+    public CacheRutas(MeterRegistry registry,
+                      @Value("${google.maps.cache.precision-decimales:3}") int precision,
+                      @Value("${google.maps.cache.max-entradas:10000}") long maxEntradas,
+                      @Value("${google.maps.cache.ttl:6h}") Duration ttl,
+                      @Value("${google.maps.cache.disco.archivo:}") String archivo,
+                      @Value("${google.maps.cache.disco.capacidad:65536}") int capacidadDisco,
+                      @Value("${google.maps.cache.disco.ttl:30d}") Duration ttlDisco) {
+        ClaveRuta.escala(precision); // valida el rango
+        this.precision = precision;
+        this.memoria = Caffeine.newBuilder()
+                .maximumSize(maxEntradas)
+                .expireAfterWrite(ttl)
+                .buildAsync();
+        this.disco = abrirDisco(archivo, capacidadDisco, precision, ttlDisco);
+
+        aciertosMemoria = consultas(registry, "memoria");
+        aciertosDisco = consultas(registry, "disco");
+        coalescidas = consultas(registry, "coalescida");
+        remotas = consultas(registry, "remota");
+        Gauge.builder("solicitudes.directions.cache.hit.ratio", this, CacheRutas::tasaAciertos)
+                .description("Fracción de consultas resueltas sin llamar a Google (memoria, disco o coalescidas)")
+                .register(registry);
+        Gauge.builder("solicitudes.directions.cache.size", memoria, m -> m.synchronous().estimatedSize())
+                .tag("nivel", "memoria")
+                .register(registry);
+        if (disco != null) {
+            Gauge.builder("solicitudes.directions.cache.size", disco, AlmacenRutasMapeado::ocupados)
+                    .tag("nivel", "disco")
+                    .register(registry);
+        }
+    }
+
+    int precision() {
+        return precision;
+    }
+
+    /**
+     * Devuelve la ruta de cache o, si no está en ningún nivel, la obtiene con {@code remoto} y la guarda en ambos.
+     * Los errores de {@code remoto} no se cachean.
+     */
+    Mono<DistanciaYDuracion> obtener(ClaveRuta clave, Function<ClaveRuta, Mono<DistanciaYDuracion>> remoto) {
+        AtomicBoolean cargada = new AtomicBoolean();
+        CompletableFuture<DistanciaYDuracion> future = memoria.get(clave, (k, executor) -> {
+            cargada.set(true);
+            DistanciaYDuracion enDisco = disco != null ? disco.buscar(k, System.currentTimeMillis()) : null;
+            if (enDisco != null) {
+                aciertosDisco.increment();
+                return CompletableFuture.completedFuture(enDisco);
+            }
+            remotas.increment();
+            return remoto.apply(k)
+                    .doOnNext(valor -> {
+                        if (disco != null) disco.guardar(k, valor, System.currentTimeMillis());
+                    })
+                    .toFuture();
+        });
+        if (!cargada.get()) {
+            (future.isDone() ? aciertosMemoria : coalescidas).increment();
+        }
+        // suppressCancel: si un suscriptor cancela, la consulta compartida sigue para los demás
+        return Mono.fromFuture(future, true);
+    }
+
+    @PreDestroy
+    void cerrar() {
+        if (disco == null) return;
+        try {
+            disco.close();
+        } catch (IOException e) {
+            log.warn("No se pudo cerrar el cache de rutas en disco", e);
+        }
+    }
+
+    private double tasaAciertos() {
+        double ahorradas = aciertosMemoria.count() + aciertosDisco.count() + coalescidas.count();
+        double total = ahorradas + remotas.count();
+        return total == 0 ? 0 : ahorradas / total;
+    }
+
+    private static Counter consultas(MeterRegistry registry, String resultado) {
+        return Counter.builder("solicitudes.directions.cache.requests")
+                .description("Consultas de rutas por nivel que las resolvió; todo lo que no es 'remota' es una llamada ahorrada")
+                .tag("resultado", resultado)
+                .register(registry);
+    }
+
+    private static AlmacenRutasMapeado abrirDisco(String archivo, int capacidad, int precision, Duration ttl) {
+        if (archivo == null || archivo.isBlank()) return null;
+        try {
+            AlmacenRutasMapeado almacen = new AlmacenRutasMapeado(Path.of(archivo), capacidad, precision, ttl.toMillis());
+            log.info("Cache de rutas en disco: {} ({} entradas)", archivo, almacen.ocupados());
+            return almacen;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cache de rutas en disco deshabilitado: no se pudo abrir {}", archivo, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.tpi.solicitudes.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Agrupa las consultas de camión por dominio que llegan juntas (estilo DataLoader): las acumula durante
+ * {@code ventana} o hasta {@code max-lote} dominios distintos y las resuelve con una sola llamada a
+ * {@link LogisticaClient#obtenerCamiones}. Los pedidos repetidos de un mismo dominio dentro del lote
+ * comparten el resultado.
+ */
+@Component
+public class CargadorCamiones {
+
+    private final LogisticaClient logisticaClient;
+    private final int maxLote;
+    private final long ventanaNanos;
+    private final Scheduler scheduler = Schedulers.parallel();
+
+    // ReentrantLock y no synchronized: con hilos virtuales encolar() corre en el hilo de la petición y un
+    // monitor en disputa fija el hilo a su carrier (JDK 21)
+    private final ReentrantLock lock = new ReentrantLock();
+    private Lote actual;
+
+    private final DistributionSummary tamanoPorTamano;
+    private final DistributionSummary tamanoPorTiempo;
+    private final Timer espera;
+    private final Counter deduplicadas;
+
+    public CargadorCamiones(LogisticaClient logisticaClient, MeterRegistry registry,
+                            @Value("${ms-logistica.lote-camiones.max:50}") int maxLote,
+                            @Value("${ms-logistica.lote-camiones.ventana:5ms}") Duration ventana) {
+        if (maxLote < 1) {
+            throw new IllegalArgumentException("ms-logistica.lote-camiones.max debe ser positivo");
+        }
+        this.logisticaClient = logisticaClient;
+        this.maxLote = maxLote;
+        this.ventanaNanos = ventana.toNanos();
+
+        tamanoPorTamano = tamano(registry, "tamano");
+        tamanoPorTiempo = tamano(registry, "ventana");
+        espera = Timer.builder("solicitudes.logistica.camiones.lote.espera")
+                .description("Tiempo entre el primer pedido de un lote y su despacho")
+                .register(registry);
+        deduplicadas = Counter.builder("solicitudes.logistica.camiones.lote.deduplicadas")
+                .description("Pedidos resueltos por otro pedido del mismo dominio en el mismo lote")
+                .register(registry);
+    }
+
+    /**
+     * Mismo contrato que {@link LogisticaClient#obtenerCamion}; un dominio inexistente termina con
+     * {@link NoSuchElementException}.
+     */
+    public Mono<Map<String, Object>> obtener(String dominio) {
+        Objects.requireNonNull(dominio, "dominio");
+        // suppressCancel: el resultado es compartido por todos los pedidos del dominio en el lote
+        return Mono.defer(() -> Mono.fromFuture(encolar(dominio), true));
+    }
+
+    private CompletableFuture<Map<String, Object>> encolar(String dominio) {
+        Lote lleno = null;
+        CompletableFuture<Map<String, Object>> future;
+        lock.lock();
+        try {
+            if (actual == null) {
+                Lote nuevo = new Lote();
+                actual = nuevo;
+                scheduler.schedule(() -> despacharSiSigue(nuevo), ventanaNanos, TimeUnit.NANOSECONDS);
+            }
+            future = actual.pendientes.get(dominio);
+            if (future != null) {
+                deduplicadas.increment();
+                return future;
+            }
+            future = new CompletableFuture<>();
+            actual.pendientes.put(dominio, future);
+            if (actual.pendientes.size() >= maxLote) {
+                lleno = actual;
+                actual = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (lleno != null) {
+            despachar(lleno, tamanoPorTamano);
+        }
+        return future;
+    }
+
+    private void despacharSiSigue(Lote lote) {
+        lock.lock();
+        try {
+            if (actual != lote) return; // ya salió por tamaño
+            actual = null;
+        } finally {
+            lock.unlock();
+        }
+        despachar(lote, tamanoPorTiempo);
+    }
+
+    private void despachar(Lote lote, DistributionSummary tamano) {
+        tamano.record(lote.pendientes.size());
+        espera.record(System.nanoTime() - lote.inicioNanos, TimeUnit.NANOSECONDS);
+        logisticaClient.obtenerCamiones(lote.pendientes.keySet())
+                .subscribe(camiones -> lote.pendientes.forEach((dominio, future) -> {
+                            Map<String, Object> camion = camiones.get(dominio);
+                            if (camion != null) {
+                                future.complete(camion);
+                            } else {
+                                future.completeExceptionally(new NoSuchElementException("Camión no encontrado: " + dominio));
+                            }
+                        }),
+                        e -> lote.pendientes.values().forEach(future -> future.completeExceptionally(e)),
+                        // Sin cuerpo: lo que no se completó no va a completarse
+                        () -> lote.pendientes.values().forEach(future -> future.completeExceptionally(
+                                new IllegalStateException("ms-logistica no devolvió camiones"))));
+    }
+
+    private static DistributionSummary tamano(MeterRegistry registry, String disparador) {
+        return DistributionSummary.builder("solicitudes.logistica.camiones.lote.tamano")
+                .description("Dominios distintos por llamada a ms-logistica, según qué cerró el lote")
+                .tag("disparador", disparador)
+                .register(registry);
+    }
+
+    private static final class Lote {
+        // Solo se modifica bajo lock mientras el lote es el actual; después es de solo lectura
+        final Map<String, CompletableFuture<Map<String, Object>>> pendientes = new LinkedHashMap<>();
+        final long inicioNanos = System.nanoTime();
+    }
+}
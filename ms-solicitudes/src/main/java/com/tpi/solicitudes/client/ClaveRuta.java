@@ -0,0 +1,49 @@
+package com.tpi.solicitudes.client;
+
+import java.math.BigDecimal;
+
+/**
+ * Origen y destino redondeados a {@code precision} decimales y guardados como enteros (grados * 10^precision).
+ * Dos consultas con la misma clave comparten la entrada de cache.
+ */
+record ClaveRuta(int origenLat, int origenLng, int destinoLat, int destinoLng) {
+
+    static final int PRECISION_MAXIMA = 6; // 180 * 10^6 todavía entra en un int
+
+    static ClaveRuta de(double origenLat, double origenLng, double destinoLat, double destinoLng, int precision) {
+        double escala = escala(precision);
+        return new ClaveRuta(
+                (int) Math.round(origenLat * escala),
+                (int) Math.round(origenLng * escala),
+                (int) Math.round(destinoLat * escala),
+                (int) Math.round(destinoLng * escala));
+    }
+
+    static double escala(int precision) {
+        if (precision < 0 || precision > PRECISION_MAXIMA) {
+            throw new IllegalArgumentException("La precisión debe estar entre 0 y " + PRECISION_MAXIMA + " decimales");
+        }
+        return Math.pow(10, precision);
+    }
+
+    String origen(int precision) {
+        return coordenada(origenLat, origenLng, precision);
+    }
+
+    String destino(int precision) {
+        return coordenada(destinoLat, destinoLng, precision);
+    }
+
+    long hash() {
+        long h = origenLat * 0x9E3779B97F4A7C15L;
+        h = (h ^ origenLng) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ destinoLat) * 0x94D049BB133111EBL;
+        h = (h ^ destinoLng) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 31);
+    }
+
+    // BigDecimal para no arrastrar errores de redondeo binario a la URL (-31.417, no -31.417000000000002)
+    private static String coordenada(int lat, int lng, int precision) {
+        return BigDecimal.valueOf(lat, precision).toPlainString() + "," + BigDecimal.valueOf(lng, precision).toPlainString();
+    }
+}
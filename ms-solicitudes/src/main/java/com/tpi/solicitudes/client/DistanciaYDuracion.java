@@ -0,0 +1,6 @@
+package com.tpi.solicitudes.client;
+
+/**
+ * Distancia y duración de manejo entre dos puntos, según Google Directions.
+ */
+public record DistanciaYDuracion(double distanciaKm, long duracionMinutos) {}
@@ -0,0 +1,124 @@
+package com.tpi.solicitudes.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Lee {@code routes[0].legs[0].distance.value} y {@code duration.value} de una respuesta de Google Directions
+ * recorriendo tokens con el parser no bloqueante de Jackson: no arma árbol ni mapas, no materializa los
+ * textos que no usa (polilíneas, steps) y deja de parsear en cuanto tiene ambos valores.
+ * Se alimenta por partes a medida que llega el cuerpo; una instancia sirve para una sola respuesta.
+ */
+public final class ExtractorDirections {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final JsonParser parser;
+    private final ByteBufferFeeder feeder;
+    private double metros = Double.NaN;
+    private double segundos = Double.NaN;
+    private String status;
+
+    public ExtractorDirections() {
+        try {
+            this.parser = FACTORY.createNonBlockingByteBufferParser();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Atajo para un cuerpo ya completo en memoria.
+     */
+    public static DistanciaYDuracion extraer(byte[] json) throws IOException {
+        ExtractorDirections extractor = new ExtractorDirections();
+        extractor.alimentar(ByteBuffer.wrap(json));
+        return extractor.terminar();
+    }
+
+    /**
+     * @return true si ya se tienen distancia y duración; el resto del cuerpo puede descartarse
+     */
+    public boolean alimentar(DataBuffer buffer) throws IOException {
+        try (DataBuffer.ByteBufferIterator partes = buffer.readableByteBuffers()) {
+            while (partes.hasNext() && !completo()) {
+                alimentar(partes.next());
+            }
+        }
+        return completo();
+    }
+
+    public boolean alimentar(ByteBuffer bytes) throws IOException {
+        if (completo()) return true;
+        feeder.feedInput(bytes);
+        procesar();
+        return completo();
+    }
+
+    /**
+     * Cierra la entrada y devuelve el resultado.
+     *
+     * @throws IllegalStateException si la respuesta no trae distancia y duración (status distinto de OK, sin rutas)
+     */
+    public DistanciaYDuracion terminar() throws IOException {
+        if (!completo()) {
+            feeder.endOfInput();
+            procesar();
+        }
+        if (!completo()) {
+            if (status != null && !"OK".equalsIgnoreCase(status)) {
+                throw new IllegalStateException("Google Directions respondió con estado: " + status);
+            }
+            throw new IllegalStateException("Sin distancia o duración en routes[0].legs[0] de Google Directions");
+        }
+        return new DistanciaYDuracion(metros / 1000.0, Math.round(segundos / 60.0));
+    }
+
+    private boolean completo() {
+        return !Double.isNaN(metros) && !Double.isNaN(segundos);
+    }
+
+    private void procesar() throws IOException {
+        JsonToken token;
+        while (!completo() && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            if (token.isNumeric()) {
+                if (!"value".equals(parser.currentName())) continue;
+                String campo = campoDeLegInicial(parser.getParsingContext());
+                if ("distance".equals(campo)) {
+                    metros = parser.getDoubleValue();
+                } else if ("duration".equals(campo)) {
+                    segundos = parser.getDoubleValue();
+                }
+            } else if (token == JsonToken.VALUE_STRING && "status".equals(parser.currentName())
+                    && parser.getParsingContext().getParent().inRoot()) {
+                status = parser.getText();
+            }
+        }
+    }
+
+    /**
+     * Para un {@code value} dentro de {@code routes[0].legs[0].<campo>}, devuelve {@code <campo>};
+     * null para cualquier otra ubicación (otras rutas, steps, etc.).
+     */
+    private static String campoDeLegInicial(JsonStreamContext valor) {
+        JsonStreamContext leg = valor.getParent();
+        if (leg == null || !leg.inObject()) return null;
+        JsonStreamContext legs = leg.getParent();
+        if (legs == null || !legs.inArray() || legs.getCurrentIndex() != 0) return null;
+        JsonStreamContext ruta = legs.getParent();
+        if (ruta == null || !"legs".equals(ruta.getCurrentName())) return null;
+        JsonStreamContext rutas = ruta.getParent();
+        if (rutas == null || !rutas.inArray() || rutas.getCurrentIndex() != 0) return null;
+        JsonStreamContext raiz = rutas.getParent();
+        if (raiz == null || !"routes".equals(raiz.getCurrentName()) || !raiz.getParent().inRoot()) return null;
+        return leg.getCurrentName();
+    }
+}
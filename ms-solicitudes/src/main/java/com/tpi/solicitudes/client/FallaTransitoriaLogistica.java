@@ -0,0 +1,27 @@
+package com.tpi.solicitudes.client;
+
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+/**
+ * Errores de ms-logistica que indican un problema del servicio y no del pedido: sin conexión, plazo vencido,
+ * 5xx o 429. Son los que cuentan para el circuit breaker y los únicos que se reintentan; un 404 o un 409
+ * es una respuesta válida y no debe abrir el circuito.
+ * Se referencia por nombre desde application.properties (resilience4j.*.record-failure-predicate).
+ */
+public class FallaTransitoriaLogistica implements Predicate<Throwable> {
+
+    @Override
+    public boolean test(Throwable e) {
+        if (e instanceof WebClientRequestException || e instanceof TimeoutException) {
+            return true;
+        }
+        if (e instanceof WebClientResponseException r) {
+            return r.getStatusCode().is5xxServerError() || r.getStatusCode().value() == 429;
+        }
+        return false;
+    }
+}
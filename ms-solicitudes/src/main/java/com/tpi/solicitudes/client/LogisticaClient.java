@@ -1,28 +1,72 @@
 package com.tpi.solicitudes.client;
 
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.retry.RetryOperator;
+import io.github.resilience4j.reactor.timelimiter.TimeLimiterOperator;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
+/**
+ * Cliente de ms-logistica. Cada operación pasa por su bulkhead (tope de llamadas concurrentes, sin cola) y su
+ * plazo, y todas comparten el circuit breaker {@value #CIRCUITO}: si ms-logistica se degrada se falla rápido
+ * con {@code CallNotPermittedException} en vez de acumular hilos esperando. Solo las operaciones idempotentes
+ * se reintentan, con backoff exponencial y jitter. Configuración en resilience4j.* (application.properties);
+ * el estado de cada componente se publica en /actuator/metrics como resilience4j.*.
+ */
 @Component
 public class LogisticaClient {
 
+    static final String CIRCUITO = "logistica";
+    static final String REINTENTO_IDEMPOTENTE = "logistica-idempotente";
+
     private final WebClient webClient;
+    private final Proteccion consulta;
+    private final Proteccion validacion;
+    private final Proteccion reserva;
+    private final Proteccion liberacion;
 
-    public LogisticaClient(WebClient webClientLogistica) {
+    public LogisticaClient(WebClient webClientLogistica,
+                           CircuitBreakerRegistry circuitBreakers,
+                           BulkheadRegistry bulkheads,
+                           TimeLimiterRegistry timeLimiters,
+                           RetryRegistry reintentos) {
         this.webClient = webClientLogistica;
+        CircuitBreaker circuito = circuitBreakers.circuitBreaker(CIRCUITO);
+        Retry idempotente = reintentos.retry(REINTENTO_IDEMPOTENTE);
+        this.consulta = Proteccion.de("logistica-consulta", circuito, bulkheads, timeLimiters, idempotente);
+        // validar-capacidad es POST pero no modifica nada: se puede reintentar
+        this.validacion = Proteccion.de("logistica-validacion", circuito, bulkheads, timeLimiters, idempotente);
+        this.reserva = Proteccion.de("logistica-reserva", circuito, bulkheads, timeLimiters, null);
+        // Liberar lleva el token de versión: repetirla nunca libera una reserva posterior
+        this.liberacion = Proteccion.de("logistica-liberacion", circuito, bulkheads, timeLimiters, idempotente);
     }
 
     /**
      * Consulta el estado de los camiones (libres/ocupados) en ms-logistica.
      */
     public Mono<Map<String, Object>> obtenerEstadoCamiones() {
-        return webClient.get()
+        return consulta.aplicar(webClient.get()
                 .uri("/api/camiones/estado")
                 .retrieve()
-                .bodyToMono(new org.springframework.core.ParameterizedTypeReference<Map<String, Object>>() {});
+                .bodyToMono(new org.springframework.core.ParameterizedTypeReference<Map<String, Object>>() {}));
     }
 
     /**
@@ -36,21 +80,212 @@ public class LogisticaClient {
                 "volumenContenedor", volumen
         );
 
-    return webClient.post()
+    return validacion.aplicar(webClient.post()
         .uri("/api/camiones/validar-capacidad")
         .bodyValue(request)
         .retrieve()
         .bodyToMono(new org.springframework.core.ParameterizedTypeReference<Map<String, Object>>() {})
-        .map(resp -> resp != null && Boolean.TRUE.equals(resp.get("valido")));
+        .map(resp -> resp != null && Boolean.TRUE.equals(resp.get("valido"))));
+    }
+
+    /**
+     * Valida capacidad de varios camiones en una sola llamada (RF11 en lote).
+     * Devuelve un resultado por ítem, en el mismo orden que la entrada.
+     */
+    public Mono<List<Boolean>> validarCapacidadCamiones(List<ValidacionCapacidad> items) {
+        if (items.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        List<Map<String, Object>> payload = new ArrayList<>(items.size());
+        for (ValidacionCapacidad item : items) {
+            // HashMap admite nulos: ms-logistica responde valido=false para esos ítems
+            Map<String, Object> m = new HashMap<>();
+            m.put("dominio", item.dominio());
+            m.put("pesoContenedor", item.peso());
+            m.put("volumenContenedor", item.volumen());
+            payload.add(m);
+        }
+
+        return validacion.aplicar(webClient.post()
+                .uri("/api/camiones/validar-capacidad/lote")
+                .bodyValue(Map.of("items", payload))
+                .retrieve()
+                .bodyToMono(new org.springframework.core.ParameterizedTypeReference<Map<String, Object>>() {})
+                .map(resp -> {
+                    Object resultadosObj = resp != null ? resp.get("resultados") : null;
+                    List<Boolean> validos = new ArrayList<>(items.size());
+                    if (resultadosObj instanceof List<?> resultados) {
+                        for (Object r : resultados) {
+                            validos.add(r instanceof Map<?, ?> m && Boolean.TRUE.equals(m.get("valido")));
+                        }
+                    }
+                    if (validos.size() != items.size()) {
+                        throw new IllegalStateException("Respuesta de validación en lote incompleta: "
+                                + validos.size() + " de " + items.size());
+                    }
+                    return validos;
+                }));
+    }
+
+    /**
+     * Valida capacidad y reserva el camión en una sola llamada (UPDATE condicional en ms-logistica).
+     * Un rechazo (409) no es error: vuelve con {@code aplicada() == false} y el motivo.
+     */
+    public Mono<ReservaCamion> reservarCamion(String dominio, Double peso, Double volumen) {
+        Map<String, Object> request = Map.of(
+                "pesoContenedor", peso,
+                "volumenContenedor", volumen
+        );
+
+        return reserva.aplicar(webClient.post()
+                .uri("/api/camiones/{dominio}/reservar", dominio)
+                .bodyValue(request)
+                .exchangeToMono(resp -> leerReserva(resp, dominio)));
+    }
+
+    /**
+     * Libera una reserva hecha con {@link #reservarCamion}; {@code versionReserva} es el token que devolvió.
+     */
+    public Mono<ReservaCamion> liberarCamion(String dominio, Long versionReserva) {
+        return liberacion.aplicar(webClient.post()
+                .uri(uri -> uri.path("/api/camiones/{dominio}/liberar").queryParam("version", versionReserva).build(dominio))
+                .exchangeToMono(resp -> leerReserva(resp, dominio)));
+    }
+
+    /**
+     * Reserva varios camiones en una sola llamada: un resultado por ítem y en el mismo orden, con el mismo
+     * criterio que {@link #reservarCamion}. Un dominio inexistente vuelve con motivo NO_ENCONTRADO.
+     */
+    public Mono<List<ReservaCamion>> reservarCamiones(List<ValidacionCapacidad> items) {
+        if (items.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        List<Map<String, Object>> payload = new ArrayList<>(items.size());
+        for (ValidacionCapacidad item : items) {
+            payload.add(Map.of(
+                    "dominio", item.dominio(),
+                    "pesoContenedor", item.peso(),
+                    "volumenContenedor", item.volumen()));
+        }
+        return reserva.aplicar(webClient.post()
+                .uri("/api/camiones/reservar/lote")
+                .bodyValue(Map.of("items", payload))
+                .retrieve()
+                .bodyToMono(new org.springframework.core.ParameterizedTypeReference<Map<String, Object>>() {})
+                .map(resp -> leerReservas(resp, items.size())));
+    }
+
+    /**
+     * Libera varias reservas hechas con {@link #reservarCamion} o {@link #reservarCamiones} en una sola llamada.
+     */
+    public Mono<List<ReservaCamion>> liberarCamiones(List<LiberacionCamion> items) {
+        if (items.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        List<Map<String, Object>> payload = new ArrayList<>(items.size());
+        for (LiberacionCamion item : items) {
+            payload.add(Map.of("dominio", item.dominio(), "versionReserva", item.versionReserva()));
+        }
+        return liberacion.aplicar(webClient.post()
+                .uri("/api/camiones/liberar/lote")
+                .bodyValue(Map.of("items", payload))
+                .retrieve()
+                .bodyToMono(new org.springframework.core.ParameterizedTypeReference<Map<String, Object>>() {})
+                .map(resp -> leerReservas(resp, items.size())));
+    }
+
+    private static List<ReservaCamion> leerReservas(Map<String, Object> resp, int esperados) {
+        List<ReservaCamion> reservas = new ArrayList<>(esperados);
+        if (resp != null && resp.get("resultados") instanceof List<?> resultados) {
+            for (Object r : resultados) {
+                if (r instanceof Map<?, ?> body) reservas.add(aReserva(body));
+            }
+        }
+        if (reservas.size() != esperados) {
+            throw new IllegalStateException("Respuesta de reservas en lote incompleta: " + reservas.size() + " de " + esperados);
+        }
+        return reservas;
+    }
+
+    private static ReservaCamion aReserva(Map<?, ?> body) {
+        return new ReservaCamion(
+                Boolean.TRUE.equals(body.get("reservado")),
+                body.get("versionReserva") instanceof Number n ? n.longValue() : null,
+                (String) body.get("motivo"));
+    }
+
+    private static Mono<ReservaCamion> leerReserva(ClientResponse resp, String dominio) {
+        if (resp.statusCode().value() == 404) {
+            return resp.releaseBody().then(Mono.error(new NoSuchElementException("Camión no encontrado: " + dominio)));
+        }
+        if (!resp.statusCode().is2xxSuccessful() && resp.statusCode().value() != 409) {
+            return resp.createError();
+        }
+        return resp.bodyToMono(new org.springframework.core.ParameterizedTypeReference<Map<String, Object>>() {})
+                .map(LogisticaClient::aReserva);
     }
 
     /**
      * Obtiene los datos de un camión específico por su dominio.
      */
     public Mono<Map<String, Object>> obtenerCamion(String dominio) {
-        return webClient.get()
+        return consulta.aplicar(webClient.get()
                 .uri("/api/camiones/{dominio}", dominio)
                 .retrieve()
-                .bodyToMono(new org.springframework.core.ParameterizedTypeReference<Map<String, Object>>() {});
+                .bodyToMono(new org.springframework.core.ParameterizedTypeReference<Map<String, Object>>() {}));
+    }
+
+    /**
+     * Varios camiones en una sola llamada; el resultado va indexado por dominio y no incluye los inexistentes.
+     */
+    public Mono<Map<String, Map<String, Object>>> obtenerCamiones(Collection<String> dominios) {
+        if (dominios.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return consulta.aplicar(webClient.get()
+                .uri(uri -> uri.path("/api/camiones").queryParam("dominios", String.join(",", dominios)).build())
+                .retrieve()
+                .bodyToMono(new org.springframework.core.ParameterizedTypeReference<List<Map<String, Object>>>() {})
+                .map(camiones -> {
+                    Map<String, Map<String, Object>> porDominio = new HashMap<>(camiones.size() * 2);
+                    for (Map<String, Object> camion : camiones) {
+                        if (camion.get("dominio") instanceof String dominio) porDominio.put(dominio, camion);
+                    }
+                    return porDominio;
+                }));
+    }
+
+    /**
+     * Operadores de resiliencia de una operación, aplicados de adentro hacia afuera: bulkhead, plazo,
+     * circuit breaker y, si corresponde, reintento (cada intento vuelve a pasar por el circuito).
+     */
+    private record Proteccion(Bulkhead bulkhead, TimeLimiter plazo, CircuitBreaker circuito, Retry reintento) {
+
+        static Proteccion de(String nombre, CircuitBreaker circuito, BulkheadRegistry bulkheads,
+                             TimeLimiterRegistry timeLimiters, Retry reintento) {
+            return new Proteccion(bulkheads.bulkhead(nombre), timeLimiters.timeLimiter(nombre), circuito, reintento);
+        }
+
+        <T> Mono<T> aplicar(Mono<T> llamada) {
+            Mono<T> protegida = llamada
+                    .transformDeferred(BulkheadOperator.of(bulkhead))
+                    .transformDeferred(TimeLimiterOperator.of(plazo))
+                    .transformDeferred(CircuitBreakerOperator.of(circuito));
+            return reintento != null ? protegida.transformDeferred(RetryOperator.of(reintento)) : protegida;
+        }
+    }
+
+    public record ValidacionCapacidad(String dominio, Double peso, Double volumen) {}
+
+    public record LiberacionCamion(String dominio, Long versionReserva) {}
+
+    /**
+     * @param motivo null si la reserva/liberación se aplicó; si no, NO_DISPONIBLE, CAPACIDAD_INSUFICIENTE,
+     *               VERSION_DESACTUALIZADA o NO_ENCONTRADO (solo en lote)
+     */
+    public record ReservaCamion(boolean reservado, Long versionReserva, String motivo) {
+        public boolean aplicada() {
+            return motivo == null;
+        }
     }
 }
@@ -1,9 +1,15 @@
 package com.tpi.solicitudes.config;
 
+import io.netty.channel.ChannelOption;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @Configuration
 public class WebClientConfig {
@@ -11,10 +17,41 @@ public class WebClientConfig {
     @Value("${ms-logistica.url:http://localhost:8081}")
     private String msLogisticaUrl;
 
+    /**
+     * Pool propio y acotado para ms-logistica: si se lo llena, los pedidos esperan a lo sumo
+     * {@code espera-conexion} en una cola también acotada en vez de abrir conexiones sin límite.
+     * Las métricas del pool se publican como reactor.netty.connection.provider.*{name=logistica}.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider conexionesLogistica(
+            @Value("${ms-logistica.http.max-conexiones:50}") int maxConexiones,
+            @Value("${ms-logistica.http.max-en-espera:200}") int maxEnEspera,
+            @Value("${ms-logistica.http.espera-conexion:500ms}") Duration esperaConexion,
+            @Value("${ms-logistica.http.max-inactividad:30s}") Duration maxInactividad) {
+        return ConnectionProvider.builder("logistica")
+                .maxConnections(maxConexiones)
+                .pendingAcquireMaxCount(maxEnEspera)
+                .pendingAcquireTimeout(esperaConexion)
+                .maxIdleTime(maxInactividad)
+                .evictInBackground(maxInactividad)
+                .metrics(true)
+                .build();
+    }
+
+    /**
+     * Los plazos por operación los aplica LogisticaClient; {@code timeout-respuesta} es solo el tope de red.
+     */
     @Bean
-    public WebClient webClientLogistica(WebClient.Builder builder) {
+    public WebClient webClientLogistica(WebClient.Builder builder,
+                                        ConnectionProvider conexionesLogistica,
+                                        @Value("${ms-logistica.http.timeout-conexion:1s}") Duration timeoutConexion,
+                                        @Value("${ms-logistica.http.timeout-respuesta:5s}") Duration timeoutRespuesta) {
+        HttpClient httpClient = HttpClient.create(conexionesLogistica)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) timeoutConexion.toMillis())
+                .responseTimeout(timeoutRespuesta);
         return builder
                 .baseUrl(msLogisticaUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .build();
     }
 }
@@ -0,0 +1,50 @@
+package com.tpi.solicitudes.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Posición y odómetro reportados por el camión durante un tramo iniciado. Tabla de solo inserción: las filas
+ * las escribe {@code TelemetriaService} en lotes JDBC, nunca Hibernate, y no se actualizan ni se borran.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+// Sin FK a tramos: cada fila del lote pagaría la verificación; el tramo se valida al recibir el ping
+@Table(name = "telemetria_tramos", indexes = {
+        @Index(name = "idx_telemetria_tramo_fecha", columnList = "id_tramo, fecha_hora")
+})
+public class PingTramo {
+
+    @Id
+    // IDENTITY no afecta los lotes: los INSERT van por JDBC sin pedir las claves generadas
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_ping")
+    private Long idPing;
+
+    @Column(name = "id_tramo", nullable = false)
+    private Long idTramo;
+
+    // Momento de la lectura en el camión
+    @Column(name = "fecha_hora", nullable = false)
+    private LocalDateTime fechaHora;
+
+    @Column(nullable = false)
+    private Double latitud;
+
+    @Column(nullable = false)
+    private Double longitud;
+
+    private Double odometro;
+
+    // Momento en que llegó a ms-solicitudes; la diferencia con fechaHora es la demora del camión
+    @Column(name = "recibido", nullable = false)
+    private LocalDateTime recibido;
+}
@@ -17,7 +17,8 @@ import java.time.LocalDateTime;
 public class Solicitud {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "solicitudes_seq")
+    @SequenceGenerator(name = "solicitudes_seq", sequenceName = "solicitudes_seq", allocationSize = 50)
     @Column(name = "nro_solicitud")
     private Long nroSolicitud;
 
@@ -27,19 +28,32 @@ public class Solicitud {
     @Column(name = "id_cliente")
     private Long idCliente;
 
+    // Se fija al crear; después lo deriva SolicitudRepository.sumarTotales
     @Enumerated(EnumType.STRING)
-    @Column(name = "estado")
+    @Column(name = "estado", updatable = false)
     private EstadoSolicitud estado;
 
     @Column(name = "costo_estimado")
     private Double costoEstimado;
 
-    @Column(name = "costo_final")
+    // costoFinal, tiempoReal y los contadores se mantienen por delta cada vez que cambia un tramo
+    // (TotalesSolicitudes). updatable = false: el UPDATE de la entidad no los reescribe con lo que leyó,
+    // que pisaría los deltas confirmados entre medio
+    @Column(name = "costo_final", updatable = false)
     private Double costoFinal;
 
-    @Column(name = "tiempo_real")
+    @Column(name = "tiempo_real", updatable = false)
     private Double tiempoReal;
 
+    @Column(name = "tramos_pendientes", nullable = false, updatable = false, columnDefinition = "integer default 0")
+    private int tramosPendientes;
+
+    @Column(name = "tramos_iniciados", nullable = false, updatable = false, columnDefinition = "integer default 0")
+    private int tramosIniciados;
+
+    @Column(name = "tramos_finalizados", nullable = false, updatable = false, columnDefinition = "integer default 0")
+    private int tramosFinalizados;
+
     @Column(name = "fecha_creacion")
     private LocalDateTime fechaCreacion;
 
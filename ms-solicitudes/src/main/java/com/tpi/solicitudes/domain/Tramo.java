@@ -16,11 +16,18 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Builder
 @Entity
-@Table(name = "tramos")
+// Índices del listado GET /api/tramos: filtros por igualdad primero y el orden keyset (inicio, id) al final
+@Table(name = "tramos", indexes = {
+        @Index(name = "idx_tramos_estado_dominio_inicio", columnList = "estado, dominio_camion, fecha_hora_inicio_real, id_tramo"),
+        @Index(name = "idx_tramos_dominio_inicio", columnList = "dominio_camion, fecha_hora_inicio_real, id_tramo"),
+        @Index(name = "idx_tramos_inicio", columnList = "fecha_hora_inicio_real, id_tramo")
+})
 public class Tramo {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Secuencia pooled (de a 50, igual que hibernate.jdbc.batch_size): con IDENTITY Hibernate no agrupa los INSERT
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tramos_seq")
+    @SequenceGenerator(name = "tramos_seq", sequenceName = "tramos_seq", allocationSize = 50)
     @Column(name = "id_tramo")
     private Long idTramo;
 
@@ -41,6 +48,10 @@ public class Tramo {
     @Column(name = "dominio_camion", length = 20)
     private String dominioCamion;
 
+    // Token de la reserva del camión en ms-logistica; se usa para liberarlo al finalizar o reasignar
+    @Column(name = "version_reserva_camion")
+    private Long versionReservaCamion;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "estado", length = 30)
     private EstadoTramo estado;
@@ -71,4 +82,8 @@ public class Tramo {
 
     @Column(name = "fecha_hora_fin_estimada")
     private LocalDateTime fechaHoraFinEstimada;
+
+    // true mientras costo y fin estimados salgan del estimador local y no de Google Directions
+    @Column(name = "estimacion_aproximada")
+    private Boolean estimacionAproximada;
 }
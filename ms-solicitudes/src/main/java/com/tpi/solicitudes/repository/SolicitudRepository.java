@@ -1,9 +1,121 @@
 package com.tpi.solicitudes.repository;
 
+import com.tpi.solicitudes.domain.EstadoSolicitud;
 import com.tpi.solicitudes.domain.Solicitud;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface SolicitudRepository extends JpaRepository<Solicitud, Long> {
+
+    /**
+     * Suma un delta a los totales de la solicitud y deriva el estado de los contadores resultantes, en un
+     * solo UPDATE y sin leer los tramos. CANCELADA no se toca; sin tramos iniciados ni finalizados queda el
+     * estado que tenga (BORRADOR/PROGRAMADA), o vuelve a PROGRAMADA si ya había pasado a EN_TRANSITO/ENTREGADA.
+     * costoFinal y tiempoReal quedan null hasta que haya algún tramo finalizado.
+     */
+    @Modifying
+    @Query("""
+            update Solicitud s set
+                s.tramosPendientes = s.tramosPendientes + :pendientes,
+                s.tramosIniciados = s.tramosIniciados + :iniciados,
+                s.tramosFinalizados = s.tramosFinalizados + :finalizados,
+                s.costoFinal = case when s.tramosFinalizados + :finalizados > 0
+                    then coalesce(s.costoFinal, 0) + :costo else null end,
+                s.tiempoReal = case when s.tramosFinalizados + :finalizados > 0
+                    then coalesce(s.tiempoReal, 0) + :tiempo else null end,
+                s.estado = case
+                    when s.estado = com.tpi.solicitudes.domain.EstadoSolicitud.CANCELADA then s.estado
+                    when s.tramosFinalizados + :finalizados > 0 and s.tramosPendientes + :pendientes = 0
+                        and s.tramosIniciados + :iniciados = 0 then com.tpi.solicitudes.domain.EstadoSolicitud.ENTREGADA
+                    when s.tramosIniciados + :iniciados > 0 or s.tramosFinalizados + :finalizados > 0
+                        then com.tpi.solicitudes.domain.EstadoSolicitud.EN_TRANSITO
+                    when s.estado in (com.tpi.solicitudes.domain.EstadoSolicitud.EN_TRANSITO,
+                                      com.tpi.solicitudes.domain.EstadoSolicitud.ENTREGADA)
+                        then com.tpi.solicitudes.domain.EstadoSolicitud.PROGRAMADA
+                    else s.estado end,
+                s.fechaActualizacion = local datetime
+            where s.nroSolicitud = :nro""")
+    int sumarTotales(@Param("nro") Long nroSolicitud,
+                     @Param("pendientes") int pendientes,
+                     @Param("iniciados") int iniciados,
+                     @Param("finalizados") int finalizados,
+                     @Param("costo") double costo,
+                     @Param("tiempo") double tiempo);
+
+    /**
+     * costoEstimado = suma de los costos aproximados de sus tramos, calculada en la base.
+     */
+    @Modifying
+    @Query("update Solicitud s set s.costoEstimado = " +
+            "(select sum(t.costoAproximado) from Tramo t where t.solicitud.nroSolicitud = s.nroSolicitud), " +
+            "s.fechaActualizacion = local datetime where s.nroSolicitud = :nroSolicitud")
+    int recalcularCostoEstimado(@Param("nroSolicitud") Long nroSolicitud);
+
+    @Query("select s.costoEstimado from Solicitud s where s.nroSolicitud = :nroSolicitud")
+    Optional<Double> costoEstimado(@Param("nroSolicitud") Long nroSolicitud);
+
+    /**
+     * La solicitud y sus tramos en una sola consulta: una fila [Solicitud, Tramo] por tramo, ordenadas por
+     * idTramo, o una sola fila [Solicitud, null] si no tiene tramos. Vacía si la solicitud no existe.
+     */
+    @Query("""
+            select s, t from Solicitud s left join Tramo t on t.solicitud = s
+            where s.nroSolicitud = :nro
+            order by t.idTramo""")
+    List<Object[]> buscarConTramos(@Param("nro") Long nroSolicitud);
+
+    /**
+     * Cambio de estado manual, solo si la solicitud sigue en {@code actual}. El estado no es actualizable
+     * desde la entidad; se limpia el contexto para que la lectura siguiente traiga el nuevo.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Solicitud s set s.estado = :nuevo, s.fechaActualizacion = local datetime " +
+            "where s.nroSolicitud = :nro and s.estado = :actual")
+    int cambiarEstado(@Param("nro") Long nroSolicitud,
+                      @Param("actual") EstadoSolicitud actual,
+                      @Param("nuevo") EstadoSolicitud nuevo);
+
+    @Query(value = "SELECT nro_solicitud FROM solicitudes WHERE nro_solicitud = :nro FOR UPDATE", nativeQuery = true)
+    Optional<Long> bloquear(@Param("nro") Long nroSolicitud);
+
+    /**
+     * Diferencia entre los totales calculados desde los tramos y los guardados, para hasta {@code limite}
+     * solicitudes posteriores a {@code desde} (keyset por nro_solicitud). Devuelve todas las filas de la
+     * página, con o sin diferencia, para poder seguir desde la última.
+     */
+    @Query(value = """
+            SELECT s.nro_solicitud AS nroSolicitud,
+                   COUNT(t.id_tramo) FILTER (WHERE t.estado IS NULL OR t.estado NOT IN ('INICIADO', 'FINALIZADO'))
+                       - s.tramos_pendientes AS pendientes,
+                   COUNT(t.id_tramo) FILTER (WHERE t.estado = 'INICIADO') - s.tramos_iniciados AS iniciados,
+                   COUNT(t.id_tramo) FILTER (WHERE t.estado = 'FINALIZADO') - s.tramos_finalizados AS finalizados,
+                   COALESCE(SUM(t.costo_real) FILTER (WHERE t.estado = 'FINALIZADO'), 0)
+                       - COALESCE(s.costo_final, 0) AS costo,
+                   COALESCE(SUM(t.tiempo_real) FILTER (WHERE t.estado = 'FINALIZADO'), 0)
+                       - COALESCE(s.tiempo_real, 0) AS tiempo
+            FROM (SELECT * FROM solicitudes WHERE nro_solicitud > :desde ORDER BY nro_solicitud LIMIT :limite) s
+            LEFT JOIN tramos t ON t.nro_solicitud = s.nro_solicitud
+            GROUP BY s.nro_solicitud, s.tramos_pendientes, s.tramos_iniciados, s.tramos_finalizados,
+                     s.costo_final, s.tiempo_real
+            ORDER BY s.nro_solicitud""", nativeQuery = true)
+    List<DiferenciaTotales> diferenciasDesde(@Param("desde") long desde, @Param("limite") int limite);
+
+    /**
+     * Totales reales menos guardados de una solicitud; todo en cero si no hay desvío.
+     */
+    interface DiferenciaTotales {
+        Long getNroSolicitud();
+        Long getPendientes();
+        Long getIniciados();
+        Long getFinalizados();
+        Double getCosto();
+        Double getTiempo();
+    }
 }
@@ -0,0 +1,57 @@
+package com.tpi.solicitudes.repository;
+
+import com.tpi.solicitudes.domain.EstadoTramo;
+import com.tpi.solicitudes.domain.Tramo;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Predicados del listado de tramos. Cada filtro se agrega solo si viene informado: un rango de fechas ausente
+ * no filtra, así que los tramos que todavía no arrancaron (fecha de inicio null) siguen apareciendo.
+ */
+public final class TramoFiltros {
+
+    private TramoFiltros() {}
+
+    public static Specification<Tramo> de(EstadoTramo estado, String dominioCamion,
+                                          LocalDateTime desde, LocalDateTime hasta) {
+        Specification<Tramo> filtro = Specification.where(null);
+        if (estado != null) {
+            filtro = filtro.and((t, q, cb) -> cb.equal(t.get("estado"), estado));
+        }
+        if (dominioCamion != null && !dominioCamion.isBlank()) {
+            filtro = filtro.and((t, q, cb) -> cb.equal(t.get("dominioCamion"), dominioCamion));
+        }
+        if (desde != null) {
+            filtro = filtro.and((t, q, cb) -> cb.greaterThanOrEqualTo(t.get("fechaHoraInicioReal"), desde));
+        }
+        if (hasta != null) {
+            filtro = filtro.and((t, q, cb) -> cb.lessThanOrEqualTo(t.get("fechaHoraInicioReal"), hasta));
+        }
+        return filtro;
+    }
+
+    /**
+     * Tramos con inicio posterior a la clave (inicio, idTramo), o sin clave para la primera página.
+     * Se escribe como {@code inicio >= x AND (inicio > x OR id > y)} para que el primer término sea un rango
+     * sobre el índice (fecha_hora_inicio_real, id_tramo).
+     */
+    public static Specification<Tramo> iniciadosDespuesDe(LocalDateTime inicio, Long idTramo) {
+        if (inicio == null) {
+            return (t, q, cb) -> cb.isNotNull(t.get("fechaHoraInicioReal"));
+        }
+        return (t, q, cb) -> cb.and(
+                cb.greaterThanOrEqualTo(t.get("fechaHoraInicioReal"), inicio),
+                cb.or(cb.greaterThan(t.get("fechaHoraInicioReal"), inicio),
+                        cb.greaterThan(t.get("idTramo"), idTramo)));
+    }
+
+    /**
+     * Tramos sin inicio real, por idTramo posterior a {@code idTramo} (null para empezar desde el primero).
+     */
+    public static Specification<Tramo> sinIniciarDespuesDe(Long idTramo) {
+        Specification<Tramo> sinInicio = (t, q, cb) -> cb.isNull(t.get("fechaHoraInicioReal"));
+        return idTramo == null ? sinInicio : sinInicio.and((t, q, cb) -> cb.greaterThan(t.get("idTramo"), idTramo));
+    }
+}
@@ -1,25 +1,82 @@
 package com.tpi.solicitudes.repository;
 
 import com.tpi.solicitudes.domain.Tramo;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface TramoRepository extends JpaRepository<Tramo, Long> {
-    List<Tramo> findBySolicitud_Id(Long solicitudId); // legacy
-    Page<Tramo> findBySolicitud_Id(Long solicitudId, Pageable pageable);
-
-    Page<Tramo> findByEstado(String estado, Pageable pageable);
-    Page<Tramo> findByDominioCamion(String dominioCamion, Pageable pageable);
-    Page<Tramo> findByEstadoAndDominioCamion(String estado, String dominioCamion, Pageable pageable);
-
-    // Rango por fechaHoraInicioReal
-    Page<Tramo> findByFechaHoraInicioRealBetween(java.time.LocalDateTime desde, java.time.LocalDateTime hasta, Pageable pageable);
-    Page<Tramo> findByEstadoAndFechaHoraInicioRealBetween(String estado, java.time.LocalDateTime desde, java.time.LocalDateTime hasta, Pageable pageable);
-    Page<Tramo> findByDominioCamionAndFechaHoraInicioRealBetween(String dominioCamion, java.time.LocalDateTime desde, java.time.LocalDateTime hasta, Pageable pageable);
-    Page<Tramo> findByEstadoAndDominioCamionAndFechaHoraInicioRealBetween(String estado, String dominioCamion, java.time.LocalDateTime desde, java.time.LocalDateTime hasta, Pageable pageable);
+public interface TramoRepository extends JpaRepository<Tramo, Long>, JpaSpecificationExecutor<Tramo> {
+    // Solicitud no tiene atributo "id": la ruta derivada es solicitud.nroSolicitud
+    @Query("select t from Tramo t where t.solicitud.nroSolicitud = :solicitudId")
+    List<Tramo> findBySolicitud_Id(@Param("solicitudId") Long solicitudId); // legacy
+    @Query("select t from Tramo t where t.solicitud.nroSolicitud = :solicitudId")
+    Page<Tramo> findBySolicitud_Id(@Param("solicitudId") Long solicitudId, Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select t from Tramo t where t.idTramo = :idTramo")
+    Optional<Tramo> buscarParaActualizar(@Param("idTramo") Long idTramo);
+
+    @Query("select t.idTramo from Tramo t where t.idTramo in :ids and t.estado = com.tpi.solicitudes.domain.EstadoTramo.INICIADO")
+    List<Long> idsIniciados(@Param("ids") Collection<Long> ids);
+
+    List<Tramo> findBySolicitud_NroSolicitudOrderByIdTramoAsc(Long nroSolicitud);
+
+    @Query("select t from Tramo t where t.idTramo in :ids")
+    List<Tramo> buscarPorIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Asigna el camión solo si el tramo sigue con el camión y la reserva que se leyeron: si otra asignación
+     * se adelantó, no se pisa y devuelve 0. Un tramo ya iniciado conserva su estado (los totales de la
+     * solicitud lo cuentan según su estado y este camino no los actualiza); uno finalizado no se asigna, porque
+     * nada liberaría la reserva.
+     */
+    @Modifying
+    @Query("""
+            update Tramo t set t.dominioCamion = :dominio, t.versionReservaCamion = :version,
+                t.estado = case when t.estado = com.tpi.solicitudes.domain.EstadoTramo.INICIADO
+                    then t.estado else com.tpi.solicitudes.domain.EstadoTramo.ASIGNADO end
+            where t.idTramo = :id
+                and t.estado <> com.tpi.solicitudes.domain.EstadoTramo.FINALIZADO
+                and (t.dominioCamion = :dominioAnterior or (t.dominioCamion is null and :dominioAnterior is null))
+                and (t.versionReservaCamion = :reservaAnterior or (t.versionReservaCamion is null and :reservaAnterior is null))""")
+    int asignarCamion(@Param("id") Long idTramo,
+                      @Param("dominio") String dominio,
+                      @Param("version") Long versionReserva,
+                      @Param("dominioAnterior") String dominioAnterior,
+                      @Param("reservaAnterior") Long reservaAnterior);
+
+    /**
+     * Solo las columnas de la estimación: no pisa estado, camión ni datos reales cambiados en paralelo.
+     */
+    @Modifying
+    @Query("""
+            update Tramo t set t.costoAproximado = :costo, t.fechaHoraInicioEstimada = :inicio,
+                t.fechaHoraFinEstimada = :fin, t.estimacionAproximada = :aproximada
+            where t.idTramo = :id""")
+    int guardarEstimacion(@Param("id") Long idTramo,
+                          @Param("costo") Double costo,
+                          @Param("inicio") LocalDateTime inicio,
+                          @Param("fin") LocalDateTime fin,
+                          @Param("aproximada") Boolean aproximada);
+
+    /**
+     * Reemplaza una estimación aproximada por la de Google; no pisa el tramo si entretanto se recalculó.
+     */
+    @Modifying
+    @Query("update Tramo t set t.costoAproximado = :costo, t.fechaHoraFinEstimada = :fin, t.estimacionAproximada = false " +
+            "where t.idTramo = :id and t.estimacionAproximada = true")
+    int refinarEstimacion(@Param("id") Long idTramo, @Param("costo") Double costo, @Param("fin") LocalDateTime fin);
 }
@@ -0,0 +1,96 @@
+package com.tpi.solicitudes.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cola circular acotada sin locks, de varios productores y un solo consumidor (esquema de Vyukov: cada
+ * posición lleva una secuencia que dice de qué vuelta es y si ya está publicada o libre).
+ * <p>
+ * Un productor reserva n posiciones seguidas con un único CAS sobre la cola, así un lote entra entero o no
+ * entra: como el consumidor libera en orden, si la última de las n está libre lo están todas. El consumidor
+ * avanza la cabeza sin CAS porque es el único que la escribe.
+ */
+final class AnilloAcotado<T> {
+
+    private final Object[] elementos;
+    private final AtomicLongArray secuencias;
+    private final int mascara;
+    private final AtomicLong cola = new AtomicLong();
+    // Solo la escribe el consumidor; volatile para que ocupados() la lea desde otros hilos
+    private volatile long cabeza;
+
+    /**
+     * @param capacidad se redondea a la potencia de dos siguiente
+     */
+    AnilloAcotado(int capacidad) {
+        if (capacidad < 1 || capacidad > 1 << 30) {
+            throw new IllegalArgumentException("Capacidad fuera de rango: " + capacidad);
+        }
+        int tamano = Integer.highestOneBit(capacidad) == capacidad ? capacidad : Integer.highestOneBit(capacidad) << 1;
+        elementos = new Object[tamano];
+        secuencias = new AtomicLongArray(tamano);
+        for (int i = 0; i < tamano; i++) {
+            secuencias.set(i, i);
+        }
+        mascara = tamano - 1;
+    }
+
+    int capacidad() {
+        return elementos.length;
+    }
+
+    long ocupados() {
+        return Math.max(0, cola.get() - cabeza);
+    }
+
+    /**
+     * Encola todos los elementos o ninguno. Falso si no hay lugar para el lote completo.
+     */
+    boolean ofrecer(List<? extends T> lote) {
+        int n = lote.size();
+        if (n == 0) return true;
+        if (n > elementos.length) return false;
+        long inicio;
+        while (true) {
+            inicio = cola.get();
+            long ultima = inicio + n - 1;
+            long secuencia = secuencias.get((int) ultima & mascara);
+            if (secuencia < ultima) return false; // el consumidor todavía no la liberó: lleno
+            if (secuencia == ultima && cola.compareAndSet(inicio, inicio + n)) break;
+            // Otro productor reservó antes; se reintenta con la cola nueva
+        }
+        for (int i = 0; i < n; i++) {
+            long posicion = inicio + i;
+            int indice = (int) posicion & mascara;
+            elementos[indice] = lote.get(i);
+            // La escritura del elemento queda visible para quien lea esta secuencia
+            secuencias.lazySet(indice, posicion + 1);
+        }
+        return true;
+    }
+
+    /**
+     * Pasa a {@code destino} hasta {@code max} elementos publicados, en orden. Solo desde el hilo consumidor.
+     *
+     * @return cantidad de elementos pasados
+     */
+    @SuppressWarnings("unchecked")
+    int drenar(List<? super T> destino, int max) {
+        long posicion = cabeza;
+        int n = 0;
+        while (n < max) {
+            int indice = (int) posicion & mascara;
+            // Reservada pero todavía sin escribir: se corta acá para no saltear el orden
+            if (secuencias.get(indice) != posicion + 1) break;
+            destino.add((T) elementos[indice]);
+            elementos[indice] = null;
+            secuencias.lazySet(indice, posicion + elementos.length);
+            posicion++;
+            n++;
+        }
+        cabeza = posicion;
+        return n;
+    }
+}
@@ -0,0 +1,48 @@
+package com.tpi.solicitudes.service;
+
+import com.tpi.solicitudes.domain.EstadoTramo;
+import com.tpi.solicitudes.domain.Tramo;
+
+/**
+ * Lo que un tramo suma a los totales de su solicitud: uno en el contador de su estado (PENDIENTE y ASIGNADO
+ * cuentan como pendientes) y, si está finalizado, su costo y tiempo reales. Un cambio de tramo se aplica
+ * como la diferencia entre su aporte nuevo y el anterior.
+ */
+record AporteTramo(int pendientes, int iniciados, int finalizados, double costo, double tiempo) {
+
+    static final AporteTramo NINGUNO = new AporteTramo(0, 0, 0, 0, 0);
+
+    static AporteTramo de(Tramo tramo) {
+        EstadoTramo estado = tramo.getEstado();
+        if (estado == EstadoTramo.FINALIZADO) {
+            return new AporteTramo(0, 0, 1, valor(tramo.getCostoReal()), valor(tramo.getTiempoReal()));
+        }
+        if (estado == EstadoTramo.INICIADO) {
+            return new AporteTramo(0, 1, 0, 0, 0);
+        }
+        return new AporteTramo(1, 0, 0, 0, 0);
+    }
+
+    AporteTramo mas(AporteTramo otro) {
+        return new AporteTramo(pendientes + otro.pendientes, iniciados + otro.iniciados,
+                finalizados + otro.finalizados, costo + otro.costo, tiempo + otro.tiempo);
+    }
+
+    AporteTramo menos(AporteTramo otro) {
+        return new AporteTramo(pendientes - otro.pendientes, iniciados - otro.iniciados,
+                finalizados - otro.finalizados, costo - otro.costo, tiempo - otro.tiempo);
+    }
+
+    /**
+     * true si no cambia nada; los importes se comparan con {@code tolerancia} porque las sumas de doubles
+     * hechas en otro orden no dan exactamente igual.
+     */
+    boolean esNulo(double tolerancia) {
+        return pendientes == 0 && iniciados == 0 && finalizados == 0
+                && Math.abs(costo) <= tolerancia && Math.abs(tiempo) <= tolerancia;
+    }
+
+    private static double valor(Double d) {
+        return d != null ? d : 0;
+    }
+}
@@ -0,0 +1,11 @@
+package com.tpi.solicitudes.service;
+
+/**
+ * La operación no corresponde al estado actual del recurso (por ejemplo, asignar camión a un tramo finalizado).
+ */
+public class EstadoInvalidoException extends RuntimeException {
+
+    public EstadoInvalidoException(String mensaje) {
+        super(mensaje);
+    }
+}
@@ -0,0 +1,44 @@
+package com.tpi.solicitudes.service;
+
+import com.tpi.solicitudes.client.DistanciaYDuracion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Estimación de ruta sin red: distancia haversine multiplicada por un factor de desvío vial
+ * y duración a velocidad promedio constante. Se usa cuando Google Directions no responde a tiempo.
+ */
+@Component
+public class EstimadorRutaLocal {
+
+    private static final double RADIO_TIERRA_KM = 6371.0088;
+
+    private final double factorDesvio;
+    private final double velocidadPromedioKmh;
+
+    public EstimadorRutaLocal(@Value("${estimacion.factor-desvio:1.3}") double factorDesvio,
+                              @Value("${estimacion.velocidad-promedio-kmh:60}") double velocidadPromedioKmh) {
+        if (factorDesvio < 1.0) {
+            throw new IllegalArgumentException("estimacion.factor-desvio debe ser mayor o igual a 1");
+        }
+        if (velocidadPromedioKmh <= 0) {
+            throw new IllegalArgumentException("estimacion.velocidad-promedio-kmh debe ser positiva");
+        }
+        this.factorDesvio = factorDesvio;
+        this.velocidadPromedioKmh = velocidadPromedioKmh;
+    }
+
+    public DistanciaYDuracion estimar(double origenLat, double origenLng, double destinoLat, double destinoLng) {
+        double km = haversineKm(origenLat, origenLng, destinoLat, destinoLng) * factorDesvio;
+        long minutos = Math.round(km / velocidadPromedioKmh * 60.0);
+        return new DistanciaYDuracion(km, minutos);
+    }
+
+    static double haversineKm(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * RADIO_TIERRA_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+}
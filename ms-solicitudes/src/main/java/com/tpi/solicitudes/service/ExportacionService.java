@@ -0,0 +1,156 @@
+package com.tpi.solicitudes.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tpi.solicitudes.domain.EstadoSolicitud;
+import com.tpi.solicitudes.domain.EstadoTramo;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exportación completa de tramos y solicitudes en NDJSON o CSV, sin paginar y con memoria acotada.
+ * <p>
+ * La consulta corre en una transacción de solo lectura (autocommit apagado) con fetch size
+ * {@code exportacion.fetch-size}: así el driver de PostgreSQL abre un cursor en el servidor y trae las filas
+ * de a tandas en lugar de cargar el resultado entero. Cada fila se escribe a la salida apenas se lee, sin
+ * pasar por entidades ni por el contexto de persistencia. Si el cliente lee lento, la escritura bloquea y
+ * no se piden más tandas hasta que drene: la contrapresión llega hasta la base sin buffers intermedios.
+ * <p>
+ * Cada exportación retiene una conexión del pool mientras dura, por eso van por el bulkhead
+ * {@code exportacion}: sin cola, la que no entra falla con 503 en vez de dejar sin conexiones al resto.
+ */
+@Service
+public class ExportacionService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportacionService.class);
+
+    private static final String COLUMNAS_TRAMOS = """
+            id_tramo AS "idTramo", nro_solicitud AS "nroSolicitud", origen, destino,
+            dominio_camion AS "dominioCamion", estado, tipo,
+            fecha_hora_inicio_estimada AS "fechaHoraInicioEstimada", fecha_hora_fin_estimada AS "fechaHoraFinEstimada",
+            fecha_hora_inicio_real AS "fechaHoraInicioReal", fecha_hora_fin_real AS "fechaHoraFinReal",
+            odometro_final AS "odometroFinal", costo_aproximado AS "costoAproximado",
+            estimacion_aproximada AS "estimacionAproximada", costo_real AS "costoReal", tiempo_real AS "tiempoReal"
+            """;
+
+    private static final String COLUMNAS_SOLICITUDES = """
+            nro_solicitud AS "nroSolicitud", id_contenedor AS "idContenedor", id_cliente AS "idCliente", estado,
+            costo_estimado AS "costoEstimado", costo_final AS "costoFinal", tiempo_real AS "tiempoReal",
+            tramos_pendientes AS "tramosPendientes", tramos_iniciados AS "tramosIniciados",
+            tramos_finalizados AS "tramosFinalizados",
+            fecha_creacion AS "fechaCreacion", fecha_actualizacion AS "fechaActualizacion"
+            """;
+
+    /**
+     * Destino de la exportación. Se abre recién al llegar la primera tanda de filas, de modo que un error
+     * anterior (bulkhead lleno, consulta inválida) todavía puede responderse como error y no como archivo.
+     */
+    @FunctionalInterface
+    public interface SalidaExportacion {
+        OutputStream abrir() throws IOException;
+    }
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate lectura;
+    private final ObjectMapper objectMapper;
+    private final Bulkhead bulkhead;
+
+    public ExportacionService(DataSource dataSource,
+                              PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper,
+                              BulkheadRegistry bulkheads,
+                              @Value("${exportacion.fetch-size:1000}") int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("exportacion.fetch-size debe ser positivo");
+        }
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.jdbc.setFetchSize(fetchSize);
+        this.lectura = new TransactionTemplate(transactionManager);
+        this.lectura.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.bulkhead = bulkheads.bulkhead("exportacion");
+    }
+
+    /**
+     * Tramos con el estado dado y fechaHoraInicioReal en [desde, hasta), por idTramo. Filtros opcionales.
+     */
+    public void exportarTramos(EstadoTramo estado, LocalDateTime desde, LocalDateTime hasta,
+                               FormatoExportacion formato, SalidaExportacion salida) {
+        exportar("SELECT " + COLUMNAS_TRAMOS + " FROM tramos", "fecha_hora_inicio_real", "id_tramo",
+                estado, desde, hasta, formato, salida);
+    }
+
+    /**
+     * Solicitudes con el estado dado y fechaCreacion en [desde, hasta), por nroSolicitud. Filtros opcionales.
+     */
+    public void exportarSolicitudes(EstadoSolicitud estado, LocalDateTime desde, LocalDateTime hasta,
+                                    FormatoExportacion formato, SalidaExportacion salida) {
+        exportar("SELECT " + COLUMNAS_SOLICITUDES + " FROM solicitudes", "fecha_creacion", "nro_solicitud",
+                estado, desde, hasta, formato, salida);
+    }
+
+    private void exportar(String select, String columnaFecha, String orden, Enum<?> estado,
+                          LocalDateTime desde, LocalDateTime hasta,
+                          FormatoExportacion formato, SalidaExportacion salida) {
+        if (desde != null && hasta != null && !desde.isBefore(hasta)) {
+            throw new IllegalArgumentException("'desde' debe ser anterior a 'hasta'");
+        }
+        StringBuilder sql = new StringBuilder(select);
+        List<Object> parametros = new ArrayList<>(3);
+        String union = " WHERE ";
+        if (estado != null) {
+            sql.append(union).append("estado = ?");
+            parametros.add(estado.name());
+            union = " AND ";
+        }
+        if (desde != null) {
+            sql.append(union).append(columnaFecha).append(" >= ?");
+            parametros.add(desde);
+            union = " AND ";
+        }
+        if (hasta != null) {
+            sql.append(union).append(columnaFecha).append(" < ?");
+            parametros.add(hasta);
+        }
+        sql.append(" ORDER BY ").append(orden);
+
+        bulkhead.acquirePermission();
+        try {
+            Long filas = lectura.execute(status -> jdbc.query(sql.toString(), rs -> {
+                try {
+                    FormatoExportacion.Escritor escritor = formato.escritor(salida.abrir(), objectMapper);
+                    escritor.encabezado(rs.getMetaData());
+                    long escritas = 0;
+                    while (rs.next()) {
+                        escritor.fila(rs);
+                        escritas++;
+                    }
+                    escritor.terminar();
+                    return escritas;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, parametros.toArray()));
+            log.debug("Exportación completa: {} filas", filas);
+        } catch (UncheckedIOException e) {
+            // El cliente cortó la descarga: se cierra el cursor y se libera la conexión, no hay a quién responder
+            log.debug("Exportación interrumpida por el cliente: {}", e.getCause().getMessage());
+        } finally {
+            bulkhead.onComplete();
+        }
+    }
+}
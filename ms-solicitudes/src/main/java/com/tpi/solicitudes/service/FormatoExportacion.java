@@ -0,0 +1,160 @@
+package com.tpi.solicitudes.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Formatos de exportación. Cada escritor toma los nombres de campo de las etiquetas de columna de la consulta
+ * y escribe fila por fila directo a la salida, sin armar objetos intermedios.
+ */
+public enum FormatoExportacion {
+
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String tipoContenido;
+    private final String extension;
+
+    FormatoExportacion(String tipoContenido, String extension) {
+        this.tipoContenido = tipoContenido;
+        this.extension = extension;
+    }
+
+    public String tipoContenido() {
+        return tipoContenido;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    public static FormatoExportacion de(String nombre) {
+        try {
+            return valueOf(nombre.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Formato de exportación no soportado: " + nombre + " (ndjson o csv)");
+        }
+    }
+
+    Escritor escritor(OutputStream salida, ObjectMapper objectMapper) throws IOException {
+        return switch (this) {
+            case NDJSON -> {
+                JsonGenerator json = objectMapper.getFactory().createGenerator(salida);
+                // Sin el espacio que Jackson pone entre valores raíz: cada línea empieza con '{'
+                json.setRootValueSeparator(null);
+                yield new Ndjson(json);
+            }
+            case CSV -> new Csv(new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8)));
+        };
+    }
+
+    interface Escritor {
+        void encabezado(ResultSetMetaData columnas) throws IOException, SQLException;
+
+        void fila(ResultSet fila) throws IOException, SQLException;
+
+        void terminar() throws IOException;
+    }
+
+    private static Object valor(ResultSet fila, int columna, int tipo) throws SQLException {
+        if (tipo != Types.TIMESTAMP) return fila.getObject(columna);
+        // El driver devuelve java.sql.Timestamp; se exporta en ISO sin zona, igual que las fechas de la API
+        LocalDateTime fecha = fila.getObject(columna, LocalDateTime.class);
+        return fecha == null ? null : DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(fecha);
+    }
+
+    private static final class Ndjson implements Escritor {
+
+        private final JsonGenerator json;
+        private String[] nombres;
+        private int[] tipos;
+
+        Ndjson(JsonGenerator json) {
+            this.json = json;
+        }
+
+        @Override
+        public void encabezado(ResultSetMetaData columnas) throws SQLException {
+            nombres = new String[columnas.getColumnCount()];
+            tipos = new int[nombres.length];
+            for (int i = 0; i < nombres.length; i++) {
+                nombres[i] = columnas.getColumnLabel(i + 1);
+                tipos[i] = columnas.getColumnType(i + 1);
+            }
+        }
+
+        @Override
+        public void fila(ResultSet fila) throws IOException, SQLException {
+            json.writeStartObject();
+            for (int i = 0; i < nombres.length; i++) {
+                json.writeFieldName(nombres[i]);
+                json.writeObject(valor(fila, i + 1, tipos[i]));
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        @Override
+        public void terminar() throws IOException {
+            json.flush();
+        }
+    }
+
+    private static final class Csv implements Escritor {
+
+        private final Writer csv;
+        private int[] tipos;
+
+        Csv(Writer csv) {
+            this.csv = csv;
+        }
+
+        @Override
+        public void encabezado(ResultSetMetaData columnas) throws IOException, SQLException {
+            tipos = new int[columnas.getColumnCount()];
+            for (int i = 0; i < tipos.length; i++) {
+                tipos[i] = columnas.getColumnType(i + 1);
+                if (i > 0) csv.write(',');
+                csv.write(columnas.getColumnLabel(i + 1));
+            }
+            csv.write("\r\n");
+        }
+
+        @Override
+        public void fila(ResultSet fila) throws IOException, SQLException {
+            for (int i = 0; i < tipos.length; i++) {
+                if (i > 0) csv.write(',');
+                Object valor = valor(fila, i + 1, tipos[i]);
+                if (valor != null) csv.write(escapar(valor.toString()));
+            }
+            csv.write("\r\n");
+        }
+
+        @Override
+        public void terminar() throws IOException {
+            csv.flush();
+        }
+
+        // RFC 4180: entre comillas si tiene separador, comillas o saltos de línea
+        private static String escapar(String valor) {
+            if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+                return valor;
+            }
+            return '"' + valor.replace("\"", "\"\"") + '"';
+        }
+    }
+}
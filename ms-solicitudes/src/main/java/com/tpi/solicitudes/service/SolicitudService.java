@@ -1,21 +1,38 @@
 package com.tpi.solicitudes.service;
 
+import com.tpi.solicitudes.domain.EstadoSolicitud;
+import com.tpi.solicitudes.domain.EstadoTramo;
 import com.tpi.solicitudes.domain.Solicitud;
+import com.tpi.solicitudes.domain.Tramo;
 import com.tpi.solicitudes.repository.SolicitudRepository;
+import com.tpi.solicitudes.repository.TramoRepository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.NoSuchElementException;
 
 @Service
 public class SolicitudService {
 
+    // Cambios de estado que se piden a mano; EN_TRANSITO y ENTREGADA los derivan los tramos
+    private static final Map<EstadoSolicitud, Set<EstadoSolicitud>> TRANSICIONES = new EnumMap<>(Map.of(
+            EstadoSolicitud.BORRADOR, EnumSet.of(EstadoSolicitud.PROGRAMADA, EstadoSolicitud.CANCELADA),
+            EstadoSolicitud.PROGRAMADA, EnumSet.of(EstadoSolicitud.BORRADOR, EstadoSolicitud.CANCELADA)));
+
     private final SolicitudRepository repository;
+    private final TramoRepository tramoRepository;
 
-    public SolicitudService(SolicitudRepository repository) {
+    public SolicitudService(SolicitudRepository repository, TramoRepository tramoRepository) {
         this.repository = repository;
+        this.tramoRepository = tramoRepository;
     }
 
     public List<Solicitud> findAll() { // legacy
@@ -30,26 +47,110 @@ public class SolicitudService {
         return repository.findById(id).orElseThrow(() -> new NoSuchElementException("Solicitud no encontrada: " + id));
     }
 
+    /**
+     * Solicitud con todos sus tramos, leída con un único SELECT (sin COUNT de paginado ni cargas lazy).
+     */
+    @Transactional(readOnly = true)
+    public SolicitudConTramos detalle(Long id) {
+        List<Object[]> filas = repository.buscarConTramos(id);
+        if (filas.isEmpty()) {
+            throw new NoSuchElementException("Solicitud no encontrada: " + id);
+        }
+        List<Tramo> tramos = new ArrayList<>(filas.size());
+        for (Object[] fila : filas) {
+            if (fila[1] != null) tramos.add((Tramo) fila[1]);
+        }
+        return new SolicitudConTramos((Solicitud) filas.get(0)[0], tramos);
+    }
+
     public Solicitud create(Solicitud s) {
-        s.setNroSolicitud(null); // Generado por BD
+        s.setNroSolicitud(null); // Generado por secuencia
+        asignarTotales(s, AporteTramo.NINGUNO);
         return repository.save(s);
     }
 
+    /**
+     * Alta de la solicitud con todos sus tramos en una transacción. Los ids salen de las secuencias pooled
+     * (sin ir a la base por fila), así que todo se escribe en el flush final: un INSERT de la solicitud, con
+     * los totales ya calculados, y los tramos en lotes de hibernate.jdbc.batch_size.
+     */
+    @Transactional
+    public SolicitudConTramos crearConTramos(Solicitud s, List<Tramo> tramos) {
+        s.setNroSolicitud(null);
+        AporteTramo totales = AporteTramo.NINGUNO;
+        for (Tramo tramo : tramos) {
+            if (tramo.getEstado() == null) {
+                tramo.setEstado(EstadoTramo.PENDIENTE);
+            }
+            totales = totales.mas(AporteTramo.de(tramo));
+        }
+        // Antes del save: los contadores no son actualizables, un cambio posterior no llegaría a la base
+        asignarTotales(s, totales);
+        Solicitud guardada = repository.save(s);
+        for (Tramo tramo : tramos) {
+            tramo.setIdTramo(null);
+            tramo.setSolicitud(guardada);
+        }
+        return new SolicitudConTramos(guardada, tramoRepository.saveAll(tramos));
+    }
+
+    /**
+     * Modifica los datos propios de la solicitud. Los totales y el estado son de los tramos
+     * (TotalesSolicitudes) y no se toman del body. La fila se bloquea antes de leerla: un cambio de tramo en
+     * curso termina primero y la respuesta trae sus totales.
+     */
+    @Transactional
     public Solicitud update(Long id, Solicitud s) {
+        if (repository.bloquear(id).isEmpty()) {
+            throw new NoSuchElementException("Solicitud no encontrada: " + id);
+        }
         Solicitud actual = findById(id);
         actual.setIdContenedor(s.getIdContenedor());
         actual.setIdCliente(s.getIdCliente());
-        actual.setEstado(s.getEstado());
         actual.setCostoEstimado(s.getCostoEstimado());
-        actual.setCostoFinal(s.getCostoFinal());
-        actual.setTiempoReal(s.getTiempoReal());
         return repository.save(actual);
     }
 
+    /**
+     * Cambio de estado manual: BORRADOR ↔ PROGRAMADA y cancelación desde cualquiera de los dos. Una vez que
+     * arrancó algún tramo el estado lo llevan los tramos (TotalesSolicitudes) y CANCELADA es final. Pedir el
+     * estado que ya tiene no cambia nada.
+     */
+    @Transactional
+    public Solicitud cambiarEstado(Long id, EstadoSolicitud nuevo) {
+        if (nuevo == EstadoSolicitud.EN_TRANSITO || nuevo == EstadoSolicitud.ENTREGADA) {
+            throw new IllegalArgumentException("El estado " + nuevo + " lo derivan los tramos: no se puede pedir");
+        }
+        if (repository.bloquear(id).isEmpty()) {
+            throw new NoSuchElementException("Solicitud no encontrada: " + id);
+        }
+        Solicitud solicitud = findById(id);
+        EstadoSolicitud actual = solicitud.getEstado();
+        if (actual == nuevo) {
+            return solicitud;
+        }
+        if (!TRANSICIONES.getOrDefault(actual, Set.of()).contains(nuevo)) {
+            throw new EstadoInvalidoException(
+                    "La solicitud " + id + " está " + actual + ": no puede pasar a " + nuevo);
+        }
+        repository.cambiarEstado(id, actual, nuevo);
+        return findById(id);
+    }
+
     public void delete(Long id) {
         if (!repository.existsById(id)) {
             throw new NoSuchElementException("Solicitud no encontrada: " + id);
         }
         repository.deleteById(id);
     }
+
+    private static void asignarTotales(Solicitud s, AporteTramo totales) {
+        s.setTramosPendientes(totales.pendientes());
+        s.setTramosIniciados(totales.iniciados());
+        s.setTramosFinalizados(totales.finalizados());
+        s.setCostoFinal(totales.finalizados() > 0 ? totales.costo() : null);
+        s.setTiempoReal(totales.finalizados() > 0 ? totales.tiempo() : null);
+    }
+
+    public record SolicitudConTramos(Solicitud solicitud, List<Tramo> tramos) {}
 }
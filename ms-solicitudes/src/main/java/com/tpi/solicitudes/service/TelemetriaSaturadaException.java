@@ -0,0 +1,11 @@
+package com.tpi.solicitudes.service;
+
+/**
+ * El anillo de telemetría no tiene lugar para el lote: la base no da abasto. El cliente debe reenviarlo más tarde.
+ */
+public class TelemetriaSaturadaException extends RuntimeException {
+
+    public TelemetriaSaturadaException(int capacidad) {
+        super("Telemetría saturada: el anillo de " + capacidad + " pings está lleno; reintentar más tarde");
+    }
+}
@@ -0,0 +1,282 @@
+package com.tpi.solicitudes.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tpi.solicitudes.domain.PingTramo;
+import com.tpi.solicitudes.repository.TramoRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Telemetría de tramos iniciados (posición y odómetro) con escritura diferida: {@link #recibir} valida los
+ * pings, los deja en un {@link AnilloAcotado} y responde sin tocar la base; un único hilo escritor los saca
+ * de a lotes y los inserta en {@code telemetria_tramos} con un batch JDBC por lote (con reWriteBatchedInserts,
+ * un INSERT multi-fila).
+ * <p>
+ * Con el anillo lleno (la base no da abasto o no responde) decide {@code telemetria.politica-lleno}:
+ * <ul>
+ *     <li>{@code RECHAZAR}: el lote no se acepta y el cliente recibe 503 con Retry-After para reenviarlo.</li>
+ *     <li>{@code ESPERAR}: la petición espera lugar hasta {@code telemetria.espera-max}; después, como RECHAZAR.</li>
+ *     <li>{@code DESCARTAR}: el lote se descarta y la respuesta lo informa en {@code descartados}; el cliente no reintenta.</li>
+ * </ul>
+ * Lo que está en el anillo al caerse el proceso se pierde: la telemetría no justifica escribir antes de responder.
+ * Al detenerse normalmente se escribe todo lo pendiente.
+ */
+@Service
+public class TelemetriaService {
+
+    private static final Logger log = LoggerFactory.getLogger(TelemetriaService.class);
+
+    static final String INSERT = "INSERT INTO telemetria_tramos (id_tramo, fecha_hora, latitud, longitud, odometro, recibido) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final long ESPERA_ESCRITOR_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long REINTENTO_MAX_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    public enum PoliticaLleno { RECHAZAR, ESPERAR, DESCARTAR }
+
+    /**
+     * Resultado de una recepción: aceptados quedaron para escribirse; descartados se perdieron por anillo
+     * lleno (política DESCARTAR); noIniciados son de tramos inexistentes o que no están INICIADO.
+     */
+    public record Recepcion(int aceptados, int descartados, List<Long> noIniciados) {}
+
+    private final TramoRepository tramoRepository;
+    private final JdbcTemplate jdbc;
+    private final AnilloAcotado<PingTramo> anillo;
+    private final PoliticaLleno politica;
+    private final long esperaMaxNanos;
+    private final int loteMax;
+    private final long intervaloNanos;
+    // Solo tramos iniciados: un tramo recién iniciado no espera a que venza un negativo cacheado
+    private final Cache<Long, Boolean> iniciados;
+
+    private final Counter aceptados;
+    private final Counter descartados;
+    private final Counter rechazados;
+    private final Counter noIniciados;
+    private final Counter escritos;
+    private final Counter perdidos;
+    private final Counter erroresEscritura;
+    private final DistributionSummary tamanoLote;
+    private final Timer escritura;
+
+    private final Thread escritor;
+    private volatile boolean corriendo = true;
+
+    public TelemetriaService(TramoRepository tramoRepository,
+                             DataSource dataSource,
+                             MeterRegistry registry,
+                             @Value("${telemetria.buffer.capacidad:65536}") int capacidad,
+                             @Value("${telemetria.politica-lleno:RECHAZAR}") PoliticaLleno politica,
+                             @Value("${telemetria.espera-max:50ms}") Duration esperaMax,
+                             @Value("${telemetria.lote-max:2000}") int loteMax,
+                             @Value("${telemetria.intervalo-max:200ms}") Duration intervaloMax,
+                             @Value("${telemetria.tramos-iniciados.ttl:30s}") Duration ttlIniciados) {
+        if (loteMax < 1) {
+            throw new IllegalArgumentException("telemetria.lote-max debe ser positivo");
+        }
+        this.tramoRepository = tramoRepository;
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.anillo = new AnilloAcotado<>(capacidad);
+        this.politica = politica;
+        this.esperaMaxNanos = esperaMax.toNanos();
+        this.loteMax = loteMax;
+        this.intervaloNanos = intervaloMax.toNanos();
+        this.iniciados = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(ttlIniciados)
+                .build();
+
+        aceptados = pings(registry, "aceptado");
+        descartados = pings(registry, "descartado");
+        rechazados = pings(registry, "rechazado");
+        noIniciados = pings(registry, "no-iniciado");
+        escritos = pings(registry, "escrito");
+        perdidos = pings(registry, "perdido");
+        erroresEscritura = Counter.builder("solicitudes.telemetria.escritura.errores")
+                .description("Lotes cuyo INSERT falló; se reintentan mientras el servicio esté en marcha")
+                .register(registry);
+        tamanoLote = DistributionSummary.builder("solicitudes.telemetria.lote.tamano")
+                .description("Pings por INSERT en lote")
+                .register(registry);
+        escritura = Timer.builder("solicitudes.telemetria.escritura")
+                .description("Duración de cada INSERT en lote")
+                .register(registry);
+        Gauge.builder("solicitudes.telemetria.buffer.ocupados", anillo, AnilloAcotado::ocupados)
+                .description("Pings recibidos que todavía no se escribieron")
+                .register(registry);
+        Gauge.builder("solicitudes.telemetria.buffer.capacidad", anillo, AnilloAcotado::capacidad)
+                .register(registry);
+
+        escritor = Thread.ofPlatform().name("telemetria-escritor").daemon().unstarted(this::escribirMientrasCorra);
+    }
+
+    @PostConstruct
+    void iniciar() {
+        escritor.start();
+    }
+
+    /**
+     * Escribe lo que quede en el anillo y detiene el escritor. Tomcat ya dejó de aceptar peticiones.
+     */
+    @PreDestroy
+    void detener() throws InterruptedException {
+        corriendo = false;
+        LockSupport.unpark(escritor);
+        escritor.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * Encola los pings de tramos iniciados, todos o ninguno según la política de anillo lleno. Los de tramos
+     * no iniciados se devuelven en {@link Recepcion#noIniciados()} sin encolarse.
+     *
+     * @throws TelemetriaSaturadaException si el anillo no tiene lugar y la política es RECHAZAR o ESPERAR
+     */
+    public Recepcion recibir(List<PingTramo> pings) {
+        Set<Long> validos = tramosIniciados(pings);
+        LocalDateTime recibido = LocalDateTime.now();
+        List<PingTramo> lote = new ArrayList<>(pings.size());
+        Set<Long> tramosNoIniciados = new LinkedHashSet<>();
+        for (PingTramo ping : pings) {
+            if (validos.contains(ping.getIdTramo())) {
+                ping.setRecibido(recibido);
+                lote.add(ping);
+            } else {
+                tramosNoIniciados.add(ping.getIdTramo());
+            }
+        }
+        noIniciados.increment(pings.size() - lote.size());
+        List<Long> rechazadosPorEstado = List.copyOf(tramosNoIniciados);
+
+        if (!encolar(lote)) {
+            if (politica == PoliticaLleno.DESCARTAR) {
+                descartados.increment(lote.size());
+                return new Recepcion(0, lote.size(), rechazadosPorEstado);
+            }
+            rechazados.increment(lote.size());
+            throw new TelemetriaSaturadaException(anillo.capacidad());
+        }
+        aceptados.increment(lote.size());
+        return new Recepcion(lote.size(), 0, rechazadosPorEstado);
+    }
+
+    /**
+     * Saca el tramo del cache de iniciados: sus pings siguientes se validan contra la base en vez de
+     * aceptarse hasta que venza el TTL. Llamar después del commit que lo saca de INICIADO; antes, un ping
+     * concurrente todavía lo lee iniciado y lo vuelve a cachear.
+     */
+    public void olvidarTramo(Long idTramo) {
+        iniciados.invalidate(idTramo);
+    }
+
+    private boolean encolar(List<PingTramo> lote) {
+        if (anillo.ofrecer(lote)) return true;
+        if (politica != PoliticaLleno.ESPERAR) return false;
+        long limite = System.nanoTime() + esperaMaxNanos;
+        do {
+            LockSupport.parkNanos(ESPERA_ESCRITOR_NANOS);
+            if (anillo.ofrecer(lote)) return true;
+        } while (System.nanoTime() < limite);
+        return false;
+    }
+
+    private Set<Long> tramosIniciados(List<PingTramo> pings) {
+        Set<Long> ids = new HashSet<>();
+        for (PingTramo ping : pings) {
+            ids.add(ping.getIdTramo());
+        }
+        // Los que no vuelven de la consulta no entran al cache: se consultan de nuevo en el próximo ping
+        Map<Long, Boolean> encontrados = iniciados.getAll(ids, faltantes -> {
+            Map<Long, Boolean> cargados = new HashMap<>();
+            tramoRepository.idsIniciados(List.copyOf(faltantes)).forEach(id -> cargados.put(id, Boolean.TRUE));
+            return cargados;
+        });
+        return encontrados.keySet();
+    }
+
+    private void escribirMientrasCorra() {
+        List<PingTramo> lote = new ArrayList<>(loteMax);
+        long primero = 0;
+        while (true) {
+            boolean detenido = !corriendo;
+            if (anillo.drenar(lote, loteMax - lote.size()) > 0 && primero == 0) {
+                primero = System.nanoTime();
+            }
+            if (!lote.isEmpty() && (lote.size() >= loteMax || detenido || System.nanoTime() - primero >= intervaloNanos)) {
+                escribir(lote);
+                lote.clear();
+                primero = 0;
+            } else if (detenido) {
+                return; // ya se leyó lo último que pudo encolarse
+            } else {
+                LockSupport.parkNanos(ESPERA_ESCRITOR_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Inserta el lote reintentando con espera creciente mientras el servicio siga en marcha: entretanto el
+     * anillo se llena y la política de lleno frena a los clientes. Al detenerse se hace un último intento.
+     */
+    private void escribir(List<PingTramo> lote) {
+        long espera = TimeUnit.MILLISECONDS.toNanos(100);
+        while (true) {
+            long inicio = System.nanoTime();
+            try {
+                jdbc.batchUpdate(INSERT, lote, lote.size(), (ps, ping) -> {
+                    ps.setLong(1, ping.getIdTramo());
+                    ps.setObject(2, ping.getFechaHora());
+                    ps.setDouble(3, ping.getLatitud());
+                    ps.setDouble(4, ping.getLongitud());
+                    ps.setObject(5, ping.getOdometro());
+                    ps.setObject(6, ping.getRecibido());
+                });
+                escritura.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+                tamanoLote.record(lote.size());
+                escritos.increment(lote.size());
+                return;
+            } catch (RuntimeException e) {
+                erroresEscritura.increment();
+                if (!corriendo) {
+                    perdidos.increment(lote.size());
+                    log.error("Telemetría: se pierden {} pings al detenerse sin poder escribirlos", lote.size(), e);
+                    return;
+                }
+                log.warn("Telemetría: falló el INSERT de {} pings, reintento en {} ms", lote.size(),
+                        TimeUnit.NANOSECONDS.toMillis(espera), e);
+                LockSupport.parkNanos(espera);
+                espera = Math.min(espera * 2, REINTENTO_MAX_NANOS);
+            }
+        }
+    }
+
+    private static Counter pings(MeterRegistry registry, String resultado) {
+        return Counter.builder("solicitudes.telemetria.pings")
+                .description("Pings de telemetría por resultado: aceptado/descartado/rechazado/no-iniciado al recibir, escrito/perdido al escribir")
+                .tag("resultado", resultado)
+                .register(registry);
+    }
+}
@@ -0,0 +1,119 @@
+package com.tpi.solicitudes.service;
+
+import com.tpi.solicitudes.repository.SolicitudRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Totales de cada solicitud (contadores de tramos pendientes/iniciados/finalizados, costoFinal, tiempoReal)
+ * y su estado derivado, mantenidos por delta: cada cambio de tramo suma la diferencia entre su aporte nuevo
+ * y el anterior con un UPDATE de la fila de la solicitud, sin recorrer sus tramos. El UPDATE bloquea la fila
+ * hasta el commit, así que los cambios concurrentes sobre una misma solicitud se aplican de a uno.
+ * <p>
+ * Lo que escriba en tramos por fuera de estos caminos (SQL a mano, un proceso caído a mitad de camino) deja
+ * los totales desviados; {@link #verificar()} los recalcula periódicamente y corrige las diferencias.
+ */
+@Component
+public class TotalesSolicitudes {
+
+    private static final Logger log = LoggerFactory.getLogger(TotalesSolicitudes.class);
+
+    // Medio centavo: por debajo es redondeo de sumar doubles en otro orden, no desvío
+    private static final double TOLERANCIA = 0.005;
+
+    private final SolicitudRepository solicitudRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int lote;
+    private final Counter desvios;
+
+    public TotalesSolicitudes(SolicitudRepository solicitudRepository,
+                              TransactionTemplate transactionTemplate,
+                              MeterRegistry registry,
+                              @Value("${solicitudes.totales.verificacion-lote:500}") int lote) {
+        if (lote < 1) {
+            throw new IllegalArgumentException("solicitudes.totales.verificacion-lote debe ser positivo");
+        }
+        this.solicitudRepository = solicitudRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.lote = lote;
+        this.desvios = Counter.builder("solicitudes.totales.desvios")
+                .description("Solicitudes cuyos totales no coincidían con sus tramos y fueron corregidas")
+                .register(registry);
+    }
+
+    /**
+     * Aplica el cambio de un tramo de {@code antes} a {@code despues}. Debe llamarse dentro de la misma
+     * transacción que escribe el tramo.
+     */
+    void registrarCambio(Long nroSolicitud, AporteTramo antes, AporteTramo despues) {
+        AporteTramo delta = despues.menos(antes);
+        if (delta.esNulo(0)) return;
+        sumar(nroSolicitud, delta);
+    }
+
+    /**
+     * Recorre las solicitudes por páginas de {@code solicitudes.totales.verificacion-lote}, comparando los
+     * totales guardados con un GROUP BY sobre sus tramos. Cada desvío se vuelve a comprobar con la fila de la
+     * solicitud bloqueada (la diferencia pudo venir de un cambio que estaba en curso) y se corrige sumando la
+     * diferencia con el mismo UPDATE que usan los cambios de tramo, así el estado se deriva igual.
+     *
+     * @return cantidad de solicitudes corregidas
+     */
+    @Scheduled(fixedDelayString = "${solicitudes.totales.verificacion-ms:3600000}",
+            initialDelayString = "${solicitudes.totales.verificacion-ms:3600000}")
+    public int verificar() {
+        int corregidas = 0;
+        long desde = 0;
+        List<SolicitudRepository.DiferenciaTotales> pagina;
+        do {
+            pagina = solicitudRepository.diferenciasDesde(desde, lote);
+            for (SolicitudRepository.DiferenciaTotales diferencia : pagina) {
+                if (!aAporte(diferencia).esNulo(TOLERANCIA) && corregir(diferencia.getNroSolicitud())) {
+                    corregidas++;
+                }
+            }
+            if (!pagina.isEmpty()) {
+                desde = pagina.get(pagina.size() - 1).getNroSolicitud();
+            }
+        } while (pagina.size() == lote);
+        if (corregidas > 0) {
+            log.warn("Totales de solicitudes desviados: {} corregidas", corregidas);
+        }
+        return corregidas;
+    }
+
+    private boolean corregir(Long nroSolicitud) {
+        Boolean corregida = transactionTemplate.execute(status -> {
+            if (solicitudRepository.bloquear(nroSolicitud).isEmpty()) return false;
+            List<SolicitudRepository.DiferenciaTotales> actual = solicitudRepository.diferenciasDesde(nroSolicitud - 1, 1);
+            AporteTramo delta = aAporte(actual.get(0));
+            if (delta.esNulo(TOLERANCIA)) return false;
+            log.warn("Solicitud {}: totales desviados de sus tramos en {}; corrigiendo", nroSolicitud, delta);
+            sumar(nroSolicitud, delta);
+            return true;
+        });
+        if (Boolean.TRUE.equals(corregida)) {
+            desvios.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private void sumar(Long nroSolicitud, AporteTramo delta) {
+        solicitudRepository.sumarTotales(nroSolicitud, delta.pendientes(), delta.iniciados(), delta.finalizados(),
+                delta.costo(), delta.tiempo());
+    }
+
+    private static AporteTramo aAporte(SolicitudRepository.DiferenciaTotales d) {
+        return new AporteTramo(d.getPendientes().intValue(), d.getIniciados().intValue(), d.getFinalizados().intValue(),
+                d.getCosto(), d.getTiempo());
+    }
+}
@@ -0,0 +1,11 @@
+package com.tpi.solicitudes.service;
+
+/**
+ * Telemetría de un tramo que no existe o no está INICIADO: el camión no debería estar reportando.
+ */
+public class TramoNoIniciadoException extends RuntimeException {
+
+    public TramoNoIniciadoException(Long idTramo) {
+        super("El tramo " + idTramo + " no existe o no está iniciado");
+    }
+}
@@ -5,35 +5,85 @@ import com.tpi.solicitudes.domain.Solicitud;
 import com.tpi.solicitudes.domain.Tramo;
 import com.tpi.solicitudes.repository.SolicitudRepository;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import com.tpi.solicitudes.repository.TramoFiltros;
 import com.tpi.solicitudes.repository.TramoRepository;
+import com.tpi.solicitudes.client.CargadorCamiones;
 import com.tpi.solicitudes.client.LogisticaClient;
+import com.tpi.solicitudes.client.DistanciaYDuracion;
 import com.tpi.solicitudes.client.GoogleMapsClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class TramoService {
 
+    private static final Logger log = LoggerFactory.getLogger(TramoService.class);
+    // Motivo de las asignaciones válidas de un lote todoONada que no se aplicó por otra que falló
+    private static final String LOTE_NO_APLICADO = "No se aplicó: otra asignación del lote falló";
+
     private final TramoRepository tramoRepository;
     private final SolicitudRepository solicitudRepository;
     private final LogisticaClient logisticaClient;
+    private final CargadorCamiones cargadorCamiones;
     private final GoogleMapsClient googleMapsClient;
+    private final EstimadorRutaLocal estimadorRutaLocal;
+    private final Duration presupuestoGoogle;
+    private final int paralelismoEstimacion;
+    private final TransactionTemplate transactionTemplate;
+    private final TotalesSolicitudes totalesSolicitudes;
+    private final TelemetriaService telemetriaService;
 
     public TramoService(TramoRepository tramoRepository,
                         SolicitudRepository solicitudRepository,
                         LogisticaClient logisticaClient,
-                        GoogleMapsClient googleMapsClient) {
+                        CargadorCamiones cargadorCamiones,
+                        GoogleMapsClient googleMapsClient,
+                        EstimadorRutaLocal estimadorRutaLocal,
+                        @Value("${estimacion.presupuesto-google:800ms}") Duration presupuestoGoogle,
+                        @Value("${estimacion.paralelismo:8}") int paralelismoEstimacion,
+                        TransactionTemplate transactionTemplate,
+                        TotalesSolicitudes totalesSolicitudes,
+                        TelemetriaService telemetriaService) {
         this.tramoRepository = tramoRepository;
         this.solicitudRepository = solicitudRepository;
         this.logisticaClient = logisticaClient;
+        this.cargadorCamiones = cargadorCamiones;
         this.googleMapsClient = googleMapsClient;
+        this.estimadorRutaLocal = estimadorRutaLocal;
+        this.presupuestoGoogle = presupuestoGoogle;
+        this.paralelismoEstimacion = paralelismoEstimacion;
+        this.transactionTemplate = transactionTemplate;
+        this.totalesSolicitudes = totalesSolicitudes;
+        this.telemetriaService = telemetriaService;
     }
 
     public List<Tramo> listarPorSolicitud(Long solicitudId) { // legacy
@@ -44,77 +94,370 @@ public class TramoService {
         return tramoRepository.findBySolicitud_Id(solicitudId, pageable);
     }
 
-    public Page<Tramo> listar(Pageable pageable, String estado, String dominioCamion,
+    public Page<Tramo> listar(Pageable pageable, EstadoTramo estado, String dominioCamion,
                                LocalDateTime desde, LocalDateTime hasta) {
-        boolean hasEstado = estado != null && !estado.isBlank();
-        boolean hasDominio = dominioCamion != null && !dominioCamion.isBlank();
+        return tramoRepository.findAll(TramoFiltros.de(estado, dominioCamion, desde, hasta), pageable);
+    }
 
-        // Normalizar rango si no viene alguno de los extremos
-        LocalDateTime from = (desde != null) ? desde : LocalDateTime.of(1970, 1, 1, 0, 0);
-        LocalDateTime to = (hasta != null) ? hasta : LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    /**
+     * Listado por cursor (keyset) ordenado por (fechaHoraInicioReal, idTramo), con los tramos sin iniciar al
+     * final por idTramo. La clave es la del último tramo devuelto: {@code idDespuesDe} null pide la primera
+     * página e {@code inicioDespuesDe} null con id informado indica que ya se está en los tramos sin iniciar.
+     * Cada tramo de la búsqueda es un rango sobre el índice, sin OR con IS NULL que obligue a recorrer la tabla.
+     */
+    public Slice<Tramo> listarDesde(LocalDateTime inicioDespuesDe, Long idDespuesDe, int size,
+                                    EstadoTramo estado, String dominioCamion,
+                                    LocalDateTime desde, LocalDateTime hasta) {
+        Specification<Tramo> filtro = TramoFiltros.de(estado, dominioCamion, desde, hasta);
+        boolean enSinIniciar = idDespuesDe != null && inicioDespuesDe == null;
 
-        if (hasEstado && hasDominio) {
-            return tramoRepository.findByEstadoAndDominioCamionAndFechaHoraInicioRealBetween(estado, dominioCamion, from, to, pageable);
-        } else if (hasEstado) {
-            return tramoRepository.findByEstadoAndFechaHoraInicioRealBetween(estado, from, to, pageable);
-        } else if (hasDominio) {
-            return tramoRepository.findByDominioCamionAndFechaHoraInicioRealBetween(dominioCamion, from, to, pageable);
-        } else {
-            return tramoRepository.findByFechaHoraInicioRealBetween(from, to, pageable);
+        // Se pide uno de más para saber si hay página siguiente sin hacer COUNT
+        List<Tramo> filas = new ArrayList<>();
+        if (!enSinIniciar) {
+            filas.addAll(buscarHasta(filtro.and(TramoFiltros.iniciadosDespuesDe(inicioDespuesDe, idDespuesDe)),
+                    Sort.by("fechaHoraInicioReal", "idTramo"), size + 1));
+        }
+        // Con rango de fechas los tramos sin iniciar quedan afuera: no hace falta consultarlos
+        boolean incluyeSinIniciar = desde == null && hasta == null;
+        if (filas.size() <= size && incluyeSinIniciar) {
+            filas.addAll(buscarHasta(filtro.and(TramoFiltros.sinIniciarDespuesDe(enSinIniciar ? idDespuesDe : null)),
+                    Sort.by("idTramo"), size + 1 - filas.size()));
         }
+        boolean hayMas = filas.size() > size;
+        return new SliceImpl<>(hayMas ? filas.subList(0, size) : filas, PageRequest.of(0, size), hayMas);
+    }
+
+    private List<Tramo> buscarHasta(Specification<Tramo> filtro, Sort orden, int limite) {
+        return tramoRepository.findBy(filtro, q -> q.sortBy(orden).limit(limite).all());
     }
 
     public Tramo obtener(Long id) {
         return tramoRepository.findById(id).orElseThrow(() -> new NoSuchElementException("Tramo no encontrado: " + id));
     }
 
+    // JPA bloquea el hilo que lo llama: los caminos reactivos lo ejecutan en boundedElastic
+    private static <T> Mono<T> bloqueante(Callable<T> llamada) {
+        return Mono.fromCallable(llamada).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Transactional
     public Tramo crear(Long solicitudId, Tramo tramo) {
         Solicitud solicitud = solicitudRepository.findById(solicitudId)
                 .orElseThrow(() -> new NoSuchElementException("Solicitud no encontrada: " + solicitudId));
         tramo.setIdTramo(null);
         tramo.setSolicitud(solicitud);
-        return tramoRepository.save(tramo);
+        Tramo guardado = tramoRepository.save(tramo);
+        totalesSolicitudes.registrarCambio(solicitudId, AporteTramo.NINGUNO, AporteTramo.de(guardado));
+        return guardado;
     }
 
+    /**
+     * El camión no se cambia por acá: va con su reserva en ms-logistica y eso lo maneja {@link #asignarACamion}.
+     */
+    @Transactional
     public Tramo actualizar(Long id, Tramo tramo) {
-        Tramo actual = obtener(id);
+        Tramo actual = obtenerParaActualizar(id);
+        if (tramo.getDominioCamion() != null && !tramo.getDominioCamion().equals(actual.getDominioCamion())) {
+            throw new IllegalArgumentException("El camión del tramo se cambia con PUT /api/tramos/" + id + "/asignar-camion");
+        }
+        AporteTramo antes = AporteTramo.de(actual);
         actual.setOrigen(tramo.getOrigen());
         actual.setDestino(tramo.getDestino());
-        actual.setDominioCamion(tramo.getDominioCamion());
         actual.setEstado(tramo.getEstado());
         actual.setFechaHoraInicioReal(tramo.getFechaHoraInicioReal());
         actual.setFechaHoraFinReal(tramo.getFechaHoraFinReal());
         actual.setCostoReal(tramo.getCostoReal());
-        return tramoRepository.save(actual);
+        Tramo guardado = tramoRepository.save(actual);
+        totalesSolicitudes.registrarCambio(nroSolicitud(guardado), antes, AporteTramo.de(guardado));
+        if (guardado.getEstado() != EstadoTramo.INICIADO) {
+            olvidarEnTelemetriaTrasCommit(id);
+        }
+        return guardado;
     }
 
+    @Transactional
     public void eliminar(Long id) {
-        if (!tramoRepository.existsById(id)) {
-            throw new NoSuchElementException("Tramo no encontrado: " + id);
+        Tramo tramo = obtenerParaActualizar(id);
+        tramoRepository.delete(tramo);
+        totalesSolicitudes.registrarCambio(nroSolicitud(tramo), AporteTramo.de(tramo), AporteTramo.NINGUNO);
+        olvidarEnTelemetriaTrasCommit(id);
+        liberarTrasCommit(tramo.getDominioCamion(), tramo.getVersionReservaCamion());
+    }
+
+    // Como en finalizarTramo: el camión se devuelve recién con el cambio confirmado, sin bloquear la respuesta
+    private void liberarTrasCommit(String dominio, Long versionReserva) {
+        if (dominio == null || versionReserva == null) {
+            return;
         }
-        tramoRepository.deleteById(id);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                liberarSinFallar(dominio, versionReserva).subscribe();
+            }
+        });
+    }
+
+    // El tramo deja de estar iniciado: la telemetría rechaza sus pings sin esperar al TTL de su cache
+    private void olvidarEnTelemetriaTrasCommit(Long idTramo) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                telemetriaService.olvidarTramo(idTramo);
+            }
+        });
     }
 
+    // Bloquea la fila del tramo: el aporte leído antes del cambio no puede quedar viejo por otro cambio concurrente
+    private Tramo obtenerParaActualizar(Long id) {
+        return tramoRepository.buscarParaActualizar(id)
+                .orElseThrow(() -> new NoSuchElementException("Tramo no encontrado: " + id));
+    }
+
+    // getNroSolicitud sobre el proxy lazy no dispara la carga de la solicitud
+    private static Long nroSolicitud(Tramo tramo) {
+        return tramo.getSolicitud().getNroSolicitud();
+    }
+
+    /**
+     * Asigna el camión al tramo reservándolo en ms-logistica: validación de capacidad y reserva van en una
+     * única llamada, así dos operadores no pueden quedarse con el mismo camión. Si el tramo tenía otro camión
+     * reservado, se libera después de guardar.
+     */
     public Mono<Tramo> asignarACamion(Long idTramo, String dominioCamion) {
         // NOTA: No tenemos peso/volumen del contenedor en el modelo actual.
         // Por ahora, se parametriza con 0.0. Ajustar cuando haya origen real de datos.
         Double pesoContenedor = 0.0;
         Double volumenContenedor = 0.0;
 
-        return Mono.fromCallable(() -> obtener(idTramo))
-                .subscribeOn(Schedulers.boundedElastic())
-                .flatMap(tramo -> logisticaClient.validarCapacidadCamion(dominioCamion, pesoContenedor, volumenContenedor)
-                        .defaultIfEmpty(false)
-                        .flatMap(valido -> {
-                            if (!valido) {
-                                return Mono.error(new IllegalStateException("Capacidad insuficiente del camión para el contenedor"));
+        return bloqueante(() -> obtener(idTramo))
+                .flatMap(tramo -> {
+                    // Antes de reservar: una reserva para un tramo finalizado no la liberaría nadie
+                    if (tramo.getEstado() == EstadoTramo.FINALIZADO) {
+                        return Mono.error(new EstadoInvalidoException(
+                                "El tramo " + idTramo + " está finalizado: no se le puede asignar camión"));
+                    }
+                    if (dominioCamion.equals(tramo.getDominioCamion()) && tramo.getVersionReservaCamion() != null) {
+                        return Mono.just(tramo); // ya reservado para este tramo
+                    }
+                    String dominioAnterior = tramo.getDominioCamion();
+                    Long reservaAnterior = tramo.getVersionReservaCamion();
+                    return logisticaClient.reservarCamion(dominioCamion, pesoContenedor, volumenContenedor)
+                            .flatMap(reserva -> {
+                                if (!reserva.aplicada()) {
+                                    return Mono.error(new IllegalStateException(mensajeRechazo(reserva.motivo())));
+                                }
+                                // Solo se guarda si nadie reasignó el tramo mientras se reservaba
+                                Mono<Tramo> guardar = bloqueante(() -> transactionTemplate.execute(status ->
+                                                tramoRepository.asignarCamion(idTramo, dominioCamion, reserva.versionReserva(),
+                                                        dominioAnterior, reservaAnterior) > 0))
+                                        .flatMap(aplicada -> {
+                                            if (!aplicada) {
+                                                return Mono.error(new IllegalStateException(
+                                                        "El tramo " + idTramo + " fue modificado durante la asignación"));
+                                            }
+                                            tramo.setDominioCamion(dominioCamion);
+                                            if (tramo.getEstado() != EstadoTramo.INICIADO) {
+                                                tramo.setEstado(EstadoTramo.ASIGNADO);
+                                            }
+                                            tramo.setVersionReservaCamion(reserva.versionReserva());
+                                            return Mono.just(tramo);
+                                        });
+                                return guardar
+                                        // Sin tramo guardado la reserva quedaría huérfana: se devuelve el camión
+                                        .onErrorResume(e -> liberarSinFallar(dominioCamion, reserva.versionReserva())
+                                                .then(Mono.error(e)))
+                                        .flatMap(guardado -> liberarSinFallar(dominioAnterior, reservaAnterior)
+                                                .thenReturn(guardado));
+                            });
+                });
+    }
+
+    private static String mensajeRechazo(String motivo) {
+        if ("NO_DISPONIBLE".equals(motivo)) {
+            return "El camión no está disponible";
+        }
+        if ("NO_ENCONTRADO".equals(motivo)) {
+            return "Camión no encontrado";
+        }
+        return "Capacidad insuficiente del camión para el contenedor";
+    }
+
+    /**
+     * Asigna camiones a varios tramos: los tramos se leen con una consulta, los camiones se reservan con una
+     * sola llamada a ms-logistica (que valida capacidad y ocupa cada camión) y las asignaciones se guardan en
+     * un único UPDATE por lotes, condicionado como en {@link #asignarACamion}. Devuelve un resultado por
+     * asignación, en el orden pedido. Sin {@code todoONada} cada asignación se aplica o falla por sí sola;
+     * con {@code todoONada}, si alguna falla no se guarda ninguna y se liberan las reservas hechas. Si ya falla
+     * antes de reservar (tramo repetido, inexistente o finalizado) no se llega a llamar a ms-logistica.
+     */
+    public Mono<AsignacionLote> asignarEnLote(List<AsignacionPedida> pedidas, boolean todoONada) {
+        // Mismo supuesto que asignarACamion: sin peso/volumen del contenedor en el modelo
+        Double pesoContenedor = 0.0;
+        Double volumenContenedor = 0.0;
+
+        Set<Long> ids = new HashSet<>();
+        for (AsignacionPedida pedida : pedidas) {
+            ids.add(pedida.idTramo());
+        }
+        return bloqueante(() -> tramoRepository.buscarPorIds(ids).stream()
+                        .collect(Collectors.toMap(Tramo::getIdTramo, Function.identity())))
+                .flatMap(tramos -> {
+                    ResultadoAsignacion[] resultados = new ResultadoAsignacion[pedidas.size()];
+                    List<Integer> aReservar = new ArrayList<>();
+                    Set<Long> vistos = new HashSet<>();
+                    boolean rechazadaSinReservar = false;
+                    for (int i = 0; i < pedidas.size(); i++) {
+                        AsignacionPedida pedida = pedidas.get(i);
+                        Tramo tramo = tramos.get(pedida.idTramo());
+                        if (!vistos.add(pedida.idTramo())) {
+                            resultados[i] = ResultadoAsignacion.rechazada(pedida, "El tramo está repetido en el lote");
+                            rechazadaSinReservar = true;
+                        } else if (tramo == null) {
+                            resultados[i] = ResultadoAsignacion.rechazada(pedida, "Tramo no encontrado: " + pedida.idTramo());
+                            rechazadaSinReservar = true;
+                        } else if (tramo.getEstado() == EstadoTramo.FINALIZADO) {
+                            resultados[i] = ResultadoAsignacion.rechazada(pedida, "El tramo está finalizado");
+                            rechazadaSinReservar = true;
+                        } else if (pedida.dominioCamion().equals(tramo.getDominioCamion()) && tramo.getVersionReservaCamion() != null) {
+                            resultados[i] = ResultadoAsignacion.asignada(pedida, tramo.getVersionReservaCamion()); // ya reservado
+                        } else {
+                            aReservar.add(i);
+                        }
+                    }
+                    if (todoONada && rechazadaSinReservar) {
+                        for (int i : aReservar) {
+                            resultados[i] = ResultadoAsignacion.rechazada(pedidas.get(i), LOTE_NO_APLICADO);
+                        }
+                        return Mono.just(AsignacionLote.de(resultados));
+                    }
+                    List<LogisticaClient.ValidacionCapacidad> items = aReservar.stream()
+                            .map(i -> new LogisticaClient.ValidacionCapacidad(pedidas.get(i).dominioCamion(),
+                                    pesoContenedor, volumenContenedor))
+                            .toList();
+                    return logisticaClient.reservarCamiones(items)
+                            .flatMap(reservas -> {
+                                List<AsignacionCamion> asignaciones = new ArrayList<>();
+                                List<Integer> reservadas = new ArrayList<>();
+                                for (int k = 0; k < aReservar.size(); k++) {
+                                    int i = aReservar.get(k);
+                                    AsignacionPedida pedida = pedidas.get(i);
+                                    LogisticaClient.ReservaCamion reserva = reservas.get(k);
+                                    if (!reserva.aplicada()) {
+                                        resultados[i] = ResultadoAsignacion.rechazada(pedida, mensajeRechazo(reserva.motivo()));
+                                        continue;
+                                    }
+                                    Tramo tramo = tramos.get(pedida.idTramo());
+                                    reservadas.add(i);
+                                    asignaciones.add(new AsignacionCamion(pedida.idTramo(),
+                                            pedida.dominioCamion(), reserva.versionReserva(),
+                                            tramo.getDominioCamion(), tramo.getVersionReservaCamion()));
+                                }
+                                if (todoONada && reservadas.size() < aReservar.size()) {
+                                    return revertirLote(pedidas, resultados, reservadas, asignaciones, null);
+                                }
+                                return guardarAsignaciones(pedidas, resultados, reservadas, asignaciones, todoONada);
+                            });
+                });
+    }
+
+    private Mono<AsignacionLote> guardarAsignaciones(List<AsignacionPedida> pedidas, ResultadoAsignacion[] resultados,
+                                                     List<Integer> reservadas,
+                                                     List<AsignacionCamion> asignaciones,
+                                                     boolean todoONada) {
+        // Un UPDATE condicionado por tramo, todos en la misma transacción
+        return bloqueante(() -> transactionTemplate.execute(status -> {
+                    List<Integer> filas = new ArrayList<>(asignaciones.size());
+                    for (AsignacionCamion a : asignaciones) {
+                        filas.add(tramoRepository.asignarCamion(a.idTramo(), a.dominio(), a.versionReserva(),
+                                a.dominioAnterior(), a.reservaAnterior()));
+                    }
+                    if (todoONada && filas.contains(0)) status.setRollbackOnly();
+                    return filas;
+                }))
+                // Sin tramos guardados las reservas quedarían huérfanas
+                .onErrorResume(e -> liberarSinFallar(nuevasReservas(asignaciones)).then(Mono.error(e)))
+                .flatMap(filas -> {
+                    if (todoONada && filas.contains(0)) {
+                        return revertirLote(pedidas, resultados, reservadas, asignaciones, filas);
+                    }
+                    List<LogisticaClient.LiberacionCamion> aLiberar = new ArrayList<>();
+                    for (int k = 0; k < asignaciones.size(); k++) {
+                        int i = reservadas.get(k);
+                        AsignacionCamion asignacion = asignaciones.get(k);
+                        if (filas.get(k) == 0) {
+                            resultados[i] = ResultadoAsignacion.rechazada(pedidas.get(i),
+                                    "El tramo " + asignacion.idTramo() + " fue modificado durante la asignación");
+                            aLiberar.add(new LogisticaClient.LiberacionCamion(asignacion.dominio(), asignacion.versionReserva()));
+                        } else {
+                            resultados[i] = ResultadoAsignacion.asignada(pedidas.get(i), asignacion.versionReserva());
+                            if (asignacion.dominioAnterior() != null && asignacion.reservaAnterior() != null) {
+                                aLiberar.add(new LogisticaClient.LiberacionCamion(asignacion.dominioAnterior(),
+                                        asignacion.reservaAnterior()));
                             }
-                            tramo.setDominioCamion(dominioCamion);
-                            tramo.setEstado(EstadoTramo.ASIGNADO);
-                            return Mono.fromCallable(() -> tramoRepository.save(tramo))
-                                    .subscribeOn(Schedulers.boundedElastic());
-                        })
-                );
+                        }
+                    }
+                    return liberarSinFallar(aLiberar).thenReturn(AsignacionLote.de(resultados));
+                });
+    }
+
+    /**
+     * todoONada con alguna falla: ninguna asignación del lote queda aplicada y se devuelven los camiones reservados.
+     *
+     * @param filas filas actualizadas por asignación si se llegó a intentar el UPDATE, o null
+     */
+    private Mono<AsignacionLote> revertirLote(List<AsignacionPedida> pedidas, ResultadoAsignacion[] resultados,
+                                              List<Integer> reservadas,
+                                              List<AsignacionCamion> asignaciones,
+                                              List<Integer> filas) {
+        for (int k = 0; k < asignaciones.size(); k++) {
+            int i = reservadas.get(k);
+            String motivo = filas != null && filas.get(k) == 0
+                    ? "El tramo " + asignaciones.get(k).idTramo() + " fue modificado durante la asignación"
+                    : LOTE_NO_APLICADO;
+            resultados[i] = ResultadoAsignacion.rechazada(pedidas.get(i), motivo);
+        }
+        return liberarSinFallar(nuevasReservas(asignaciones)).thenReturn(AsignacionLote.de(resultados));
+    }
+
+    private static List<LogisticaClient.LiberacionCamion> nuevasReservas(
+            List<AsignacionCamion> asignaciones) {
+        return asignaciones.stream()
+                .map(a -> new LogisticaClient.LiberacionCamion(a.dominio(), a.versionReserva()))
+                .toList();
+    }
+
+    private Mono<Void> liberarSinFallar(List<LogisticaClient.LiberacionCamion> reservas) {
+        if (reservas.isEmpty()) {
+            return Mono.empty();
+        }
+        return logisticaClient.liberarCamiones(reservas)
+                .doOnNext(resultados -> {
+                    for (int i = 0; i < resultados.size(); i++) {
+                        if (!resultados.get(i).aplicada()) {
+                            log.warn("No se liberó el camión {}: {}", reservas.get(i).dominio(), resultados.get(i).motivo());
+                        }
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.warn("Error al liberar {} camiones", reservas.size(), e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Void> liberarSinFallar(String dominio, Long versionReserva) {
+        if (dominio == null || versionReserva == null) {
+            return Mono.empty();
+        }
+        return logisticaClient.liberarCamion(dominio, versionReserva)
+                .doOnNext(r -> {
+                    if (!r.aplicada()) log.warn("No se liberó el camión {}: {}", dominio, r.motivo());
+                })
+                .onErrorResume(e -> {
+                    log.warn("Error al liberar el camión {}", dominio, e);
+                    return Mono.empty();
+                })
+                .then();
     }
 
     // Alias con el nombre solicitado
@@ -122,66 +465,287 @@ public class TramoService {
         return asignarACamion(idTramo, dominioCamion);
     }
 
+    @Transactional
     public Tramo iniciarTramo(Long idTramo) {
-        Tramo tramo = obtener(idTramo);
+        Tramo tramo = obtenerParaActualizar(idTramo);
+        AporteTramo antes = AporteTramo.de(tramo);
         tramo.setEstado(EstadoTramo.INICIADO);
         tramo.setFechaHoraInicioReal(LocalDateTime.now());
-        return tramoRepository.save(tramo);
+        Tramo guardado = tramoRepository.save(tramo);
+        totalesSolicitudes.registrarCambio(nroSolicitud(guardado), antes, AporteTramo.de(guardado));
+        return guardado;
     }
 
+    @Transactional
     public Tramo finalizarTramo(Long idTramo, LocalDateTime fechaHoraFin, Double odometroFinal, 
                                  Double costoReal, Double tiempoReal) {
-        Tramo tramo = obtener(idTramo);
+        Tramo tramo = obtenerParaActualizar(idTramo);
+        AporteTramo antes = AporteTramo.de(tramo);
         tramo.setEstado(EstadoTramo.FINALIZADO);
         tramo.setFechaHoraFinReal(fechaHoraFin);
         tramo.setOdometroFinal(odometroFinal);
         tramo.setCostoReal(costoReal);
         tramo.setTiempoReal(tiempoReal);
-        return tramoRepository.save(tramo);
+        String dominio = tramo.getDominioCamion();
+        Long reserva = tramo.getVersionReservaCamion();
+        tramo.setVersionReservaCamion(null);
+        Tramo guardado = tramoRepository.save(tramo);
+        totalesSolicitudes.registrarCambio(nroSolicitud(guardado), antes, AporteTramo.de(guardado));
+        // El camión vuelve a quedar disponible una vez confirmado el cambio; la liberación no bloquea la respuesta
+        olvidarEnTelemetriaTrasCommit(idTramo);
+        liberarTrasCommit(dominio, reserva);
+        return guardado;
     }
 
     /**
      * Calcula costo y tiempo estimado para un tramo usando Google Directions y datos del camión.
      * - Distancia (km) y duración (min) desde GoogleMapsClient.
-     * - costoBaseKm del camión desde LogisticaClient.
-     * Guarda costoAproximado, fechaHoraInicioEstimada y fechaHoraFinEstimada.
+     * - costoBaseKm del camión desde ms-logistica, agrupado con otros cálculos concurrentes (CargadorCamiones).
+     * Guarda costoAproximado, fechaHoraInicioEstimada y fechaHoraFinEstimada, y recalcula el costoEstimado de
+     * la solicitud en la misma transacción.
+     * Si Google no responde dentro de {@code estimacion.presupuesto-google} (o falla), se guarda la estimación
+     * local marcada como aproximada y se refina en segundo plano cuando Google conteste.
      */
     public Mono<Tramo> calcularCostoYTiempoEstimado(Long idTramo,
                                                     double origenLat, double origenLng,
                                                     double destinoLat, double destinoLng) {
-        return Mono.fromCallable(() -> obtener(idTramo))
-                .subscribeOn(Schedulers.boundedElastic())
+        return calcularCostoYTiempoEstimado(idTramo, origenLat, origenLng, destinoLat, destinoLng, presupuestoGoogle);
+    }
+
+    public Mono<Tramo> calcularCostoYTiempoEstimado(Long idTramo,
+                                                    double origenLat, double origenLng,
+                                                    double destinoLat, double destinoLng,
+                                                    Duration presupuesto) {
+        Coordenadas coordenadas = new Coordenadas(origenLat, origenLng, destinoLat, destinoLng);
+        return bloqueante(() -> obtener(idTramo))
                 .flatMap(tramo -> {
                     if (tramo.getDominioCamion() == null || tramo.getDominioCamion().isBlank()) {
                         return Mono.error(new IllegalStateException("El tramo no tiene camión asignado"));
                     }
-                    String dominio = tramo.getDominioCamion();
-                    return googleMapsClient.obtenerDistanciaYDuracion(origenLat, origenLng, destinoLat, destinoLng)
-                            .zipWith(logisticaClient.obtenerCamion(dominio))
-                            .flatMap(tuple -> {
-                                Map<String, Object> direccionData = tuple.getT1();
-                                Map<String, Object> camion = tuple.getT2();
-
-                                Double distanciaKm = (Double) direccionData.get("distanciaKm");
-                                Long duracionMinutos = (Long) direccionData.get("duracionMinutos");
-
-                                Object costoBaseKmObj = camion != null ? camion.get("costoBaseKm") : null;
-                                if (!(costoBaseKmObj instanceof Number)) {
-                                    return Mono.error(new IllegalStateException("costoBaseKm no disponible para camión: " + dominio));
-                                }
-                                double costoBaseKm = ((Number) costoBaseKmObj).doubleValue();
-                                double costoEstimado = distanciaKm * costoBaseKm;
-                                tramo.setCostoAproximado(costoEstimado);
+                    Long nroSolicitud = nroSolicitud(tramo);
+                    return calcular(tramo, coordenadas, presupuesto)
+                            .flatMap(calculo -> {
+                                aplicarEstimacion(tramo, calculo);
+                                // Como en estimarSolicitud: el costo de la solicitud se recalcula con el del tramo
+                                return bloqueante(() -> transactionTemplate.execute(status -> {
+                                            int filas = guardarEstimacion(tramo);
+                                            if (filas > 0) {
+                                                solicitudRepository.recalcularCostoEstimado(nroSolicitud);
+                                            }
+                                            return filas;
+                                        }))
+                                        .filter(filas -> filas > 0)
+                                        .switchIfEmpty(Mono.error(() -> new NoSuchElementException("Tramo no encontrado: " + idTramo)))
+                                        .thenReturn(tramo)
+                                        .doOnNext(guardado -> {
+                                            if (calculo.aproximada()) {
+                                                refinarEnSegundoPlano(calculo, guardado.getFechaHoraInicioEstimada(), nroSolicitud);
+                                            }
+                                        });
+                            });
+                });
+    }
 
-                                // Usa la duración real de Google Maps
-                                if (tramo.getFechaHoraInicioEstimada() == null) {
-                                    tramo.setFechaHoraInicioEstimada(LocalDateTime.now());
-                                }
-                                tramo.setFechaHoraFinEstimada(tramo.getFechaHoraInicioEstimada().plusMinutes(duracionMinutos));
+    /**
+     * Estima todos los tramos de una solicitud de una vez: los tramos se leen con una sola consulta, rutas y
+     * tarifas se resuelven en paralelo (hasta {@code estimacion.paralelismo} tramos a la vez; las consultas de
+     * camión se agrupan en CargadorCamiones) y los resultados se guardan en una única transacción junto con
+     * {@code Solicitud.costoEstimado}, que pasa a ser la suma de los costos aproximados de sus tramos.
+     * Los tramos sin camión, sin coordenadas o cuyo cálculo falla se informan en {@code omitidos}.
+     */
+    public Mono<EstimacionSolicitud> estimarSolicitud(Long nroSolicitud, Map<Long, Coordenadas> coordenadas) {
+        return bloqueante(() -> {
+                    if (!solicitudRepository.existsById(nroSolicitud)) {
+                        throw new NoSuchElementException("Solicitud no encontrada: " + nroSolicitud);
+                    }
+                    return tramoRepository.findBySolicitud_NroSolicitudOrderByIdTramoAsc(nroSolicitud);
+                })
+                .flatMap(tramos -> {
+                    List<TramoOmitido> omitidos = Collections.synchronizedList(new ArrayList<>());
+                    List<Tramo> aEstimar = new ArrayList<>(tramos.size());
+                    Set<Long> propios = new HashSet<>();
+                    for (Tramo tramo : tramos) {
+                        propios.add(tramo.getIdTramo());
+                        if (tramo.getDominioCamion() == null || tramo.getDominioCamion().isBlank()) {
+                            omitidos.add(new TramoOmitido(tramo.getIdTramo(), "El tramo no tiene camión asignado"));
+                        } else if (!coordenadas.containsKey(tramo.getIdTramo())) {
+                            omitidos.add(new TramoOmitido(tramo.getIdTramo(), "Sin coordenadas de origen y destino"));
+                        } else {
+                            aEstimar.add(tramo);
+                        }
+                    }
+                    for (Long idTramo : coordenadas.keySet()) {
+                        if (!propios.contains(idTramo)) {
+                            omitidos.add(new TramoOmitido(idTramo, "El tramo no pertenece a la solicitud"));
+                        }
+                    }
+                    return Flux.fromIterable(aEstimar)
+                            .flatMap(tramo -> calcular(tramo, coordenadas.get(tramo.getIdTramo()), presupuestoGoogle)
+                                    .map(calculo -> {
+                                        aplicarEstimacion(tramo, calculo);
+                                        return Map.entry(tramo, calculo);
+                                    })
+                                    .onErrorResume(e -> {
+                                        log.warn("No se pudo estimar el tramo {}", tramo.getIdTramo(), e);
+                                        omitidos.add(new TramoOmitido(tramo.getIdTramo(), e.getMessage()));
+                                        return Mono.empty();
+                                    }), paralelismoEstimacion)
+                            .collectList()
+                            .flatMap(estimados -> guardarEstimacion(nroSolicitud, tramos, estimados, omitidos));
+                });
+    }
 
-                                return Mono.fromCallable(() -> tramoRepository.save(tramo))
-                                        .subscribeOn(Schedulers.boundedElastic());
-                            });
+    /**
+     * Guarda todos los tramos estimados y recalcula el costo de la solicitud en la misma transacción.
+     * Las refinaciones de los aproximados se lanzan después del commit.
+     */
+    private Mono<EstimacionSolicitud> guardarEstimacion(Long nroSolicitud, List<Tramo> tramos,
+                                                        List<Map.Entry<Tramo, Calculo>> estimados,
+                                                        List<TramoOmitido> omitidos) {
+        List<Tramo> aGuardar = estimados.stream().map(Map.Entry::getKey).toList();
+        return bloqueante(() -> transactionTemplate.execute(status -> {
+                    for (Tramo tramo : aGuardar) {
+                        if (guardarEstimacion(tramo) == 0) {
+                            omitidos.add(new TramoOmitido(tramo.getIdTramo(), "El tramo se eliminó durante la estimación"));
+                        }
+                    }
+                    solicitudRepository.recalcularCostoEstimado(nroSolicitud);
+                    return solicitudRepository.costoEstimado(nroSolicitud);
+                }))
+                .map(costo -> {
+                    int aproximados = 0;
+                    for (Map.Entry<Tramo, Calculo> estimado : estimados) {
+                        Calculo calculo = estimado.getValue();
+                        if (calculo.aproximada()) {
+                            aproximados++;
+                            refinarEnSegundoPlano(calculo, estimado.getKey().getFechaHoraInicioEstimada(), nroSolicitud);
+                        }
+                    }
+                    return new EstimacionSolicitud(nroSolicitud, costo.orElse(null), estimados.size(), aproximados,
+                            List.copyOf(omitidos), tramos);
+                });
+    }
+
+    /**
+     * Ruta (Google con presupuesto de latencia, o estimación local) y tarifa del camión de un tramo.
+     * La consulta a Google sigue en curso aunque venza el presupuesto: el cache de rutas no propaga la
+     * cancelación y su resultado queda disponible para el refinamiento.
+     */
+    private Mono<Calculo> calcular(Tramo tramo, Coordenadas c, Duration presupuesto) {
+        Long idTramo = tramo.getIdTramo();
+        String dominio = tramo.getDominioCamion();
+        Mono<Estimacion> local = Mono.fromSupplier(() ->
+                new Estimacion(estimadorRutaLocal.estimar(c.origenLat(), c.origenLng(), c.destinoLat(), c.destinoLng()), true));
+        Mono<Estimacion> ruta = googleMapsClient.obtenerDistanciaYDuracion(c.origenLat(), c.origenLng(), c.destinoLat(), c.destinoLng())
+                .map(r -> new Estimacion(r, false))
+                .timeout(presupuesto, local)
+                .onErrorResume(e -> {
+                    log.warn("Google Directions no disponible para el tramo {}, se usa la estimación local", idTramo, e);
+                    return local;
                 });
+        return ruta.zipWith(cargadorCamiones.obtener(dominio))
+                .map(tuple -> new Calculo(idTramo, c, tuple.getT1().ruta(), tuple.getT1().aproximada(),
+                        costoBaseKm(tuple.getT2(), dominio)));
+    }
+
+    public record AsignacionPedida(Long idTramo, String dominioCamion) {
+    }
+
+    /**
+     * Camión y reserva nuevos de un tramo, con los que se leyeron antes de reservar (condición del UPDATE).
+     */
+    private record AsignacionCamion(Long idTramo, String dominio, Long versionReserva,
+                                    String dominioAnterior, Long reservaAnterior) {
+    }
+
+    /**
+     * @param versionReserva token de la reserva del camión si quedó asignado
+     * @param motivo         null si quedó asignado
+     */
+    public record ResultadoAsignacion(Long idTramo, String dominioCamion, boolean asignado, Long versionReserva,
+                                      String motivo) {
+        static ResultadoAsignacion asignada(AsignacionPedida pedida, Long versionReserva) {
+            return new ResultadoAsignacion(pedida.idTramo(), pedida.dominioCamion(), true, versionReserva, null);
+        }
+
+        static ResultadoAsignacion rechazada(AsignacionPedida pedida, String motivo) {
+            return new ResultadoAsignacion(pedida.idTramo(), pedida.dominioCamion(), false, null, motivo);
+        }
+    }
+
+    public record AsignacionLote(int asignados, int rechazados, List<ResultadoAsignacion> resultados) {
+        static AsignacionLote de(ResultadoAsignacion[] resultados) {
+            int asignados = 0;
+            for (ResultadoAsignacion r : resultados) {
+                if (r.asignado()) asignados++;
+            }
+            return new AsignacionLote(asignados, resultados.length - asignados, List.of(resultados));
+        }
+    }
+
+    public record Coordenadas(double origenLat, double origenLng, double destinoLat, double destinoLng) {
+    }
+
+    /**
+     * @param costoEstimado suma de los costos aproximados de todos los tramos de la solicitud
+     * @param aproximados   tramos estimados localmente por falta de respuesta de Google; se refinan en segundo plano
+     */
+    public record EstimacionSolicitud(Long nroSolicitud, Double costoEstimado, int tramosEstimados, int aproximados,
+                                      List<TramoOmitido> omitidos, List<Tramo> tramos) {
+    }
+
+    public record TramoOmitido(Long idTramo, String motivo) {
+    }
+
+    private record Estimacion(DistanciaYDuracion ruta, boolean aproximada) {
+    }
+
+    private record Calculo(Long idTramo, Coordenadas coordenadas, DistanciaYDuracion ruta, boolean aproximada,
+                           double costoBaseKm) {
+    }
+
+    private static double costoBaseKm(Map<String, Object> camion, String dominio) {
+        Object costoBaseKmObj = camion != null ? camion.get("costoBaseKm") : null;
+        if (!(costoBaseKmObj instanceof Number)) {
+            throw new IllegalStateException("costoBaseKm no disponible para camión: " + dominio);
+        }
+        return ((Number) costoBaseKmObj).doubleValue();
+    }
+
+    private int guardarEstimacion(Tramo tramo) {
+        return tramoRepository.guardarEstimacion(tramo.getIdTramo(), tramo.getCostoAproximado(),
+                tramo.getFechaHoraInicioEstimada(), tramo.getFechaHoraFinEstimada(), tramo.getEstimacionAproximada());
+    }
+
+    private static void aplicarEstimacion(Tramo tramo, Calculo calculo) {
+        tramo.setCostoAproximado(calculo.ruta().distanciaKm() * calculo.costoBaseKm());
+        if (tramo.getFechaHoraInicioEstimada() == null) {
+            tramo.setFechaHoraInicioEstimada(LocalDateTime.now());
+        }
+        tramo.setFechaHoraFinEstimada(tramo.getFechaHoraInicioEstimada().plusMinutes(calculo.ruta().duracionMinutos()));
+        tramo.setEstimacionAproximada(calculo.aproximada());
+    }
+
+    /**
+     * Reintenta Google con backoff y, si responde, reemplaza la estimación local con el mismo costo por km y
+     * recalcula el costo de la solicitud. Se pierde si el servicio se reinicia antes de terminar; el tramo
+     * queda con estimacionAproximada=true y se corrige en el próximo cálculo.
+     */
+    private void refinarEnSegundoPlano(Calculo calculo, LocalDateTime inicio, Long nroSolicitud) {
+        Long idTramo = calculo.idTramo();
+        Coordenadas c = calculo.coordenadas();
+        googleMapsClient.obtenerDistanciaYDuracion(c.origenLat(), c.origenLng(), c.destinoLat(), c.destinoLng())
+                .retryWhen(Retry.backoff(3, Duration.ofSeconds(2)))
+                .flatMap(ruta -> bloqueante(() -> transactionTemplate.execute(status -> {
+                    boolean aplicada = tramoRepository.refinarEstimacion(idTramo,
+                            ruta.distanciaKm() * calculo.costoBaseKm(), inicio.plusMinutes(ruta.duracionMinutos())) > 0;
+                    if (aplicada) {
+                        solicitudRepository.recalcularCostoEstimado(nroSolicitud);
+                    }
+                    return aplicada;
+                })))
+                .subscribe(
+                        aplicada -> log.debug("Estimación del tramo {} refinada con Google: {}", idTramo, aplicada),
+                        e -> log.warn("No se pudo refinar la estimación aproximada del tramo {}", idTramo, e));
     }
 }
@@ -0,0 +1,63 @@
+package com.tpi.solicitudes.web;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Codificación de los cursores opacos de los listados keyset (Base64 URL-safe de la última clave).
+ */
+final class Cursores {
+
+    static final int SIZE_MAXIMO = 500;
+
+    private Cursores() {}
+
+    /**
+     * Clave (fechaHoraInicioReal, idTramo) del último tramo devuelto; {@code inicio} es null para tramos sin iniciar.
+     */
+    record ClaveTramo(LocalDateTime inicio, Long idTramo) {}
+
+    static String codificar(String clave) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(clave.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String codificarTramo(LocalDateTime inicio, Long idTramo) {
+        return codificar((inicio != null ? inicio.toString() : "") + "|" + idTramo);
+    }
+
+    /**
+     * @return la clave contenida en el cursor, o null si el cursor viene vacío (primera página)
+     */
+    static String decodificar(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+
+    /**
+     * @return la clave del tramo, o una clave vacía (ambos null) para la primera página
+     */
+    static ClaveTramo decodificarTramo(String cursor) {
+        String clave = decodificar(cursor);
+        if (clave == null) return new ClaveTramo(null, null);
+        int separador = clave.indexOf('|');
+        if (separador < 0) throw new IllegalArgumentException("Cursor inválido");
+        try {
+            LocalDateTime inicio = separador == 0 ? null : LocalDateTime.parse(clave.substring(0, separador));
+            return new ClaveTramo(inicio, Long.valueOf(clave.substring(separador + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+
+    static void validarSize(int size) {
+        if (size < 1 || size > SIZE_MAXIMO) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + SIZE_MAXIMO);
+        }
+    }
+}
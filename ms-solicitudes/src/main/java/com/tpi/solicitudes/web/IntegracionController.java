@@ -4,6 +4,7 @@ import com.tpi.solicitudes.client.LogisticaClient;
 import reactor.core.publisher.Mono;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -36,6 +37,14 @@ public class IntegracionController {
                 .map(valido -> Map.of("valido", valido));
     }
 
+    /**
+     * Endpoint para validar capacidad de varios camiones en una sola llamada a ms-logistica.
+     */
+    @PostMapping("/camiones/validar-capacidad/lote")
+    public Mono<List<Boolean>> validarCapacidadLote(@RequestBody List<LogisticaClient.ValidacionCapacidad> items) {
+        return logisticaClient.validarCapacidadCamiones(items);
+    }
+
     /**
      * Endpoint para obtener datos de un camión desde ms-logistica.
      */
@@ -1,16 +1,31 @@
 package com.tpi.solicitudes.web;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tpi.solicitudes.domain.EstadoSolicitud;
 import com.tpi.solicitudes.domain.Solicitud;
+import com.tpi.solicitudes.domain.Tramo;
+import com.tpi.solicitudes.service.ExportacionService;
+import com.tpi.solicitudes.service.FormatoExportacion;
 import com.tpi.solicitudes.service.SolicitudService;
+import com.tpi.solicitudes.web.dto.CambiarEstadoSolicitudRequest;
+import com.tpi.solicitudes.web.dto.CrearSolicitudConTramosRequest;
 import com.tpi.solicitudes.web.dto.CrearSolicitudRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -18,9 +33,13 @@ import java.util.List;
 public class SolicitudController {
 
     private final SolicitudService service;
+    private final ObjectMapper objectMapper;
+    private final ExportacionService exportacion;
 
-    public SolicitudController(SolicitudService service) {
+    public SolicitudController(SolicitudService service, ObjectMapper objectMapper, ExportacionService exportacion) {
         this.service = service;
+        this.objectMapper = objectMapper;
+        this.exportacion = exportacion;
     }
 
     @GetMapping
@@ -28,11 +47,45 @@ public class SolicitudController {
         return service.findAll(pageable);
     }
 
+    /**
+     * Todas las solicitudes que cumplen los filtros (creadas en [desde, hasta)), en NDJSON o CSV, leídas con
+     * un cursor y escritas a medida que llegan.
+     */
+    @GetMapping("/exportar")
+    public void exportar(@RequestParam(required = false) EstadoSolicitud estado,
+                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+                         @RequestParam(defaultValue = "ndjson") String formato,
+                         HttpServletResponse response) {
+        FormatoExportacion f = FormatoExportacion.de(formato);
+        exportacion.exportarSolicitudes(estado, desde, hasta, f, () -> {
+            response.setContentType(f.tipoContenido());
+            response.setCharacterEncoding("UTF-8");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.attachment().filename("solicitudes." + f.extension()).build().toString());
+            return response.getOutputStream();
+        });
+    }
+
     @GetMapping("/{id}")
     public Solicitud obtener(@PathVariable Long id) {
         return service.findById(id);
     }
 
+    /**
+     * Solicitud con todos sus tramos en una sola respuesta. El ETag es un hash del contenido: con
+     * {@code If-None-Match} igual se responde 304 sin cuerpo, así el polling solo descarga cambios.
+     */
+    @GetMapping("/{id}/detalle")
+    public ResponseEntity<SolicitudService.SolicitudConTramos> detalle(@PathVariable Long id) throws JsonProcessingException {
+        SolicitudService.SolicitudConTramos detalle = service.detalle(id);
+        String etag = "\"" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(detalle)) + "\"";
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(etag)
+                .body(detalle);
+    }
+
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     @PreAuthorize("hasRole('CLIENTE')")
@@ -45,11 +98,34 @@ public class SolicitudController {
         return service.create(solicitud);
     }
 
+    /**
+     * Alta de la solicitud junto con todos sus tramos (en orden), en una sola transacción.
+     */
+    @PostMapping("/con-tramos")
+    @ResponseStatus(HttpStatus.CREATED)
+    @PreAuthorize("hasRole('CLIENTE')")
+    public SolicitudService.SolicitudConTramos crearConTramos(@RequestBody @Valid CrearSolicitudConTramosRequest request) {
+        Solicitud solicitud = Solicitud.builder()
+                .idContenedor(request.idContenedor())
+                .idCliente(request.idCliente())
+                .estado(EstadoSolicitud.BORRADOR)
+                .build();
+        List<Tramo> tramos = request.tramos().stream()
+                .map(t -> Tramo.builder().origen(t.origen()).destino(t.destino()).tipo(t.tipo()).build())
+                .toList();
+        return service.crearConTramos(solicitud, tramos);
+    }
+
     @PutMapping("/{id}")
     public Solicitud actualizar(@PathVariable Long id, @RequestBody @Valid Solicitud s) {
         return service.update(id, s);
     }
 
+    @PutMapping("/{id}/estado")
+    public Solicitud cambiarEstado(@PathVariable Long id, @RequestBody @Valid CambiarEstadoSolicitudRequest request) {
+        return service.cambiarEstado(id, request.estado());
+    }
+
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void eliminar(@PathVariable Long id) {
@@ -0,0 +1,70 @@
+package com.tpi.solicitudes.web;
+
+import com.tpi.solicitudes.domain.PingTramo;
+import com.tpi.solicitudes.service.TelemetriaService;
+import com.tpi.solicitudes.service.TramoNoIniciadoException;
+import com.tpi.solicitudes.web.dto.PingTelemetriaRequest;
+import com.tpi.solicitudes.web.dto.TelemetriaLoteRequest;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Recepción de telemetría de camiones en viaje. Responde 202 apenas el ping queda encolado; la escritura
+ * en la base es diferida (ver {@link TelemetriaService}). Con el servicio saturado responde 503 con Retry-After.
+ */
+@RestController
+@RequestMapping("/api/tramos")
+public class TelemetriaController {
+
+    private final TelemetriaService service;
+
+    public TelemetriaController(TelemetriaService service) {
+        this.service = service;
+    }
+
+    /**
+     * Un ping del tramo; 409 si el tramo no existe o no está iniciado.
+     */
+    @PostMapping("/{idTramo}/telemetria")
+    @PreAuthorize("hasRole('TRANSPORTISTA')")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public TelemetriaService.Recepcion recibir(@PathVariable Long idTramo,
+                                               @RequestBody @Valid PingTelemetriaRequest request) {
+        PingTramo ping = PingTramo.builder()
+                .idTramo(idTramo)
+                .fechaHora(request.fechaHora())
+                .latitud(request.latitud())
+                .longitud(request.longitud())
+                .odometro(request.odometro())
+                .build();
+        TelemetriaService.Recepcion recepcion = service.recibir(List.of(ping));
+        if (!recepcion.noIniciados().isEmpty()) {
+            throw new TramoNoIniciadoException(idTramo);
+        }
+        return recepcion;
+    }
+
+    /**
+     * Varios pings, de uno o más tramos, en una llamada: el camión acumula lecturas y las manda juntas. Los de
+     * tramos no iniciados se informan en {@code noIniciados} y el resto se acepta igual.
+     */
+    @PostMapping("/telemetria")
+    @PreAuthorize("hasRole('TRANSPORTISTA')")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public TelemetriaService.Recepcion recibirLote(@RequestBody @Valid TelemetriaLoteRequest request) {
+        List<PingTramo> pings = request.pings().stream()
+                .map(p -> PingTramo.builder()
+                        .idTramo(p.idTramo())
+                        .fechaHora(p.fechaHora())
+                        .latitud(p.latitud())
+                        .longitud(p.longitud())
+                        .odometro(p.odometro())
+                        .build())
+                .toList();
+        return service.recibir(pings);
+    }
+}
@@ -1,29 +1,44 @@
 package com.tpi.solicitudes.web;
 
+import com.tpi.solicitudes.domain.EstadoTramo;
 import com.tpi.solicitudes.domain.Tramo;
+import com.tpi.solicitudes.service.ExportacionService;
+import com.tpi.solicitudes.service.FormatoExportacion;
 import com.tpi.solicitudes.service.TramoService;
 import com.tpi.solicitudes.web.dto.AsignarCamionRequest;
+import com.tpi.solicitudes.web.dto.AsignarCamionesLoteRequest;
+import com.tpi.solicitudes.web.dto.CursorResponse;
+import com.tpi.solicitudes.web.dto.EstimarSolicitudRequest;
 import com.tpi.solicitudes.web.dto.FinalizarTramoRequest;
 import com.tpi.solicitudes.web.dto.TramoAsignacionDTO;
 import com.tpi.solicitudes.web.dto.TramoCreateDto;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import reactor.core.publisher.Mono;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 public class TramoController {
 
     private final TramoService service;
+    private final ExportacionService exportacion;
 
-    public TramoController(TramoService service) {
+    public TramoController(TramoService service, ExportacionService exportacion) {
         this.service = service;
+        this.exportacion = exportacion;
     }
 
     @GetMapping("/solicitudes/{solicitudId}/tramos")
@@ -37,6 +52,19 @@ public class TramoController {
         return service.listarPorSolicitud(idSolicitud, pageable);
     }
 
+    /**
+     * Estima costo y tiempo de todos los tramos de la solicitud y actualiza su costoEstimado.
+     */
+    @PostMapping("/api/solicitudes/{idSolicitud}/estimacion")
+    public Mono<TramoService.EstimacionSolicitud> estimarSolicitud(@PathVariable Long idSolicitud,
+                                                                   @RequestBody @Valid EstimarSolicitudRequest request) {
+        Map<Long, TramoService.Coordenadas> coordenadas = new HashMap<>();
+        for (EstimarSolicitudRequest.CoordenadasTramo c : request.tramos()) {
+            coordenadas.put(c.idTramo(), new TramoService.Coordenadas(c.origenLat(), c.origenLng(), c.destinoLat(), c.destinoLng()));
+        }
+        return service.estimarSolicitud(idSolicitud, coordenadas);
+    }
+
     @PostMapping("/solicitudes/{solicitudId}/tramos")
     @ResponseStatus(HttpStatus.CREATED)
     public Tramo crear(@PathVariable Long solicitudId, @RequestBody @Valid Tramo t) {
@@ -87,6 +115,18 @@ public class TramoController {
         return service.asignarACamion(idTramo, request.dominioCamion());
     }
 
+    /**
+     * Varias asignaciones en una llamada; siempre 200 con el resultado de cada una (ver {@code todoONada}).
+     */
+    @PutMapping("/api/tramos/asignar-camion")
+    @PreAuthorize("hasRole('OPERADOR')")
+    public Mono<TramoService.AsignacionLote> asignarCamiones(@RequestBody @Valid AsignarCamionesLoteRequest request) {
+        List<TramoService.AsignacionPedida> pedidas = request.asignaciones().stream()
+                .map(a -> new TramoService.AsignacionPedida(a.idTramo(), a.dominioCamion()))
+                .toList();
+        return service.asignarEnLote(pedidas, request.todoONada());
+    }
+
     @PutMapping("/api/tramos/{idTramo}/iniciar")
     @PreAuthorize("hasRole('TRANSPORTISTA')")
     public Tramo iniciar(@PathVariable Long idTramo) {
@@ -102,10 +142,52 @@ public class TramoController {
     // Listado general paginado con filtros opcionales
     @GetMapping("/api/tramos")
     public Page<Tramo> listar(Pageable pageable,
-                              @RequestParam(required = false) String estado,
+                              @RequestParam(required = false) EstadoTramo estado,
                               @RequestParam(required = false) String dominioCamion,
                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) java.time.LocalDateTime desde,
                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) java.time.LocalDateTime hasta) {
         return service.listar(pageable, estado, dominioCamion, desde, hasta);
     }
+
+    /**
+     * Modo cursor (opt-in con el parámetro {@code cursor}, vacío para la primera página): keyset por
+     * (fechaHoraInicioReal, idTramo), sin total, con los mismos filtros que el listado paginado.
+     */
+    @GetMapping(value = "/api/tramos", params = "cursor")
+    public CursorResponse<Tramo> listarPorCursor(@RequestParam String cursor,
+                                                 @RequestParam(defaultValue = "20") int size,
+                                                 @RequestParam(required = false) EstadoTramo estado,
+                                                 @RequestParam(required = false) String dominioCamion,
+                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) java.time.LocalDateTime desde,
+                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) java.time.LocalDateTime hasta) {
+        Cursores.validarSize(size);
+        Cursores.ClaveTramo clave = Cursores.decodificarTramo(cursor);
+        Slice<Tramo> slice = service.listarDesde(clave.inicio(), clave.idTramo(), size, estado, dominioCamion, desde, hasta);
+        String siguiente = null;
+        if (slice.hasNext()) {
+            Tramo ultimo = slice.getContent().get(slice.getNumberOfElements() - 1);
+            siguiente = Cursores.codificarTramo(ultimo.getFechaHoraInicioReal(), ultimo.getIdTramo());
+        }
+        return new CursorResponse<>(slice.getContent(), siguiente);
+    }
+
+    /**
+     * Todos los tramos que cumplen los filtros (inicio real en [desde, hasta)), en NDJSON o CSV, leídos con
+     * un cursor y escritos a medida que llegan. Ver {@link ExportacionService}.
+     */
+    @GetMapping("/api/tramos/exportar")
+    public void exportar(@RequestParam(required = false) EstadoTramo estado,
+                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) java.time.LocalDateTime desde,
+                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) java.time.LocalDateTime hasta,
+                         @RequestParam(defaultValue = "ndjson") String formato,
+                         HttpServletResponse response) {
+        FormatoExportacion f = FormatoExportacion.de(formato);
+        exportacion.exportarTramos(estado, desde, hasta, f, () -> {
+            response.setContentType(f.tipoContenido());
+            response.setCharacterEncoding("UTF-8");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.attachment().filename("tramos." + f.extension()).build().toString());
+            return response.getOutputStream();
+        });
+    }
 }
@@ -0,0 +1,25 @@
+package com.tpi.solicitudes.web.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * @param todoONada si es true y alguna asignación falla, no se aplica ninguna
+ */
+public record AsignarCamionesLoteRequest(
+        @NotEmpty @Size(max = 200) List<@Valid @NotNull Asignacion> asignaciones,
+        boolean todoONada
+) {
+    public record Asignacion(
+            @NotNull Long idTramo,
+            @NotBlank
+            @Pattern(regexp = "^([A-Z]{3}[0-9]{3}|[A-Z]{2}[0-9]{3}[A-Z]{2})$", message = "Formato de dominio inválido")
+            String dominioCamion
+    ) {}
+}
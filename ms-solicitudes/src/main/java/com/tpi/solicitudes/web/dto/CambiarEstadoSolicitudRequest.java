@@ -0,0 +1,8 @@
+package com.tpi.solicitudes.web.dto;
+
+import com.tpi.solicitudes.domain.EstadoSolicitud;
+import jakarta.validation.constraints.NotNull;
+
+public record CambiarEstadoSolicitudRequest(
+        @NotNull EstadoSolicitud estado
+) {}
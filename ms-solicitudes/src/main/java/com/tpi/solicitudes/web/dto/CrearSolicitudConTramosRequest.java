@@ -0,0 +1,21 @@
+package com.tpi.solicitudes.web.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record CrearSolicitudConTramosRequest(
+        @NotNull Long idContenedor,
+        @NotNull Long idCliente,
+        @NotEmpty @Size(max = 200) List<@Valid @NotNull TramoNuevo> tramos
+) {
+    public record TramoNuevo(
+            @NotBlank @Size(max = 100) String origen,
+            @NotBlank @Size(max = 100) String destino,
+            @Size(max = 50) String tipo
+    ) {}
+}
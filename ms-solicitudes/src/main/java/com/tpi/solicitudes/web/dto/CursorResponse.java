@@ -0,0 +1,8 @@
+package com.tpi.solicitudes.web.dto;
+
+import java.util.List;
+
+/**
+ * Página de un listado por cursor. {@code siguienteCursor} es null cuando no hay más resultados.
+ */
+public record CursorResponse<T>(List<T> contenido, String siguienteCursor) {}
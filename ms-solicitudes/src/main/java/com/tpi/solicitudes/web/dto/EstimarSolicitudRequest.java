@@ -0,0 +1,21 @@
+package com.tpi.solicitudes.web.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+public record EstimarSolicitudRequest(
+        @NotEmpty List<@Valid @NotNull CoordenadasTramo> tramos
+) {
+    public record CoordenadasTramo(
+            @NotNull Long idTramo,
+            @NotNull @DecimalMin("-90") @DecimalMax("90") Double origenLat,
+            @NotNull @DecimalMin("-180") @DecimalMax("180") Double origenLng,
+            @NotNull @DecimalMin("-90") @DecimalMax("90") Double destinoLat,
+            @NotNull @DecimalMin("-180") @DecimalMax("180") Double destinoLng
+    ) {}
+}
@@ -0,0 +1,15 @@
+package com.tpi.solicitudes.web.dto;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+
+import java.time.LocalDateTime;
+
+public record PingTelemetriaRequest(
+        @NotNull LocalDateTime fechaHora,
+        @NotNull @DecimalMin("-90") @DecimalMax("90") Double latitud,
+        @NotNull @DecimalMin("-180") @DecimalMax("180") Double longitud,
+        @PositiveOrZero Double odometro
+) {}
@@ -0,0 +1,24 @@
+package com.tpi.solicitudes.web.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record TelemetriaLoteRequest(
+        @NotEmpty @Size(max = 1000) List<@Valid @NotNull Ping> pings
+) {
+    public record Ping(
+            @NotNull Long idTramo,
+            @NotNull LocalDateTime fechaHora,
+            @NotNull @DecimalMin("-90") @DecimalMax("90") Double latitud,
+            @NotNull @DecimalMin("-180") @DecimalMax("180") Double longitud,
+            @PositiveOrZero Double odometro
+    ) {}
+}
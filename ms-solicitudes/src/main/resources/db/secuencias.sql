@@ -0,0 +1,22 @@
+-- Secuencias pooled de los ids (allocationSize = 50 en las entidades). Se ejecuta en cada arranque, después
+-- de que Hibernate inicializa el esquema (spring.jpa.defer-datasource-initialization), y es idempotente.
+--
+-- Hibernate reserva los ids (v - 50, v] con cada nextval = v. Si la secuencia quedó detrás de las filas
+-- (base anterior a las secuencias, filas cargadas a mano) se lleva a MAX(id): el próximo nextval da
+-- MAX(id) + 50 y el primer id nuevo es MAX(id) + 1. Una secuencia que ya está adelante no se toca, así una
+-- instancia que arranca no retrocede la de otra que está en marcha.
+
+CREATE SEQUENCE IF NOT EXISTS solicitudes_seq START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE solicitudes_seq INCREMENT BY 50;
+SELECT setval('solicitudes_seq', m) FROM (SELECT MAX(nro_solicitud) AS m FROM solicitudes) f
+WHERE m >= (SELECT last_value FROM solicitudes_seq);
+
+CREATE SEQUENCE IF NOT EXISTS tramos_seq START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE tramos_seq INCREMENT BY 50;
+SELECT setval('tramos_seq', m) FROM (SELECT MAX(id_tramo) AS m FROM tramos) f
+WHERE m >= (SELECT last_value FROM tramos_seq);
+
+CREATE SEQUENCE IF NOT EXISTS clientes_seq START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE clientes_seq INCREMENT BY 50;
+SELECT setval('clientes_seq', m) FROM (SELECT MAX(id_cliente) AS m FROM clientes) f
+WHERE m >= (SELECT last_value FROM clientes_seq);
@@ -0,0 +1,15 @@
+-- Tabla de telemetría de tramos (PingTramo), para bases con ddl-auto=none. Se ejecuta en cada arranque
+-- junto con secuencias.sql y es idempotente; con ddl-auto=update Hibernate ya la creó y no hace nada.
+-- Sin FK a tramos a propósito: ver PingTramo.
+
+CREATE TABLE IF NOT EXISTS telemetria_tramos (
+    id_ping bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    id_tramo bigint NOT NULL,
+    fecha_hora timestamp(6) NOT NULL,
+    latitud float8 NOT NULL,
+    longitud float8 NOT NULL,
+    odometro float8,
+    recibido timestamp(6) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_telemetria_tramo_fecha ON telemetria_tramos (id_tramo, fecha_hora);
@@ -0,0 +1,122 @@
+package com.tpi.solicitudes.benchmark;
+
+import com.tpi.solicitudes.domain.EstadoSolicitud;
+import com.tpi.solicitudes.domain.EstadoTramo;
+import com.tpi.solicitudes.domain.Solicitud;
+import com.tpi.solicitudes.domain.Tramo;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filas insertadas por segundo al dar de alta una solicitud con {@value #TRAMOS} tramos en una transacción,
+ * con las mismas entidades y la misma configuración de Hibernate que el servicio (batch_size 50, order_inserts):
+ * <ul>
+ *     <li>{@code identidad}: ids IDENTITY como antes (se pisan con un orm.xml). Hibernate necesita el id
+ *     generado de cada fila, así que inserta de a una y no agrupa.</li>
+ *     <li>{@code secuencia}: secuencias pooled de a 50, INSERT agrupados en lotes JDBC.</li>
+ *     <li>{@code secuencia-reescritura}: además reWriteBatchedInserts, cada lote viaja como un INSERT multi-fila.</li>
+ * </ul>
+ * Contra un PostgreSQL embebido en la misma máquina: con la base en otro host cada viaje cuesta más y la
+ * diferencia crece.
+ *
+ * Ejecutar (desde ms-solicitudes):
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ *   java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main AltaSolicitud
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AltaSolicitudBenchmark {
+
+    static final int TRAMOS = 20;
+
+    private static final String IDS_IDENTITY = """
+            <entity-mappings xmlns="https://jakarta.ee/xml/ns/persistence/orm" version="3.1">
+                <entity class="com.tpi.solicitudes.domain.Solicitud">
+                    <attributes><id name="nroSolicitud"><column name="nro_solicitud"/><generated-value strategy="IDENTITY"/></id></attributes>
+                </entity>
+                <entity class="com.tpi.solicitudes.domain.Tramo">
+                    <attributes><id name="idTramo"><column name="id_tramo"/><generated-value strategy="IDENTITY"/></id></attributes>
+                </entity>
+            </entity-mappings>
+            """;
+
+    @Param({"identidad", "secuencia", "secuencia-reescritura"})
+    String modo;
+
+    private EmbeddedPostgres postgres;
+    private HikariDataSource dataSource;
+    private SessionFactory sessionFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(postgres.getJdbcUrl("postgres", "postgres"));
+        config.setMaximumPoolSize(2);
+        config.addDataSourceProperty("reWriteBatchedInserts", modo.equals("secuencia-reescritura"));
+        dataSource = new HikariDataSource(config);
+
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DATASOURCE, dataSource)
+                .applySetting(AvailableSettings.PHYSICAL_NAMING_STRATEGY, new CamelCaseToUnderscoresNamingStrategy())
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "create")
+                .applySetting(AvailableSettings.STATEMENT_BATCH_SIZE, 50)
+                .applySetting(AvailableSettings.ORDER_INSERTS, true)
+                .applySetting(AvailableSettings.ORDER_UPDATES, true)
+                .build();
+        MetadataSources fuentes = new MetadataSources(registry)
+                .addAnnotatedClass(Solicitud.class)
+                .addAnnotatedClass(Tramo.class);
+        if (modo.equals("identidad")) {
+            fuentes.addInputStream(new ByteArrayInputStream(IDS_IDENTITY.getBytes(StandardCharsets.UTF_8)));
+        }
+        sessionFactory = fuentes.buildMetadata().buildSessionFactory();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        sessionFactory.close();
+        dataSource.close();
+        postgres.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRAMOS + 1)
+    public Long alta() {
+        return sessionFactory.fromTransaction(session -> {
+            Solicitud solicitud = Solicitud.builder()
+                    .idContenedor(1L)
+                    .idCliente(1L)
+                    .estado(EstadoSolicitud.BORRADOR)
+                    .build();
+            session.persist(solicitud);
+            for (int i = 0; i < TRAMOS; i++) {
+                session.persist(Tramo.builder()
+                        .solicitud(solicitud)
+                        .origen("Origen " + i)
+                        .destino("Destino " + i)
+                        .estado(EstadoTramo.PENDIENTE)
+                        .build());
+            }
+            return solicitud.getNroSolicitud();
+        });
+    }
+}
@@ -0,0 +1,139 @@
+package com.tpi.solicitudes.benchmark;
+
+import com.tpi.solicitudes.MsSolicitudesApplication;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prueba de carga de ms-solicitudes con y sin hilos virtuales: levanta el servicio completo contra un
+ * PostgreSQL embebido y mantiene {@code conexiones} clientes concurrentes pidiendo {@code GET /tramos/{id}}
+ * (JPA, bloqueante) durante la medición. Reporta throughput, p50/p99/máx y errores.
+ * <p>
+ * Para que la base pese como en producción, {@code tramos} se reemplaza por una vista que espera
+ * {@code latenciaMs} por fila leída (pg_sleep): cada petición retiene la conexión de Hikari ese tiempo.
+ * No es JMH: lo que se mide es el servidor, no un método. El cliente corre en otro JVM para no compartir
+ * carriers con el servidor.
+ *
+ * Ejecutar (desde ms-solicitudes), una vez por modo:
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ *   CP=target/test-classes:target/classes:$(cat target/cp.txt)
+ *   java -cp $CP com.tpi.solicitudes.benchmark.CargaHilosVirtuales servidor [virtuales|plataforma] [latenciaMs] [poolHikari]
+ *   java -cp $CP com.tpi.solicitudes.benchmark.CargaHilosVirtuales cliente 8082 [conexiones]
+ */
+public final class CargaHilosVirtuales {
+
+    private static final int TRAMOS = 1000;
+    private static final Duration CALENTAMIENTO = Duration.ofSeconds(15);
+    private static final Duration MEDICION = Duration.ofSeconds(30);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("cliente")) {
+            cargar(Integer.parseInt(args[1]), args.length > 2 ? Integer.parseInt(args[2]) : 5000);
+            return;
+        }
+        boolean virtuales = !(args.length > 1 && args[1].equals("plataforma"));
+        int latenciaMs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int pool = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start()) {
+            // Como propiedades de sistema: tienen prioridad sobre application.yml
+            System.setProperty("spring.datasource.url", postgres.getJdbcUrl("postgres", "postgres"));
+            System.setProperty("spring.datasource.username", "postgres");
+            System.setProperty("spring.datasource.password", "postgres");
+            System.setProperty("spring.datasource.hikari.maximum-pool-size", String.valueOf(pool));
+            System.setProperty("spring.jpa.hibernate.ddl-auto", "update");
+            System.setProperty("spring.jpa.show-sql", "false");
+            System.setProperty("server.port", System.getProperty("server.port", "8082"));
+            if (virtuales) {
+                System.setProperty("spring.profiles.active", "virtual");
+            }
+            System.setProperty("logging.level.root", System.getProperty("logging.level.root", "WARN"));
+
+            try (ConfigurableApplicationContext contexto = SpringApplication.run(MsSolicitudesApplication.class)) {
+                prepararDatos(new JdbcTemplate(postgres.getPostgresDatabase()), latenciaMs);
+                System.out.printf("servidor listo: modo=%s latenciaMs=%d poolHikari=%d%n",
+                        virtuales ? "virtuales" : "plataforma", latenciaMs, pool);
+                Thread.currentThread().join();
+            }
+        }
+    }
+
+    private static void prepararDatos(JdbcTemplate jdbc, int latenciaMs) {
+        jdbc.update("INSERT INTO solicitudes (nro_solicitud, fecha_creacion) VALUES (1, LOCALTIMESTAMP)");
+        jdbc.update("INSERT INTO tramos (id_tramo, nro_solicitud, origen, destino, estado) " +
+                "SELECT g, 1, 'Origen ' || g, 'Destino ' || g, 'PENDIENTE' FROM generate_series(1, ?) g", TRAMOS);
+        jdbc.execute("ALTER TABLE tramos RENAME TO tramos_datos");
+        jdbc.execute("CREATE FUNCTION esperar_base() RETURNS boolean LANGUAGE plpgsql VOLATILE AS $$ " +
+                "BEGIN PERFORM pg_sleep(" + latenciaMs / 1000.0 + "); RETURN true; END $$");
+        jdbc.execute("CREATE VIEW tramos AS SELECT * FROM tramos_datos WHERE esperar_base()");
+    }
+
+    private static void cargar(int puerto, int conexiones) throws InterruptedException {
+        Recorder recorder = new Recorder(3);
+        LongAdder errores = new LongAdder();
+        AtomicBoolean corriendo = new AtomicBoolean(true);
+
+        try (ExecutorService clientes = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient http = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .connectTimeout(Duration.ofSeconds(10))
+                     .executor(clientes)
+                     .build()) {
+            for (int i = 0; i < conexiones; i++) {
+                clientes.submit(() -> {
+                    while (corriendo.get()) {
+                        long id = ThreadLocalRandom.current().nextLong(1, TRAMOS + 1);
+                        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + "/tramos/" + id))
+                                .timeout(Duration.ofSeconds(60))
+                                .build();
+                        long inicio = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() == 200) {
+                                recorder.recordValue(System.nanoTime() - inicio);
+                            } else {
+                                errores.increment();
+                            }
+                        } catch (Exception e) {
+                            errores.increment();
+                        }
+                    }
+                });
+            }
+
+            Thread.sleep(CALENTAMIENTO.toMillis());
+            recorder.reset();
+            errores.reset();
+            Thread.sleep(MEDICION.toMillis());
+            Histogram histograma = recorder.getIntervalHistogram();
+            long fallidas = errores.sum();
+            corriendo.set(false);
+
+            System.out.printf("conexiones=%d ok=%d errores=%d throughput=%.0f req/s p50=%.1fms p99=%.1fms max=%.1fms%n",
+                    conexiones, histograma.getTotalCount(), fallidas, histograma.getTotalCount() / (double) MEDICION.toSeconds(),
+                    histograma.getValueAtPercentile(50) / 1e6, histograma.getValueAtPercentile(99) / 1e6,
+                    histograma.getMaxValue() / 1e6);
+            clientes.shutdownNow();
+        }
+        System.exit(0);
+    }
+
+    private CargaHilosVirtuales() {
+    }
+}
@@ -0,0 +1,179 @@
+package com.tpi.solicitudes.benchmark;
+
+import com.tpi.solicitudes.MsSolicitudesApplication;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prueba de carga de la recepción de telemetría: levanta el servicio completo contra un PostgreSQL embebido
+ * con {@value #TRAMOS} tramos iniciados y un cliente en otro JVM manda lotes de pings a
+ * {@code POST /api/tramos/telemetria} desde {@code conexiones} hilos.
+ * <p>
+ * El cliente reporta pings aceptados por segundo y respuestas 503 (anillo lleno); el servidor, cada 5 s, las
+ * filas escritas en {@code telemetria_tramos} por segundo y la ocupación del anillo. Si lo aceptado supera
+ * sostenidamente a lo escrito, el anillo se llena y aparecen los 503: ese es el techo de la base.
+ * El token se acepta sin validar (JwtDecoder de prueba con rol TRANSPORTISTA).
+ *
+ * Ejecutar (desde ms-solicitudes):
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ *   CP=target/test-classes:target/classes:$(cat target/cp.txt)
+ *   java -cp $CP com.tpi.solicitudes.benchmark.CargaTelemetria servidor [politica] [poolHikari]
+ *   java -cp $CP com.tpi.solicitudes.benchmark.CargaTelemetria cliente 8082 [conexiones] [pingsPorLote]
+ */
+public final class CargaTelemetria {
+
+    private static final int TRAMOS = 1000;
+    private static final Duration CALENTAMIENTO = Duration.ofSeconds(15);
+    private static final Duration MEDICION = Duration.ofSeconds(30);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("cliente")) {
+            cargar(Integer.parseInt(args[1]),
+                    args.length > 2 ? Integer.parseInt(args[2]) : 32,
+                    args.length > 3 ? Integer.parseInt(args[3]) : 100);
+            return;
+        }
+        String politica = args.length > 1 ? args[1] : "RECHAZAR";
+        int pool = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start()) {
+            // Como propiedades de sistema: tienen prioridad sobre application.yml
+            System.setProperty("spring.datasource.url", postgres.getJdbcUrl("postgres", "postgres"));
+            System.setProperty("spring.datasource.username", "postgres");
+            System.setProperty("spring.datasource.password", "postgres");
+            System.setProperty("spring.datasource.hikari.maximum-pool-size", String.valueOf(pool));
+            System.setProperty("spring.jpa.hibernate.ddl-auto", "update");
+            System.setProperty("spring.jpa.show-sql", "false");
+            System.setProperty("server.port", System.getProperty("server.port", "8082"));
+            System.setProperty("telemetria.politica-lleno", politica);
+            System.setProperty("logging.level.root", System.getProperty("logging.level.root", "WARN"));
+
+            SpringApplication aplicacion = new SpringApplication(MsSolicitudesApplication.class);
+            aplicacion.addInitializers(contexto -> ((GenericApplicationContext) contexto).registerBean(JwtDecoder.class,
+                    () -> token -> Jwt.withTokenValue(token)
+                            .header("alg", "none")
+                            .subject("camion")
+                            // SecurityConfig lee el claim con ese nombre literal
+                            .claim("realm_access.roles", List.of("TRANSPORTISTA"))
+                            .build()));
+            try (ConfigurableApplicationContext contexto = aplicacion.run()) {
+                JdbcTemplate jdbc = new JdbcTemplate(postgres.getPostgresDatabase());
+                prepararDatos(jdbc);
+                System.out.printf("servidor listo: politica=%s poolHikari=%d%n", politica, pool);
+                informar(jdbc, contexto.getBean(MeterRegistry.class));
+            }
+        }
+    }
+
+    private static void prepararDatos(JdbcTemplate jdbc) {
+        jdbc.update("INSERT INTO solicitudes (nro_solicitud, fecha_creacion, tramos_pendientes, tramos_iniciados, tramos_finalizados) " +
+                "VALUES (1, LOCALTIMESTAMP, 0, ?, 0)", TRAMOS);
+        jdbc.update("INSERT INTO tramos (id_tramo, nro_solicitud, origen, destino, estado, fecha_hora_inicio_real) " +
+                "SELECT g, 1, 'Origen ' || g, 'Destino ' || g, 'INICIADO', LOCALTIMESTAMP FROM generate_series(1, ?) g", TRAMOS);
+    }
+
+    private static void informar(JdbcTemplate jdbc, MeterRegistry registry) throws InterruptedException {
+        long filasAntes = 0;
+        while (true) {
+            Thread.sleep(5000);
+            long filas = jdbc.queryForObject("SELECT COUNT(*) FROM telemetria_tramos", Long.class);
+            double ocupados = registry.get("solicitudes.telemetria.buffer.ocupados").gauge().value();
+            double rechazados = registry.get("solicitudes.telemetria.pings").tag("resultado", "rechazado").counter().count();
+            System.out.printf("escritas=%d (%.0f filas/s) anillo=%.0f rechazados=%.0f lote medio=%.0f%n",
+                    filas, (filas - filasAntes) / 5.0, ocupados, rechazados,
+                    registry.get("solicitudes.telemetria.lote.tamano").summary().mean());
+            filasAntes = filas;
+        }
+    }
+
+    private static void cargar(int puerto, int conexiones, int pingsPorLote) throws InterruptedException {
+        LongAdder aceptados = new LongAdder();
+        LongAdder saturado = new LongAdder();
+        LongAdder errores = new LongAdder();
+        AtomicBoolean corriendo = new AtomicBoolean(true);
+        URI uri = URI.create("http://localhost:" + puerto + "/api/tramos/telemetria");
+
+        try (ExecutorService clientes = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient http = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .connectTimeout(Duration.ofSeconds(10))
+                     .executor(clientes)
+                     .build()) {
+            for (int i = 0; i < conexiones; i++) {
+                clientes.submit(() -> {
+                    while (corriendo.get()) {
+                        HttpRequest request = HttpRequest.newBuilder(uri)
+                                .header("Authorization", "Bearer prueba")
+                                .header("Content-Type", "application/json")
+                                .timeout(Duration.ofSeconds(30))
+                                .POST(HttpRequest.BodyPublishers.ofString(lote(pingsPorLote)))
+                                .build();
+                        try {
+                            HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() == 202) {
+                                aceptados.add(pingsPorLote);
+                            } else if (response.statusCode() == 503) {
+                                saturado.increment();
+                                Thread.sleep(1000); // Retry-After
+                            } else {
+                                errores.increment();
+                            }
+                        } catch (Exception e) {
+                            errores.increment();
+                        }
+                    }
+                });
+            }
+
+            Thread.sleep(CALENTAMIENTO.toMillis());
+            aceptados.reset();
+            saturado.reset();
+            errores.reset();
+            Thread.sleep(MEDICION.toMillis());
+            long total = aceptados.sum();
+            corriendo.set(false);
+
+            System.out.printf("conexiones=%d pingsPorLote=%d aceptados=%d (%.0f pings/s) 503=%d errores=%d%n",
+                    conexiones, pingsPorLote, total, total / (double) MEDICION.toSeconds(), saturado.sum(), errores.sum());
+            clientes.shutdownNow();
+        }
+        System.exit(0);
+    }
+
+    private static String lote(int pings) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LocalDateTime ahora = LocalDateTime.now();
+        StringBuilder json = new StringBuilder(pings * 110).append("{\"pings\":[");
+        for (int i = 0; i < pings; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"idTramo\":").append(random.nextInt(1, TRAMOS + 1))
+                    .append(",\"fechaHora\":\"").append(ahora.minusSeconds(pings - i)).append('"')
+                    .append(",\"latitud\":").append(-31.4 + random.nextDouble(0.1))
+                    .append(",\"longitud\":").append(-64.2 + random.nextDouble(0.1))
+                    .append(",\"odometro\":").append(random.nextInt(100_000)).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private CargaTelemetria() {
+    }
+}
@@ -0,0 +1,127 @@
+package com.tpi.solicitudes.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tpi.solicitudes.client.DistanciaYDuracion;
+import com.tpi.solicitudes.client.ExtractorDirections;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extracción de distancia/duración de una respuesta de Google Directions: mapa completo con ObjectMapper
+ * (camino anterior de GoogleMapsClient) contra {@link ExtractorDirections}, con el cuerpo entero o en trozos
+ * de 8 KB como llega por la red. Las respuestas se arman con la forma real de la API (waypoints geocodificados,
+ * rutas alternativas, steps con polilíneas e instrucciones HTML) y {@code steps} pasos por leg.
+ *
+ * Ejecutar (desde ms-solicitudes; -prof gc muestra la basura por operación):
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ *   java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main DirectionsParser -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirectionsParserBenchmark {
+
+    private static final int TROZO = 8 * 1024;
+
+    @Param({"20", "400"})
+    int steps;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] respuesta;
+
+    @Setup
+    public void setUp() {
+        respuesta = generarRespuesta(new Random(7), 3, steps).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public DistanciaYDuracion mapaCompleto() throws IOException {
+        Map<String, Object> body = objectMapper.readValue(respuesta, new TypeReference<Map<String, Object>>() {});
+        if (!"OK".equals(body.get("status"))) throw new IllegalStateException();
+        Map<?, ?> ruta = (Map<?, ?>) ((List<?>) body.get("routes")).get(0);
+        Map<?, ?> leg = (Map<?, ?>) ((List<?>) ruta.get("legs")).get(0);
+        Number metros = (Number) ((Map<?, ?>) leg.get("distance")).get("value");
+        Number segundos = (Number) ((Map<?, ?>) leg.get("duration")).get("value");
+        return new DistanciaYDuracion(metros.doubleValue() / 1000.0, Math.round(segundos.doubleValue() / 60.0));
+    }
+
+    @Benchmark
+    public DistanciaYDuracion extractor() throws IOException {
+        return ExtractorDirections.extraer(respuesta);
+    }
+
+    @Benchmark
+    public DistanciaYDuracion extractorEnTrozos() throws IOException {
+        ExtractorDirections extractor = new ExtractorDirections();
+        for (int desde = 0; desde < respuesta.length; desde += TROZO) {
+            if (extractor.alimentar(ByteBuffer.wrap(respuesta, desde, Math.min(TROZO, respuesta.length - desde)))) break;
+        }
+        return extractor.terminar();
+    }
+
+    static String generarRespuesta(Random random, int rutas, int steps) {
+        StringBuilder sb = new StringBuilder(1 << 16);
+        sb.append("{\"geocoded_waypoints\":[");
+        for (int i = 0; i < 2; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"geocoder_status\":\"OK\",\"place_id\":\"").append(texto(random, 27))
+                    .append("\",\"types\":[\"street_address\",\"premise\"]}");
+        }
+        sb.append("],\"routes\":[");
+        for (int r = 0; r < rutas; r++) {
+            if (r > 0) sb.append(',');
+            sb.append("{\"bounds\":{\"northeast\":{\"lat\":-31.35,\"lng\":-58.37},\"southwest\":{\"lat\":-34.61,\"lng\":-64.19}},")
+                    .append("\"copyrights\":\"Map data ©2024 Google\",\"legs\":[{");
+            long metrosLeg = 0;
+            long segundosLeg = 0;
+            StringBuilder pasos = new StringBuilder();
+            for (int s = 0; s < steps; s++) {
+                int metros = 50 + random.nextInt(5000);
+                int segundos = 5 + random.nextInt(300);
+                metrosLeg += metros;
+                segundosLeg += segundos;
+                if (s > 0) pasos.append(',');
+                pasos.append("{\"distance\":{\"text\":\"").append(metros / 1000.0).append(" km\",\"value\":").append(metros)
+                        .append("},\"duration\":{\"text\":\"").append(segundos / 60).append(" min\",\"value\":").append(segundos)
+                        .append("},\"end_location\":{\"lat\":").append(-31 - random.nextDouble() * 3)
+                        .append(",\"lng\":").append(-58 - random.nextDouble() * 6)
+                        .append("},\"html_instructions\":\"Gire a la \\u003cb\\u003ederecha\\u003c/b\\u003e hacia \\u003cb\\u003e")
+                        .append(texto(random, 18)).append("\\u003c/b\\u003e\",\"maneuver\":\"turn-right\",")
+                        .append("\"polyline\":{\"points\":\"").append(texto(random, 200 + random.nextInt(400)))
+                        .append("\"},\"start_location\":{\"lat\":").append(-31 - random.nextDouble() * 3)
+                        .append(",\"lng\":").append(-58 - random.nextDouble() * 6)
+                        .append("},\"travel_mode\":\"DRIVING\"}");
+            }
+            sb.append("\"distance\":{\"text\":\"").append(metrosLeg / 1000).append(" km\",\"value\":").append(metrosLeg)
+                    .append("},\"duration\":{\"text\":\"").append(segundosLeg / 3600).append(" h\",\"value\":").append(segundosLeg)
+                    .append("},\"end_address\":\"Buenos Aires, Argentina\",\"end_location\":{\"lat\":-34.6037,\"lng\":-58.3816},")
+                    .append("\"start_address\":\"Córdoba, Argentina\",\"start_location\":{\"lat\":-31.4201,\"lng\":-64.1888},")
+                    .append("\"steps\":[").append(pasos).append("],\"traffic_speed_entry\":[],\"via_waypoint\":[]}],")
+                    .append("\"overview_polyline\":{\"points\":\"").append(texto(random, 20 * steps)).append("\"},")
+                    .append("\"summary\":\"RN9\",\"warnings\":[],\"waypoint_order\":[]}");
+        }
+        sb.append("],\"status\":\"OK\"}");
+        return sb.toString();
+    }
+
+    // Caracteres del alfabeto de polilíneas codificadas, sin comillas ni barras
+    private static String texto(Random random, int largo) {
+        char[] c = new char[largo];
+        for (int i = 0; i < largo; i++) {
+            c[i] = (char) ('?' + random.nextInt(63));
+            if (c[i] == '\\') c[i] = '_';
+        }
+        return new String(c);
+    }
+}
@@ -0,0 +1,158 @@
+package com.tpi.solicitudes.client;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlmacenRutasMapeadoTest {
+
+    private static final int CAPACIDAD = AlmacenRutasMapeado.MAX_SONDEO;
+    private static final long TTL_MS = 60_000;
+
+    @TempDir
+    Path directorio;
+
+    private AlmacenRutasMapeado abrir(int capacidad, int precision) throws Exception {
+        return new AlmacenRutasMapeado(directorio.resolve("rutas.bin"), capacidad, precision, TTL_MS);
+    }
+
+    private static DistanciaYDuracion ruta(double km) {
+        return new DistanciaYDuracion(km, (long) km);
+    }
+
+    // Claves distintas que caen en el mismo slot inicial de una tabla de la capacidad dada
+    private static List<ClaveRuta> queColisionan(int cantidad, int capacidad) {
+        List<ClaveRuta> claves = new ArrayList<>();
+        long slot = -1;
+        for (int i = 0; claves.size() < cantidad; i++) {
+            ClaveRuta clave = new ClaveRuta(i, -i, 2 * i, 7);
+            long inicial = Long.remainderUnsigned(clave.hash(), capacidad);
+            if (slot == -1) slot = inicial;
+            if (inicial == slot) claves.add(clave);
+        }
+        return claves;
+    }
+
+    @Test
+    void guardar_ClavesQueColisionan_EncuentraCadaUnaEnLaVentanaDeSondeo() throws Exception {
+        // Arrange
+        List<ClaveRuta> claves = queColisionan(3, 1024);
+        try (AlmacenRutasMapeado almacen = abrir(1024, 3)) {
+
+            // Act
+            for (int i = 0; i < claves.size(); i++) {
+                almacen.guardar(claves.get(i), ruta(i + 1), 1_000);
+            }
+
+            // Assert
+            for (int i = 0; i < claves.size(); i++) {
+                assertEquals(ruta(i + 1), almacen.buscar(claves.get(i), 1_000));
+            }
+            assertEquals(3, almacen.ocupados());
+        }
+    }
+
+    @Test
+    void guardar_MismaClave_PisaElValorSinOcuparOtroSlot() throws Exception {
+        // Arrange
+        List<ClaveRuta> claves = queColisionan(2, 1024);
+        try (AlmacenRutasMapeado almacen = abrir(1024, 3)) {
+            almacen.guardar(claves.get(0), ruta(10), 1_000);
+            almacen.guardar(claves.get(1), ruta(20), 1_000);
+
+            // Act
+            almacen.guardar(claves.get(0), ruta(11), 2_000);
+
+            // Assert
+            assertEquals(ruta(11), almacen.buscar(claves.get(0), 2_000));
+            assertEquals(ruta(20), almacen.buscar(claves.get(1), 2_000));
+            assertEquals(2, almacen.ocupados());
+        }
+    }
+
+    @Test
+    void guardar_VentanaLlena_PisaLaEntradaMasVieja() throws Exception {
+        // Arrange: la tabla mide lo mismo que la ventana, así que con MAX_SONDEO claves queda llena
+        List<ClaveRuta> claves = queColisionan(AlmacenRutasMapeado.MAX_SONDEO + 1, CAPACIDAD);
+        try (AlmacenRutasMapeado almacen = abrir(CAPACIDAD, 3)) {
+            for (int i = 0; i < AlmacenRutasMapeado.MAX_SONDEO; i++) {
+                // La tercera es la más vieja
+                almacen.guardar(claves.get(i), ruta(i + 1), i == 2 ? 500 : 1_000 + i);
+            }
+
+            // Act
+            ClaveRuta nueva = claves.get(AlmacenRutasMapeado.MAX_SONDEO);
+            almacen.guardar(nueva, ruta(99), 5_000);
+
+            // Assert
+            assertEquals(ruta(99), almacen.buscar(nueva, 5_000));
+            assertNull(almacen.buscar(claves.get(2), 5_000));
+            assertEquals(ruta(1), almacen.buscar(claves.get(0), 5_000));
+            assertEquals(ruta(16), almacen.buscar(claves.get(15), 5_000));
+            assertEquals(CAPACIDAD, almacen.ocupados());
+        }
+    }
+
+    @Test
+    void buscar_TrasReabrir_DevuelveLoGuardadoHastaQueVence() throws Exception {
+        // Arrange
+        ClaveRuta clave = ClaveRuta.de(-31.417, -64.183, -34.604, -58.382, 3);
+        try (AlmacenRutasMapeado almacen = abrir(1024, 3)) {
+            almacen.guardar(clave, ruta(700), 1_000);
+        }
+
+        // Act
+        try (AlmacenRutasMapeado reabierto = abrir(1024, 3)) {
+
+            // Assert: el TTL se mide contra el momento del guardado, también entre reinicios
+            assertEquals(ruta(700), reabierto.buscar(clave, 1_000 + TTL_MS));
+            assertNull(reabierto.buscar(clave, 1_000 + TTL_MS + 1));
+            assertEquals(1, reabierto.ocupados());
+        }
+    }
+
+    @Test
+    void constructor_OtraPrecision_ReiniciaElArchivo() throws Exception {
+        // Arrange
+        ClaveRuta clave = new ClaveRuta(1, 2, 3, 4);
+        try (AlmacenRutasMapeado almacen = abrir(1024, 3)) {
+            almacen.guardar(clave, ruta(5), 1_000);
+        }
+
+        // Act: la misma clave entera significa otra coordenada con otra precisión
+        try (AlmacenRutasMapeado reabierto = abrir(1024, 4)) {
+
+            // Assert
+            assertEquals(0, reabierto.ocupados());
+            assertNull(reabierto.buscar(clave, 1_000));
+        }
+    }
+
+    @Test
+    void constructor_OtraCapacidad_ReiniciaElArchivo() throws Exception {
+        // Arrange
+        ClaveRuta clave = new ClaveRuta(1, 2, 3, 4);
+        try (AlmacenRutasMapeado almacen = abrir(1024, 3)) {
+            almacen.guardar(clave, ruta(5), 1_000);
+        }
+
+        // Act
+        try (AlmacenRutasMapeado reabierto = abrir(2048, 3)) {
+
+            // Assert
+            assertEquals(0, reabierto.ocupados());
+            assertNull(reabierto.buscar(clave, 1_000));
+        }
+    }
+
+    @Test
+    void constructor_CapacidadMenorQueLaVentana_LanzaExcepcion() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> abrir(AlmacenRutasMapeado.MAX_SONDEO - 1, 3));
+    }
+}
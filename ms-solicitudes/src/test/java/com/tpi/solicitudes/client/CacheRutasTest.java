@@ -0,0 +1,126 @@
+package com.tpi.solicitudes.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheRutasTest {
+
+    private static final ClaveRuta CLAVE = ClaveRuta.de(-31.417, -64.183, -34.604, -58.382, 3);
+    private static final DistanciaYDuracion RUTA = new DistanciaYDuracion(700.5, 420);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @TempDir
+    Path directorio;
+
+    private CacheRutas cache(String archivo) {
+        return new CacheRutas(registry, 3, 100, Duration.ofHours(1), archivo, 1024, Duration.ofDays(1));
+    }
+
+    private double consultas(String resultado) {
+        return registry.get("solicitudes.directions.cache.requests").tag("resultado", resultado).counter().count();
+    }
+
+    @Test
+    void obtener_ConsultasConcurrentesDeLaMismaClave_CompartenUnaSolaLlamada() throws Exception {
+        // Arrange: la respuesta de Google queda pendiente hasta que la emitimos
+        CacheRutas cache = cache("");
+        Sinks.One<DistanciaYDuracion> google = Sinks.one();
+        AtomicInteger llamadas = new AtomicInteger();
+        CompletableFuture<DistanciaYDuracion> primera = cache.obtener(CLAVE, k -> {
+            llamadas.incrementAndGet();
+            return google.asMono();
+        }).toFuture();
+        CompletableFuture<DistanciaYDuracion> segunda = cache.obtener(CLAVE, k -> {
+            llamadas.incrementAndGet();
+            return Mono.error(new IllegalStateException("No debería llamarse"));
+        }).toFuture();
+        assertFalse(primera.isDone());
+
+        // Act
+        google.tryEmitValue(RUTA);
+
+        // Assert
+        assertEquals(RUTA, primera.get());
+        assertEquals(RUTA, segunda.get());
+        assertEquals(1, llamadas.get());
+        assertEquals(1.0, consultas("remota"));
+        assertEquals(1.0, consultas("coalescida"));
+    }
+
+    @Test
+    void obtener_YaResuelta_LaDevuelveDeMemoria() {
+        // Arrange
+        CacheRutas cache = cache("");
+        cache.obtener(CLAVE, k -> Mono.just(RUTA)).block();
+
+        // Act
+        DistanciaYDuracion ruta = cache.obtener(CLAVE, k -> Mono.error(new IllegalStateException("No debería llamarse"))).block();
+
+        // Assert
+        assertEquals(RUTA, ruta);
+        assertEquals(1.0, consultas("memoria"));
+    }
+
+    @Test
+    void obtener_ErrorRemoto_NoLoCacheaYLaSiguienteVuelveAConsultar() {
+        // Arrange
+        CacheRutas cache = cache("");
+        Mono<DistanciaYDuracion> fallida = cache.obtener(CLAVE, k -> Mono.error(new IllegalStateException("Google caído")));
+        assertThrows(IllegalStateException.class, fallida::block);
+
+        // Act
+        DistanciaYDuracion ruta = cache.obtener(CLAVE, k -> Mono.just(RUTA)).block();
+
+        // Assert
+        assertEquals(RUTA, ruta);
+        assertEquals(2.0, consultas("remota"));
+    }
+
+    @Test
+    void obtener_TrasReiniciar_LaEncuentraEnDiscoSinLlamarAGoogle() {
+        // Arrange
+        String archivo = directorio.resolve("rutas.bin").toString();
+        CacheRutas anterior = cache(archivo);
+        anterior.obtener(CLAVE, k -> Mono.just(RUTA)).block();
+        anterior.cerrar();
+
+        // Act
+        CacheRutas nuevo = new CacheRutas(new SimpleMeterRegistry(), 3, 100, Duration.ofHours(1), archivo, 1024, Duration.ofDays(1));
+        DistanciaYDuracion ruta = nuevo.obtener(CLAVE, k -> Mono.error(new IllegalStateException("No debería llamarse"))).block();
+
+        // Assert
+        assertEquals(RUTA, ruta);
+        nuevo.cerrar();
+    }
+
+    @Test
+    void constructor_ArchivoQueNoAbre_SigueSoloConMemoria() throws Exception {
+        // Arrange: un directorio no se puede mapear como archivo
+        CacheRutas cache = cache(directorio.toString());
+
+        // Act
+        DistanciaYDuracion ruta = cache.obtener(CLAVE, k -> Mono.just(RUTA)).block();
+
+        // Assert
+        assertEquals(RUTA, ruta);
+        assertTrue(registry.find("solicitudes.directions.cache.size").tag("nivel", "disco").gauges().isEmpty());
+    }
+
+    @Test
+    void constructor_PrecisionFueraDeRango_LanzaExcepcion() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> new CacheRutas(registry, ClaveRuta.PRECISION_MAXIMA + 1, 100, Duration.ofHours(1), "", 1024, Duration.ofDays(1)));
+    }
+}
@@ -0,0 +1,219 @@
+package com.tpi.solicitudes.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CargadorCamionesTest {
+
+    private static final Duration VENTANA_LARGA = Duration.ofHours(1);
+
+    @Mock
+    private LogisticaClient logisticaClient;
+
+    private SimpleMeterRegistry registry;
+    // Dominios de cada llamada a ms-logistica, copiados al momento de la llamada
+    private final List<List<String>> llamadas = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+    }
+
+    private static Map<String, Object> camion(String dominio) {
+        return Map.of("dominio", dominio, "costoBaseKm", 50.0);
+    }
+
+    // ms-logistica responde con lo que arme la función a partir de los dominios pedidos
+    private void logisticaResponde(Function<Collection<String>, Mono<Map<String, Map<String, Object>>>> respuesta) {
+        when(logisticaClient.obtenerCamiones(any())).thenAnswer(inv -> {
+            Collection<String> dominios = inv.getArgument(0);
+            llamadas.add(List.copyOf(dominios));
+            return respuesta.apply(dominios);
+        });
+    }
+
+    private static Mono<Map<String, Map<String, Object>>> todos(Collection<String> dominios) {
+        Map<String, Map<String, Object>> camiones = new HashMap<>();
+        dominios.forEach(d -> camiones.put(d, camion(d)));
+        return Mono.just(camiones);
+    }
+
+    private static Throwable causa(CompletableFuture<?> future) {
+        ExecutionException error = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        return error.getCause();
+    }
+
+    private double lotes(String disparador) {
+        return registry.get("solicitudes.logistica.camiones.lote.tamano").tag("disparador", disparador).summary().count();
+    }
+
+    @Test
+    void obtener_LoteLleno_DespachaSinEsperarLaVentana() throws Exception {
+        // Arrange
+        logisticaResponde(CargadorCamionesTest::todos);
+        CargadorCamiones cargador = new CargadorCamiones(logisticaClient, registry, 3, VENTANA_LARGA);
+
+        // Act
+        CompletableFuture<Map<String, Object>> a = cargador.obtener("AA111AA").toFuture();
+        CompletableFuture<Map<String, Object>> b = cargador.obtener("BB222BB").toFuture();
+        assertTrue(llamadas.isEmpty(), "Con dos de tres no se despacha");
+        CompletableFuture<Map<String, Object>> c = cargador.obtener("CC333CC").toFuture();
+
+        // Assert
+        assertEquals(List.of(List.of("AA111AA", "BB222BB", "CC333CC")), llamadas);
+        assertEquals(camion("AA111AA"), a.get(5, TimeUnit.SECONDS));
+        assertEquals(camion("BB222BB"), b.get(5, TimeUnit.SECONDS));
+        assertEquals(camion("CC333CC"), c.get(5, TimeUnit.SECONDS));
+        assertEquals(1.0, lotes("tamano"));
+        assertEquals(0.0, lotes("ventana"));
+    }
+
+    @Test
+    void obtener_VentanaVencida_DespachaLoAcumulado() throws Exception {
+        // Arrange
+        logisticaResponde(CargadorCamionesTest::todos);
+        CargadorCamiones cargador = new CargadorCamiones(logisticaClient, registry, 50, Duration.ofMillis(20));
+
+        // Act
+        CompletableFuture<Map<String, Object>> a = cargador.obtener("AA111AA").toFuture();
+        CompletableFuture<Map<String, Object>> b = cargador.obtener("BB222BB").toFuture();
+
+        // Assert
+        assertEquals(camion("AA111AA"), a.get(5, TimeUnit.SECONDS));
+        assertEquals(camion("BB222BB"), b.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(List.of("AA111AA", "BB222BB")), llamadas);
+        assertEquals(1.0, lotes("ventana"));
+        assertEquals(0.0, lotes("tamano"));
+    }
+
+    @Test
+    void obtener_TrasDespacharPorTamano_ElSiguientePedidoAbreOtroLote() throws Exception {
+        // Arrange
+        logisticaResponde(CargadorCamionesTest::todos);
+        CargadorCamiones cargador = new CargadorCamiones(logisticaClient, registry, 2, VENTANA_LARGA);
+        cargador.obtener("AA111AA").toFuture();
+        cargador.obtener("BB222BB").toFuture();
+
+        // Act
+        CompletableFuture<Map<String, Object>> c = cargador.obtener("CC333CC").toFuture();
+        CompletableFuture<Map<String, Object>> a = cargador.obtener("AA111AA").toFuture();
+
+        // Assert: AA111AA se vuelve a pedir, el lote anterior ya salió
+        assertEquals(List.of(List.of("AA111AA", "BB222BB"), List.of("CC333CC", "AA111AA")), llamadas);
+        assertEquals(camion("CC333CC"), c.get(5, TimeUnit.SECONDS));
+        assertEquals(camion("AA111AA"), a.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void obtener_DominioRepetidoEnElLote_SePideUnaVezYCompartenElResultado() throws Exception {
+        // Arrange
+        logisticaResponde(CargadorCamionesTest::todos);
+        CargadorCamiones cargador = new CargadorCamiones(logisticaClient, registry, 2, VENTANA_LARGA);
+
+        // Act: el repetido no cuenta para el tamaño del lote
+        CompletableFuture<Map<String, Object>> primero = cargador.obtener("AA111AA").toFuture();
+        CompletableFuture<Map<String, Object>> repetido = cargador.obtener("AA111AA").toFuture();
+        assertTrue(llamadas.isEmpty());
+        CompletableFuture<Map<String, Object>> otro = cargador.obtener("BB222BB").toFuture();
+
+        // Assert
+        assertEquals(List.of(List.of("AA111AA", "BB222BB")), llamadas);
+        assertSame(primero.get(5, TimeUnit.SECONDS), repetido.get(5, TimeUnit.SECONDS));
+        assertEquals(camion("BB222BB"), otro.get(5, TimeUnit.SECONDS));
+        assertEquals(1.0, registry.get("solicitudes.logistica.camiones.lote.deduplicadas").counter().count());
+    }
+
+    @Test
+    void obtener_DominiosQueNoVienenEnLaRespuesta_TerminanConNoEncontrado() throws Exception {
+        // Arrange: ms-logistica solo conoce AA111AA
+        logisticaResponde(dominios -> Mono.just(Map.of("AA111AA", camion("AA111AA"))));
+        CargadorCamiones cargador = new CargadorCamiones(logisticaClient, registry, 3, VENTANA_LARGA);
+
+        // Act
+        CompletableFuture<Map<String, Object>> a = cargador.obtener("AA111AA").toFuture();
+        CompletableFuture<Map<String, Object>> b = cargador.obtener("BB222BB").toFuture();
+        CompletableFuture<Map<String, Object>> c = cargador.obtener("CC333CC").toFuture();
+
+        // Assert
+        assertEquals(camion("AA111AA"), a.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(NoSuchElementException.class, causa(b));
+        assertEquals("Camión no encontrado: CC333CC", causa(c).getMessage());
+    }
+
+    @Test
+    void obtener_FallaLaLlamada_TodosLosPedidosDelLoteRecibenElMismoError() {
+        // Arrange
+        IllegalStateException caida = new IllegalStateException("ms-logistica no responde");
+        logisticaResponde(dominios -> Mono.error(caida));
+        CargadorCamiones cargador = new CargadorCamiones(logisticaClient, registry, 3, VENTANA_LARGA);
+
+        // Act
+        CompletableFuture<Map<String, Object>> a = cargador.obtener("AA111AA").toFuture();
+        CompletableFuture<Map<String, Object>> repetido = cargador.obtener("AA111AA").toFuture();
+        CompletableFuture<Map<String, Object>> b = cargador.obtener("BB222BB").toFuture();
+        CompletableFuture<Map<String, Object>> c = cargador.obtener("CC333CC").toFuture();
+
+        // Assert
+        assertSame(caida, causa(a));
+        assertSame(caida, causa(repetido));
+        assertSame(caida, causa(b));
+        assertSame(caida, causa(c));
+        verify(logisticaClient, times(1)).obtenerCamiones(any());
+    }
+
+    @Test
+    void obtener_RespuestaSinCuerpo_TerminaTodosConError() {
+        // Arrange
+        logisticaResponde(dominios -> Mono.empty());
+        CargadorCamiones cargador = new CargadorCamiones(logisticaClient, registry, 2, VENTANA_LARGA);
+
+        // Act
+        CompletableFuture<Map<String, Object>> a = cargador.obtener("AA111AA").toFuture();
+        CompletableFuture<Map<String, Object>> b = cargador.obtener("BB222BB").toFuture();
+
+        // Assert
+        assertInstanceOf(IllegalStateException.class, causa(a));
+        assertInstanceOf(IllegalStateException.class, causa(b));
+    }
+
+    @Test
+    void obtener_SinSuscribirse_NoEncola() {
+        // Arrange
+        CargadorCamiones cargador = new CargadorCamiones(logisticaClient, registry, 1, VENTANA_LARGA);
+
+        // Act
+        cargador.obtener("AA111AA");
+
+        // Assert
+        verifyNoInteractions(logisticaClient);
+    }
+
+    @Test
+    void constructor_MaxLoteNoPositivo_LanzaExcepcion() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> new CargadorCamiones(logisticaClient, registry, 0, VENTANA_LARGA));
+    }
+}
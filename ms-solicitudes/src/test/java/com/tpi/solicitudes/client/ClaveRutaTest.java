@@ -0,0 +1,59 @@
+package com.tpi.solicitudes.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClaveRutaTest {
+
+    @Test
+    void de_PuntosQueRedondeanIgual_CompartenLaClave() {
+        // Act: a 3 decimales ambos orígenes quedan en -31.417,-64.184
+        ClaveRuta una = ClaveRuta.de(-31.41749, -64.18351, -34.6, -58.4, 3);
+        ClaveRuta otra = ClaveRuta.de(-31.41651, -64.18449, -34.6004, -58.3996, 3);
+
+        // Assert
+        assertEquals(una, otra);
+        assertEquals(una.hash(), otra.hash());
+        assertEquals(new ClaveRuta(-31417, -64184, -34600, -58400), una);
+    }
+
+    @Test
+    void de_PuntosQueRedondeanDistinto_NoCompartenLaClave() {
+        // Act
+        ClaveRuta una = ClaveRuta.de(-31.4174, -64.18, -34.6, -58.4, 3);
+        ClaveRuta otra = ClaveRuta.de(-31.4176, -64.18, -34.6, -58.4, 3);
+
+        // Assert
+        assertNotEquals(una, otra);
+    }
+
+    @Test
+    void de_PrecisionCero_RedondeaAGrados() {
+        // Act
+        ClaveRuta clave = ClaveRuta.de(-31.6, -64.4, 0.5, 179.5, 0);
+
+        // Assert: Math.round va hacia +infinito en el medio
+        assertEquals(new ClaveRuta(-32, -64, 1, 180), clave);
+        assertEquals("-32,-64", clave.origen(0));
+    }
+
+    @Test
+    void origenYDestino_EscribenLaCoordenadaRedondeadaSinErrorBinario() {
+        // Act
+        ClaveRuta clave = ClaveRuta.de(-31.417, -64.18, -34.6037, -58.3816, 3);
+
+        // Assert
+        assertEquals("-31.417,-64.180", clave.origen(3));
+        assertEquals("-34.604,-58.382", clave.destino(3));
+    }
+
+    @Test
+    void de_PrecisionFueraDeRango_LanzaExcepcion() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> ClaveRuta.de(0, 0, 0, 0, -1));
+        assertThrows(IllegalArgumentException.class, () -> ClaveRuta.de(0, 0, 0, 0, ClaveRuta.PRECISION_MAXIMA + 1));
+        assertEquals(new ClaveRuta(-180_000_000, 180_000_000, 90_000_000, -90_000_000),
+                ClaveRuta.de(-180, 180, 90, -90, ClaveRuta.PRECISION_MAXIMA));
+    }
+}
@@ -0,0 +1,170 @@
+package com.tpi.solicitudes.client;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExtractorDirectionsTest {
+
+    private static final DistanciaYDuracion ESPERADA = new DistanciaYDuracion(702.345, 421);
+
+    // Forma real de la API: steps con distance/duration propios antes del total del leg, una segunda ruta
+    // y un segundo leg con otros valores, textos con multibyte y escapes, y status al final
+    private static final String RESPUESTA = """
+            {"geocoded_waypoints":[{"geocoder_status":"OK","place_id":"ChIJ\\u00e9Córdoba"}],
+             "routes":[
+               {"summary":"RN9 — Ruta Nacional 9","legs":[
+                 {"steps":[
+                    {"distance":{"text":"1,2 km","value":1200},"duration":{"text":"2 min","value":120},
+                     "html_instructions":"Dirígete al <b>sur</b> por \\"Av. Colón\\""},
+                    {"distance":{"text":"701 km","value":701145},"duration":{"text":"7 h","value":25140}}],
+                  "distance":{"text":"702 km","value":702345},
+                  "duration":{"text":"7 h 1 min","value":25260},
+                  "end_address":"Buenos Aires, Argentina"},
+                 {"distance":{"text":"5 km","value":5000},"duration":{"text":"9 min","value":540}}]},
+               {"summary":"RN8","legs":[
+                 {"distance":{"text":"800 km","value":800000},"duration":{"text":"9 h","value":32400}}]}],
+             "status":"OK"}
+            """;
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static DistanciaYDuracion enPartes(byte[] json, int... cortes) throws IOException {
+        ExtractorDirections extractor = new ExtractorDirections();
+        int desde = 0;
+        for (int hasta : cortes) {
+            extractor.alimentar(ByteBuffer.wrap(json, desde, hasta - desde));
+            desde = hasta;
+        }
+        extractor.alimentar(ByteBuffer.wrap(json, desde, json.length - desde));
+        return extractor.terminar();
+    }
+
+    @Test
+    void extraer_RespuestaCompleta_TomaElTotalDelPrimerLegDeLaPrimeraRuta() throws IOException {
+        // Act
+        DistanciaYDuracion resultado = ExtractorDirections.extraer(bytes(RESPUESTA));
+
+        // Assert: ni los steps, ni legs[1], ni routes[1]
+        assertEquals(ESPERADA, resultado);
+    }
+
+    @Test
+    void alimentar_CortadoEnCadaPosicion_DevuelveLoMismo() throws IOException {
+        // Arrange: cortes dentro de números, de claves, de escapes \\uXXXX y de caracteres de dos bytes
+        byte[] json = bytes(RESPUESTA);
+
+        // Act & Assert
+        for (int corte = 1; corte < json.length; corte++) {
+            assertEquals(ESPERADA, enPartes(json, corte), "Cortado en el byte " + corte);
+        }
+    }
+
+    @Test
+    void alimentar_ByteAByte_DevuelveLoMismo() throws IOException {
+        // Arrange
+        byte[] json = bytes(RESPUESTA);
+        int[] cortes = new int[json.length - 1];
+        Arrays.setAll(cortes, i -> i + 1);
+
+        // Act & Assert
+        assertEquals(ESPERADA, enPartes(json, cortes));
+    }
+
+    @Test
+    void alimentar_DataBuffersComoLlegaDeLaRed_AvisaCuandoYaTieneLosValores() throws IOException {
+        // Arrange
+        byte[] json = bytes(RESPUESTA);
+        int finDelLeg = RESPUESTA.indexOf("\"end_address\"");
+        int bytesHastaElFinDelLeg = bytes(RESPUESTA.substring(0, finDelLeg)).length;
+        ExtractorDirections extractor = new ExtractorDirections();
+        DataBuffer primera = DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOfRange(json, 0, bytesHastaElFinDelLeg));
+        DataBuffer resto = DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOfRange(json, bytesHastaElFinDelLeg, json.length));
+
+        // Act
+        boolean completoTrasLaPrimera = extractor.alimentar(primera);
+        boolean completoTrasElResto = extractor.alimentar(resto);
+
+        // Assert
+        assertTrue(completoTrasLaPrimera);
+        assertTrue(completoTrasElResto);
+        assertEquals(ESPERADA, extractor.terminar());
+    }
+
+    @Test
+    void extraer_StatusZeroResults_LanzaExcepcionConElEstado() {
+        // Arrange
+        byte[] json = bytes("{\"geocoded_waypoints\":[],\"routes\":[],\"status\":\"ZERO_RESULTS\"}");
+
+        // Act
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> ExtractorDirections.extraer(json));
+
+        // Assert
+        assertTrue(error.getMessage().contains("ZERO_RESULTS"));
+    }
+
+    @Test
+    void extraer_StatusDeError_LanzaExcepcionConElEstado() {
+        // Arrange: el status de un step u otro objeto anidado no cuenta como el de la respuesta
+        byte[] json = bytes("""
+                {"error_message":"The provided API key is invalid.","routes":[{"legs":[{"status":"OK"}]}],
+                 "status":"REQUEST_DENIED"}""");
+
+        // Act
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> ExtractorDirections.extraer(json));
+
+        // Assert
+        assertEquals("Google Directions respondió con estado: REQUEST_DENIED", error.getMessage());
+    }
+
+    @Test
+    void extraer_StatusOkSinDuracion_LanzaExcepcion() {
+        // Arrange: la duración solo está en un step
+        byte[] json = bytes("""
+                {"routes":[{"legs":[{"steps":[{"duration":{"value":60}}],"distance":{"value":1000}}]}],"status":"OK"}""");
+
+        // Act & Assert
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> ExtractorDirections.extraer(json));
+        assertTrue(error.getMessage().startsWith("Sin distancia o duración"));
+    }
+
+    @Test
+    void terminar_CuerpoVacio_LanzaExcepcion() {
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> ExtractorDirections.extraer(new byte[0]));
+    }
+
+    @Test
+    void terminar_CuerpoCortadoAntesDeLosValores_LanzaExcepcionDeParseo() {
+        // Arrange
+        String cortado = RESPUESTA.substring(0, RESPUESTA.indexOf("\"distance\":{\"text\":\"702 km\""));
+
+        // Act & Assert
+        assertThrows(JsonParseException.class, () -> ExtractorDirections.extraer(bytes(cortado)));
+    }
+
+    @Test
+    void terminar_CuerpoCortadoDespuesDeLosValores_DevuelveLoYaLeido() throws IOException {
+        // Arrange: el resto del cuerpo no se parsea, así que no importa que falte
+        String cortado = RESPUESTA.substring(0, RESPUESTA.indexOf("\"end_address\""));
+
+        // Act & Assert
+        assertEquals(ESPERADA, ExtractorDirections.extraer(bytes(cortado)));
+    }
+
+    @Test
+    void extraer_JsonMalFormado_LanzaExcepcionDeParseo() {
+        // Act & Assert
+        assertThrows(JsonParseException.class, () -> ExtractorDirections.extraer(bytes("{\"routes\":[}")));
+    }
+}
@@ -0,0 +1,385 @@
+package com.tpi.solicitudes.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.tpi.solicitudes.web.error.GlobalExceptionHandler;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * LogisticaClient contra un ms-logistica simulado (servidor HTTP del JDK) y operadores de Resilience4j con la
+ * misma forma que application.properties: qué se reintenta, qué cuenta para el circuito y cómo llega al cliente
+ * HTTP un circuito abierto o un bulkhead lleno.
+ */
+class LogisticaClientTest {
+
+    private static final String CAMION = "{\"dominio\":\"AA111AA\",\"costoBaseKm\":50.0}";
+    private static final String RESERVA = "{\"reservado\":true,\"versionReserva\":7}";
+
+    private HttpServer servidor;
+    private ExecutorService hilosServidor;
+    private final Queue<Respuesta> respuestas = new ConcurrentLinkedQueue<>();
+    private final List<String> recibidas = new CopyOnWriteArrayList<>();
+
+    private CircuitBreakerRegistry circuitos;
+    private LogisticaClient cliente;
+
+    private record Respuesta(int status, String cuerpo, CountDownLatch liberar) {}
+
+    @BeforeEach
+    void setUp() throws IOException {
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        hilosServidor = Executors.newCachedThreadPool();
+        servidor.setExecutor(hilosServidor);
+        servidor.createContext("/", this::atender);
+        servidor.start();
+
+        circuitos = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .failureRateThreshold(50)
+                .waitDurationInOpenState(Duration.ofMinutes(1))
+                .recordException(new FallaTransitoriaLogistica())
+                .build());
+        BulkheadRegistry bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(1)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+        TimeLimiterRegistry plazos = TimeLimiterRegistry.of(TimeLimiterConfig.custom()
+                .timeoutDuration(Duration.ofSeconds(5))
+                .build());
+        RetryRegistry reintentos = RetryRegistry.of(RetryConfig.custom()
+                .maxAttempts(3)
+                .waitDuration(Duration.ofMillis(10))
+                .retryOnException(new FallaTransitoriaLogistica())
+                .build());
+        WebClient webClient = WebClient.builder()
+                .baseUrl("http://127.0.0.1:" + servidor.getAddress().getPort())
+                .build();
+        cliente = new LogisticaClient(webClient, circuitos, bulkheads, plazos, reintentos);
+    }
+
+    @AfterEach
+    void tearDown() {
+        servidor.stop(0);
+        hilosServidor.shutdownNow();
+    }
+
+    private void atender(HttpExchange intercambio) throws IOException {
+        recibidas.add(intercambio.getRequestMethod() + " " + intercambio.getRequestURI().getPath());
+        intercambio.getRequestBody().readAllBytes();
+        Respuesta respuesta = respuestas.poll();
+        if (respuesta == null) {
+            respuesta = new Respuesta(500, "{}", null);
+        }
+        if (respuesta.liberar() != null) {
+            try {
+                respuesta.liberar().await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] cuerpo = respuesta.cuerpo().getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().add("Content-Type", "application/json");
+        intercambio.sendResponseHeaders(respuesta.status(), cuerpo.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(cuerpo);
+        }
+    }
+
+    private void responder(int status, String cuerpo) {
+        respuestas.add(new Respuesta(status, cuerpo, null));
+    }
+
+    private CircuitBreaker.State estadoDelCircuito() {
+        return circuitos.circuitBreaker(LogisticaClient.CIRCUITO).getState();
+    }
+
+    private void abrirElCircuito() {
+        // Cuatro reservas con 503: sin reintento, cada una es una falla registrada
+        for (int i = 0; i < 4; i++) {
+            responder(503, "{}");
+            assertThrows(WebClientResponseException.ServiceUnavailable.class,
+                    () -> cliente.reservarCamion("AA111AA", 1000.0, 10.0).block());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, estadoDelCircuito());
+    }
+
+    @Test
+    void reservarCamion_Falla503_NoSeReintenta() {
+        // Arrange
+        responder(503, "{}");
+        responder(200, RESERVA);
+
+        // Act & Assert
+        assertThrows(WebClientResponseException.ServiceUnavailable.class,
+                () -> cliente.reservarCamion("AA111AA", 1000.0, 10.0).block());
+        assertEquals(List.of("POST /api/camiones/AA111AA/reservar"), recibidas);
+    }
+
+    @Test
+    void reservarCamiones_Falla503_NoSeReintenta() {
+        // Arrange
+        responder(503, "{}");
+
+        // Act & Assert
+        assertThrows(WebClientResponseException.ServiceUnavailable.class, () -> cliente.reservarCamiones(
+                List.of(new LogisticaClient.ValidacionCapacidad("AA111AA", 1000.0, 10.0))).block());
+        assertEquals(1, recibidas.size());
+    }
+
+    @Test
+    void reservarCamion_Rechazo409_NoEsError() {
+        // Arrange
+        responder(409, "{\"reservado\":false,\"motivo\":\"NO_DISPONIBLE\"}");
+
+        // Act
+        LogisticaClient.ReservaCamion reserva = cliente.reservarCamion("AA111AA", 1000.0, 10.0).block();
+
+        // Assert
+        assertNotNull(reserva);
+        assertFalse(reserva.aplicada());
+        assertEquals("NO_DISPONIBLE", reserva.motivo());
+        assertEquals(CircuitBreaker.State.CLOSED, estadoDelCircuito());
+    }
+
+    @Test
+    void liberarCamion_Falla503_SeReintentaHastaQueResponde() {
+        // Arrange
+        responder(503, "{}");
+        responder(502, "{}");
+        responder(200, RESERVA);
+
+        // Act
+        LogisticaClient.ReservaCamion liberada = cliente.liberarCamion("AA111AA", 7L).block();
+
+        // Assert
+        assertNotNull(liberada);
+        assertTrue(liberada.aplicada());
+        assertEquals(3, recibidas.size());
+        assertTrue(recibidas.stream().allMatch("POST /api/camiones/AA111AA/liberar"::equals));
+    }
+
+    @Test
+    void obtenerCamion_Falla429_SeReintenta() {
+        // Arrange
+        responder(429, "{}");
+        responder(200, CAMION);
+
+        // Act
+        Map<String, Object> camion = cliente.obtenerCamion("AA111AA").block();
+
+        // Assert
+        assertEquals("AA111AA", camion.get("dominio"));
+        assertEquals(2, recibidas.size());
+    }
+
+    @Test
+    void obtenerCamiones_SiempreFalla_AgotaLosIntentosYDevuelveElUltimoError() {
+        // Arrange
+        responder(500, "{}");
+        responder(500, "{}");
+        responder(503, "{}");
+
+        // Act & Assert
+        assertThrows(WebClientResponseException.ServiceUnavailable.class,
+                () -> cliente.obtenerCamiones(List.of("AA111AA", "BB222BB")).block());
+        assertEquals(3, recibidas.size());
+    }
+
+    @Test
+    void obtenerCamion_Respuesta4xx_NoSeReintentaNiAbreElCircuito() {
+        // Arrange: más que el mínimo de llamadas del circuito, todas 404
+        for (int i = 0; i < 6; i++) {
+            responder(404, "{}");
+        }
+
+        // Act
+        for (int i = 0; i < 6; i++) {
+            assertThrows(WebClientResponseException.NotFound.class, () -> cliente.obtenerCamion("ZZ999ZZ").block());
+        }
+
+        // Assert
+        assertEquals(6, recibidas.size());
+        assertEquals(CircuitBreaker.State.CLOSED, estadoDelCircuito());
+    }
+
+    @Test
+    void reservarCamion_Camion404_TerminaConNoEncontradoSinAbrirElCircuito() {
+        // Arrange
+        for (int i = 0; i < 4; i++) {
+            responder(404, "{}");
+        }
+
+        // Act & Assert
+        for (int i = 0; i < 4; i++) {
+            assertThrows(NoSuchElementException.class, () -> cliente.reservarCamion("ZZ999ZZ", 1000.0, 10.0).block());
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, estadoDelCircuito());
+    }
+
+    @Test
+    void circuitoAbierto_RechazaSinLlamarAMsLogistica() {
+        // Arrange
+        abrirElCircuito();
+        recibidas.clear();
+        responder(200, CAMION);
+
+        // Act & Assert: el circuito es compartido, así que también corta las consultas
+        assertThrows(CallNotPermittedException.class, () -> cliente.obtenerCamion("AA111AA").block());
+        assertThrows(CallNotPermittedException.class, () -> cliente.liberarCamion("AA111AA", 7L).block());
+        assertTrue(recibidas.isEmpty());
+    }
+
+    @Test
+    void bulkheadLleno_RechazaLaSegundaReservaSinEsperar() throws Exception {
+        // Arrange: la primera reserva queda colgada en el servidor ocupando el único lugar
+        CountDownLatch liberar = new CountDownLatch(1);
+        respuestas.add(new Respuesta(200, RESERVA, liberar));
+        CompletableFuture<LogisticaClient.ReservaCamion> primera = cliente.reservarCamion("AA111AA", 1000.0, 10.0).toFuture();
+        while (recibidas.isEmpty()) {
+            Thread.yield();
+        }
+
+        // Act
+        assertThrows(BulkheadFullException.class, () -> cliente.reservarCamion("BB222BB", 1000.0, 10.0).block());
+        liberar.countDown();
+
+        // Assert
+        assertTrue(primera.get(5, TimeUnit.SECONDS).aplicada());
+        assertEquals(1, recibidas.size());
+    }
+
+    @Test
+    void circuitoAbierto_LlegaAlClienteHttpComo503() throws Exception {
+        // Arrange
+        abrirElCircuito();
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new CamionesDePrueba(cliente))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+
+        // Act
+        MvcResult resultado = mockMvc.perform(get("/prueba/camiones/AA111AA"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.status").value(HttpStatus.SERVICE_UNAVAILABLE.value()));
+    }
+
+    @Test
+    void bulkheadLleno_LlegaAlClienteHttpComo503() throws Exception {
+        // Arrange
+        CountDownLatch liberar = new CountDownLatch(1);
+        respuestas.add(new Respuesta(200, CAMION, liberar));
+        CompletableFuture<Map<String, Object>> ocupando = cliente.obtenerCamion("AA111AA").toFuture();
+        while (recibidas.isEmpty()) {
+            Thread.yield();
+        }
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new CamionesDePrueba(cliente))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+
+        // Act
+        MvcResult resultado = mockMvc.perform(get("/prueba/camiones/BB222BB"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        mockMvc.perform(asyncDispatch(resultado)).andExpect(status().isServiceUnavailable());
+        liberar.countDown();
+        ocupando.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void fallaTransitoria_SoloCuentaErroresDelServicio() {
+        // Arrange
+        FallaTransitoriaLogistica predicado = new FallaTransitoriaLogistica();
+
+        // Act & Assert
+        for (HttpStatus transitorio : List.of(HttpStatus.INTERNAL_SERVER_ERROR, HttpStatus.BAD_GATEWAY,
+                HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.TOO_MANY_REQUESTS)) {
+            assertTrue(predicado.test(WebClientResponseException.create(transitorio.value(), "", null, null, null)),
+                    transitorio.toString());
+        }
+        for (HttpStatus delPedido : List.of(HttpStatus.BAD_REQUEST, HttpStatus.UNAUTHORIZED, HttpStatus.FORBIDDEN,
+                HttpStatus.NOT_FOUND, HttpStatus.CONFLICT, HttpStatus.UNPROCESSABLE_ENTITY)) {
+            assertFalse(predicado.test(WebClientResponseException.create(delPedido.value(), "", null, null, null)),
+                    delPedido.toString());
+        }
+        assertTrue(predicado.test(new TimeoutException()));
+        assertTrue(predicado.test(new WebClientRequestException(new IOException("Connection refused"),
+                HttpMethod.GET, URI.create("http://localhost"), new HttpHeaders())));
+        assertFalse(predicado.test(new NoSuchElementException()));
+        assertFalse(predicado.test(new IllegalStateException()));
+    }
+
+    @RestController
+    static class CamionesDePrueba {
+
+        private final LogisticaClient cliente;
+
+        CamionesDePrueba(LogisticaClient cliente) {
+            this.cliente = cliente;
+        }
+
+        @GetMapping("/prueba/camiones/{dominio}")
+        Mono<Map<String, Object>> camion(@PathVariable String dominio) {
+            return cliente.obtenerCamion(dominio);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.tpi.solicitudes.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnilloAcotadoTest {
+
+    private static List<Long> rango(long desde, int n) {
+        List<Long> lote = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            lote.add(desde + i);
+        }
+        return lote;
+    }
+
+    @Test
+    void constructor_CapacidadNoPotenciaDeDos_SeRedondeaHaciaArriba() {
+        // Act & Assert
+        assertEquals(8, new AnilloAcotado<Long>(5).capacidad());
+        assertEquals(8, new AnilloAcotado<Long>(8).capacidad());
+        assertThrows(IllegalArgumentException.class, () -> new AnilloAcotado<Long>(0));
+    }
+
+    @Test
+    void ofrecer_LoteQueNoEntraEntero_NoEncolaNinguno() {
+        // Arrange
+        AnilloAcotado<Long> anillo = new AnilloAcotado<>(8);
+        assertTrue(anillo.ofrecer(rango(0, 6)));
+
+        // Act
+        boolean aceptado = anillo.ofrecer(rango(100, 3));
+
+        // Assert
+        assertFalse(aceptado);
+        assertEquals(6, anillo.ocupados());
+        List<Long> drenados = new ArrayList<>();
+        assertEquals(6, anillo.drenar(drenados, 100));
+        assertEquals(rango(0, 6), drenados);
+        assertTrue(anillo.ofrecer(rango(100, 8)), "Con el anillo vacío el lote entra entero");
+    }
+
+    @Test
+    void ofrecer_LoteMasGrandeQueLaCapacidad_SeRechazaAunqueEsteVacio() {
+        // Arrange
+        AnilloAcotado<Long> anillo = new AnilloAcotado<>(4);
+
+        // Act & Assert
+        assertFalse(anillo.ofrecer(rango(0, 5)));
+        assertEquals(0, anillo.ocupados());
+        assertTrue(anillo.ofrecer(List.of()));
+    }
+
+    @Test
+    void ofrecerYDrenar_VariasVueltas_MantieneElOrden() {
+        // Arrange: lotes de 3 en un anillo de 4, así cada vuelta cae en otra posición
+        AnilloAcotado<Long> anillo = new AnilloAcotado<>(4);
+        List<Long> drenados = new ArrayList<>();
+
+        // Act
+        for (long vuelta = 0; vuelta < 20; vuelta++) {
+            assertTrue(anillo.ofrecer(rango(vuelta * 3, 3)));
+            assertFalse(anillo.ofrecer(rango(1000, 2)), "Con 3 de 4 ocupados no entran 2");
+            // Drena de a 2 para que la cabeza quede a mitad de un lote
+            anillo.drenar(drenados, 2);
+            anillo.drenar(drenados, 2);
+        }
+
+        // Assert
+        assertEquals(rango(0, 60), drenados);
+        assertEquals(0, anillo.ocupados());
+    }
+
+    @Test
+    void drenar_PosicionReservadaSinPublicar_CortaAhiYNoSalteaElOrden() throws Exception {
+        // Arrange: el productor lento reserva 2 posiciones y se frena antes de escribir la segunda
+        AnilloAcotado<Long> anillo = new AnilloAcotado<>(8);
+        CountDownLatch escribiendo = new CountDownLatch(1);
+        CountDownLatch seguir = new CountDownLatch(1);
+        List<Long> loteLento = new AbstractList<>() {
+            @Override
+            public Long get(int indice) {
+                if (indice == 1) {
+                    escribiendo.countDown();
+                    try {
+                        assertTrue(seguir.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return (long) indice;
+            }
+
+            @Override
+            public int size() {
+                return 2;
+            }
+        };
+        CompletableFuture<Boolean> lento = CompletableFuture.supplyAsync(() -> anillo.ofrecer(loteLento));
+        assertTrue(escribiendo.await(10, TimeUnit.SECONDS));
+        assertTrue(anillo.ofrecer(List.of(2L)), "El productor rápido reserva después y publica enseguida");
+        List<Long> drenados = new ArrayList<>();
+
+        // Act
+        int primeros = anillo.drenar(drenados, 10);
+        seguir.countDown();
+        assertTrue(lento.get(10, TimeUnit.SECONDS));
+        int resto = anillo.drenar(drenados, 10);
+
+        // Assert
+        assertEquals(1, primeros);
+        assertEquals(2, resto);
+        assertEquals(List.of(0L, 1L, 2L), drenados);
+    }
+
+    @Test
+    void ofrecer_VariosProductoresConAnilloChico_NoPierdeNiDuplica() throws Exception {
+        // Arrange
+        int productores = 4;
+        int porProductor = 50_000;
+        AnilloAcotado<Long> anillo = new AnilloAcotado<>(64);
+        ExecutorService ejecutor = Executors.newFixedThreadPool(productores);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int p = 0; p < productores; p++) {
+            long base = (long) p * porProductor;
+            tareas.add(ejecutor.submit(() -> {
+                long siguiente = 0;
+                while (siguiente < porProductor) {
+                    int n = (int) Math.min(ThreadLocalRandom.current().nextInt(1, 8), porProductor - siguiente);
+                    List<Long> lote = rango(base + siguiente, n);
+                    // yield y no spin: con pocos núcleos el spin le quita el procesador al consumidor
+                    while (!anillo.ofrecer(lote)) {
+                        Thread.yield();
+                    }
+                    siguiente += n;
+                }
+            }));
+        }
+
+        // Act: este hilo es el único consumidor
+        List<Long> drenados = new ArrayList<>(productores * porProductor);
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (drenados.size() < productores * porProductor && System.nanoTime() < limite) {
+            if (anillo.drenar(drenados, 16) == 0) {
+                Thread.yield();
+            }
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(10, TimeUnit.SECONDS);
+        }
+        ejecutor.shutdown();
+
+        // Assert
+        assertEquals(productores * porProductor, drenados.size());
+        Set<Long> distintos = new HashSet<>(drenados);
+        assertEquals(drenados.size(), distintos.size(), "Ningún elemento sale dos veces");
+        long[] ultimoPorProductor = new long[productores];
+        Arrays.fill(ultimoPorProductor, -1);
+        for (long valor : drenados) {
+            int productor = (int) (valor / porProductor);
+            assertTrue(valor > ultimoPorProductor[productor], "Cada productor sale en el orden en que encoló");
+            ultimoPorProductor[productor] = valor;
+        }
+        assertEquals(0, anillo.ocupados());
+    }
+}
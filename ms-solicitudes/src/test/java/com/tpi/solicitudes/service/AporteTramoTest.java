@@ -0,0 +1,108 @@
+package com.tpi.solicitudes.service;
+
+import com.tpi.solicitudes.domain.EstadoTramo;
+import com.tpi.solicitudes.domain.Tramo;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AporteTramoTest {
+
+    private static Tramo tramo(EstadoTramo estado, Double costoReal, Double tiempoReal) {
+        return Tramo.builder().estado(estado).costoReal(costoReal).tiempoReal(tiempoReal).build();
+    }
+
+    @Test
+    void de_PendienteYAsignado_CuentanComoPendientes() {
+        // Act & Assert
+        assertEquals(new AporteTramo(1, 0, 0, 0, 0), AporteTramo.de(tramo(EstadoTramo.PENDIENTE, null, null)));
+        assertEquals(new AporteTramo(1, 0, 0, 0, 0), AporteTramo.de(tramo(EstadoTramo.ASIGNADO, null, null)));
+        assertEquals(new AporteTramo(1, 0, 0, 0, 0), AporteTramo.de(tramo(null, null, null)));
+    }
+
+    @Test
+    void de_Iniciado_NoAportaImportes() {
+        // Act
+        AporteTramo aporte = AporteTramo.de(tramo(EstadoTramo.INICIADO, 500.0, 60.0));
+
+        // Assert
+        assertEquals(new AporteTramo(0, 1, 0, 0, 0), aporte);
+    }
+
+    @Test
+    void de_FinalizadoSinImportes_AportaCero() {
+        // Act
+        AporteTramo aporte = AporteTramo.de(tramo(EstadoTramo.FINALIZADO, null, null));
+
+        // Assert
+        assertEquals(new AporteTramo(0, 0, 1, 0, 0), aporte);
+    }
+
+    @Test
+    void menos_InicioDeTramo_PasaUnoDePendientesAIniciados() {
+        // Arrange
+        AporteTramo antes = AporteTramo.de(tramo(EstadoTramo.ASIGNADO, null, null));
+        AporteTramo despues = AporteTramo.de(tramo(EstadoTramo.INICIADO, null, null));
+
+        // Act
+        AporteTramo delta = despues.menos(antes);
+
+        // Assert
+        assertEquals(new AporteTramo(-1, 1, 0, 0, 0), delta);
+    }
+
+    @Test
+    void menos_FinalizacionDeTramo_SumaSusImportes() {
+        // Arrange
+        AporteTramo antes = AporteTramo.de(tramo(EstadoTramo.INICIADO, null, null));
+        AporteTramo despues = AporteTramo.de(tramo(EstadoTramo.FINALIZADO, 800.0, 95.5));
+
+        // Act
+        AporteTramo delta = despues.menos(antes);
+
+        // Assert
+        assertEquals(new AporteTramo(0, -1, 1, 800.0, 95.5), delta);
+    }
+
+    @Test
+    void menos_CorreccionDeTramoFinalizado_AplicaSoloLaDiferencia() {
+        // Arrange
+        AporteTramo antes = AporteTramo.de(tramo(EstadoTramo.FINALIZADO, 800.0, 95.5));
+        AporteTramo despues = AporteTramo.de(tramo(EstadoTramo.FINALIZADO, 750.0, 100.0));
+
+        // Act
+        AporteTramo delta = despues.menos(antes);
+
+        // Assert
+        assertEquals(new AporteTramo(0, 0, 0, -50.0, 4.5), delta);
+    }
+
+    @Test
+    void mas_AlDeshacerUnCambio_VuelveAlTotalInicial() {
+        // Arrange
+        AporteTramo total = new AporteTramo(2, 1, 1, 300.0, 40.0);
+        AporteTramo delta = AporteTramo.de(tramo(EstadoTramo.FINALIZADO, 120.0, 15.0))
+                .menos(AporteTramo.de(tramo(EstadoTramo.PENDIENTE, null, null)));
+
+        // Act
+        AporteTramo ida = total.mas(delta);
+        AporteTramo vuelta = ida.menos(delta);
+
+        // Assert
+        assertEquals(new AporteTramo(1, 1, 2, 420.0, 55.0), ida);
+        assertEquals(total, vuelta);
+    }
+
+    @Test
+    void esNulo_DiferenciaDeRedondeo_RespetaLaTolerancia() {
+        // Arrange: 0.1 + 0.2 - 0.3 no da exactamente 0 con doubles
+        AporteTramo redondeo = new AporteTramo(0, 0, 0, 0.1 + 0.2 - 0.3, 0);
+
+        // Act & Assert
+        assertFalse(redondeo.esNulo(0));
+        assertTrue(redondeo.esNulo(0.005));
+        assertFalse(new AporteTramo(0, 0, 0, 0.01, 0).esNulo(0.005));
+        assertFalse(new AporteTramo(0, 1, -1, 0, 0).esNulo(0.005), "Un cambio de contadores nunca es nulo");
+        assertTrue(AporteTramo.NINGUNO.esNulo(0));
+    }
+}
@@ -0,0 +1,240 @@
+package com.tpi.solicitudes.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tpi.solicitudes.domain.EstadoSolicitud;
+import com.tpi.solicitudes.domain.Solicitud;
+import com.tpi.solicitudes.domain.Tramo;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exportación NDJSON/CSV en un PostgreSQL embebido: el contenido, la escritura a medida que se lee y el
+ * bulkhead {@code exportacion} (dos a la vez, sin cola). Cada prueba filtra por un rango de fechas propio.
+ */
+class ExportacionPostgresTest extends PostgresEmbebido {
+
+    @Autowired
+    private ExportacionService exportacion;
+
+    @Autowired
+    private SolicitudService solicitudService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private BulkheadRegistry bulkheads;
+
+    /**
+     * Salida de un cliente que no lee: la primera escritura se queda esperando hasta que la prueba la libere.
+     */
+    private static final class SalidaTrabada extends OutputStream {
+
+        final CountDownLatch escribiendo = new CountDownLatch(1);
+        final CountDownLatch liberar = new CountDownLatch(1);
+        final ByteArrayOutputStream recibido = new ByteArrayOutputStream();
+
+        @Override
+        public void write(int b) throws IOException {
+            escribiendo.countDown();
+            try {
+                if (!liberar.await(10, TimeUnit.SECONDS)) {
+                    throw new IOException("La prueba no liberó la salida");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            recibido.write(b);
+        }
+
+        String texto() {
+            return recibido.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    // Una solicitud con sus tramos iniciados en 'inicio', 'inicio' + 1s, ... en el orden de idTramo
+    private Long tramosIniciadosDesde(LocalDateTime inicio, int cantidad, String origen) {
+        List<Tramo> tramos = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            tramos.add(Tramo.builder().origen(origen).destino("Rosario").build());
+        }
+        Long nro = solicitudService.crearConTramos(Solicitud.builder()
+                .idCliente(1L)
+                .idContenedor(1L)
+                .estado(EstadoSolicitud.BORRADOR)
+                .build(), tramos).solicitud().getNroSolicitud();
+        jdbcTemplate.update("""
+                UPDATE tramos SET fecha_hora_inicio_real = ? + (id_tramo - (SELECT MIN(id_tramo) FROM tramos
+                    WHERE nro_solicitud = ?)) * INTERVAL '1 second'
+                WHERE nro_solicitud = ?""", inicio, nro, nro);
+        return nro;
+    }
+
+    private String exportarTramos(LocalDateTime desde, FormatoExportacion formato) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        exportacion.exportarTramos(null, desde, desde.plusDays(1), formato, () -> salida);
+        return salida.toString(StandardCharsets.UTF_8);
+    }
+
+    private CompletableFuture<Void> exportarTrabada(LocalDateTime desde, SalidaTrabada salida) {
+        return CompletableFuture.runAsync(() -> exportacion.exportarTramos(
+                null, desde, desde.plusDays(1), FormatoExportacion.CSV, () -> salida));
+    }
+
+    private int lugaresLibres() {
+        Bulkhead bulkhead = bulkheads.bulkhead("exportacion");
+        return bulkhead.getMetrics().getAvailableConcurrentCalls();
+    }
+
+    @Test
+    void exportarTramos_Csv_EncabezadoYFilasEscapadas() {
+        LocalDateTime inicio = LocalDateTime.of(2001, 1, 1, 0, 0);
+        Long nro = tramosIniciadosDesde(inicio, 2, "Córdoba, \"Centro\"");
+
+        String[] lineas = exportarTramos(inicio, FormatoExportacion.CSV).split("\r\n");
+
+        assertEquals(3, lineas.length);
+        assertTrue(lineas[0].startsWith("idTramo,nroSolicitud,origen,destino,"));
+        assertTrue(lineas[1].contains("," + nro + ",\"Córdoba, \"\"Centro\"\"\",Rosario,"));
+        assertTrue(lineas[1].contains(",2001-01-01T00:00:00,"));
+        assertTrue(lineas[2].contains(",2001-01-01T00:00:01,"));
+    }
+
+    @Test
+    void exportarTramos_Ndjson_UnObjetoPorLineaEnOrdenDeId() throws Exception {
+        LocalDateTime inicio = LocalDateTime.of(2002, 1, 1, 0, 0);
+        Long nro = tramosIniciadosDesde(inicio, 3, "Córdoba");
+
+        String[] lineas = exportarTramos(inicio, FormatoExportacion.NDJSON).split("\n");
+
+        assertEquals(3, lineas.length);
+        long idAnterior = 0;
+        for (int i = 0; i < lineas.length; i++) {
+            JsonNode tramo = objectMapper.readTree(lineas[i]);
+            assertEquals(nro, tramo.get("nroSolicitud").asLong());
+            assertEquals("2002-01-01T00:00:0" + i, tramo.get("fechaHoraInicioReal").asText());
+            assertTrue(tramo.get("idTramo").asLong() > idAnterior);
+            idAnterior = tramo.get("idTramo").asLong();
+        }
+    }
+
+    @Test
+    void exportarSolicitudes_FiltroPorEstadoYFecha_SoloLasQueCumplen() throws Exception {
+        LocalDateTime creacion = LocalDateTime.of(2003, 1, 1, 0, 0);
+        Long cancelada = tramosIniciadosDesde(creacion, 1, "Córdoba");
+        Long borrador = tramosIniciadosDesde(creacion, 1, "Córdoba");
+        solicitudService.cambiarEstado(cancelada, EstadoSolicitud.CANCELADA);
+        jdbcTemplate.update("UPDATE solicitudes SET fecha_creacion = ? WHERE nro_solicitud IN (?, ?)",
+                creacion, cancelada, borrador);
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        exportacion.exportarSolicitudes(EstadoSolicitud.CANCELADA, creacion, creacion.plusDays(1),
+                FormatoExportacion.NDJSON, () -> salida);
+
+        String[] lineas = salida.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(1, lineas.length);
+        JsonNode solicitud = objectMapper.readTree(lineas[0]);
+        assertEquals(cancelada, solicitud.get("nroSolicitud").asLong());
+        assertEquals("CANCELADA", solicitud.get("estado").asText());
+    }
+
+    @Test
+    void exportar_FechasInvertidas_FallaSinAbrirLaSalida() {
+        LocalDateTime desde = LocalDateTime.of(2004, 1, 2, 0, 0);
+        AtomicBoolean abierta = new AtomicBoolean();
+
+        assertThrows(IllegalArgumentException.class, () -> exportacion.exportarTramos(null, desde,
+                desde.minusDays(1), FormatoExportacion.CSV, () -> {
+                    abierta.set(true);
+                    return new ByteArrayOutputStream();
+                }));
+        assertFalse(abierta.get());
+        assertEquals(2, lugaresLibres());
+    }
+
+    @Test
+    void exportar_ClienteLento_EscribeAntesDeTerminarDeLeer() throws Exception {
+        LocalDateTime inicio = LocalDateTime.of(2005, 1, 1, 0, 0);
+        tramosIniciadosDesde(inicio, 2500, "Córdoba");
+        SalidaTrabada salida = new SalidaTrabada();
+
+        CompletableFuture<Void> exportando = exportarTrabada(inicio, salida);
+
+        // Llegaron bytes a la salida y la exportación sigue leyendo, con su lugar y su conexión tomados
+        assertTrue(salida.escribiendo.await(10, TimeUnit.SECONDS));
+        assertFalse(exportando.isDone());
+        assertEquals(1, lugaresLibres());
+        salida.liberar.countDown();
+        exportando.get(10, TimeUnit.SECONDS);
+        assertEquals(2501, salida.texto().split("\r\n").length);
+        assertEquals(2, lugaresLibres());
+    }
+
+    @Test
+    void exportar_BulkheadLleno_RechazaLaTerceraSinAbrirLaSalida() throws Exception {
+        LocalDateTime inicio = LocalDateTime.of(2006, 1, 1, 0, 0);
+        tramosIniciadosDesde(inicio, 2500, "Córdoba");
+        SalidaTrabada primera = new SalidaTrabada();
+        SalidaTrabada segunda = new SalidaTrabada();
+        CompletableFuture<Void> exportandoPrimera = exportarTrabada(inicio, primera);
+        CompletableFuture<Void> exportandoSegunda = exportarTrabada(inicio, segunda);
+        assertTrue(primera.escribiendo.await(10, TimeUnit.SECONDS));
+        assertTrue(segunda.escribiendo.await(10, TimeUnit.SECONDS));
+        AtomicBoolean abierta = new AtomicBoolean();
+
+        assertThrows(BulkheadFullException.class, () -> exportacion.exportarTramos(null, inicio,
+                inicio.plusDays(1), FormatoExportacion.CSV, () -> {
+                    abierta.set(true);
+                    return new ByteArrayOutputStream();
+                }));
+
+        assertFalse(abierta.get());
+        primera.liberar.countDown();
+        segunda.liberar.countDown();
+        exportandoPrimera.get(10, TimeUnit.SECONDS);
+        exportandoSegunda.get(10, TimeUnit.SECONDS);
+        assertEquals(2, lugaresLibres());
+        assertEquals(2501, exportarTramos(inicio, FormatoExportacion.CSV).split("\r\n").length);
+    }
+
+    @Test
+    void exportar_ClienteCortaLaDescarga_TerminaYDevuelveElLugar() {
+        LocalDateTime inicio = LocalDateTime.of(2007, 1, 1, 0, 0);
+        tramosIniciadosDesde(inicio, 500, "Córdoba");
+        OutputStream cortada = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Connection reset by peer");
+            }
+        };
+
+        exportacion.exportarTramos(null, inicio, inicio.plusDays(1), FormatoExportacion.NDJSON, () -> cortada);
+
+        assertEquals(2, lugaresLibres());
+        assertEquals(500, exportarTramos(inicio, FormatoExportacion.NDJSON).split("\n").length);
+    }
+}
@@ -0,0 +1,51 @@
+package com.tpi.solicitudes.service;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Base de las pruebas contra un PostgreSQL embebido. La base y el contexto de Spring se comparten entre las
+ * clases que la extienden (misma configuración, mismo contexto cacheado); cada prueba usa sus propios datos.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+abstract class PostgresEmbebido {
+
+    static final EmbeddedPostgres POSTGRES = iniciar();
+
+    // Sin servidor web no se autoconfigura y SecurityConfig lo necesita
+    @MockBean
+    private JwtDecoder jwtDecoder;
+
+    @DynamicPropertySource
+    static void baseDeDatos(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "update");
+        registry.add("spring.jpa.show-sql", () -> "false");
+        registry.add("google.maps.cache.disco.archivo", () -> "target/direcciones-cache-test.bin");
+    }
+
+    private static EmbeddedPostgres iniciar() {
+        try {
+            EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    postgres.close();
+                } catch (IOException ignorada) {
+                    // La JVM termina igual
+                }
+            }));
+            return postgres;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.tpi.solicitudes.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * db/secuencias.sql contra un PostgreSQL embebido: filas cargadas por fuera de la secuencia no pueden
+ * chocar con los ids que reserve Hibernate después del arranque.
+ */
+class SecuenciasIdsPostgresTest extends PostgresEmbebido {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private void ejecutarScript() {
+        new ResourceDatabasePopulator(new ClassPathResource("db/secuencias.sql")).execute(dataSource);
+    }
+
+    @Test
+    void secuencias_FilasPorDelanteDeLaSecuencia_ElProximoBloqueEmpiezaDespuesDelMaximo() {
+        // Arrange: como una base con datos anteriores a las secuencias
+        jdbcTemplate.update("INSERT INTO clientes (id_cliente, nombre) VALUES (100000, 'Importado')");
+
+        // Act
+        ejecutarScript();
+
+        // Assert: Hibernate usa (nextval - 50, nextval]
+        long nextval = jdbcTemplate.queryForObject("SELECT nextval('clientes_seq')", Long.class);
+        assertEquals(100_001, nextval - 50 + 1);
+    }
+
+    @Test
+    void secuencias_SecuenciaPorDelanteDeLasFilas_NoRetrocede() {
+        // Arrange
+        long antes = jdbcTemplate.queryForObject("SELECT setval('tramos_seq', 500000)", Long.class);
+
+        // Act
+        ejecutarScript();
+
+        // Assert
+        assertEquals(antes + 50, jdbcTemplate.queryForObject("SELECT nextval('tramos_seq')", Long.class));
+    }
+
+    @Test
+    void secuencias_Arranque_TodasExistenConIncrementoDelPool() {
+        // Act & Assert
+        for (String secuencia : new String[]{"solicitudes_seq", "tramos_seq", "clientes_seq"}) {
+            assertEquals(50L, jdbcTemplate.queryForObject(
+                    "SELECT increment_by FROM pg_sequences WHERE sequencename = ?", Long.class, secuencia));
+        }
+    }
+}
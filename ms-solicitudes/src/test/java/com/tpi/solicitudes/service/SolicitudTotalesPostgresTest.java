@@ -0,0 +1,208 @@
+package com.tpi.solicitudes.service;
+
+import com.tpi.solicitudes.domain.EstadoSolicitud;
+import com.tpi.solicitudes.domain.Solicitud;
+import com.tpi.solicitudes.domain.Tramo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PUT de la solicitud contra cambios de tramo concurrentes, en un PostgreSQL embebido: el PUT no puede
+ * pisar los totales que el cambio de tramo sumó por delta. También los cambios de estado manuales.
+ */
+class SolicitudTotalesPostgresTest extends PostgresEmbebido {
+
+    @Autowired
+    private SolicitudService solicitudService;
+
+    @Autowired
+    private TramoService tramoService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private SolicitudService.SolicitudConTramos crear(int tramos) {
+        List<Tramo> nuevos = new ArrayList<>();
+        for (int i = 0; i < tramos; i++) {
+            nuevos.add(Tramo.builder().origen("Córdoba").destino("Rosario").build());
+        }
+        return solicitudService.crearConTramos(Solicitud.builder()
+                .idCliente(1L)
+                .idContenedor(1L)
+                .estado(EstadoSolicitud.BORRADOR)
+                .build(), nuevos);
+    }
+
+    // Lo que manda un PUT armado desde un GET anterior al cambio de tramo
+    private static Solicitud modificacion(Solicitud leida, double costoEstimado) {
+        return Solicitud.builder()
+                .idCliente(leida.getIdCliente())
+                .idContenedor(leida.getIdContenedor())
+                .costoEstimado(costoEstimado)
+                .estado(leida.getEstado())
+                .tramosPendientes(leida.getTramosPendientes())
+                .tramosIniciados(leida.getTramosIniciados())
+                .build();
+    }
+
+    private boolean esperandoLock() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_stat_activity WHERE wait_event_type = 'Lock'", Long.class) > 0;
+    }
+
+    @Test
+    void crearConTramos_GuardaLosTotalesEnElInsert() {
+        SolicitudService.SolicitudConTramos creada = crear(3);
+
+        Solicitud leida = solicitudService.findById(creada.solicitud().getNroSolicitud());
+
+        assertEquals(3, leida.getTramosPendientes());
+        assertEquals(0, leida.getTramosIniciados());
+        assertNull(leida.getCostoFinal());
+    }
+
+    @Test
+    void update_ConcurrenteConInicioDeTramo_NoPisaLosTotales() throws Exception {
+        SolicitudService.SolicitudConTramos creada = crear(2);
+        Long nro = creada.solicitud().getNroSolicitud();
+        Long idTramo = creada.tramos().get(0).getIdTramo();
+        Solicitud leida = solicitudService.findById(nro);
+        CountDownLatch tramoIniciado = new CountDownLatch(1);
+        CountDownLatch confirmar = new CountDownLatch(1);
+
+        // El cambio de tramo ya sumó su delta y todavía no confirmó
+        CompletableFuture<Void> inicio = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            tramoService.iniciarTramo(idTramo);
+            tramoIniciado.countDown();
+            try {
+                assertTrue(confirmar.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }));
+        assertTrue(tramoIniciado.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Solicitud> put = CompletableFuture.supplyAsync(
+                () -> solicitudService.update(nro, modificacion(leida, 1234.0)));
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!esperandoLock() && !put.isDone() && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+        confirmar.countDown();
+        inicio.get(10, TimeUnit.SECONDS);
+        Solicitud respuesta = put.get(10, TimeUnit.SECONDS);
+
+        Solicitud guardada = solicitudService.findById(nro);
+        assertEquals(1, guardada.getTramosPendientes());
+        assertEquals(1, guardada.getTramosIniciados());
+        assertEquals(EstadoSolicitud.EN_TRANSITO, guardada.getEstado());
+        assertEquals(1234.0, guardada.getCostoEstimado());
+        assertEquals(1, respuesta.getTramosIniciados(), "La respuesta del PUT trae los totales ya confirmados");
+    }
+
+    @Test
+    void update_EstadoYTotalesEnElBody_SeIgnoran() {
+        SolicitudService.SolicitudConTramos creada = crear(1);
+        Long nro = creada.solicitud().getNroSolicitud();
+        Solicitud body = modificacion(creada.solicitud(), 10.0);
+        body.setEstado(EstadoSolicitud.ENTREGADA);
+        body.setTramosPendientes(0);
+        body.setTramosFinalizados(5);
+        body.setCostoFinal(99.0);
+
+        solicitudService.update(nro, body);
+
+        Solicitud guardada = solicitudService.findById(nro);
+        assertEquals(EstadoSolicitud.BORRADOR, guardada.getEstado());
+        assertEquals(1, guardada.getTramosPendientes());
+        assertEquals(0, guardada.getTramosFinalizados());
+        assertNull(guardada.getCostoFinal());
+        assertEquals(10.0, guardada.getCostoEstimado());
+    }
+
+    @Test
+    void cambiarEstado_BorradorAProgramadaYCancelada_LoGuarda() {
+        Long nro = crear(1).solicitud().getNroSolicitud();
+
+        Solicitud programada = solicitudService.cambiarEstado(nro, EstadoSolicitud.PROGRAMADA);
+        Solicitud cancelada = solicitudService.cambiarEstado(nro, EstadoSolicitud.CANCELADA);
+
+        assertEquals(EstadoSolicitud.PROGRAMADA, programada.getEstado());
+        assertEquals(EstadoSolicitud.CANCELADA, cancelada.getEstado());
+        assertEquals(EstadoSolicitud.CANCELADA, solicitudService.findById(nro).getEstado());
+    }
+
+    @Test
+    void cambiarEstado_MismoEstado_NoLoCambia() {
+        Long nro = crear(1).solicitud().getNroSolicitud();
+
+        Solicitud respuesta = solicitudService.cambiarEstado(nro, EstadoSolicitud.BORRADOR);
+
+        assertEquals(EstadoSolicitud.BORRADOR, respuesta.getEstado());
+    }
+
+    @Test
+    void cambiarEstado_Cancelada_NoVuelveAtras() {
+        Long nro = crear(1).solicitud().getNroSolicitud();
+        solicitudService.cambiarEstado(nro, EstadoSolicitud.CANCELADA);
+
+        assertThrows(EstadoInvalidoException.class,
+                () -> solicitudService.cambiarEstado(nro, EstadoSolicitud.PROGRAMADA));
+        assertEquals(EstadoSolicitud.CANCELADA, solicitudService.findById(nro).getEstado());
+    }
+
+    @Test
+    void cambiarEstado_TramoIniciado_NoSePuedeCancelar() {
+        SolicitudService.SolicitudConTramos creada = crear(2);
+        Long nro = creada.solicitud().getNroSolicitud();
+        tramoService.iniciarTramo(creada.tramos().get(0).getIdTramo());
+
+        assertThrows(EstadoInvalidoException.class,
+                () -> solicitudService.cambiarEstado(nro, EstadoSolicitud.CANCELADA));
+        assertEquals(EstadoSolicitud.EN_TRANSITO, solicitudService.findById(nro).getEstado());
+    }
+
+    @Test
+    void cambiarEstado_EstadoDerivado_LanzaIllegalArgument() {
+        Long nro = crear(1).solicitud().getNroSolicitud();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> solicitudService.cambiarEstado(nro, EstadoSolicitud.EN_TRANSITO));
+        assertThrows(IllegalArgumentException.class,
+                () -> solicitudService.cambiarEstado(nro, EstadoSolicitud.ENTREGADA));
+        assertEquals(EstadoSolicitud.BORRADOR, solicitudService.findById(nro).getEstado());
+    }
+
+    @Test
+    void cambiarEstado_Inexistente_LanzaNoSuchElement() {
+        assertThrows(NoSuchElementException.class,
+                () -> solicitudService.cambiarEstado(-1L, EstadoSolicitud.PROGRAMADA));
+    }
+
+    @Test
+    void iniciarTramo_SolicitudCancelada_SigueCancelada() {
+        SolicitudService.SolicitudConTramos creada = crear(2);
+        Long nro = creada.solicitud().getNroSolicitud();
+        solicitudService.cambiarEstado(nro, EstadoSolicitud.CANCELADA);
+
+        tramoService.iniciarTramo(creada.tramos().get(0).getIdTramo());
+
+        Solicitud guardada = solicitudService.findById(nro);
+        assertEquals(EstadoSolicitud.CANCELADA, guardada.getEstado());
+        assertEquals(1, guardada.getTramosIniciados());
+    }
+}
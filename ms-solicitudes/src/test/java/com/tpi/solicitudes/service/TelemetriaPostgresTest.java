@@ -0,0 +1,97 @@
+package com.tpi.solicitudes.service;
+
+import com.tpi.solicitudes.domain.EstadoSolicitud;
+import com.tpi.solicitudes.domain.PingTramo;
+import com.tpi.solicitudes.domain.Solicitud;
+import com.tpi.solicitudes.domain.Tramo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Telemetría contra un PostgreSQL embebido: el DDL de db/telemetria.sql y la recepción con los cambios de
+ * estado reales del tramo.
+ */
+class TelemetriaPostgresTest extends PostgresEmbebido {
+
+    @Autowired
+    private TelemetriaService telemetriaService;
+
+    @Autowired
+    private SolicitudService solicitudService;
+
+    @Autowired
+    private TramoService tramoService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long tramoIniciado() {
+        SolicitudService.SolicitudConTramos creada = solicitudService.crearConTramos(Solicitud.builder()
+                        .idCliente(1L)
+                        .idContenedor(1L)
+                        .estado(EstadoSolicitud.PROGRAMADA)
+                        .build(),
+                List.of(Tramo.builder().origen("Córdoba").destino("Rosario").build()));
+        Long idTramo = creada.tramos().get(0).getIdTramo();
+        tramoService.iniciarTramo(idTramo);
+        return idTramo;
+    }
+
+    private static List<PingTramo> ping(Long idTramo) {
+        return List.of(PingTramo.builder()
+                .idTramo(idTramo)
+                .fechaHora(LocalDateTime.now())
+                .latitud(-31.4)
+                .longitud(-64.2)
+                .build());
+    }
+
+    @Test
+    void telemetriaSql_BaseSinTablas_CreaLaMismaTablaQueHibernate() throws Exception {
+        // Arrange: una base vacía, como con ddl-auto=none
+        jdbcTemplate.execute("DROP DATABASE IF EXISTS esquema_telemetria");
+        jdbcTemplate.execute("CREATE DATABASE esquema_telemetria");
+        DataSource vacia = POSTGRES.getDatabase("postgres", "esquema_telemetria");
+        ResourceDatabasePopulator script = new ResourceDatabasePopulator(new ClassPathResource("db/telemetria.sql"));
+
+        // Act: dos veces, como en dos arranques
+        script.execute(vacia);
+        script.execute(vacia);
+
+        // Assert
+        JdbcTemplate nueva = new JdbcTemplate(vacia);
+        assertEquals(columnas(jdbcTemplate), columnas(nueva));
+        assertEquals(1, nueva.queryForObject(
+                "SELECT COUNT(*) FROM pg_indexes WHERE indexname = 'idx_telemetria_tramo_fecha'", Integer.class));
+        nueva.update(TelemetriaService.INSERT, 1L, LocalDateTime.now(), -31.4, -64.2, null, LocalDateTime.now());
+        assertEquals(1, nueva.queryForObject("SELECT COUNT(*) FROM telemetria_tramos", Integer.class));
+    }
+
+    private static List<String> columnas(JdbcTemplate jdbc) {
+        return jdbc.queryForList("""
+                SELECT column_name || ' ' || data_type || ' ' || is_nullable || ' ' || is_identity
+                FROM information_schema.columns WHERE table_name = 'telemetria_tramos' ORDER BY column_name""",
+                String.class);
+    }
+
+    @Test
+    void recibir_TramoFinalizadoYaCacheadoComoIniciado_RechazaSinEsperarAlTtl() {
+        Long idTramo = tramoIniciado();
+        assertEquals(1, telemetriaService.recibir(ping(idTramo)).aceptados());
+
+        tramoService.finalizarTramo(idTramo, LocalDateTime.now(), 120.0, 800.0, 95.0);
+        TelemetriaService.Recepcion recepcion = telemetriaService.recibir(ping(idTramo));
+
+        assertEquals(0, recepcion.aceptados());
+        assertEquals(List.of(idTramo), recepcion.noIniciados());
+    }
+}
@@ -0,0 +1,202 @@
+package com.tpi.solicitudes.service;
+
+import com.tpi.solicitudes.domain.PingTramo;
+import com.tpi.solicitudes.repository.TramoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TelemetriaServiceTest {
+
+    private static final int CAPACIDAD = 4;
+
+    @Mock
+    private TramoRepository tramoRepository;
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PreparedStatement insert;
+
+    private SimpleMeterRegistry registry;
+
+    private TelemetriaService service;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        when(tramoRepository.idsIniciados(anyList())).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (service != null) service.detener();
+    }
+
+    // Sin iniciar el escritor nadie vacía el anillo: sirve para llenarlo
+    private TelemetriaService crear(TelemetriaService.PoliticaLleno politica, Duration esperaMax, Duration intervaloMax) {
+        service = new TelemetriaService(tramoRepository, dataSource, registry, CAPACIDAD, politica, esperaMax,
+                100, intervaloMax, Duration.ofSeconds(30));
+        return service;
+    }
+
+    private void baseAceptaInserts() throws Exception {
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(TelemetriaService.INSERT)).thenReturn(insert);
+        when(insert.getConnection()).thenReturn(connection);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.supportsBatchUpdates()).thenReturn(true);
+        when(insert.executeBatch()).thenAnswer(inv -> new int[0]);
+    }
+
+    private static List<PingTramo> pings(int n) {
+        List<PingTramo> pings = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            pings.add(PingTramo.builder()
+                    .idTramo((long) i + 1)
+                    .fechaHora(LocalDateTime.now())
+                    .latitud(-31.4)
+                    .longitud(-64.2)
+                    .build());
+        }
+        return pings;
+    }
+
+    private double pings(String resultado) {
+        return registry.get("solicitudes.telemetria.pings").tag("resultado", resultado).counter().count();
+    }
+
+    @Test
+    void recibir_RechazarConAnilloLleno_LanzaSaturadaSinEncolarNada() {
+        // Arrange
+        crear(TelemetriaService.PoliticaLleno.RECHAZAR, Duration.ofMillis(50), Duration.ofMillis(200));
+        assertEquals(CAPACIDAD, service.recibir(pings(CAPACIDAD)).aceptados());
+
+        // Act & Assert
+        assertThrows(TelemetriaSaturadaException.class, () -> service.recibir(pings(2)));
+        assertEquals(2, pings("rechazado"));
+        assertEquals(CAPACIDAD, registry.get("solicitudes.telemetria.buffer.ocupados").gauge().value());
+    }
+
+    @Test
+    void recibir_DescartarConAnilloLleno_InformaLosDescartadosSinExcepcion() {
+        // Arrange
+        crear(TelemetriaService.PoliticaLleno.DESCARTAR, Duration.ofMillis(50), Duration.ofMillis(200));
+        service.recibir(pings(CAPACIDAD - 1));
+
+        // Act: entra 1 de 3, pero el lote es todo o nada
+        TelemetriaService.Recepcion recepcion = service.recibir(pings(3));
+
+        // Assert
+        assertEquals(0, recepcion.aceptados());
+        assertEquals(3, recepcion.descartados());
+        assertEquals(3, pings("descartado"));
+        assertEquals(CAPACIDAD - 1, registry.get("solicitudes.telemetria.buffer.ocupados").gauge().value());
+    }
+
+    @Test
+    void recibir_EsperarSinQueSeLibereLugar_RechazaAlVencerLaEspera() {
+        // Arrange
+        crear(TelemetriaService.PoliticaLleno.ESPERAR, Duration.ofMillis(100), Duration.ofMillis(200));
+        service.recibir(pings(CAPACIDAD));
+        long inicio = System.nanoTime();
+
+        // Act & Assert
+        assertThrows(TelemetriaSaturadaException.class, () -> service.recibir(pings(1)));
+        assertTrue(System.nanoTime() - inicio >= TimeUnit.MILLISECONDS.toNanos(100), "Esperó espera-max antes de rechazar");
+        assertEquals(1, pings("rechazado"));
+    }
+
+    @Test
+    void recibir_EsperarYElEscritorLiberaLugar_AceptaElLote() throws Exception {
+        // Arrange
+        baseAceptaInserts();
+        crear(TelemetriaService.PoliticaLleno.ESPERAR, Duration.ofSeconds(5), Duration.ofMillis(1));
+        service.recibir(pings(CAPACIDAD));
+
+        // Act: el escritor arranca mientras la petición espera lugar
+        CompletableFuture<TelemetriaService.Recepcion> recepcion = CompletableFuture.supplyAsync(() -> service.recibir(pings(2)));
+        Thread.sleep(50);
+        assertFalse(recepcion.isDone(), "Con el anillo lleno la petición espera");
+        service.iniciar();
+
+        // Assert
+        assertEquals(2, recepcion.get(5, TimeUnit.SECONDS).aceptados());
+        assertEquals(0, pings("rechazado"));
+    }
+
+    @Test
+    void detener_ConPingsEncoladosSinVencerElIntervalo_LosEscribeAntesDeTerminar() throws Exception {
+        // Arrange: ni el tamaño ni el intervalo del lote disparan una escritura antes del cierre
+        baseAceptaInserts();
+        crear(TelemetriaService.PoliticaLleno.RECHAZAR, Duration.ofMillis(50), Duration.ofHours(1));
+        service.iniciar();
+        service.recibir(pings(3));
+
+        // Act
+        service.detener();
+
+        // Assert
+        verify(insert, times(3)).addBatch();
+        verify(insert).executeBatch();
+        assertEquals(3, pings("escrito"));
+        assertEquals(0, registry.get("solicitudes.telemetria.buffer.ocupados").gauge().value());
+    }
+
+    @Test
+    void detener_BaseCaida_CuentaLosPingsPerdidos() throws Exception {
+        // Arrange
+        when(dataSource.getConnection()).thenThrow(new SQLException("base caída"));
+        crear(TelemetriaService.PoliticaLleno.RECHAZAR, Duration.ofMillis(50), Duration.ofHours(1));
+        service.iniciar();
+        service.recibir(pings(2));
+
+        // Act
+        service.detener();
+
+        // Assert
+        assertEquals(2, pings("perdido"));
+        assertEquals(0, pings("escrito"));
+    }
+
+    @Test
+    void recibir_TramosNoIniciados_NoSeEncolanYSeInforman() {
+        // Arrange
+        when(tramoRepository.idsIniciados(anyList())).thenReturn(List.of(1L));
+        crear(TelemetriaService.PoliticaLleno.RECHAZAR, Duration.ofMillis(50), Duration.ofMillis(200));
+
+        // Act
+        TelemetriaService.Recepcion recepcion = service.recibir(pings(3));
+
+        // Assert
+        assertEquals(1, recepcion.aceptados());
+        assertEquals(List.of(2L, 3L), recepcion.noIniciados());
+        assertEquals(2, pings("no-iniciado"));
+    }
+}
@@ -0,0 +1,181 @@
+package com.tpi.solicitudes.service;
+
+import com.tpi.solicitudes.repository.SolicitudRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TotalesSolicitudesTest {
+
+    @Mock
+    private SolicitudRepository solicitudRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry registry;
+
+    private TotalesSolicitudes totales;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        totales = new TotalesSolicitudes(solicitudRepository, new TransactionTemplate(transactionManager), registry, 2);
+    }
+
+    private record Diferencia(Long getNroSolicitud, Long getPendientes, Long getIniciados, Long getFinalizados,
+                              Double getCosto, Double getTiempo) implements SolicitudRepository.DiferenciaTotales {
+    }
+
+    private static Diferencia sinDesvio(long nro) {
+        return new Diferencia(nro, 0L, 0L, 0L, 0.0, 0.0);
+    }
+
+    private double desviosCorregidos() {
+        return registry.get("solicitudes.totales.desvios").counter().count();
+    }
+
+    // ========== TESTS PARA registrarCambio ==========
+
+    @Test
+    void registrarCambio_MismoAporte_NoEscribe() {
+        // Arrange
+        AporteTramo iniciado = new AporteTramo(0, 1, 0, 0, 0);
+
+        // Act
+        totales.registrarCambio(7L, iniciado, iniciado);
+
+        // Assert
+        verifyNoInteractions(solicitudRepository);
+    }
+
+    @Test
+    void registrarCambio_Finalizacion_SumaLaDiferencia() {
+        // Act
+        totales.registrarCambio(7L, new AporteTramo(0, 1, 0, 0, 0), new AporteTramo(0, 0, 1, 800.0, 95.5));
+
+        // Assert
+        verify(solicitudRepository).sumarTotales(7L, 0, -1, 1, 800.0, 95.5);
+    }
+
+    // ========== TESTS PARA verificar ==========
+
+    @Test
+    void verificar_SinDesvios_NoCorrigeNada() {
+        // Arrange
+        when(solicitudRepository.diferenciasDesde(0, 2)).thenReturn(List.of(sinDesvio(1), sinDesvio(2)));
+        when(solicitudRepository.diferenciasDesde(2, 2)).thenReturn(List.of(sinDesvio(3)));
+
+        // Act
+        int corregidas = totales.verificar();
+
+        // Assert
+        assertEquals(0, corregidas);
+        verify(solicitudRepository, never()).bloquear(anyLong());
+        verify(solicitudRepository, never()).sumarTotales(anyLong(), anyInt(), anyInt(), anyInt(), anyDouble(), anyDouble());
+        assertEquals(0, desviosCorregidos());
+    }
+
+    @Test
+    void verificar_PaginaCompleta_SigueDesdeLaUltimaSolicitud() {
+        // Arrange
+        when(solicitudRepository.diferenciasDesde(0, 2)).thenReturn(List.of(sinDesvio(4), sinDesvio(9)));
+        when(solicitudRepository.diferenciasDesde(9, 2)).thenReturn(List.of(sinDesvio(12), sinDesvio(15)));
+        when(solicitudRepository.diferenciasDesde(15, 2)).thenReturn(List.of());
+
+        // Act
+        totales.verificar();
+
+        // Assert
+        InOrder orden = inOrder(solicitudRepository);
+        orden.verify(solicitudRepository).diferenciasDesde(0, 2);
+        orden.verify(solicitudRepository).diferenciasDesde(9, 2);
+        orden.verify(solicitudRepository).diferenciasDesde(15, 2);
+        orden.verifyNoMoreInteractions();
+    }
+
+    @Test
+    void verificar_DesvioConfirmadoConLaFilaBloqueada_SumaLaDiferencia() {
+        // Arrange
+        Diferencia desvio = new Diferencia(5L, -1L, 1L, 0L, 0.0, 0.0);
+        when(solicitudRepository.diferenciasDesde(0, 2)).thenReturn(List.of(desvio));
+        when(solicitudRepository.bloquear(5L)).thenReturn(Optional.of(5L));
+        when(solicitudRepository.diferenciasDesde(4, 1)).thenReturn(List.of(desvio));
+
+        // Act
+        int corregidas = totales.verificar();
+
+        // Assert
+        assertEquals(1, corregidas);
+        InOrder orden = inOrder(solicitudRepository);
+        orden.verify(solicitudRepository).bloquear(5L);
+        orden.verify(solicitudRepository).diferenciasDesde(4, 1);
+        orden.verify(solicitudRepository).sumarTotales(5L, -1, 1, 0, 0.0, 0.0);
+        assertEquals(1, desviosCorregidos());
+    }
+
+    @Test
+    void verificar_DesvioDeUnCambioEnCurso_NoCorrigeAlReleerBloqueado() {
+        // Arrange: la primera lectura vio el tramo ya escrito y la solicitud todavía sin el delta
+        when(solicitudRepository.diferenciasDesde(0, 2)).thenReturn(List.of(new Diferencia(5L, 0L, 0L, 1L, 800.0, 95.5)));
+        when(solicitudRepository.bloquear(5L)).thenReturn(Optional.of(5L));
+        when(solicitudRepository.diferenciasDesde(4, 1)).thenReturn(List.of(sinDesvio(5)));
+
+        // Act
+        int corregidas = totales.verificar();
+
+        // Assert
+        assertEquals(0, corregidas);
+        verify(solicitudRepository, never()).sumarTotales(anyLong(), anyInt(), anyInt(), anyInt(), anyDouble(), anyDouble());
+        assertEquals(0, desviosCorregidos());
+    }
+
+    @Test
+    void verificar_SolicitudEliminadaAntesDeBloquear_NoCorrige() {
+        // Arrange
+        when(solicitudRepository.diferenciasDesde(0, 2)).thenReturn(List.of(new Diferencia(5L, 1L, 0L, 0L, 0.0, 0.0)));
+        when(solicitudRepository.bloquear(5L)).thenReturn(Optional.empty());
+
+        // Act
+        int corregidas = totales.verificar();
+
+        // Assert
+        assertEquals(0, corregidas);
+        verify(solicitudRepository, never()).diferenciasDesde(4, 1);
+        verify(solicitudRepository, never()).sumarTotales(anyLong(), anyInt(), anyInt(), anyInt(), anyDouble(), anyDouble());
+    }
+
+    @Test
+    void verificar_DiferenciaDeRedondeo_NoEsDesvio() {
+        // Arrange
+        when(solicitudRepository.diferenciasDesde(0, 2)).thenReturn(List.of(new Diferencia(5L, 0L, 0L, 0L, 0.001, -0.002)));
+
+        // Act
+        int corregidas = totales.verificar();
+
+        // Assert
+        assertEquals(0, corregidas);
+        verify(solicitudRepository, never()).bloquear(anyLong());
+    }
+
+    @Test
+    void constructor_LoteNoPositivo_LanzaExcepcion() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> new TotalesSolicitudes(solicitudRepository,
+                new TransactionTemplate(transactionManager), new SimpleMeterRegistry(), 0));
+    }
+}
@@ -0,0 +1,122 @@
+package com.tpi.solicitudes.service;
+
+import com.tpi.solicitudes.domain.EstadoSolicitud;
+import com.tpi.solicitudes.domain.Solicitud;
+import com.tpi.solicitudes.domain.Tramo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Listado de tramos por cursor contra un PostgreSQL embebido: recorrer todas las páginas devuelve cada tramo
+ * una sola vez, en orden (inicio, id) y con los sin iniciar al final, aunque haya empates de fecha o altas
+ * entre una página y la siguiente. Cada prueba filtra por un dominio propio para no ver los tramos de las demás.
+ */
+class TramoListadoPostgresTest extends PostgresEmbebido {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 1, 8, 0);
+
+    @Autowired
+    private SolicitudService solicitudService;
+
+    @Autowired
+    private TramoService tramoService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Crea los tramos con el camión dado y la fecha de inicio de cada uno (null: sin iniciar); devuelve los ids
+    private List<Long> tramos(String dominio, LocalDateTime... inicios) {
+        List<Tramo> nuevos = new ArrayList<>();
+        for (int i = 0; i < inicios.length; i++) {
+            nuevos.add(Tramo.builder().origen("Córdoba").destino("Rosario").build());
+        }
+        List<Long> ids = solicitudService.crearConTramos(Solicitud.builder()
+                        .idCliente(1L)
+                        .idContenedor(1L)
+                        .estado(EstadoSolicitud.BORRADOR)
+                        .build(), nuevos)
+                .tramos().stream().map(Tramo::getIdTramo).toList();
+        for (int i = 0; i < inicios.length; i++) {
+            jdbcTemplate.update("UPDATE tramos SET dominio_camion = ?, fecha_hora_inicio_real = ? WHERE id_tramo = ?",
+                    dominio, inicios[i], ids.get(i));
+        }
+        return ids;
+    }
+
+    // Recorre el listado como un cliente: cada página pide desde la clave del último tramo recibido
+    private List<Long> recorrer(String dominio, int size, LocalDateTime desde, Runnable entrePaginas) {
+        List<Long> vistos = new ArrayList<>();
+        LocalDateTime inicio = null;
+        Long id = null;
+        Slice<Tramo> pagina;
+        do {
+            pagina = tramoService.listarDesde(inicio, id, size, null, dominio, desde, null);
+            assertTrue(pagina.getNumberOfElements() <= size);
+            for (Tramo t : pagina) {
+                vistos.add(t.getIdTramo());
+                inicio = t.getFechaHoraInicioReal();
+                id = t.getIdTramo();
+            }
+            entrePaginas.run();
+        } while (pagina.hasNext());
+        return vistos;
+    }
+
+    @Test
+    void listarDesde_TodasLasPaginas_OrdenaPorInicioEIdYDejaLosSinIniciarAlFinal() {
+        List<Long> ids = tramos("KS100AA", T0.plusHours(1), T0.plusHours(1), T0, T0.plusHours(2), null, null, null);
+
+        List<Long> vistos = recorrer("KS100AA", 2, null, () -> {});
+
+        assertEquals(List.of(ids.get(2), ids.get(0), ids.get(1), ids.get(3), ids.get(4), ids.get(5), ids.get(6)), vistos);
+    }
+
+    @Test
+    void listarDesde_PaginaQueTerminaJustoEnElUltimoIniciado_SigueConLosSinIniciar() {
+        List<Long> ids = tramos("KS200AA", T0, T0.plusHours(1), null, null);
+
+        Slice<Tramo> primera = tramoService.listarDesde(null, null, 2, null, "KS200AA", null, null);
+        Slice<Tramo> segunda = tramoService.listarDesde(T0.plusHours(1), ids.get(1), 2, null, "KS200AA", null, null);
+        // Clave de un tramo sin iniciar: inicio null con id informado
+        Slice<Tramo> tercera = tramoService.listarDesde(null, ids.get(2), 2, null, "KS200AA", null, null);
+
+        assertTrue(primera.hasNext());
+        assertEquals(List.of(ids.get(0), ids.get(1)), primera.map(Tramo::getIdTramo).getContent());
+        assertFalse(segunda.hasNext());
+        assertEquals(List.of(ids.get(2), ids.get(3)), segunda.map(Tramo::getIdTramo).getContent());
+        assertEquals(List.of(ids.get(3)), tercera.map(Tramo::getIdTramo).getContent());
+    }
+
+    @Test
+    void listarDesde_ConRangoDeFechas_NoIncluyeLosSinIniciar() {
+        List<Long> ids = tramos("KS300AA", T0, T0.plusHours(1), T0.plusHours(1), null);
+
+        List<Long> vistos = recorrer("KS300AA", 1, T0.plusMinutes(30), () -> {});
+
+        assertEquals(List.of(ids.get(1), ids.get(2)), vistos);
+    }
+
+    @Test
+    void listarDesde_AltasEntrePaginas_NoRepiteNiSalteaLosQueYaEstaban() {
+        List<Long> ids = tramos("KS400AA", T0, T0.plusHours(1), T0.plusHours(2), T0.plusHours(3));
+        List<Long> agregados = new ArrayList<>();
+        int[] pagina = {0};
+
+        // Después de la primera página se inicia un tramo antes del cursor y otro después
+        List<Long> vistos = recorrer("KS400AA", 2, null, () -> {
+            if (pagina[0]++ == 0) {
+                agregados.addAll(tramos("KS400AA", T0.minusHours(1), T0.plusHours(4)));
+            }
+        });
+
+        assertEquals(List.of(ids.get(0), ids.get(1), ids.get(2), ids.get(3), agregados.get(1)), vistos);
+    }
+}
@@ -0,0 +1,338 @@
+package com.tpi.solicitudes.service;
+
+import com.tpi.solicitudes.client.CargadorCamiones;
+import com.tpi.solicitudes.client.DistanciaYDuracion;
+import com.tpi.solicitudes.client.GoogleMapsClient;
+import com.tpi.solicitudes.client.LogisticaClient;
+import com.tpi.solicitudes.domain.EstadoTramo;
+import com.tpi.solicitudes.domain.Solicitud;
+import com.tpi.solicitudes.domain.Tramo;
+import com.tpi.solicitudes.repository.SolicitudRepository;
+import com.tpi.solicitudes.repository.TramoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TramoServiceTest {
+
+    @Mock
+    private TramoRepository tramoRepository;
+
+    @Mock
+    private SolicitudRepository solicitudRepository;
+
+    @Mock
+    private LogisticaClient logisticaClient;
+
+    @Mock
+    private CargadorCamiones cargadorCamiones;
+
+    @Mock
+    private GoogleMapsClient googleMapsClient;
+
+    @Mock
+    private TotalesSolicitudes totalesSolicitudes;
+
+    @Mock
+    private TelemetriaService telemetriaService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private TramoService tramoService;
+
+    @BeforeEach
+    void setUp() {
+        tramoService = new TramoService(tramoRepository, solicitudRepository, logisticaClient, cargadorCamiones,
+                googleMapsClient, new EstimadorRutaLocal(1.3, 60), Duration.ofSeconds(1), 4,
+                new TransactionTemplate(transactionManager), totalesSolicitudes, telemetriaService);
+    }
+
+    private static Tramo tramoConCamion(Long idTramo, Long nroSolicitud) {
+        return Tramo.builder()
+                .idTramo(idTramo)
+                .solicitud(Solicitud.builder().nroSolicitud(nroSolicitud).build())
+                .origen("Córdoba")
+                .destino("Rosario")
+                .dominioCamion("AB123CD")
+                .estado(EstadoTramo.ASIGNADO)
+                .build();
+    }
+
+    private static Tramo tramoReservado(Long idTramo, String dominio, Long versionReserva) {
+        Tramo tramo = tramoConCamion(idTramo, 5L);
+        tramo.setDominioCamion(dominio);
+        tramo.setVersionReservaCamion(versionReserva);
+        return tramo;
+    }
+
+    // Corre la operación como si fuera una transacción que confirma: ejecuta los afterCommit registrados
+    private static <T> T confirmando(java.util.function.Supplier<T> operacion) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            T resultado = operacion.get();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            return resultado;
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // ========== TESTS PARA actualizar / eliminar / finalizarTramo ==========
+
+    @Test
+    void actualizar_CambiaElCamion_LoRechazaYFinalizarLiberaLaReservaDelCamionOriginal() {
+        // Arrange
+        Tramo actual = tramoReservado(10L, "AB123CD", 7L);
+        when(tramoRepository.buscarParaActualizar(10L)).thenReturn(Optional.of(actual));
+        when(tramoRepository.save(any(Tramo.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(logisticaClient.liberarCamion(anyString(), anyLong()))
+                .thenReturn(Mono.just(new LogisticaClient.ReservaCamion(false, 8L, null)));
+        Tramo put = tramoReservado(10L, "ZZ999ZZ", 7L);
+
+        // Act
+        assertThrows(IllegalArgumentException.class, () -> tramoService.actualizar(10L, put));
+        confirmando(() -> tramoService.finalizarTramo(10L, LocalDateTime.now(), 100.0, 50.0, 2.0));
+
+        // Assert: se libera el camión que se reservó, con su token, y no el del PUT
+        verify(logisticaClient).liberarCamion("AB123CD", 7L);
+        verify(logisticaClient, never()).liberarCamion(eq("ZZ999ZZ"), anyLong());
+        assertEquals("AB123CD", actual.getDominioCamion());
+    }
+
+    @Test
+    void actualizar_MismoCamion_ActualizaElRestoSinTocarLaReserva() {
+        // Arrange
+        Tramo actual = tramoReservado(10L, "AB123CD", 7L);
+        when(tramoRepository.buscarParaActualizar(10L)).thenReturn(Optional.of(actual));
+        when(tramoRepository.save(any(Tramo.class))).thenAnswer(inv -> inv.getArgument(0));
+        Tramo put = tramoReservado(10L, "AB123CD", null);
+        put.setDestino("Santa Fe");
+
+        // Act
+        Tramo guardado = confirmando(() -> tramoService.actualizar(10L, put));
+
+        // Assert
+        assertEquals("Santa Fe", guardado.getDestino());
+        assertEquals(7L, guardado.getVersionReservaCamion());
+        verifyNoInteractions(logisticaClient);
+    }
+
+    @Test
+    void eliminar_TramoConReserva_LiberaElCamionTrasElCommit() {
+        // Arrange
+        when(tramoRepository.buscarParaActualizar(10L)).thenReturn(Optional.of(tramoReservado(10L, "AB123CD", 7L)));
+        when(logisticaClient.liberarCamion("AB123CD", 7L))
+                .thenReturn(Mono.just(new LogisticaClient.ReservaCamion(false, 8L, null)));
+
+        // Act
+        confirmando(() -> {
+            tramoService.eliminar(10L);
+            verify(logisticaClient, never()).liberarCamion(anyString(), anyLong());
+            return null;
+        });
+
+        // Assert
+        verify(logisticaClient).liberarCamion("AB123CD", 7L);
+    }
+
+    @Test
+    void eliminar_TramoSinReserva_NoLlamaALogistica() {
+        // Arrange
+        when(tramoRepository.buscarParaActualizar(10L)).thenReturn(Optional.of(tramoReservado(10L, null, null)));
+
+        // Act
+        confirmando(() -> {
+            tramoService.eliminar(10L);
+            return null;
+        });
+
+        // Assert
+        verifyNoInteractions(logisticaClient);
+    }
+
+    // ========== TESTS PARA asignarACamion ==========
+
+    @Test
+    void asignarACamion_TramoFinalizado_RechazaSinReservar() {
+        // Arrange
+        Tramo finalizado = tramoReservado(10L, null, null);
+        finalizado.setEstado(EstadoTramo.FINALIZADO);
+        when(tramoRepository.findById(10L)).thenReturn(Optional.of(finalizado));
+
+        // Act & Assert
+        assertThrows(EstadoInvalidoException.class, () -> tramoService.asignarACamion(10L, "AB123CD").block());
+        verifyNoInteractions(logisticaClient);
+    }
+
+    @Test
+    void asignarEnLote_TramoFinalizado_LoRechazaSinReservarlo() {
+        // Arrange
+        Tramo finalizado = tramoReservado(10L, null, null);
+        finalizado.setEstado(EstadoTramo.FINALIZADO);
+        when(tramoRepository.buscarPorIds(any())).thenReturn(List.of(finalizado));
+        when(logisticaClient.reservarCamiones(List.of())).thenReturn(Mono.just(List.of()));
+
+        // Act
+        TramoService.AsignacionLote lote = tramoService.asignarEnLote(
+                List.of(new TramoService.AsignacionPedida(10L, "AB123CD")), false).block();
+
+        // Assert
+        assertEquals(0, lote.asignados());
+        assertEquals("El tramo está finalizado", lote.resultados().get(0).motivo());
+        verify(logisticaClient).reservarCamiones(List.of());
+    }
+
+    private void tresTramosSinCamionYElSegundoCamionYaReservado() {
+        when(tramoRepository.buscarPorIds(any())).thenReturn(List.of(
+                tramoReservado(10L, null, null), tramoReservado(11L, null, null), tramoReservado(12L, null, null)));
+        when(logisticaClient.reservarCamiones(anyList())).thenReturn(Mono.just(List.of(
+                new LogisticaClient.ReservaCamion(true, 1L, null),
+                new LogisticaClient.ReservaCamion(false, null, "NO_DISPONIBLE"),
+                new LogisticaClient.ReservaCamion(true, 3L, null))));
+    }
+
+    private static List<TramoService.AsignacionPedida> pedidasDeTresTramos() {
+        return List.of(new TramoService.AsignacionPedida(10L, "AA111AA"),
+                new TramoService.AsignacionPedida(11L, "BB222BB"),
+                new TramoService.AsignacionPedida(12L, "CC333CC"));
+    }
+
+    @Test
+    void asignarEnLote_TodoONadaConUnCamionYaReservado_LiberaLasReservasHechasYNoGuardaNinguna() {
+        // Arrange
+        tresTramosSinCamionYElSegundoCamionYaReservado();
+        when(logisticaClient.liberarCamiones(anyList())).thenReturn(Mono.just(List.of(
+                new LogisticaClient.ReservaCamion(false, 2L, null),
+                new LogisticaClient.ReservaCamion(false, 4L, null))));
+
+        // Act
+        TramoService.AsignacionLote lote = tramoService.asignarEnLote(pedidasDeTresTramos(), true).block();
+
+        // Assert
+        assertEquals(0, lote.asignados());
+        assertEquals(3, lote.rechazados());
+        assertEquals("El camión no está disponible", lote.resultados().get(1).motivo());
+        assertEquals("No se aplicó: otra asignación del lote falló", lote.resultados().get(0).motivo());
+        assertEquals("No se aplicó: otra asignación del lote falló", lote.resultados().get(2).motivo());
+        verify(logisticaClient).liberarCamiones(List.of(
+                new LogisticaClient.LiberacionCamion("AA111AA", 1L),
+                new LogisticaClient.LiberacionCamion("CC333CC", 3L)));
+        verify(tramoRepository, never()).asignarCamion(anyLong(), anyString(), anyLong(), any(), any());
+    }
+
+    @Test
+    void asignarEnLote_SinTodoONadaConUnCamionYaReservado_GuardaYConservaLasDemas() {
+        // Arrange
+        tresTramosSinCamionYElSegundoCamionYaReservado();
+        when(tramoRepository.asignarCamion(anyLong(), anyString(), anyLong(), isNull(), isNull())).thenReturn(1);
+
+        // Act
+        TramoService.AsignacionLote lote = tramoService.asignarEnLote(pedidasDeTresTramos(), false).block();
+
+        // Assert: las reservas aplicadas no se liberan, quedan con su token en el tramo
+        assertEquals(2, lote.asignados());
+        assertEquals(1, lote.rechazados());
+        assertEquals(1L, lote.resultados().get(0).versionReserva());
+        assertFalse(lote.resultados().get(1).asignado());
+        assertEquals(3L, lote.resultados().get(2).versionReserva());
+        verify(tramoRepository).asignarCamion(10L, "AA111AA", 1L, null, null);
+        verify(tramoRepository).asignarCamion(12L, "CC333CC", 3L, null, null);
+        verify(tramoRepository, never()).asignarCamion(eq(11L), anyString(), anyLong(), any(), any());
+        verify(logisticaClient, never()).liberarCamiones(anyList());
+    }
+
+    @Test
+    void asignarEnLote_TodoONadaConTramoInexistente_NoReservaNinguno() {
+        // Arrange
+        when(tramoRepository.buscarPorIds(any())).thenReturn(List.of(tramoReservado(10L, null, null)));
+
+        // Act
+        TramoService.AsignacionLote lote = tramoService.asignarEnLote(List.of(
+                new TramoService.AsignacionPedida(10L, "AA111AA"),
+                new TramoService.AsignacionPedida(99L, "BB222BB")), true).block();
+
+        // Assert
+        assertEquals(0, lote.asignados());
+        assertEquals("No se aplicó: otra asignación del lote falló", lote.resultados().get(0).motivo());
+        assertEquals("Tramo no encontrado: 99", lote.resultados().get(1).motivo());
+        verifyNoInteractions(logisticaClient);
+    }
+
+    // ========== TESTS PARA calcularCostoYTiempoEstimado ==========
+
+    @Test
+    void calcularCostoYTiempoEstimado_GuardaElTramoYRecalculaElCostoDeLaSolicitud() {
+        // Arrange
+        when(tramoRepository.findById(10L)).thenReturn(Optional.of(tramoConCamion(10L, 5L)));
+        when(googleMapsClient.obtenerDistanciaYDuracion(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(Mono.just(new DistanciaYDuracion(100.0, 60)));
+        when(cargadorCamiones.obtener("AB123CD")).thenReturn(Mono.just(Map.of("costoBaseKm", 2.5)));
+        when(tramoRepository.guardarEstimacion(eq(10L), eq(250.0), any(), any(), eq(false))).thenReturn(1);
+
+        // Act
+        Tramo tramo = tramoService.calcularCostoYTiempoEstimado(10L, -31.4, -64.2, -32.9, -60.6).block();
+
+        // Assert
+        assertEquals(250.0, tramo.getCostoAproximado());
+        assertFalse(tramo.getEstimacionAproximada());
+        InOrder orden = inOrder(tramoRepository, solicitudRepository);
+        orden.verify(tramoRepository).guardarEstimacion(eq(10L), eq(250.0), any(), any(), eq(false));
+        orden.verify(solicitudRepository).recalcularCostoEstimado(5L);
+    }
+
+    @Test
+    void calcularCostoYTiempoEstimado_TramoEliminadoDuranteElCalculo_NoRecalculaYLanzaExcepcion() {
+        // Arrange
+        when(tramoRepository.findById(10L)).thenReturn(Optional.of(tramoConCamion(10L, 5L)));
+        when(googleMapsClient.obtenerDistanciaYDuracion(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(Mono.just(new DistanciaYDuracion(100.0, 60)));
+        when(cargadorCamiones.obtener("AB123CD")).thenReturn(Mono.just(Map.of("costoBaseKm", 2.5)));
+        when(tramoRepository.guardarEstimacion(anyLong(), anyDouble(), any(), any(), anyBoolean())).thenReturn(0);
+
+        // Act & Assert
+        Mono<Tramo> estimacion = tramoService.calcularCostoYTiempoEstimado(10L, -31.4, -64.2, -32.9, -60.6);
+        assertThrows(NoSuchElementException.class, estimacion::block);
+        verify(solicitudRepository, never()).recalcularCostoEstimado(anyLong());
+    }
+
+    @Test
+    void calcularCostoYTiempoEstimado_GoogleNoResponde_RefinaYRecalculaLaSolicitud() {
+        // Arrange: la primera consulta vence el presupuesto, la del refinamiento responde
+        when(tramoRepository.findById(10L)).thenReturn(Optional.of(tramoConCamion(10L, 5L)));
+        when(googleMapsClient.obtenerDistanciaYDuracion(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(Mono.never(), Mono.just(new DistanciaYDuracion(120.0, 80)));
+        when(cargadorCamiones.obtener("AB123CD")).thenReturn(Mono.just(Map.of("costoBaseKm", 2.5)));
+        when(tramoRepository.guardarEstimacion(anyLong(), anyDouble(), any(), any(), anyBoolean())).thenReturn(1);
+        when(tramoRepository.refinarEstimacion(eq(10L), eq(300.0), any())).thenReturn(1);
+
+        // Act
+        Tramo tramo = tramoService.calcularCostoYTiempoEstimado(10L, -31.4, -64.2, -32.9, -60.6,
+                Duration.ofMillis(10)).block();
+
+        // Assert
+        assertTrue(tramo.getEstimacionAproximada());
+        verify(tramoRepository, timeout(2000)).refinarEstimacion(eq(10L), eq(300.0), any());
+        verify(solicitudRepository, timeout(2000).times(2)).recalcularCostoEstimado(5L);
+    }
+}